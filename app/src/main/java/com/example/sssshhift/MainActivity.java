@@ -28,8 +28,9 @@ import androidx.fragment.app.Fragment;
 import androidx.fragment.app.FragmentManager;
 import androidx.fragment.app.FragmentTransaction;
 
-import com.example.sssshhift.geofencing.GeofenceManager;
-import com.example.sssshhift.services.CalendarMonitorService;
+import com.example.sssshhift.geofencing.GeofenceRegistry;
+import com.example.sssshhift.calendar.CalendarMonitor;
+import com.example.sssshhift.utils.CalendarSettingsHelper;
 import com.example.sssshhift.utils.PermissionHelper;
 import com.google.android.material.bottomnavigation.BottomNavigationView;
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
@@ -40,6 +41,8 @@ import com.example.sssshhift.utils.PermissionUtils;
 import com.example.sssshhift.location.LocationUtils;
 import com.example.sssshhift.features.smartauto.SmartAutoSettingsFragment;
 import com.example.sssshhift.features.smartauto.SmartAutoWorker;
+import com.example.sssshhift.usage.retention.UsageRetentionWorker;
+import com.example.sssshhift.engine.RingerActuator;
 import androidx.preference.PreferenceManager;
 import com.google.android.material.appbar.MaterialToolbar;
 
@@ -53,7 +56,6 @@ public class MainActivity extends AppCompatActivity implements BottomNavigationV
     // Fragments
     private HomeFragment homeFragment;
     private SettingsFragment settingsFragment;
-    private GeofenceManager geofenceManager;
 
     // Permission tracking
     private boolean isFirstTimeSetup = false;
@@ -91,7 +93,8 @@ public class MainActivity extends AppCompatActivity implements BottomNavigationV
             showHomeFragment();
         }
 
-        geofenceManager = GeofenceManager.getInstance(this);
+        // Mirror location profiles into the geofence registry from now on
+        GeofenceRegistry.getInstance(this).syncProfiles();
 
         // Only request permissions if this is first time setup or permissions are missing
         if (isFirstTimeSetup || !areEssentialPermissionsGranted()) {
@@ -103,6 +106,9 @@ public class MainActivity extends AppCompatActivity implements BottomNavigationV
         }
 
         setupSmartAutoMode();
+        UsageRetentionWorker.schedule(this);
+        // Listens for ringer changes while the app runs, which keeps the usage session current
+        RingerActuator.getInstance(this);
     }
 
     @Override
@@ -292,9 +298,9 @@ public class MainActivity extends AppCompatActivity implements BottomNavigationV
             Toast.makeText(this, "Setup complete! You can enable more permissions in Settings.", Toast.LENGTH_LONG).show();
         }
 
-        // Add example geofence if location permissions are granted
+        // Register the fences of location profiles now that location permissions are granted
         if (LocationUtils.hasLocationPermissions(this)) {
-            addSilentZoneGeofence();
+            GeofenceRegistry.getInstance(this).registerAll();
         }
     }
 
@@ -310,58 +316,18 @@ public class MainActivity extends AppCompatActivity implements BottomNavigationV
         }
 
         if (hasCalendarPermission && hasDNDPermission) {
-            startCalendarMonitorService();
+            startCalendarMonitor();
         }
     }
 
-    private void startCalendarMonitorService() {
-        Intent serviceIntent = new Intent(this, CalendarMonitorService.class);
-        startService(serviceIntent);
-        Log.d(TAG, "Calendar monitor service started");
+    private void startCalendarMonitor() {
+        CalendarMonitor.getInstance(this).start();
+        Log.d(TAG, "Calendar monitor started");
     }
 
-    private void stopCalendarMonitorService() {
-        Intent serviceIntent = new Intent(this, CalendarMonitorService.class);
-        stopService(serviceIntent);
-        Log.d(TAG, "Calendar monitor service stopped");
-    }
-
-    private void addSilentZoneGeofence() {
-        if (!PermissionHelper.areAllPermissionsGranted(this)) {
-            return; // Skip if permissions not granted
-        }
-
-        // Example: Add geofence for office location
-        double latitude = 12.9716; // Bangalore coordinates (example)
-        double longitude = 77.5946;
-        float radius = 100; // 100 meters
-
-        geofenceManager.addProfileGeofence(
-                "office_profile", // profile ID
-                "Office Location", // location name
-                latitude,
-                longitude,
-                radius,
-                new GeofenceManager.GeofenceManagerCallback() {
-                    @Override
-                    public void onGeofenceAdded(String geofenceId, boolean success, String message) {
-                        Log.d(TAG, "Geofence added - ID: " + geofenceId + ", Success: " + success + ", Message: " + message);
-                        if (success) {
-                            Toast.makeText(MainActivity.this, "Example silent zone added!", Toast.LENGTH_SHORT).show();
-                        }
-                    }
-
-                    @Override
-                    public void onGeofenceRemoved(String geofenceId, boolean success, String message) {
-                        Log.d(TAG, "Geofence removed - ID: " + geofenceId + ", Success: " + success);
-                    }
-
-                    @Override
-                    public void onError(String error) {
-                        Log.e(TAG, "Geofence error: " + error);
-                    }
-                }
-        );
+    private void stopCalendarMonitor() {
+        CalendarMonitor.getInstance(this).stop();
+        Log.d(TAG, "Calendar monitor stopped");
     }
 
     private void handleLocationPermissionResult(int[] grantResults) {
@@ -498,28 +464,30 @@ public class MainActivity extends AppCompatActivity implements BottomNavigationV
     @Override
     protected void onDestroy() {
         super.onDestroy();
-        // Don't stop the calendar service here - let it run in background
+        // Calendar monitoring is driven by the scheduler, nothing to stop here
     }
 
     // Public method that can be called from settings to toggle calendar monitoring
     public void toggleCalendarMonitoring(boolean enable) {
+        // The monitor checks this flag, also after a reboot
+        new CalendarSettingsHelper(this).setCalendarMonitoringEnabled(enable);
         if (enable) {
             if (ContextCompat.checkSelfPermission(this, Manifest.permission.READ_CALENDAR)
                     == PackageManager.PERMISSION_GRANTED) {
-                startCalendarMonitorService();
+                startCalendarMonitor();
                 Toast.makeText(this, "Calendar monitoring enabled", Toast.LENGTH_SHORT).show();
             } else {
                 checkCalendarPermission();
             }
         } else {
-            stopCalendarMonitorService();
+            stopCalendarMonitor();
             Toast.makeText(this, "Calendar monitoring disabled", Toast.LENGTH_SHORT).show();
         }
     }
 
     // Check if calendar monitoring is currently active
     public boolean isCalendarMonitoringActive() {
-        return CalendarMonitorService.isCalendarModeActive(this);
+        return CalendarMonitor.isCalendarModeActive(this);
     }
 
     private void checkLocationRequirements() {
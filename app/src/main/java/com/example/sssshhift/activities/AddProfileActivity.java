@@ -24,6 +24,7 @@ import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
 
 import com.example.sssshhift.data.ProfileDatabaseHelper;
+import com.example.sssshhift.data.ProfileRepository;
 import com.example.sssshhift.location.LocationPickerActivity;
 import com.google.android.material.button.MaterialButton;
 import com.google.android.material.chip.Chip;
@@ -443,6 +444,11 @@ public class AddProfileActivity extends AppCompatActivity implements LocationLis
             profileNameLayout.setError("Profile name is required");
             profileNameEdit.requestFocus();
             return false;
+        } else if (ProfileRepository.getInstance(this).getByName(profileName) != null) {
+            // Names are unique in the database
+            profileNameLayout.setError("A profile with this name already exists");
+            profileNameEdit.requestFocus();
+            return false;
         } else {
             profileNameLayout.setError(null);
         }
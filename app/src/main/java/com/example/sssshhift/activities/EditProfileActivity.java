@@ -7,7 +7,6 @@ import android.content.ContentValues;
 import android.content.Context;
 import android.content.Intent;
 import android.content.pm.PackageManager;
-import android.database.Cursor;
 import android.location.Address;
 import android.location.Geocoder;
 import android.location.Location;
@@ -26,6 +25,7 @@ import androidx.core.content.ContextCompat;
 
 
 import com.example.sssshhift.data.ProfileDatabaseHelper;
+import com.example.sssshhift.data.ProfileRepository;
 import com.example.sssshhift.location.LocationPickerActivity;
 import com.google.android.material.button.MaterialButton;
 import com.google.android.material.chip.Chip;
@@ -162,30 +162,13 @@ public class EditProfileActivity extends AppCompatActivity implements LocationLi
 
     private void loadProfileData() {
         try {
-            Uri profileUri = Uri.withAppendedPath(ProfileContentProvider.CONTENT_URI, String.valueOf(profileId));
-            Cursor cursor = getContentResolver().query(profileUri, null, null, null, null);
-
-            if (cursor != null && cursor.moveToFirst()) {
-                currentProfile = new Profile();
-
-                // Load profile data from cursor
-                currentProfile.setId(cursor.getLong(cursor.getColumnIndexOrThrow(ProfileDatabaseHelper.COLUMN_ID)));
-                currentProfile.setName(cursor.getString(cursor.getColumnIndexOrThrow(ProfileDatabaseHelper.COLUMN_NAME)));
-                currentProfile.setTriggerType(cursor.getString(cursor.getColumnIndexOrThrow(ProfileDatabaseHelper.COLUMN_TRIGGER_TYPE)));
-                currentProfile.setTriggerValue(cursor.getString(cursor.getColumnIndexOrThrow(ProfileDatabaseHelper.COLUMN_TRIGGER_VALUE)));
-
-                // Handle end_time column (might be null)
-                int endTimeIndex = cursor.getColumnIndex(ProfileDatabaseHelper.COLUMN_END_TIME);
-                if (endTimeIndex != -1 && !cursor.isNull(endTimeIndex)) {
-                    currentProfile.setEndTime(cursor.getString(endTimeIndex));
-                }
-
-                currentProfile.setRingerMode(cursor.getString(cursor.getColumnIndexOrThrow(ProfileDatabaseHelper.COLUMN_RINGER_MODE)));
-                currentProfile.setActions(cursor.getString(cursor.getColumnIndexOrThrow(ProfileDatabaseHelper.COLUMN_ACTIONS)));
-                currentProfile.setActive(cursor.getInt(cursor.getColumnIndexOrThrow(ProfileDatabaseHelper.COLUMN_IS_ACTIVE)) == 1);
-                currentProfile.setCreatedAt(cursor.getLong(cursor.getColumnIndexOrThrow(ProfileDatabaseHelper.COLUMN_CREATED_AT)));
+            Profile profile = ProfileRepository.getInstance(this).getById(profileId);
 
-                cursor.close();
+            if (profile != null) {
+                // Work on a copy, the cached profile is shared
+                currentProfile = new Profile(profile.getId(), profile.getName(), profile.getTriggerType(),
+                        profile.getTriggerValue(), profile.getEndTime(), profile.getRingerMode(),
+                        profile.getActions(), profile.isActive(), profile.getCreatedAt());
 
                 // Store original name for scheduling updates
                 originalProfileName = currentProfile.getName();
@@ -589,10 +572,16 @@ public class EditProfileActivity extends AppCompatActivity implements LocationLi
         String profileName = profileNameEdit.getText().toString().trim();
 
         // Validate profile name
+        Profile sameName = ProfileRepository.getInstance(this).getByName(profileName);
         if (TextUtils.isEmpty(profileName)) {
             profileNameLayout.setError("Profile name is required");
             profileNameEdit.requestFocus();
             return false;
+        } else if (sameName != null && sameName.getId() != profileId) {
+            // Names are unique in the database
+            profileNameLayout.setError("A profile with this name already exists");
+            profileNameEdit.requestFocus();
+            return false;
         } else {
             profileNameLayout.setError(null);
         }
@@ -1,10 +1,12 @@
 package com.example.sssshhift.activities;
 
 import android.os.Bundle;
+import android.view.Menu;
 import android.view.MenuItem;
 import android.view.animation.AnimationUtils;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.widget.Toolbar;
+import androidx.core.util.Pair;
 import androidx.lifecycle.ViewModelProvider;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
@@ -15,9 +17,15 @@ import com.example.sssshhift.usage.viewmodel.UsageViewModel;
 import com.example.sssshhift.usage.data.UsageLog;
 import com.example.sssshhift.usage.data.UsageModeCount;
 import com.example.sssshhift.usage.data.PeakHourCount;
+import com.example.sssshhift.usage.data.UsageWindow;
+import com.google.android.material.datepicker.MaterialDatePicker;
 
 import android.widget.TextView;
+import java.text.DateFormat;
+import java.util.Calendar;
+import java.util.Date;
 import java.util.List;
+import java.util.TimeZone;
 
 public class UsageInsightsActivity extends AppCompatActivity {
     private UsageViewModel viewModel;
@@ -60,7 +68,8 @@ public class UsageInsightsActivity extends AppCompatActivity {
         viewModel = new ViewModelProvider(this).get(UsageViewModel.class);
 
         // Observe Data Changes
-        viewModel.getTotalSilentTime().observe(this, minutes -> {
+        viewModel.getTotalSilentTime().observe(this, durationMs -> {
+            long minutes = durationMs / (60 * 1000);
             long hours = minutes / 60;
             long remainingMinutes = minutes % 60;
             String timeText = hours > 0 ? 
@@ -76,6 +85,9 @@ public class UsageInsightsActivity extends AppCompatActivity {
             if (modeCount != null) {
                 mostUsedMode.setText(formatModeName(modeCount.getMode()));
                 mostUsedModeCount.setText(String.format("Used %d times", modeCount.getCount()));
+            } else {
+                mostUsedMode.setText("-");
+                mostUsedModeCount.setText("No activity");
             }
         });
 
@@ -83,9 +95,19 @@ public class UsageInsightsActivity extends AppCompatActivity {
             if (peakHourData != null) {
                 peakHour.setText(String.format("%02d:00", peakHourData.getHour()));
                 peakHourCount.setText(String.format("%d activations", peakHourData.getCount()));
+            } else {
+                peakHour.setText("-");
+                peakHourCount.setText("No activity");
             }
         });
 
+        viewModel.getWindow().observe(this, window -> {
+            if (getSupportActionBar() != null) {
+                getSupportActionBar().setSubtitle(formatWindow(window));
+            }
+            invalidateOptionsMenu();
+        });
+
         viewModel.getRecentActivity().observe(this, logs -> {
             adapter.setUsageLogs(logs);
         });
@@ -94,6 +116,44 @@ public class UsageInsightsActivity extends AppCompatActivity {
         recyclerView.setLayoutAnimation(AnimationUtils.loadLayoutAnimation(this, R.anim.layout_animation_fall_down));
     }
 
+    @Override
+    protected void onResume() {
+        super.onResume();
+        // Rolling windows follow the current day
+        viewModel.refresh();
+    }
+
+    private String formatWindow(UsageWindow window) {
+        DateFormat format = DateFormat.getDateInstance(DateFormat.MEDIUM);
+        String from = format.format(new Date(window.getFromDay()));
+        if (window.getFromDay() == window.getToDay()) {
+            return from;
+        }
+        return from + " – " + format.format(new Date(window.getToDay()));
+    }
+
+    private void showRangePicker() {
+        MaterialDatePicker<Pair<Long, Long>> picker = MaterialDatePicker.Builder.dateRangePicker()
+                .setTitleText("Select date range")
+                .build();
+        picker.addOnPositiveButtonClickListener(selection -> {
+            if (selection != null && selection.first != null && selection.second != null) {
+                viewModel.setCustomRange(toLocalDay(selection.first), toLocalDay(selection.second));
+            }
+        });
+        picker.show(getSupportFragmentManager(), "usage_range_picker");
+    }
+
+    // The picker returns UTC midnight of the selected date, move it to the same local date
+    private static long toLocalDay(long utcDay) {
+        Calendar utc = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        utc.setTimeInMillis(utcDay);
+        Calendar local = Calendar.getInstance();
+        local.clear();
+        local.set(utc.get(Calendar.YEAR), utc.get(Calendar.MONTH), utc.get(Calendar.DAY_OF_MONTH));
+        return local.getTimeInMillis();
+    }
+
     private String formatModeName(String mode) {
         if (mode == null) return "Unknown";
         String[] parts = mode.split("_");
@@ -106,11 +166,49 @@ public class UsageInsightsActivity extends AppCompatActivity {
         return formatted.toString();
     }
 
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        getMenuInflater().inflate(R.menu.menu_usage_insights, menu);
+        return true;
+    }
+
+    @Override
+    public boolean onPrepareOptionsMenu(Menu menu) {
+        UsageWindow window = viewModel.getWindow().getValue();
+        if (window != null) {
+            int checkedId;
+            switch (window.getSpan()) {
+                case DAY: checkedId = R.id.action_window_day; break;
+                case MONTH: checkedId = R.id.action_window_month; break;
+                case CUSTOM: checkedId = R.id.action_window_custom; break;
+                default: checkedId = R.id.action_window_week; break;
+            }
+            MenuItem checked = menu.findItem(checkedId);
+            if (checked != null) {
+                checked.setChecked(true);
+            }
+        }
+        return super.onPrepareOptionsMenu(menu);
+    }
+
     @Override
     public boolean onOptionsItemSelected(MenuItem item) {
-        if (item.getItemId() == android.R.id.home) {
+        int id = item.getItemId();
+        if (id == android.R.id.home) {
             onBackPressed();
             return true;
+        } else if (id == R.id.action_window_day) {
+            viewModel.setSpan(UsageWindow.Span.DAY);
+            return true;
+        } else if (id == R.id.action_window_week) {
+            viewModel.setSpan(UsageWindow.Span.WEEK);
+            return true;
+        } else if (id == R.id.action_window_month) {
+            viewModel.setSpan(UsageWindow.Span.MONTH);
+            return true;
+        } else if (id == R.id.action_window_custom) {
+            showRangePicker();
+            return true;
         }
         return super.onOptionsItemSelected(item);
     }
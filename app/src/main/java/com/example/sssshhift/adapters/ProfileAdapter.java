@@ -7,33 +7,118 @@ package com.example.sssshhift.adapters;
         import android.widget.ImageButton;
         import android.widget.TextView;
         import androidx.annotation.NonNull;
+        import androidx.recyclerview.widget.DiffUtil;
+        import androidx.recyclerview.widget.ListAdapter;
         import androidx.recyclerview.widget.RecyclerView;
         import com.google.android.material.card.MaterialCardView;
         import com.google.android.material.chip.Chip;
         import com.google.android.material.chip.ChipGroup;
         import com.google.android.material.switchmaterial.SwitchMaterial;
         import com.example.sssshhift.R;
+        import com.example.sssshhift.models.CompiledProfile;
         import com.example.sssshhift.models.Profile;
         import java.text.SimpleDateFormat;
+        import java.util.ArrayList;
         import java.util.Date;
+        import java.util.HashSet;
         import java.util.List;
         import java.util.Locale;
+        import java.util.Objects;
+        import java.util.Set;
 
-public class ProfileAdapter extends RecyclerView.Adapter<ProfileAdapter.ProfileViewHolder> {
+public class ProfileAdapter extends ListAdapter<Profile, ProfileAdapter.ProfileViewHolder> {
 
-    private List<Profile> profileList;
-    private OnProfileInteractionListener listener;
+    // Only the active state changed, rebind the switch and card styling
+    private static final Object PAYLOAD_ACTIVE = new Object();
+    // Only the multi-select state changed
+    private static final Object PAYLOAD_SELECTION = new Object();
+
+    private static final DiffUtil.ItemCallback<Profile> DIFF_CALLBACK = new DiffUtil.ItemCallback<Profile>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull Profile oldItem, @NonNull Profile newItem) {
+            return oldItem.getId() == newItem.getId();
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull Profile oldItem, @NonNull Profile newItem) {
+            return oldItem.isActive() == newItem.isActive() && sameExceptActive(oldItem, newItem);
+        }
+
+        @Override
+        public Object getChangePayload(@NonNull Profile oldItem, @NonNull Profile newItem) {
+            return sameExceptActive(oldItem, newItem) ? PAYLOAD_ACTIVE : null;
+        }
+    };
+
+    private final OnProfileInteractionListener listener;
+    private final SimpleDateFormat dateFormat = new SimpleDateFormat("MMM dd, yyyy", Locale.getDefault());
+    private final Set<Long> selectedIds = new HashSet<>();
 
     public interface OnProfileInteractionListener {
         void onProfileToggle(Profile profile, boolean isActive);
         void onProfileEdit(Profile profile);
         void onProfileDelete(Profile profile);
         void onProfileDetails(Profile profile);
+        void onSelectionChanged(int selectedCount);
     }
 
-    public ProfileAdapter(List<Profile> profileList, OnProfileInteractionListener listener) {
-        this.profileList = profileList;
+    public ProfileAdapter(OnProfileInteractionListener listener) {
+        super(DIFF_CALLBACK);
         this.listener = listener;
+        setHasStableIds(true);
+    }
+
+    private static boolean sameExceptActive(Profile a, Profile b) {
+        return a.getCreatedAt() == b.getCreatedAt()
+                && Objects.equals(a.getName(), b.getName())
+                && Objects.equals(a.getTriggerType(), b.getTriggerType())
+                && Objects.equals(a.getTriggerValue(), b.getTriggerValue())
+                && Objects.equals(a.getEndTime(), b.getEndTime())
+                && Objects.equals(a.getRingerMode(), b.getRingerMode())
+                && Objects.equals(a.getActions(), b.getActions());
+    }
+
+    public Set<Long> getSelectedIds() {
+        return new HashSet<>(selectedIds);
+    }
+
+    /**
+     * Selected profiles that are still in the list
+     */
+    public List<Profile> getSelectedProfiles() {
+        List<Profile> selected = new ArrayList<>();
+        for (Profile profile : getCurrentList()) {
+            if (selectedIds.contains(profile.getId())) {
+                selected.add(profile);
+            }
+        }
+        return selected;
+    }
+
+    public void clearSelection() {
+        if (selectedIds.isEmpty()) {
+            return;
+        }
+        selectedIds.clear();
+        notifyItemRangeChanged(0, getItemCount(), PAYLOAD_SELECTION);
+        if (listener != null) {
+            listener.onSelectionChanged(0);
+        }
+    }
+
+    private void toggleSelection(Profile profile, int position) {
+        if (!selectedIds.remove(profile.getId())) {
+            selectedIds.add(profile.getId());
+        }
+        notifyItemChanged(position, PAYLOAD_SELECTION);
+        if (listener != null) {
+            listener.onSelectionChanged(selectedIds.size());
+        }
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return getItem(position).getId();
     }
 
     @NonNull
@@ -46,13 +131,33 @@ public class ProfileAdapter extends RecyclerView.Adapter<ProfileAdapter.ProfileV
 
     @Override
     public void onBindViewHolder(@NonNull ProfileViewHolder holder, int position) {
-        Profile profile = profileList.get(position);
-        holder.bind(profile);
+        holder.bind(getItem(position));
     }
 
     @Override
-    public int getItemCount() {
-        return profileList.size();
+    public void onBindViewHolder(@NonNull ProfileViewHolder holder, int position, @NonNull List<Object> payloads) {
+        if (payloads.isEmpty() || !onlyPartialPayloads(payloads)) {
+            onBindViewHolder(holder, position);
+            return;
+        }
+
+        Profile profile = getItem(position);
+        for (Object payload : payloads) {
+            if (payload == PAYLOAD_ACTIVE) {
+                holder.bindActiveState(profile);
+            } else {
+                holder.bindSelection(profile);
+            }
+        }
+    }
+
+    private static boolean onlyPartialPayloads(List<Object> payloads) {
+        for (Object payload : payloads) {
+            if (payload != PAYLOAD_ACTIVE && payload != PAYLOAD_SELECTION) {
+                return false;
+            }
+        }
+        return true;
     }
 
     class ProfileViewHolder extends RecyclerView.ViewHolder {
@@ -67,6 +172,9 @@ public class ProfileAdapter extends RecyclerView.Adapter<ProfileAdapter.ProfileV
         private ImageButton editButton;
         private ImageButton deleteButton;
 
+        private int boundActions = -1; // Chips are only rebuilt when the actions change
+        private boolean binding; // Ignore switch callbacks caused by setChecked during bind
+
         public ProfileViewHolder(@NonNull View itemView) {
             super(itemView);
 
@@ -79,6 +187,56 @@ public class ProfileAdapter extends RecyclerView.Adapter<ProfileAdapter.ProfileV
             activeSwitch = itemView.findViewById(R.id.active_switch);
             editButton = itemView.findViewById(R.id.edit_button);
             deleteButton = itemView.findViewById(R.id.delete_button);
+
+            // Listeners are set once and resolve the profile at click time
+            activeSwitch.setOnCheckedChangeListener((buttonView, isChecked) -> {
+                Profile profile = currentProfile();
+                if (!binding && profile != null && listener != null) {
+                    listener.onProfileToggle(profile, isChecked);
+                }
+            });
+
+            editButton.setOnClickListener(v -> {
+                Profile profile = currentProfile();
+                if (profile != null && listener != null) {
+                    listener.onProfileEdit(profile);
+                }
+            });
+
+            deleteButton.setOnClickListener(v -> {
+                Profile profile = currentProfile();
+                if (profile != null && listener != null) {
+                    listener.onProfileDelete(profile);
+                }
+            });
+
+            cardView.setCheckable(true);
+            cardView.setOnClickListener(v -> {
+                Profile profile = currentProfile();
+                if (profile == null) {
+                    return;
+                }
+                if (!selectedIds.isEmpty()) {
+                    // In selection mode taps extend or shrink the selection
+                    toggleSelection(profile, getAdapterPosition());
+                } else if (listener != null) {
+                    listener.onProfileDetails(profile);
+                }
+            });
+
+            cardView.setOnLongClickListener(v -> {
+                Profile profile = currentProfile();
+                if (profile == null) {
+                    return false;
+                }
+                toggleSelection(profile, getAdapterPosition());
+                return true;
+            });
+        }
+
+        private Profile currentProfile() {
+            int position = getAdapterPosition();
+            return position == RecyclerView.NO_POSITION ? null : getItem(position);
         }
 
         public void bind(Profile profile) {
@@ -92,19 +250,27 @@ public class ProfileAdapter extends RecyclerView.Adapter<ProfileAdapter.ProfileV
             ringerModeText.setText(profile.getFormattedRingerMode());
 
             // Set created date
-            SimpleDateFormat dateFormat = new SimpleDateFormat("MMM dd, yyyy", Locale.getDefault());
             createdAtText.setText("Created: " + dateFormat.format(new Date(profile.getCreatedAt())));
 
+            // Setup action chips
+            if (boundActions != profile.getCompiled().getActions()) {
+                setupActionChips(profile);
+                boundActions = profile.getCompiled().getActions();
+            }
+
+            bindActiveState(profile);
+            bindSelection(profile);
+        }
+
+        public void bindSelection(Profile profile) {
+            cardView.setChecked(selectedIds.contains(profile.getId()));
+        }
+
+        public void bindActiveState(Profile profile) {
             // Set active switch
+            binding = true;
             activeSwitch.setChecked(profile.isActive());
-            activeSwitch.setOnCheckedChangeListener((buttonView, isChecked) -> {
-                if (listener != null) {
-                    listener.onProfileToggle(profile, isChecked);
-                }
-            });
-
-            // Setup action chips
-            setupActionChips(profile);
+            binding = false;
 
             // Set card elevation based on active state
             if (profile.isActive()) {
@@ -114,71 +280,44 @@ public class ProfileAdapter extends RecyclerView.Adapter<ProfileAdapter.ProfileV
                 cardView.setCardElevation(2f);
                 cardView.setStrokeWidth(0);
             }
-
-            // Set click listeners
-            editButton.setOnClickListener(v -> {
-                if (listener != null) {
-                    listener.onProfileEdit(profile);
-                }
-            });
-
-            deleteButton.setOnClickListener(v -> {
-                if (listener != null) {
-                    listener.onProfileDelete(profile);
-                }
-            });
-
-            cardView.setOnClickListener(v -> {
-                if (listener != null) {
-                    listener.onProfileDetails(profile);
-                }
-            });
         }
 
         private void setupActionChips(Profile profile) {
-            actionsChipGroup.removeAllViews();
-
-            String[] actions = profile.getActionsList();
-            for (String action : actions) {
-                if (action.trim().isEmpty()) continue;
-
-                Chip chip = new Chip(itemView.getContext());
-                chip.setClickable(false);
-                chip.setChipBackgroundColorResource(R.color.chip_background_inactive);
-                chip.setTextColor(itemView.getContext().getColor(R.color.text_secondary));
-                chip.setTextSize(10f);
-
-                switch (action.trim()) {
-                    case "wifi":
-                        chip.setText("📶 Wi-Fi");
-                        break;
-                    case "bluetooth":
-                        chip.setText("🔵 Bluetooth");
-                        break;
-                    case "data":
-                        chip.setText("📱 Data");
-                        break;
-                    case "dnd":
-                        chip.setText("🚫 DND");
-                        break;
-                    default:
-                        chip.setText(action.trim());
-                        break;
-                }
+            int shown = 0;
 
-                actionsChipGroup.addView(chip);
+            int actions = profile.getCompiled().getActions();
+            for (int action : CompiledProfile.ALL_ACTIONS) {
+                if ((actions & action) != 0) {
+                    obtainChip(shown++).setText(CompiledProfile.getActionLabel(action));
+                }
             }
 
             // Show "No actions" if empty
-            if (actions.length == 0 || (actions.length == 1 && actions[0].trim().isEmpty())) {
-                Chip noActionsChip = new Chip(itemView.getContext());
-                noActionsChip.setText("No additional actions");
-                noActionsChip.setClickable(false);
-                noActionsChip.setChipBackgroundColorResource(R.color.chip_background_inactive);
-                noActionsChip.setTextColor(itemView.getContext().getColor(R.color.text_secondary));
-                noActionsChip.setTextSize(10f);
-                actionsChipGroup.addView(noActionsChip);
+            if (shown == 0) {
+                obtainChip(shown++).setText("No additional actions");
             }
+
+            // Recycled holders may have more chips than this profile needs
+            for (int i = shown; i < actionsChipGroup.getChildCount(); i++) {
+                actionsChipGroup.getChildAt(i).setVisibility(View.GONE);
+            }
+        }
+
+        // Reuse the chip at this index, inflating a new one only the first time it is needed
+        private Chip obtainChip(int index) {
+            if (index < actionsChipGroup.getChildCount()) {
+                Chip chip = (Chip) actionsChipGroup.getChildAt(index);
+                chip.setVisibility(View.VISIBLE);
+                return chip;
+            }
+
+            Chip chip = new Chip(itemView.getContext());
+            chip.setClickable(false);
+            chip.setChipBackgroundColorResource(R.color.chip_background_inactive);
+            chip.setTextColor(itemView.getContext().getColor(R.color.text_secondary));
+            chip.setTextSize(10f);
+            actionsChipGroup.addView(chip);
+            return chip;
         }
     }
-}
\ No newline at end of file
+}
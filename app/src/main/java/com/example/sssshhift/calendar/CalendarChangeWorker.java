@@ -0,0 +1,57 @@
+package com.example.sssshhift.calendar;
+
+import android.content.Context;
+import android.provider.CalendarContract;
+import android.util.Log;
+import androidx.annotation.NonNull;
+import androidx.work.Constraints;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs when the calendar provider changes while our process is not alive to observe it.
+ * Content URI triggers fire once, so every run enqueues the next one.
+ */
+public class CalendarChangeWorker extends Worker {
+    private static final String TAG = "CalendarChangeWorker";
+    private static final String WORK_NAME = "calendar_change_trigger";
+
+    public CalendarChangeWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        Log.d(TAG, "Calendar changed, recomputing windows");
+        CalendarSnapshot.getInstance(getApplicationContext()).reload();
+        CalendarMonitor.getInstance(getApplicationContext()).recompute();
+        enqueue(getApplicationContext(), ExistingWorkPolicy.APPEND_OR_REPLACE);
+        return Result.success();
+    }
+
+    static void enqueue(Context context) {
+        enqueue(context, ExistingWorkPolicy.KEEP);
+    }
+
+    private static void enqueue(Context context, ExistingWorkPolicy policy) {
+        Constraints constraints = new Constraints.Builder()
+                .addContentUriTrigger(CalendarContract.CONTENT_URI, true)
+                .setTriggerContentUpdateDelay(CalendarSnapshot.DEBOUNCE_MS, TimeUnit.MILLISECONDS)
+                .build();
+
+        WorkManager.getInstance(context).enqueueUniqueWork(WORK_NAME, policy,
+                new OneTimeWorkRequest.Builder(CalendarChangeWorker.class)
+                        .setConstraints(constraints)
+                        .build());
+    }
+
+    static void cancel(Context context) {
+        WorkManager.getInstance(context).cancelUniqueWork(WORK_NAME);
+    }
+}
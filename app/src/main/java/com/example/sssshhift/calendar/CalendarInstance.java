@@ -0,0 +1,116 @@
+package com.example.sssshhift.calendar;
+
+import android.database.Cursor;
+import android.provider.CalendarContract;
+
+/**
+ * One occurrence of a calendar event as loaded by {@link CalendarSnapshot}. The flags are
+ * computed once when the row is read, so filters never look at the columns again.
+ */
+public final class CalendarInstance implements IntervalTree.Interval {
+    public static final int FLAG_VISIBLE = 1;
+    public static final int FLAG_DECLINED = 1 << 1;
+    public static final int FLAG_BUSY = 1 << 2;
+    public static final int FLAG_ALL_DAY = 1 << 3;
+
+    static final String[] PROJECTION = {
+            CalendarContract.Instances.EVENT_ID,
+            CalendarContract.Instances.CALENDAR_ID,
+            CalendarContract.Instances.TITLE,
+            CalendarContract.Instances.BEGIN,
+            CalendarContract.Instances.END,
+            CalendarContract.Instances.AVAILABILITY,
+            CalendarContract.Instances.SELF_ATTENDEE_STATUS,
+            CalendarContract.Instances.VISIBLE,
+            CalendarContract.Instances.ALL_DAY,
+            CalendarContract.Instances.ORGANIZER,
+            CalendarContract.Instances.EVENT_LOCATION
+    };
+    // Column positions in PROJECTION, no per-row index lookups
+    private static final int COLUMN_EVENT_ID = 0;
+    private static final int COLUMN_CALENDAR_ID = 1;
+    private static final int COLUMN_TITLE = 2;
+    private static final int COLUMN_BEGIN = 3;
+    private static final int COLUMN_END = 4;
+    private static final int COLUMN_AVAILABILITY = 5;
+    private static final int COLUMN_SELF_ATTENDEE_STATUS = 6;
+    private static final int COLUMN_VISIBLE = 7;
+    private static final int COLUMN_ALL_DAY = 8;
+    private static final int COLUMN_ORGANIZER = 9;
+    private static final int COLUMN_EVENT_LOCATION = 10;
+
+    private final long eventId;
+    private final long calendarId;
+    private final String title;
+    private final long begin;
+    private final long end;
+    private final int availability;
+    private final String organizer;
+    private final String location;
+    private final int flags;
+
+    public CalendarInstance(long eventId, long calendarId, String title, long begin, long end,
+                            int availability, String organizer, String location, int flags) {
+        this.eventId = eventId;
+        this.calendarId = calendarId;
+        this.title = title;
+        this.begin = begin;
+        this.end = end;
+        this.availability = availability;
+        this.organizer = organizer;
+        this.location = location;
+        this.flags = flags;
+    }
+
+    static CalendarInstance fromCursor(Cursor cursor) {
+        int availability = cursor.getInt(COLUMN_AVAILABILITY);
+        int flags = 0;
+        if (cursor.getInt(COLUMN_VISIBLE) != 0) flags |= FLAG_VISIBLE;
+        if (cursor.getInt(COLUMN_SELF_ATTENDEE_STATUS) == CalendarContract.Attendees.ATTENDEE_STATUS_DECLINED) {
+            flags |= FLAG_DECLINED;
+        }
+        if (availability == CalendarContract.Events.AVAILABILITY_BUSY) flags |= FLAG_BUSY;
+        if (cursor.getInt(COLUMN_ALL_DAY) != 0) flags |= FLAG_ALL_DAY;
+
+        return new CalendarInstance(cursor.getLong(COLUMN_EVENT_ID), cursor.getLong(COLUMN_CALENDAR_ID),
+                cursor.getString(COLUMN_TITLE), cursor.getLong(COLUMN_BEGIN), cursor.getLong(COLUMN_END),
+                availability, cursor.getString(COLUMN_ORGANIZER), cursor.getString(COLUMN_EVENT_LOCATION), flags);
+    }
+
+    public long getEventId() { return eventId; }
+
+    public long getCalendarId() { return calendarId; }
+
+    public String getTitle() { return title; }
+
+    @Override
+    public long getBegin() { return begin; }
+
+    @Override
+    public long getEnd() { return end; }
+
+    // One of the CalendarContract.Events.AVAILABILITY_* values
+    public int getAvailability() { return availability; }
+
+    public String getOrganizer() { return organizer; }
+
+    public String getLocation() { return location; }
+
+    public int getFlags() { return flags; }
+
+    public boolean hasFlag(int flag) { return (flags & flag) != 0; }
+
+    public boolean isBusy() { return hasFlag(FLAG_BUSY); }
+
+    /**
+     * On a visible calendar and not declined, i.e. the user is expected to be there
+     */
+    public boolean isAttending() {
+        return (flags & (FLAG_VISIBLE | FLAG_DECLINED)) == FLAG_VISIBLE;
+    }
+
+    // Identifies the occurrence, recurring events share the event id
+    String getKey() {
+        return eventId + "_" + begin;
+    }
+}
@@ -0,0 +1,274 @@
+package com.example.sssshhift.calendar;
+
+import android.Manifest;
+import android.app.NotificationManager;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.content.pm.PackageManager;
+import android.media.AudioManager;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.preference.PreferenceManager;
+import android.util.Log;
+import androidx.core.content.ContextCompat;
+
+import com.example.sssshhift.engine.ProfileEngine;
+import com.example.sssshhift.engine.TriggerEvent;
+import com.example.sssshhift.scheduler.Transition;
+import com.example.sssshhift.scheduler.TransitionScheduler;
+import com.example.sssshhift.utils.CalendarSettingsHelper;
+import com.example.sssshhift.utils.NotificationUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Silences the phone during calendar events without polling. Whenever the
+ * {@link CalendarSnapshot} changes, the upcoming busy windows are computed once and each window
+ * becomes a start and an end edge on the {@link TransitionScheduler} timeline, widened by the
+ * buffer from {@link CalendarSettingsHelper}. A day without meetings costs a single horizon wakeup.
+ */
+public class CalendarMonitor {
+    private static final String TAG = "CalendarMonitor";
+    private static final String PREF_PREVIOUS_RINGER_MODE = "previous_ringer_mode";
+    private static final String PREF_CALENDAR_MODE_ACTIVE = "calendar_mode_active";
+
+    private static final long DAY_MS = 24 * 60 * 60 * 1000L;
+    // Windows are computed this far ahead, the horizon edge recomputes well before it runs out
+    private static final long LOOKAHEAD_MS = CalendarSnapshot.MIN_AHEAD_MS - DAY_MS / 2;
+    private static final long HORIZON_MS = DAY_MS;
+
+    private static final String TARGET_HORIZON = "horizon";
+    private static final String TARGET_WINDOW_PREFIX = "window_";
+
+    private static CalendarMonitor instance;
+
+    private final Context context;
+    private final SharedPreferences prefs;
+    private final CalendarSettingsHelper settings;
+    private final Handler handler;
+    private final Runnable recomputeRunnable = this::recompute;
+    private final CalendarSnapshot.Listener snapshotListener = () -> requestRecompute(0);
+
+    private CalendarMonitor(Context context) {
+        this.context = context.getApplicationContext();
+        this.prefs = PreferenceManager.getDefaultSharedPreferences(this.context);
+        this.settings = new CalendarSettingsHelper(this.context);
+
+        // Recomputes run off the main thread
+        HandlerThread thread = new HandlerThread(TAG);
+        thread.start();
+        this.handler = new Handler(thread.getLooper());
+    }
+
+    public static synchronized CalendarMonitor getInstance(Context context) {
+        if (instance == null) {
+            instance = new CalendarMonitor(context);
+        }
+        return instance;
+    }
+
+    /**
+     * Start following the calendar, if enabled in settings and permitted
+     */
+    public void start() {
+        if (!settings.isCalendarMonitoringEnabled()) {
+            Log.d(TAG, "Calendar monitoring disabled in settings");
+            return;
+        }
+        if (!hasCalendarPermission()) {
+            Log.w(TAG, "Calendar permission not granted");
+            return;
+        }
+
+        // The snapshot observes the provider, a reload picks up a permission granted just now
+        CalendarSnapshot snapshot = CalendarSnapshot.getInstance(context);
+        snapshot.addListener(snapshotListener);
+        snapshot.requestReload();
+        // Changes made while the process is dead are picked up by the worker
+        CalendarChangeWorker.enqueue(context);
+    }
+
+    public void stop() {
+        CalendarSnapshot.getInstance(context).removeListener(snapshotListener);
+        CalendarChangeWorker.cancel(context);
+        handler.removeCallbacks(recomputeRunnable);
+
+        TransitionScheduler scheduler = TransitionScheduler.getInstance(context);
+        scheduler.cancelAll(Transition.SOURCE_CALENDAR, scheduledTargets(scheduler));
+        deactivate();
+    }
+
+    public static boolean isCalendarModeActive(Context context) {
+        return PreferenceManager.getDefaultSharedPreferences(context).getBoolean(PREF_CALENDAR_MODE_ACTIVE, false);
+    }
+
+    public void requestRecompute(long delayMs) {
+        handler.removeCallbacks(recomputeRunnable);
+        handler.postDelayed(recomputeRunnable, delayMs);
+    }
+
+    /**
+     * Apply a calendar edge dispatched by the transition scheduler
+     */
+    public void onBoundary(String target, boolean start, String label) {
+        if (TARGET_HORIZON.equals(target)) {
+            requestRecompute(0);
+        } else if (start) {
+            activate(label);
+        } else {
+            deactivate();
+        }
+    }
+
+    /**
+     * Recompute the busy windows and replace the scheduled calendar edges. Blocking.
+     */
+    void recompute() {
+        if (!settings.isCalendarMonitoringEnabled() || !hasCalendarPermission()) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        long buffer = settings.getCalendarBufferTime() * 60 * 1000L;
+        List<Window> windows = queryWindows(now, buffer);
+
+        List<Transition> transitions = new ArrayList<>();
+        Window current = null;
+        for (Window window : windows) {
+            String target = TARGET_WINDOW_PREFIX + window.start;
+            if (window.start > now) {
+                transitions.add(new Transition(Transition.SOURCE_CALENDAR, target, window.label, true,
+                        window.start, AudioManager.RINGER_MODE_SILENT, window.end, false));
+            } else {
+                current = window;
+            }
+            transitions.add(new Transition(Transition.SOURCE_CALENDAR, target, window.label, false,
+                    window.end, Transition.NO_RINGER_MODE, window.end, false));
+        }
+        transitions.add(new Transition(Transition.SOURCE_CALENDAR, TARGET_HORIZON, null, true,
+                now + HORIZON_MS, Transition.NO_RINGER_MODE, 0, false));
+
+        TransitionScheduler scheduler = TransitionScheduler.getInstance(context);
+        scheduler.cancelAll(Transition.SOURCE_CALENDAR, scheduledTargets(scheduler));
+        scheduler.scheduleAll(transitions);
+        Log.d(TAG, "Scheduled " + windows.size() + " calendar windows");
+
+        // The current state may have changed with the calendar, e.g. a meeting moved to now
+        if (current != null) {
+            activate(current.label);
+        } else {
+            deactivate();
+        }
+    }
+
+    // Attended instances overlapping the lookahead, merged into disjoint windows widened by the buffer
+    private List<Window> queryWindows(long now, long buffer) {
+        List<Window> windows = new ArrayList<>();
+        Window last = null;
+        // In begin order, so each window only has to be compared with the previous one
+        for (CalendarInstance instance : CalendarSnapshot.getInstance(context)
+                .getOverlapping(now - buffer, now + LOOKAHEAD_MS + buffer)) {
+            if (!instance.isAttending()) {
+                continue;
+            }
+            long start = instance.getBegin() - buffer;
+            long end = instance.getEnd() + buffer;
+            if (end <= now) {
+                continue;
+            }
+
+            if (last != null && start <= last.end) {
+                // Overlapping or back to back, stay silent across both
+                last.end = Math.max(last.end, end);
+            } else {
+                String title = instance.getTitle();
+                last = new Window(start, end, "Calendar - " + (title != null ? title : "Calendar Event"));
+                windows.add(last);
+            }
+        }
+        return windows;
+    }
+
+    private static List<String> scheduledTargets(TransitionScheduler scheduler) {
+        List<String> targets = new ArrayList<>();
+        for (Transition transition : scheduler.getPending()) {
+            if (Transition.SOURCE_CALENDAR.equals(transition.getSource())) {
+                targets.add(transition.getTarget());
+            }
+        }
+        return targets;
+    }
+
+    private synchronized void activate(String label) {
+        if (prefs.getBoolean(PREF_CALENDAR_MODE_ACTIVE, false)) {
+            return;
+        }
+
+        try {
+            // Check if we have Do Not Disturb permission for Android 6.0+
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+                NotificationManager notificationManager =
+                        (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
+                if (notificationManager != null && !notificationManager.isNotificationPolicyAccessGranted()) {
+                    Log.w(TAG, "Do Not Disturb permission not granted");
+                    NotificationUtils.showPermissionRequiredNotification(context);
+                    return;
+                }
+            }
+
+            AudioManager audioManager = (AudioManager) context.getSystemService(Context.AUDIO_SERVICE);
+            int currentRingerMode = audioManager != null ? audioManager.getRingerMode() : AudioManager.RINGER_MODE_NORMAL;
+            prefs.edit()
+                    .putInt(PREF_PREVIOUS_RINGER_MODE, currentRingerMode)
+                    .putBoolean(PREF_CALENDAR_MODE_ACTIVE, true)
+                    .apply();
+
+            // Set to silent mode, the engine posts the notification
+            ProfileEngine.getInstance(context).handle(TriggerEvent.forRingerMode(TriggerEvent.SOURCE_CALENDAR,
+                    label != null ? label : "Calendar Event", AudioManager.RINGER_MODE_SILENT, true));
+            Log.d(TAG, "Calendar silent mode activated for: " + label);
+        } catch (SecurityException e) {
+            Log.e(TAG, "Security exception setting ringer mode: " + e.getMessage());
+        } catch (Exception e) {
+            Log.e(TAG, "Error activating calendar silent mode: " + e.getMessage());
+        }
+    }
+
+    private synchronized void deactivate() {
+        if (!prefs.getBoolean(PREF_CALENDAR_MODE_ACTIVE, false)) {
+            return;
+        }
+
+        try {
+            // Restore previous ringer mode
+            int previousRingerMode = prefs.getInt(PREF_PREVIOUS_RINGER_MODE, AudioManager.RINGER_MODE_NORMAL);
+            ProfileEngine.getInstance(context).handle(TriggerEvent.forRingerMode(TriggerEvent.SOURCE_CALENDAR,
+                    "Calendar Event", previousRingerMode, false));
+            prefs.edit().putBoolean(PREF_CALENDAR_MODE_ACTIVE, false).apply();
+            Log.d(TAG, "Calendar silent mode deactivated, restored to mode: " + previousRingerMode);
+        } catch (SecurityException e) {
+            Log.e(TAG, "Security exception restoring ringer mode: " + e.getMessage());
+        } catch (Exception e) {
+            Log.e(TAG, "Error deactivating calendar silent mode: " + e.getMessage());
+        }
+    }
+
+    private boolean hasCalendarPermission() {
+        return ContextCompat.checkSelfPermission(context, Manifest.permission.READ_CALENDAR)
+                == PackageManager.PERMISSION_GRANTED;
+    }
+
+    private static final class Window {
+        final long start;
+        long end;
+        final String label;
+
+        Window(long start, long end, String label) {
+            this.start = start;
+            this.end = end;
+            this.label = label;
+        }
+    }
+}
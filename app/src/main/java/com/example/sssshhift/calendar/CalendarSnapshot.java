@@ -0,0 +1,290 @@
+package com.example.sssshhift.calendar;
+
+import android.content.ContentUris;
+import android.content.Context;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.provider.CalendarContract;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * In-memory snapshot of the calendar instances in the next few days, shared by calendar
+ * monitoring, smart-auto and {@link com.example.sssshhift.utils.CalendarUtils}. Instances are
+ * loaded with one query and kept in an {@link IntervalTree}, so "what is ongoing" and "what
+ * starts soon" never touch the provider. A change to a single event only re-reads that event,
+ * and as time passes only the newly covered slice is loaded.
+ */
+public class CalendarSnapshot {
+    private static final String TAG = "CalendarSnapshot";
+
+    private static final long HOUR_MS = 60 * 60 * 1000L;
+    // Loaded this far ahead
+    static final long WINDOW_MS = 72 * HOUR_MS;
+    // Queries may look this far ahead, the window is extended when less is left
+    static final long MIN_AHEAD_MS = 48 * HOUR_MS;
+    // Calendar sync fires bursts of change notifications
+    static final long DEBOUNCE_MS = 2000;
+
+    private static final String EVENTS_PATH = "events";
+
+    public interface Listener {
+        void onCalendarChanged();
+    }
+
+    private static CalendarSnapshot instance;
+
+    private final Context context;
+    private final Handler handler;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final List<Uri> pendingChanges = new ArrayList<>();
+    private final Runnable refreshRunnable = this::applyPendingChanges;
+
+    private IntervalTree<CalendarInstance> tree; // Null until loaded
+    private long loadedUntil;
+
+    private CalendarSnapshot(Context context) {
+        this.context = context.getApplicationContext();
+
+        // Provider reads run off the main thread
+        HandlerThread thread = new HandlerThread(TAG);
+        thread.start();
+        this.handler = new Handler(thread.getLooper());
+        this.context.getContentResolver().registerContentObserver(CalendarContract.CONTENT_URI, true,
+                new ContentObserver(handler) {
+                    @Override
+                    public void onChange(boolean selfChange, Uri uri) {
+                        synchronized (pendingChanges) {
+                            pendingChanges.add(uri);
+                        }
+                        handler.removeCallbacks(refreshRunnable);
+                        handler.postDelayed(refreshRunnable, DEBOUNCE_MS);
+                    }
+                });
+    }
+
+    public static synchronized CalendarSnapshot getInstance(Context context) {
+        if (instance == null) {
+            instance = new CalendarSnapshot(context);
+        }
+        return instance;
+    }
+
+    /**
+     * Called on the snapshot's thread after it changed
+     */
+    public void addListener(Listener listener) {
+        if (!listeners.contains(listener)) {
+            listeners.add(listener);
+        }
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Whether an event the user attends is ongoing at the given time
+     */
+    public boolean isAnyOngoing(long at) {
+        // The visitor stops at the first match
+        return !ensureLoaded(at).forEachOverlapping(at, at, item -> !item.isAttending());
+    }
+
+    /**
+     * Attended events ongoing at the given time, in begin order
+     */
+    public List<CalendarInstance> getOngoing(long at) {
+        List<CalendarInstance> result = new ArrayList<>();
+        ensureLoaded(at).forEachOverlapping(at, at, item -> {
+            if (item.isAttending()) {
+                result.add(item);
+            }
+            return true;
+        });
+        return result;
+    }
+
+    /**
+     * All instances overlapping [from, to], in begin order. to may not be further than
+     * MIN_AHEAD_MS from now.
+     */
+    public List<CalendarInstance> getOverlapping(long from, long to) {
+        List<CalendarInstance> result = new ArrayList<>();
+        ensureLoaded(from).forEachOverlapping(from, to, item -> {
+            result.add(item);
+            return true;
+        });
+        return result;
+    }
+
+    /**
+     * All instances beginning within [from, to], in begin order
+     */
+    public List<CalendarInstance> getStartingBetween(long from, long to) {
+        List<CalendarInstance> result = new ArrayList<>();
+        ensureLoaded(from).forEachStartingBetween(from, to, item -> {
+            result.add(item);
+            return true;
+        });
+        return result;
+    }
+
+    /**
+     * Load the window again on the snapshot's thread, e.g. after the permission was granted
+     */
+    public void requestReload() {
+        handler.post(this::reload);
+    }
+
+    /**
+     * Drop everything and load the window again. Blocking.
+     */
+    public void reload() {
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            tree = IntervalTree.of(query(now, now + WINDOW_MS, null));
+            loadedUntil = now + WINDOW_MS;
+        }
+        notifyListeners();
+    }
+
+    private synchronized IntervalTree<CalendarInstance> ensureLoaded(long now) {
+        if (tree == null) {
+            tree = IntervalTree.of(query(now, now + WINDOW_MS, null));
+            loadedUntil = now + WINDOW_MS;
+            Log.d(TAG, "Loaded " + tree.size() + " instances");
+        } else if (loadedUntil - now < MIN_AHEAD_MS) {
+            // Only the newly covered slice is read, finished instances are dropped
+            long until = now + WINDOW_MS;
+            List<CalendarInstance> kept = new ArrayList<>();
+            for (CalendarInstance item : tree.toList()) {
+                if (item.getEnd() >= now) {
+                    kept.add(item);
+                }
+            }
+            mergeInto(kept, query(loadedUntil, until, null));
+            tree = IntervalTree.of(kept);
+            loadedUntil = until;
+            Log.d(TAG, "Extended window, " + tree.size() + " instances");
+        }
+        return tree;
+    }
+
+    private void applyPendingChanges() {
+        List<Uri> changes;
+        synchronized (pendingChanges) {
+            changes = new ArrayList<>(pendingChanges);
+            pendingChanges.clear();
+        }
+
+        synchronized (this) {
+            // Nothing loaded yet means the first query sees the change anyway
+            if (tree != null) {
+                refresh(changes);
+            }
+        }
+        notifyListeners();
+    }
+
+    private void refresh(List<Uri> changes) {
+        List<Long> eventIds = new ArrayList<>();
+        for (Uri uri : changes) {
+            long eventId = parseEventId(uri);
+            if (eventId < 0) {
+                eventIds = null; // Not attributable to one event, read everything again
+                break;
+            }
+            if (!eventIds.contains(eventId)) {
+                eventIds.add(eventId);
+            }
+        }
+
+        long now = System.currentTimeMillis();
+        if (eventIds == null) {
+            tree = IntervalTree.of(query(now, loadedUntil, null));
+            Log.d(TAG, "Reloaded " + tree.size() + " instances");
+            return;
+        }
+
+        List<CalendarInstance> kept = new ArrayList<>();
+        for (CalendarInstance item : tree.toList()) {
+            if (!eventIds.contains(item.getEventId())) {
+                kept.add(item);
+            }
+        }
+        for (long eventId : eventIds) {
+            kept.addAll(query(now, loadedUntil, eventId));
+        }
+        tree = IntervalTree.of(kept);
+        Log.d(TAG, "Refreshed " + eventIds.size() + " events");
+    }
+
+    private void notifyListeners() {
+        for (Listener listener : listeners) {
+            listener.onCalendarChanged();
+        }
+    }
+
+    // Adds instances not already present, slices overlap at their boundary
+    private static void mergeInto(List<CalendarInstance> target, List<CalendarInstance> added) {
+        Set<String> keys = new HashSet<>();
+        for (CalendarInstance item : target) {
+            keys.add(item.getKey());
+        }
+        for (CalendarInstance item : added) {
+            if (keys.add(item.getKey())) {
+                target.add(item);
+            }
+        }
+    }
+
+    // content://com.android.calendar/events/<id>, or -1 for any other change
+    private static long parseEventId(Uri uri) {
+        if (uri == null) {
+            return -1;
+        }
+        List<String> segments = uri.getPathSegments();
+        if (segments.size() != 2 || !EVENTS_PATH.equals(segments.get(0))) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(segments.get(1));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private List<CalendarInstance> query(long from, long to, Long eventId) {
+        List<CalendarInstance> instances = new ArrayList<>();
+
+        Uri.Builder uriBuilder = CalendarContract.Instances.CONTENT_URI.buildUpon();
+        ContentUris.appendId(uriBuilder, from);
+        ContentUris.appendId(uriBuilder, to);
+
+        String selection = eventId != null ? CalendarContract.Instances.EVENT_ID + " = ?" : null;
+        String[] selectionArgs = eventId != null ? new String[]{String.valueOf(eventId)} : null;
+
+        try (Cursor cursor = context.getContentResolver().query(uriBuilder.build(), CalendarInstance.PROJECTION,
+                selection, selectionArgs, null)) {
+            if (cursor != null) {
+                while (cursor.moveToNext()) {
+                    instances.add(CalendarInstance.fromCursor(cursor));
+                }
+            }
+        } catch (SecurityException e) {
+            Log.w(TAG, "Calendar permission not granted");
+        } catch (Exception e) {
+            Log.e(TAG, "Error querying calendar instances", e);
+        }
+        return instances;
+    }
+}
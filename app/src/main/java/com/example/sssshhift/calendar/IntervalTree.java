@@ -0,0 +1,139 @@
+package com.example.sssshhift.calendar;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Immutable interval tree over [begin, end] intervals (both ends inclusive). Intervals are kept
+ * sorted by begin in flat arrays that form an implicit balanced tree, each node storing the
+ * largest end in its subtree, so overlap queries only descend into subtrees that can match.
+ */
+final class IntervalTree<T> {
+
+    public interface Interval {
+        long getBegin();
+        long getEnd();
+    }
+
+    /**
+     * @return false to stop the query
+     */
+    public interface Visitor<T> {
+        boolean visit(T item);
+    }
+
+    private final long[] begins;
+    private final long[] ends;
+    private final long[] maxEnds; // Largest end in the subtree rooted at each index
+    private final Object[] items;
+
+    private IntervalTree(long[] begins, long[] ends, Object[] items) {
+        this.begins = begins;
+        this.ends = ends;
+        this.items = items;
+        this.maxEnds = new long[items.length];
+        buildMaxEnds(0, items.length);
+    }
+
+    static <T extends Interval> IntervalTree<T> of(List<T> intervals) {
+        List<T> sorted = new ArrayList<>(intervals);
+        sorted.sort(new Comparator<T>() {
+            @Override
+            public int compare(T a, T b) {
+                int byBegin = Long.compare(a.getBegin(), b.getBegin());
+                return byBegin != 0 ? byBegin : Long.compare(a.getEnd(), b.getEnd());
+            }
+        });
+
+        long[] begins = new long[sorted.size()];
+        long[] ends = new long[sorted.size()];
+        for (int i = 0; i < sorted.size(); i++) {
+            begins[i] = sorted.get(i).getBegin();
+            ends[i] = sorted.get(i).getEnd();
+        }
+        return new IntervalTree<>(begins, ends, sorted.toArray());
+    }
+
+    public int size() {
+        return items.length;
+    }
+
+    /**
+     * Visit intervals overlapping [from, to] in begin order
+     * @return false if the visitor stopped the query
+     */
+    public boolean forEachOverlapping(long from, long to, Visitor<T> visitor) {
+        return visitOverlapping(0, items.length, from, to, visitor);
+    }
+
+    /**
+     * Visit intervals beginning within [from, to] in begin order
+     */
+    public void forEachStartingBetween(long from, long to, Visitor<T> visitor) {
+        for (int i = lowerBound(from); i < begins.length && begins[i] <= to; i++) {
+            if (!visitor.visit(item(i))) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * All items in begin order
+     */
+    public List<T> toList() {
+        List<T> list = new ArrayList<>(items.length);
+        for (int i = 0; i < items.length; i++) {
+            list.add(item(i));
+        }
+        return list;
+    }
+
+    private long buildMaxEnds(int lo, int hi) {
+        if (lo >= hi) {
+            return Long.MIN_VALUE;
+        }
+        int mid = (lo + hi) >>> 1;
+        long max = Math.max(ends[mid], Math.max(buildMaxEnds(lo, mid), buildMaxEnds(mid + 1, hi)));
+        maxEnds[mid] = max;
+        return max;
+    }
+
+    private boolean visitOverlapping(int lo, int hi, long from, long to, Visitor<T> visitor) {
+        if (lo >= hi) {
+            return true;
+        }
+        int mid = (lo + hi) >>> 1;
+        if (maxEnds[mid] < from) {
+            return true; // Everything below ends too early
+        }
+        if (!visitOverlapping(lo, mid, from, to, visitor)) {
+            return false;
+        }
+        if (begins[mid] > to) {
+            return true; // This node and everything to its right begins too late
+        }
+        if (ends[mid] >= from && !visitor.visit(item(mid))) {
+            return false;
+        }
+        return visitOverlapping(mid + 1, hi, from, to, visitor);
+    }
+
+    // First index whose begin is >= value
+    private int lowerBound(long value) {
+        int index = Arrays.binarySearch(begins, value);
+        if (index < 0) {
+            return -index - 1;
+        }
+        while (index > 0 && begins[index - 1] == value) {
+            index--;
+        }
+        return index;
+    }
+
+    @SuppressWarnings("unchecked")
+    private T item(int index) {
+        return (T) items[index];
+    }
+}
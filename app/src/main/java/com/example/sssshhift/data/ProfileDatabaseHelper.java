@@ -5,11 +5,16 @@ import android.content.Context;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.util.Log;
+
+import java.util.HashSet;
+import java.util.Set;
 
 public class ProfileDatabaseHelper extends SQLiteOpenHelper {
+    private static final String TAG = "ProfileDatabaseHelper";
 
     public static final String DATABASE_NAME = "profiles.db";
-    public static final int DATABASE_VERSION = 2; // Incremented for schema change
+    public static final int DATABASE_VERSION = 4; // v4: updated_at for the dashboard stats
 
     public static final String TABLE_PROFILES = "profiles";
     public static final String COLUMN_ID = "_id";
@@ -21,6 +26,7 @@ public class ProfileDatabaseHelper extends SQLiteOpenHelper {
     public static final String COLUMN_ACTIONS = "actions";
     public static final String COLUMN_IS_ACTIVE = "is_active";
     public static final String COLUMN_CREATED_AT = "created_at";
+    public static final String COLUMN_UPDATED_AT = "updated_at";
 
     private static final String CREATE_TABLE_PROFILES =
             "CREATE TABLE " + TABLE_PROFILES + " (" +
@@ -32,9 +38,25 @@ public class ProfileDatabaseHelper extends SQLiteOpenHelper {
                     COLUMN_RINGER_MODE + " TEXT NOT NULL, " +
                     COLUMN_ACTIONS + " TEXT, " +
                     COLUMN_IS_ACTIVE + " INTEGER DEFAULT 0, " +
-                    COLUMN_CREATED_AT + " INTEGER NOT NULL" +
+                    COLUMN_CREATED_AT + " INTEGER NOT NULL, " +
+                    COLUMN_UPDATED_AT + " INTEGER" +
                     ");";
 
+    // Hot lookup columns: name (by-name lookups), trigger_type + is_active (active profiles
+    // of a type) and created_at (list order)
+    public static final String INDEX_NAME = "idx_profiles_name";
+    public static final String INDEX_TRIGGER_ACTIVE = "idx_profiles_trigger_active";
+    public static final String INDEX_CREATED_AT = "idx_profiles_created_at";
+
+    private static final String[] CREATE_INDEXES = {
+            "CREATE UNIQUE INDEX IF NOT EXISTS " + INDEX_NAME + " ON " + TABLE_PROFILES +
+                    " (" + COLUMN_NAME + ")",
+            "CREATE INDEX IF NOT EXISTS " + INDEX_TRIGGER_ACTIVE + " ON " + TABLE_PROFILES +
+                    " (" + COLUMN_TRIGGER_TYPE + ", " + COLUMN_IS_ACTIVE + ")",
+            "CREATE INDEX IF NOT EXISTS " + INDEX_CREATED_AT + " ON " + TABLE_PROFILES +
+                    " (" + COLUMN_CREATED_AT + ")"
+    };
+
     public ProfileDatabaseHelper(Context context) {
         super(context, DATABASE_NAME, null, DATABASE_VERSION);
     }
@@ -42,6 +64,7 @@ public class ProfileDatabaseHelper extends SQLiteOpenHelper {
     @Override
     public void onCreate(SQLiteDatabase db) {
         db.execSQL(CREATE_TABLE_PROFILES);
+        createIndexes(db);
     }
 
     @Override
@@ -50,6 +73,63 @@ public class ProfileDatabaseHelper extends SQLiteOpenHelper {
             // Add the end_time column to existing tables
             db.execSQL("ALTER TABLE " + TABLE_PROFILES + " ADD COLUMN " + COLUMN_END_TIME + " TEXT");
         }
+        if (oldVersion < 3) {
+            // The unique index would fail on existing duplicates, rename them first
+            renameDuplicateNames(db);
+            createIndexes(db);
+        }
+        if (oldVersion < 4) {
+            db.execSQL("ALTER TABLE " + TABLE_PROFILES + " ADD COLUMN " + COLUMN_UPDATED_AT + " INTEGER");
+            db.execSQL("UPDATE " + TABLE_PROFILES + " SET " + COLUMN_UPDATED_AT + " = " + COLUMN_CREATED_AT);
+        }
+    }
+
+    private static void createIndexes(SQLiteDatabase db) {
+        for (String sql : CREATE_INDEXES) {
+            db.execSQL(sql);
+        }
+    }
+
+    /**
+     * Keep the oldest profile of each name and rename the others to "name (2)", "name (3)", ...
+     */
+    static void renameDuplicateNames(SQLiteDatabase db) {
+        Set<String> usedNames = new HashSet<>();
+        try (Cursor cursor = db.query(TABLE_PROFILES, new String[]{COLUMN_NAME},
+                null, null, null, null, null)) {
+            while (cursor.moveToNext()) {
+                usedNames.add(cursor.getString(0));
+            }
+        }
+
+        String duplicates = "SELECT " + COLUMN_ID + ", " + COLUMN_NAME + " FROM " + TABLE_PROFILES +
+                " WHERE " + COLUMN_NAME + " IN (SELECT " + COLUMN_NAME + " FROM " + TABLE_PROFILES +
+                " GROUP BY " + COLUMN_NAME + " HAVING COUNT(*) > 1)" +
+                " ORDER BY " + COLUMN_NAME + ", " + COLUMN_ID;
+
+        String previousName = null;
+        try (Cursor cursor = db.rawQuery(duplicates, null)) {
+            while (cursor.moveToNext()) {
+                long id = cursor.getLong(0);
+                String name = cursor.getString(1);
+                if (!name.equals(previousName)) {
+                    previousName = name; // First (oldest) row keeps its name
+                    continue;
+                }
+
+                int suffix = 2;
+                String newName = name + " (" + suffix + ")";
+                while (usedNames.contains(newName)) {
+                    newName = name + " (" + ++suffix + ")";
+                }
+                usedNames.add(newName);
+
+                ContentValues values = new ContentValues();
+                values.put(COLUMN_NAME, newName);
+                db.update(TABLE_PROFILES, values, COLUMN_ID + "=?", new String[]{String.valueOf(id)});
+                Log.d(TAG, "Renamed duplicate profile " + id + " to " + newName);
+            }
+        }
     }
 
     // Add these methods to your existing ProfileDatabaseHelper.java class
@@ -71,6 +151,7 @@ public class ProfileDatabaseHelper extends SQLiteOpenHelper {
         SQLiteDatabase db = this.getWritableDatabase();
         ContentValues values = new ContentValues();
         values.put(COLUMN_IS_ACTIVE, isActive ? 1 : 0);
+        values.put(COLUMN_UPDATED_AT, System.currentTimeMillis());
 
         int rows = db.update(
                 TABLE_PROFILES,
@@ -0,0 +1,209 @@
+package com.example.sssshhift.data;
+
+import android.content.ContentUris;
+import android.content.Context;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.util.Log;
+
+import com.example.sssshhift.models.Profile;
+import com.example.sssshhift.provider.ProfileContentProvider;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Process-wide read-through cache of the profiles table. Readers get an immutable snapshot
+ * keyed by id and by name; provider notifications replace only the changed rows.
+ * Returned profiles are shared, treat them as read-only.
+ */
+public class ProfileRepository {
+    private static final String TAG = "ProfileRepository";
+
+    public interface Listener {
+        void onProfilesChanged();
+    }
+
+    private static ProfileRepository instance;
+
+    private final Context context;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private volatile Snapshot snapshot;
+
+    private ProfileRepository(Context context) {
+        this.context = context.getApplicationContext();
+
+        // Row refreshes run off the main thread
+        HandlerThread observerThread = new HandlerThread(TAG);
+        observerThread.start();
+        this.context.getContentResolver().registerContentObserver(
+                ProfileContentProvider.CONTENT_URI, true,
+                new ContentObserver(new Handler(observerThread.getLooper())) {
+                    @Override
+                    public void onChange(boolean selfChange, Uri uri) {
+                        onProviderChange(uri);
+                    }
+                });
+    }
+
+    public static synchronized ProfileRepository getInstance(Context context) {
+        if (instance == null) {
+            instance = new ProfileRepository(context);
+        }
+        return instance;
+    }
+
+    /**
+     * All profiles, newest first
+     */
+    public List<Profile> getAll() {
+        return ensureLoaded().ordered;
+    }
+
+    public Profile getById(long id) {
+        return ensureLoaded().byId.get(id);
+    }
+
+    public Profile getByName(String name) {
+        return ensureLoaded().byName.get(name);
+    }
+
+    public List<Profile> getActiveByTriggerType(String triggerType) {
+        List<Profile> result = new ArrayList<>();
+        for (Profile profile : getAll()) {
+            if (profile.isActive() && triggerType.equals(profile.getTriggerType())) {
+                result.add(profile);
+            }
+        }
+        return result;
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    private Snapshot ensureLoaded() {
+        Snapshot current = snapshot;
+        if (current != null) {
+            return current;
+        }
+        synchronized (this) {
+            if (snapshot == null) {
+                snapshot = Snapshot.of(queryProfiles(null, null));
+                Log.d(TAG, "Loaded " + snapshot.ordered.size() + " profiles");
+            }
+            return snapshot;
+        }
+    }
+
+    private void onProviderChange(Uri uri) {
+        synchronized (this) {
+            if (snapshot == null) {
+                return; // Nothing cached yet, the first read loads everything
+            }
+
+            long id = parseRowId(uri);
+            if (id == -1) {
+                snapshot = Snapshot.of(queryProfiles(null, null));
+                Log.d(TAG, "Reloaded all profiles");
+            } else {
+                List<Profile> rows = queryProfiles(ProfileDatabaseHelper.COLUMN_ID + "=?",
+                        new String[]{String.valueOf(id)});
+                Map<Long, Profile> byId = new HashMap<>(snapshot.byId);
+                if (rows.isEmpty()) {
+                    byId.remove(id);
+                } else {
+                    byId.put(id, rows.get(0));
+                }
+                snapshot = Snapshot.of(byId.values());
+                Log.d(TAG, "Refreshed profile " + id);
+            }
+        }
+
+        mainHandler.post(() -> {
+            for (Listener listener : listeners) {
+                listener.onProfilesChanged();
+            }
+        });
+    }
+
+    private static long parseRowId(Uri uri) {
+        if (uri == null) {
+            return -1;
+        }
+        try {
+            return ContentUris.parseId(uri);
+        } catch (NumberFormatException | UnsupportedOperationException e) {
+            return -1;
+        }
+    }
+
+    private List<Profile> queryProfiles(String selection, String[] selectionArgs) {
+        List<Profile> profiles = new ArrayList<>();
+        try (Cursor cursor = context.getContentResolver().query(
+                ProfileContentProvider.CONTENT_URI, null, selection, selectionArgs, null)) {
+            if (cursor != null) {
+                while (cursor.moveToNext()) {
+                    profiles.add(fromCursor(cursor));
+                }
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Error querying profiles", e);
+        }
+        return profiles;
+    }
+
+    public static Profile fromCursor(Cursor cursor) {
+        Profile profile = new Profile();
+        profile.setId(cursor.getLong(cursor.getColumnIndexOrThrow(ProfileDatabaseHelper.COLUMN_ID)));
+        profile.setName(cursor.getString(cursor.getColumnIndexOrThrow(ProfileDatabaseHelper.COLUMN_NAME)));
+        profile.setTriggerType(cursor.getString(cursor.getColumnIndexOrThrow(ProfileDatabaseHelper.COLUMN_TRIGGER_TYPE)));
+        profile.setTriggerValue(cursor.getString(cursor.getColumnIndexOrThrow(ProfileDatabaseHelper.COLUMN_TRIGGER_VALUE)));
+        profile.setEndTime(cursor.getString(cursor.getColumnIndexOrThrow(ProfileDatabaseHelper.COLUMN_END_TIME)));
+        profile.setRingerMode(cursor.getString(cursor.getColumnIndexOrThrow(ProfileDatabaseHelper.COLUMN_RINGER_MODE)));
+        profile.setActions(cursor.getString(cursor.getColumnIndexOrThrow(ProfileDatabaseHelper.COLUMN_ACTIONS)));
+        profile.setActive(cursor.getInt(cursor.getColumnIndexOrThrow(ProfileDatabaseHelper.COLUMN_IS_ACTIVE)) == 1);
+        profile.setCreatedAt(cursor.getLong(cursor.getColumnIndexOrThrow(ProfileDatabaseHelper.COLUMN_CREATED_AT)));
+        return profile;
+    }
+
+    private static class Snapshot {
+        final Map<Long, Profile> byId;
+        final Map<String, Profile> byName;
+        final List<Profile> ordered;
+
+        private Snapshot(Map<Long, Profile> byId, Map<String, Profile> byName, List<Profile> ordered) {
+            this.byId = byId;
+            this.byName = byName;
+            this.ordered = ordered;
+        }
+
+        static Snapshot of(Iterable<Profile> profiles) {
+            Map<Long, Profile> byId = new HashMap<>();
+            Map<String, Profile> byName = new HashMap<>();
+            List<Profile> ordered = new ArrayList<>();
+            for (Profile profile : profiles) {
+                profile.getCompiled(); // Parse once here, readers share the result
+                byId.put(profile.getId(), profile);
+                byName.put(profile.getName(), profile);
+                ordered.add(profile);
+            }
+            Collections.sort(ordered, (a, b) -> Long.compare(b.getCreatedAt(), a.getCreatedAt()));
+            return new Snapshot(Collections.unmodifiableMap(byId), Collections.unmodifiableMap(byName),
+                    Collections.unmodifiableList(ordered));
+        }
+    }
+}
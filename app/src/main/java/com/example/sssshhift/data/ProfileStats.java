@@ -0,0 +1,75 @@
+package com.example.sssshhift.data;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.util.Log;
+
+import com.example.sssshhift.provider.ProfileContentProvider;
+
+/**
+ * Dashboard numbers read from the provider's stats row in one aggregate query
+ */
+public class ProfileStats {
+    private static final String TAG = "ProfileStats";
+
+    public static final long NONE = 0;
+
+    private final int total;
+    private final int active;
+    private final int inactive;
+    private final int timeProfiles;
+    private final int locationProfiles;
+    private final long nextActivation;
+    private final long lastChange;
+
+    private ProfileStats(int total, int active, int inactive, int timeProfiles, int locationProfiles,
+                         long nextActivation, long lastChange) {
+        this.total = total;
+        this.active = active;
+        this.inactive = inactive;
+        this.timeProfiles = timeProfiles;
+        this.locationProfiles = locationProfiles;
+        this.nextActivation = nextActivation;
+        this.lastChange = lastChange;
+    }
+
+    /**
+     * Runs the stats query, call off the main thread. Returns empty stats on error.
+     */
+    public static ProfileStats query(Context context) {
+        try (Cursor cursor = context.getContentResolver().query(
+                ProfileContentProvider.STATS_URI, null, null, null, null)) {
+            if (cursor != null && cursor.moveToFirst()) {
+                int nextIndex = cursor.getColumnIndexOrThrow(ProfileContentProvider.STATS_NEXT_ACTIVATION);
+                return new ProfileStats(
+                        cursor.getInt(cursor.getColumnIndexOrThrow(ProfileContentProvider.STATS_TOTAL)),
+                        cursor.getInt(cursor.getColumnIndexOrThrow(ProfileContentProvider.STATS_ACTIVE)),
+                        cursor.getInt(cursor.getColumnIndexOrThrow(ProfileContentProvider.STATS_INACTIVE)),
+                        cursor.getInt(cursor.getColumnIndexOrThrow(ProfileContentProvider.STATS_TIME)),
+                        cursor.getInt(cursor.getColumnIndexOrThrow(ProfileContentProvider.STATS_LOCATION)),
+                        cursor.isNull(nextIndex) ? NONE : cursor.getLong(nextIndex),
+                        cursor.getLong(cursor.getColumnIndexOrThrow(ProfileContentProvider.STATS_LAST_CHANGE))
+                );
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Error querying profile stats", e);
+        }
+        return new ProfileStats(0, 0, 0, 0, 0, NONE, NONE);
+    }
+
+    public int getTotal() { return total; }
+
+    public int getActive() { return active; }
+
+    public int getInactive() { return inactive; }
+
+    public int getTimeProfiles() { return timeProfiles; }
+
+    public int getLocationProfiles() { return locationProfiles; }
+
+    // Next start of an active time profile, NONE if there is none
+    public long getNextActivation() { return nextActivation; }
+
+    // Last insert, update or delete of any profile, NONE if never
+    public long getLastChange() { return lastChange; }
+}
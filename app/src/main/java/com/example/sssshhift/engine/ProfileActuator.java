@@ -0,0 +1,58 @@
+package com.example.sssshhift.engine;
+
+import android.content.Context;
+import android.media.AudioManager;
+import android.os.Looper;
+import android.util.Log;
+
+import com.example.sssshhift.models.CompiledProfile;
+import com.example.sssshhift.models.Profile;
+import com.example.sssshhift.utils.PhoneSettingsManager;
+
+/**
+ * The single place where profile results reach the system. Ringer changes go through
+ * {@link RingerActuator}, actions through {@link PhoneSettingsManager}.
+ */
+class ProfileActuator {
+    private static final String TAG = "ProfileActuator";
+
+    private final Context context;
+    private final RingerActuator ringer;
+
+    ProfileActuator(Context context) {
+        this.context = context.getApplicationContext();
+        this.ringer = RingerActuator.getInstance(this.context);
+    }
+
+    boolean applyProfile(Profile profile, TriggerEvent event) {
+        Log.d(TAG, "Applying profile settings: " + profile.getName());
+
+        CompiledProfile compiled = profile.getCompiled();
+        boolean applied = setRingerMode(compiled.getRingerMode().getAudioMode(), event);
+        PhoneSettingsManager.applyActions(context, compiled.getActions());
+        return applied;
+    }
+
+    boolean revertProfile(Profile profile, TriggerEvent event) {
+        Log.d(TAG, "Reverting profile settings: " + profile.getName());
+
+        // Restores normal ringer mode and reverses each action
+        setRingerMode(AudioManager.RINGER_MODE_NORMAL, event);
+        PhoneSettingsManager.revertActions(context, profile.getCompiled().getActions());
+        return true;
+    }
+
+    boolean setRingerMode(TriggerEvent event) {
+        return setRingerMode(event.getRingerMode(), event);
+    }
+
+    // Off the main thread the caller usually holds a receiver's wake lock, which has to cover the
+    // change until it is confirmed
+    private boolean setRingerMode(int ringerMode, TriggerEvent event) {
+        RingerActuator.Target target = RingerActuator.Target.ringerMode(ringerMode);
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            return ringer.apply(target, event.getSource(), event.getCreatedAtNanos(), null);
+        }
+        return ringer.applyAndAwait(target, event.getSource(), event.getCreatedAtNanos());
+    }
+}
@@ -0,0 +1,156 @@
+package com.example.sssshhift.engine;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.example.sssshhift.data.ProfileRepository;
+import com.example.sssshhift.models.Profile;
+import com.example.sssshhift.utils.NotificationUtils;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Receives trigger events from every receiver and service, resolves the profile from
+ * {@link ProfileRepository} and applies the result through {@link ProfileActuator}. Trigger to
+ * dispatch latency is measured here for all sources, trigger to confirmed ringer change in
+ * {@link RingerActuator}.
+ */
+public class ProfileEngine {
+    private static final String TAG = "ProfileEngine";
+
+    private static ProfileEngine instance;
+
+    private final Context context;
+    private final ProfileActuator actuator;
+    private final ProfileRepository repository;
+    private final Map<String, LatencyStats> latencyBySource = new HashMap<>();
+
+    private ProfileEngine(Context context) {
+        this.context = context.getApplicationContext();
+        this.actuator = new ProfileActuator(this.context);
+        this.repository = ProfileRepository.getInstance(this.context);
+    }
+
+    public static synchronized ProfileEngine getInstance(Context context) {
+        if (instance == null) {
+            instance = new ProfileEngine(context);
+        }
+        return instance;
+    }
+
+    /**
+     * Apply a trigger event on the caller's thread. Off the main thread this returns once the
+     * ringer change is confirmed or given up.
+     * @return true if the result was applied
+     */
+    public boolean handle(TriggerEvent event) {
+        boolean applied;
+        try {
+            applied = event.targetsProfile() ? handleProfile(event) : handleRingerMode(event);
+        } catch (Exception e) {
+            Log.e(TAG, "Error handling trigger " + event, e);
+            applied = false;
+        }
+
+        long latencyNanos = SystemClock.elapsedRealtimeNanos() - event.getCreatedAtNanos();
+        recordLatency(event.getSource(), latencyNanos);
+        Log.d(TAG, String.format("Handled %s in %.2f ms (applied: %b)", event, latencyNanos / 1e6, applied));
+        return applied;
+    }
+
+    public Profile getProfile(String name) {
+        return repository.getByName(name);
+    }
+
+    public Profile getProfile(long id) {
+        return repository.getById(id);
+    }
+
+    private boolean handleProfile(TriggerEvent event) {
+        Profile profile = event.getProfileName() != null
+                ? getProfile(event.getProfileName())
+                : getProfile(event.getProfileId());
+
+        if (profile == null) {
+            Log.e(TAG, "Profile not found for trigger " + event);
+            return false;
+        }
+
+        // Disabled profiles are left alone, in both directions
+        if (!profile.isActive()) {
+            Log.d(TAG, "Profile is disabled, skipping: " + profile.getName());
+            return false;
+        }
+
+        boolean applied = event.isActivate() ? actuator.applyProfile(profile, event) : actuator.revertProfile(profile, event);
+        if (event.shouldNotifyUser()) {
+            notifyUser(profile.getName(), event.isActivate());
+        }
+        return applied;
+    }
+
+    private boolean handleRingerMode(TriggerEvent event) {
+        boolean applied = actuator.setRingerMode(event);
+        if (applied && event.shouldNotifyUser()) {
+            notifyUser(event.getLabel(), event.isActivate());
+        }
+        return applied;
+    }
+
+    private void notifyUser(String name, boolean activated) {
+        if (activated) {
+            NotificationUtils.showProfileActivatedNotification(context, name);
+        } else {
+            NotificationUtils.showProfileEndedNotification(context, name);
+        }
+    }
+
+    // Latency tracking
+
+    private synchronized void recordLatency(String source, long latencyNanos) {
+        LatencyStats stats = latencyBySource.get(source);
+        if (stats == null) {
+            stats = new LatencyStats();
+            latencyBySource.put(source, stats);
+        }
+        stats.record(latencyNanos);
+    }
+
+    /**
+     * Per-source trigger latency summary, e.g. "geofence: n=3 avg=1.20ms max=2.10ms", followed by
+     * the confirmed activation latency
+     */
+    public synchronized String getLatencyReport() {
+        StringBuilder report = new StringBuilder();
+        for (Map.Entry<String, LatencyStats> entry : latencyBySource.entrySet()) {
+            if (report.length() > 0) report.append('\n');
+            report.append(entry.getKey()).append(": ").append(entry.getValue());
+        }
+        String activation = RingerActuator.getInstance(context).getLatencyReport();
+        if (!activation.isEmpty()) {
+            if (report.length() > 0) report.append('\n');
+            report.append("Activation\n").append(activation);
+        }
+        return report.toString();
+    }
+
+    static class LatencyStats {
+        private long count;
+        private long totalNanos;
+        private long maxNanos;
+
+        void record(long nanos) {
+            count++;
+            totalNanos += nanos;
+            maxNanos = Math.max(maxNanos, nanos);
+        }
+
+        @Override
+        public String toString() {
+            double avgMs = count == 0 ? 0 : totalNanos / 1e6 / count;
+            return String.format("n=%d avg=%.2fms max=%.2fms", count, avgMs, maxNanos / 1e6);
+        }
+    }
+}
@@ -0,0 +1,317 @@
+package com.example.sssshhift.engine;
+
+import android.app.NotificationManager;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.media.AudioManager;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.example.sssshhift.usage.session.SessionTracker;
+import com.example.sssshhift.utils.NotificationUtils;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Applies audio state (ringer mode, interruption filter, ring volume) on its own thread. Only
+ * the parts that differ from the last known state are set. A change counts as done when the
+ * system broadcast confirms it; until then it is re-applied with bounded exponential backoff.
+ * Latency is measured from the trigger to the confirmation.
+ */
+public final class RingerActuator {
+    private static final String TAG = "RingerActuator";
+
+    public static final int UNCHANGED = -1;
+
+    private static final long INITIAL_BACKOFF_MS = 100;
+    private static final long MAX_BACKOFF_MS = 1600;
+    private static final int MAX_ATTEMPTS = 6;
+    // Covers the full backoff of a request, about 5 s
+    public static final long CONFIRM_TIMEOUT_MS = 10_000;
+
+    /**
+     * Audio state to reach, parts left at {@link #UNCHANGED} are not touched
+     */
+    public static final class Target {
+        private final int ringerMode;
+        private final int interruptionFilter;
+        private final int ringVolume;
+
+        private Target(int ringerMode, int interruptionFilter, int ringVolume) {
+            this.ringerMode = ringerMode;
+            this.interruptionFilter = interruptionFilter;
+            this.ringVolume = ringVolume;
+        }
+
+        public static Target ringerMode(int ringerMode) {
+            return new Target(ringerMode, UNCHANGED, UNCHANGED);
+        }
+
+        public Target withInterruptionFilter(int interruptionFilter) {
+            return new Target(ringerMode, interruptionFilter, ringVolume);
+        }
+
+        public Target withRingVolume(int ringVolume) {
+            return new Target(ringerMode, interruptionFilter, ringVolume);
+        }
+
+        @Override
+        public String toString() {
+            return "ringer=" + ringerMode + " filter=" + interruptionFilter + " volume=" + ringVolume;
+        }
+    }
+
+    public enum Outcome {
+        CONFIRMED,
+        // A newer request replaced it before it was confirmed, nothing failed
+        SUPERSEDED,
+        // Not confirmed after all attempts
+        FAILED
+    }
+
+    /**
+     * Called on the actuator thread once a request is confirmed, superseded or given up
+     */
+    public interface Listener {
+        void onResult(Outcome outcome, long latencyMs);
+    }
+
+    private static RingerActuator instance;
+
+    private final Context context;
+    private final AudioManager audioManager;
+    private final NotificationManager notificationManager;
+    private final Handler handler;
+    private final Map<String, ProfileEngine.LatencyStats> latencyBySource = new HashMap<>();
+
+    // Last state seen, kept current by the system broadcasts. Only touched on the handler thread.
+    private int ringerMode = UNCHANGED;
+    private int interruptionFilter = UNCHANGED;
+    private Request pending;
+
+    private RingerActuator(Context context) {
+        this.context = context.getApplicationContext();
+        this.audioManager = (AudioManager) this.context.getSystemService(Context.AUDIO_SERVICE);
+        this.notificationManager = (NotificationManager) this.context.getSystemService(Context.NOTIFICATION_SERVICE);
+
+        HandlerThread thread = new HandlerThread(TAG);
+        thread.start();
+        this.handler = new Handler(thread.getLooper());
+
+        IntentFilter filter = new IntentFilter(AudioManager.RINGER_MODE_CHANGED_ACTION);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            filter.addAction(NotificationManager.ACTION_INTERRUPTION_FILTER_CHANGED);
+        }
+        // Delivered on the actuator thread, so the state needs no locking
+        this.context.registerReceiver(new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                onSystemChange();
+            }
+        }, filter, null, handler);
+
+        handler.post(this::onSystemChange);
+    }
+
+    public static synchronized RingerActuator getInstance(Context context) {
+        if (instance == null) {
+            instance = new RingerActuator(context);
+        }
+        return instance;
+    }
+
+    /**
+     * Queue a change. A request still waiting for confirmation is superseded.
+     * @param createdAtNanos elapsedRealtimeNanos of the trigger, the start of the latency
+     * @return false if the change cannot be made at all, e.g. without Do Not Disturb access
+     */
+    public boolean apply(Target target, String source, long createdAtNanos, Listener listener) {
+        if (audioManager == null) {
+            Log.e(TAG, "AudioManager is null");
+            return false;
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M && notificationManager != null
+                && !notificationManager.isNotificationPolicyAccessGranted()) {
+            Log.w(TAG, "Do Not Disturb permission not granted, cannot change ringer mode");
+            NotificationUtils.showPermissionRequiredNotification(context);
+            return false;
+        }
+
+        handler.post(() -> {
+            if (pending != null) {
+                Log.d(TAG, "Superseded " + pending.target);
+                finish(pending, Outcome.SUPERSEDED);
+            }
+            pending = new Request(target, source, createdAtNanos, listener);
+            attempt(pending);
+        });
+        return true;
+    }
+
+    /**
+     * Like {@link #apply}, but blocks until the change is confirmed, superseded or given up, at
+     * most {@link #CONFIRM_TIMEOUT_MS}. For callers holding a wake lock, e.g. a receiver's
+     * onReceiveAsync, so the lock covers the retries. Not to be called on the main thread.
+     * @return false if the change cannot be made at all or was given up
+     */
+    public boolean applyAndAwait(Target target, String source, long createdAtNanos) {
+        if (Looper.myLooper() == handler.getLooper()) {
+            // Waiting here would block the confirmation itself
+            return apply(target, source, createdAtNanos, null);
+        }
+
+        CountDownLatch done = new CountDownLatch(1);
+        Outcome[] result = new Outcome[1];
+        boolean accepted = apply(target, source, createdAtNanos, (outcome, latencyMs) -> {
+            result[0] = outcome;
+            done.countDown();
+        });
+        if (!accepted) {
+            return false;
+        }
+
+        try {
+            if (!done.await(CONFIRM_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                Log.w(TAG, target + " not confirmed within " + CONFIRM_TIMEOUT_MS + " ms");
+                return true;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return true;
+        }
+        return result[0] != Outcome.FAILED;
+    }
+
+    private void attempt(Request request) {
+        if (request.attempts > 0) {
+            // The last attempt did not stick, don't trust the remembered state
+            readState();
+        }
+        if (isReached(request.target)) {
+            finish(request, Outcome.CONFIRMED);
+            return;
+        }
+        if (request.attempts == MAX_ATTEMPTS) {
+            Log.e(TAG, "Gave up on " + request.target + " after " + MAX_ATTEMPTS + " attempts");
+            finish(request, Outcome.FAILED);
+            return;
+        }
+
+        Target target = request.target;
+        try {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M && notificationManager != null
+                    && target.interruptionFilter != UNCHANGED && target.interruptionFilter != interruptionFilter) {
+                notificationManager.setInterruptionFilter(target.interruptionFilter);
+            }
+            if (target.ringerMode != UNCHANGED && target.ringerMode != ringerMode) {
+                audioManager.setRingerMode(target.ringerMode);
+            }
+            if (target.ringVolume != UNCHANGED
+                    && target.ringVolume != audioManager.getStreamVolume(AudioManager.STREAM_RING)) {
+                audioManager.setStreamVolume(AudioManager.STREAM_RING, target.ringVolume, 0);
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Error applying " + target + ": " + e.getMessage());
+        }
+
+        // The broadcast normally confirms first, the timeout covers a change that did not stick
+        long backoff = Math.min(INITIAL_BACKOFF_MS << request.attempts, MAX_BACKOFF_MS);
+        request.attempts++;
+        handler.postDelayed(request.retry, backoff);
+    }
+
+    private void onSystemChange() {
+        readState();
+        SessionTracker.getInstance(context).onRingerModeChanged(ringerMode);
+
+        if (pending != null && isReached(pending.target)) {
+            finish(pending, Outcome.CONFIRMED);
+        }
+    }
+
+    private void readState() {
+        if (audioManager != null) {
+            ringerMode = audioManager.getRingerMode();
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M && notificationManager != null) {
+            interruptionFilter = notificationManager.getCurrentInterruptionFilter();
+        }
+    }
+
+    private boolean isReached(Target target) {
+        if (target.ringerMode != UNCHANGED && target.ringerMode != ringerMode) {
+            return false;
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M
+                && target.interruptionFilter != UNCHANGED && target.interruptionFilter != interruptionFilter) {
+            return false;
+        }
+        // No public broadcast for volume, it is read when needed
+        return target.ringVolume == UNCHANGED
+                || target.ringVolume == audioManager.getStreamVolume(AudioManager.STREAM_RING);
+    }
+
+    private void finish(Request request, Outcome outcome) {
+        handler.removeCallbacks(request.retry);
+        if (pending == request) {
+            pending = null;
+        }
+
+        long latencyNanos = SystemClock.elapsedRealtimeNanos() - request.createdAtNanos;
+        if (outcome == Outcome.CONFIRMED) {
+            recordLatency(request.source, latencyNanos);
+        }
+        Log.d(TAG, String.format("%s %s in %.2f ms after %d attempts", outcome,
+                request.target, latencyNanos / 1e6, request.attempts));
+
+        if (request.listener != null) {
+            request.listener.onResult(outcome, latencyNanos / 1_000_000);
+        }
+    }
+
+    private synchronized void recordLatency(String source, long latencyNanos) {
+        ProfileEngine.LatencyStats stats = latencyBySource.get(source);
+        if (stats == null) {
+            stats = new ProfileEngine.LatencyStats();
+            latencyBySource.put(source, stats);
+        }
+        stats.record(latencyNanos);
+    }
+
+    /**
+     * Per-source trigger to confirmed change latency, same format as the engine report
+     */
+    public synchronized String getLatencyReport() {
+        StringBuilder report = new StringBuilder();
+        for (Map.Entry<String, ProfileEngine.LatencyStats> entry : latencyBySource.entrySet()) {
+            if (report.length() > 0) report.append('\n');
+            report.append(entry.getKey()).append(": ").append(entry.getValue());
+        }
+        return report.toString();
+    }
+
+    private final class Request {
+        final Target target;
+        final String source;
+        final long createdAtNanos;
+        final Listener listener;
+        final Runnable retry = () -> attempt(this);
+        int attempts;
+
+        Request(Target target, String source, long createdAtNanos, Listener listener) {
+            this.target = target;
+            this.source = source;
+            this.createdAtNanos = createdAtNanos;
+            this.listener = listener;
+        }
+    }
+}
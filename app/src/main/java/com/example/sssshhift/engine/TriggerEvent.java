@@ -0,0 +1,84 @@
+package com.example.sssshhift.engine;
+
+import android.os.SystemClock;
+
+/**
+ * A trigger delivered to {@link ProfileEngine}: either a stored profile (by name or id)
+ * starting/ending, or a plain ringer mode change from timer, smart-auto or calendar.
+ */
+public class TriggerEvent {
+    public static final String SOURCE_ALARM = "alarm";
+    public static final String SOURCE_PROFILE_TIMER = "profile_timer";
+    public static final String SOURCE_TIMER = "timer";
+    public static final String SOURCE_SMART_AUTO = "smart_auto";
+    public static final String SOURCE_GEOFENCE = "geofence";
+    public static final String SOURCE_LOCATION = "location";
+    public static final String SOURCE_CALENDAR = "calendar";
+
+    public static final long NO_PROFILE_ID = -1;
+    public static final int NO_RINGER_MODE = -1;
+
+    private final String source;
+    private final boolean activate;
+    private final String profileName;
+    private final long profileId;
+    private final int ringerMode;
+    private final String label;
+    private final boolean notifyUser;
+    private final long createdAtNanos;
+
+    private TriggerEvent(String source, boolean activate, String profileName, long profileId,
+                         int ringerMode, String label, boolean notifyUser) {
+        this.source = source;
+        this.activate = activate;
+        this.profileName = profileName;
+        this.profileId = profileId;
+        this.ringerMode = ringerMode;
+        this.label = label;
+        this.notifyUser = notifyUser;
+        this.createdAtNanos = SystemClock.elapsedRealtimeNanos();
+    }
+
+    public static TriggerEvent forProfile(String source, String profileName, boolean activate) {
+        return new TriggerEvent(source, activate, profileName, NO_PROFILE_ID, NO_RINGER_MODE, profileName, true);
+    }
+
+    public static TriggerEvent forProfileId(String source, long profileId, boolean activate) {
+        return new TriggerEvent(source, activate, null, profileId, NO_RINGER_MODE, null, true);
+    }
+
+    /**
+     * A ringer change that is not backed by a stored profile
+     * @param label Shown in the notification, no notification is posted when null
+     */
+    public static TriggerEvent forRingerMode(String source, String label, int ringerMode, boolean activate) {
+        return new TriggerEvent(source, activate, null, NO_PROFILE_ID, ringerMode, label, label != null);
+    }
+
+    public String getSource() { return source; }
+
+    public boolean isActivate() { return activate; }
+
+    public String getProfileName() { return profileName; }
+
+    public long getProfileId() { return profileId; }
+
+    public int getRingerMode() { return ringerMode; }
+
+    public String getLabel() { return label; }
+
+    public boolean shouldNotifyUser() { return notifyUser; }
+
+    public long getCreatedAtNanos() { return createdAtNanos; }
+
+    public boolean targetsProfile() {
+        return profileName != null || profileId != NO_PROFILE_ID;
+    }
+
+    @Override
+    public String toString() {
+        String target = profileName != null ? profileName
+                : profileId != NO_PROFILE_ID ? "#" + profileId : "ringer=" + ringerMode;
+        return source + ":" + target + ":" + (activate ? "on" : "off");
+    }
+}
@@ -0,0 +1,238 @@
+package com.example.sssshhift.features.smartauto;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Smart-auto event rules, compiled once from the settings. Keywords for the title, location and
+ * organizer each become one {@link KeywordAutomaton}, so a field is scanned once however many
+ * keywords there are. Calendar and availability rules narrow which events are considered at all.
+ *
+ * Rules are written like keywords, with an optional prefix:
+ * "standup" (title), "location:room 4", "organizer:@corp.com", "calendar:3",
+ * "availability:tentative" and "regex:^1:1 ".
+ */
+public final class EventRuleMatcher {
+    // Same values as CalendarContract.Events.AVAILABILITY_*
+    static final int AVAILABILITY_BUSY = 0;
+    static final int AVAILABILITY_FREE = 1;
+    static final int AVAILABILITY_TENTATIVE = 2;
+    private static final int ANY_AVAILABILITY = -1;
+
+    static final String PREFIX_LOCATION = "location:";
+    static final String PREFIX_ORGANIZER = "organizer:";
+    static final String PREFIX_CALENDAR = "calendar:";
+    static final String PREFIX_AVAILABILITY = "availability:";
+    static final String PREFIX_REGEX = "regex:";
+
+    private final KeywordAutomaton titleKeywords;
+    private final KeywordAutomaton locationKeywords;
+    private final KeywordAutomaton organizerKeywords;
+    private final Pattern[] titlePatterns;
+    private final long[] calendarIds; // Sorted, empty for any calendar
+    private final int availabilityMask; // Bit per allowed availability, or ANY_AVAILABILITY
+    private final List<String> invalidRules;
+
+    private EventRuleMatcher(Builder builder) {
+        this.titleKeywords = KeywordAutomaton.of(builder.titleKeywords);
+        this.locationKeywords = KeywordAutomaton.of(builder.locationKeywords);
+        this.organizerKeywords = KeywordAutomaton.of(builder.organizerKeywords);
+        this.titlePatterns = builder.titlePatterns.toArray(new Pattern[0]);
+
+        this.calendarIds = new long[builder.calendarIds.size()];
+        for (int i = 0; i < calendarIds.length; i++) {
+            calendarIds[i] = builder.calendarIds.get(i);
+        }
+        Arrays.sort(calendarIds);
+
+        this.availabilityMask = builder.availabilityMask;
+        this.invalidRules = Collections.unmodifiableList(new ArrayList<>(builder.invalidRules));
+    }
+
+    /**
+     * Compile the rules as saved by the settings screen
+     */
+    public static EventRuleMatcher fromRules(Collection<String> rules, boolean busyEventsOnly) {
+        Builder builder = new Builder();
+        if (busyEventsOnly) {
+            builder.allowAvailability(AVAILABILITY_BUSY);
+        }
+        if (rules != null) {
+            for (String rule : rules) {
+                builder.addRule(rule);
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Whether any rule can select an event. Calendar and availability rules only narrow.
+     */
+    public boolean isEmpty() {
+        return titleKeywords.isEmpty() && locationKeywords.isEmpty() && organizerKeywords.isEmpty()
+                && titlePatterns.length == 0;
+    }
+
+    /**
+     * Rules that could not be parsed and are ignored
+     */
+    public List<String> getInvalidRules() {
+        return invalidRules;
+    }
+
+    public boolean matches(long calendarId, int availability, String title, String organizer, String location) {
+        return findMatch(calendarId, availability, title, organizer, location) != null;
+    }
+
+    /**
+     * The rule selecting the event, or null if it is not selected
+     */
+    public String findMatch(long calendarId, int availability, String title, String organizer, String location) {
+        if (availabilityMask != ANY_AVAILABILITY
+                && (availability < 0 || availability >= 31 || (availabilityMask & (1 << availability)) == 0)) {
+            return null;
+        }
+        if (calendarIds.length > 0 && Arrays.binarySearch(calendarIds, calendarId) < 0) {
+            return null;
+        }
+
+        int index = titleKeywords.find(title);
+        if (index != KeywordAutomaton.NO_MATCH) {
+            return titleKeywords.keyword(index);
+        }
+        index = locationKeywords.find(location);
+        if (index != KeywordAutomaton.NO_MATCH) {
+            return PREFIX_LOCATION + locationKeywords.keyword(index);
+        }
+        index = organizerKeywords.find(organizer);
+        if (index != KeywordAutomaton.NO_MATCH) {
+            return PREFIX_ORGANIZER + organizerKeywords.keyword(index);
+        }
+        if (title != null) {
+            for (Pattern pattern : titlePatterns) {
+                if (pattern.matcher(title).find()) {
+                    return PREFIX_REGEX + pattern.pattern();
+                }
+            }
+        }
+        return null;
+    }
+
+    public static final class Builder {
+        private final List<String> titleKeywords = new ArrayList<>();
+        private final List<String> locationKeywords = new ArrayList<>();
+        private final List<String> organizerKeywords = new ArrayList<>();
+        private final List<Pattern> titlePatterns = new ArrayList<>();
+        private final List<Long> calendarIds = new ArrayList<>();
+        private final List<String> invalidRules = new ArrayList<>();
+        private int availabilityMask = ANY_AVAILABILITY;
+
+        /**
+         * Parse one rule in the settings syntax. Unparseable rules are kept aside, not thrown.
+         */
+        public Builder addRule(String rule) {
+            if (rule == null || rule.trim().isEmpty()) {
+                return this;
+            }
+            String trimmed = rule.trim();
+            String lower = trimmed.toLowerCase(Locale.ROOT);
+
+            if (lower.startsWith(PREFIX_LOCATION)) {
+                addLocationKeyword(value(trimmed, PREFIX_LOCATION));
+            } else if (lower.startsWith(PREFIX_ORGANIZER)) {
+                addOrganizerKeyword(value(trimmed, PREFIX_ORGANIZER));
+            } else if (lower.startsWith(PREFIX_REGEX)) {
+                try {
+                    addTitlePattern(value(trimmed, PREFIX_REGEX));
+                } catch (PatternSyntaxException e) {
+                    invalidRules.add(rule);
+                }
+            } else if (lower.startsWith(PREFIX_CALENDAR)) {
+                try {
+                    addCalendarId(Long.parseLong(value(trimmed, PREFIX_CALENDAR)));
+                } catch (NumberFormatException e) {
+                    invalidRules.add(rule);
+                }
+            } else if (lower.startsWith(PREFIX_AVAILABILITY)) {
+                int availability = parseAvailability(value(lower, PREFIX_AVAILABILITY));
+                if (availability == ANY_AVAILABILITY) {
+                    invalidRules.add(rule);
+                } else {
+                    allowAvailability(availability);
+                }
+            } else {
+                addTitleKeyword(trimmed);
+            }
+            return this;
+        }
+
+        public Builder addTitleKeyword(String keyword) {
+            titleKeywords.add(keyword);
+            return this;
+        }
+
+        public Builder addLocationKeyword(String keyword) {
+            locationKeywords.add(keyword);
+            return this;
+        }
+
+        public Builder addOrganizerKeyword(String keyword) {
+            organizerKeywords.add(keyword);
+            return this;
+        }
+
+        /**
+         * @throws PatternSyntaxException if the expression is invalid
+         */
+        public Builder addTitlePattern(String regex) {
+            titlePatterns.add(Pattern.compile(regex, Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE));
+            return this;
+        }
+
+        /**
+         * Only events from the added calendars are considered
+         */
+        public Builder addCalendarId(long calendarId) {
+            calendarIds.add(calendarId);
+            return this;
+        }
+
+        /**
+         * Only events with an added availability are considered
+         */
+        public Builder allowAvailability(int availability) {
+            if (availabilityMask == ANY_AVAILABILITY) {
+                availabilityMask = 0;
+            }
+            availabilityMask |= 1 << availability;
+            return this;
+        }
+
+        public EventRuleMatcher build() {
+            return new EventRuleMatcher(this);
+        }
+
+        private static String value(String rule, String prefix) {
+            return rule.substring(prefix.length()).trim();
+        }
+
+        private static int parseAvailability(String value) {
+            switch (value) {
+                case "busy":
+                    return AVAILABILITY_BUSY;
+                case "free":
+                    return AVAILABILITY_FREE;
+                case "tentative":
+                    return AVAILABILITY_TENTATIVE;
+                default:
+                    return ANY_AVAILABILITY;
+            }
+        }
+    }
+}
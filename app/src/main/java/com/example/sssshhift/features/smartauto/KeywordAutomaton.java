@@ -0,0 +1,177 @@
+package com.example.sssshhift.features.smartauto;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Aho-Corasick automaton over a fixed set of keywords, matched case-insensitively. A text is
+ * scanned once, left to right, whatever the number of keywords. Transitions are stored as
+ * sorted label runs in flat arrays, so a scan allocates nothing.
+ */
+final class KeywordAutomaton {
+    static final int NO_MATCH = -1;
+
+    private final String[] keywords;
+    private final int[] edgeStart;  // Per node, first edge in labels/targets
+    private final int[] edgeEnd;    // Per node, one past its last edge
+    private final char[] labels;    // Sorted within each node
+    private final int[] targets;
+    private final int[] fail;
+    private final int[] output;     // Keyword ending here or at a suffix, or NO_MATCH
+
+    private KeywordAutomaton(String[] keywords, int[] edgeStart, int[] edgeEnd, char[] labels,
+                             int[] targets, int[] fail, int[] output) {
+        this.keywords = keywords;
+        this.edgeStart = edgeStart;
+        this.edgeEnd = edgeEnd;
+        this.labels = labels;
+        this.targets = targets;
+        this.fail = fail;
+        this.output = output;
+    }
+
+    /**
+     * Keywords are trimmed, blanks and duplicates are dropped
+     */
+    static KeywordAutomaton of(List<String> keywords) {
+        // Build the trie with maps, then flatten it
+        List<TreeMap<Character, Integer>> children = new ArrayList<>();
+        List<Integer> ends = new ArrayList<>();
+        List<String> kept = new ArrayList<>();
+        children.add(new TreeMap<>());
+        ends.add(NO_MATCH);
+
+        for (String keyword : keywords) {
+            String folded = fold(keyword.trim());
+            if (folded.isEmpty()) {
+                continue;
+            }
+            int node = 0;
+            for (int i = 0; i < folded.length(); i++) {
+                Integer next = children.get(node).get(folded.charAt(i));
+                if (next == null) {
+                    next = children.size();
+                    children.get(node).put(folded.charAt(i), next);
+                    children.add(new TreeMap<>());
+                    ends.add(NO_MATCH);
+                }
+                node = next;
+            }
+            if (ends.get(node) == NO_MATCH) {
+                ends.set(node, kept.size());
+                kept.add(folded);
+            }
+        }
+
+        int nodeCount = children.size();
+        int[] edgeStart = new int[nodeCount];
+        int[] edgeEnd = new int[nodeCount];
+        char[] labels = new char[nodeCount - 1];
+        int[] targets = new int[nodeCount - 1];
+        int edge = 0;
+        for (int node = 0; node < nodeCount; node++) {
+            edgeStart[node] = edge;
+            for (Map.Entry<Character, Integer> entry : children.get(node).entrySet()) {
+                labels[edge] = entry.getKey();
+                targets[edge] = entry.getValue();
+                edge++;
+            }
+            edgeEnd[node] = edge;
+        }
+
+        // Failure links breadth first, so a node's suffix is always done before the node
+        int[] fail = new int[nodeCount];
+        int[] output = new int[nodeCount];
+        output[0] = NO_MATCH;
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int e = edgeStart[0]; e < edgeEnd[0]; e++) {
+            fail[targets[e]] = 0;
+            output[targets[e]] = ends.get(targets[e]);
+            queue.add(targets[e]);
+        }
+        KeywordAutomaton partial = new KeywordAutomaton(null, edgeStart, edgeEnd, labels, targets, fail, output);
+        while (!queue.isEmpty()) {
+            int node = queue.poll();
+            for (int e = edgeStart[node]; e < edgeEnd[node]; e++) {
+                int child = targets[e];
+                fail[child] = partial.step(fail[node], labels[e]);
+                int own = ends.get(child);
+                output[child] = own != NO_MATCH ? own : output[fail[child]];
+                queue.add(child);
+            }
+        }
+
+        return new KeywordAutomaton(kept.toArray(new String[0]), edgeStart, edgeEnd, labels, targets, fail, output);
+    }
+
+    boolean isEmpty() {
+        return keywords.length == 0;
+    }
+
+    int size() {
+        return keywords.length;
+    }
+
+    String keyword(int index) {
+        return keywords[index];
+    }
+
+    /**
+     * Index of the first keyword found in the text, or NO_MATCH
+     */
+    int find(CharSequence text) {
+        if (text == null || keywords.length == 0) {
+            return NO_MATCH;
+        }
+        int node = 0;
+        for (int i = 0; i < text.length(); i++) {
+            node = step(node, Character.toLowerCase(text.charAt(i)));
+            if (output[node] != NO_MATCH) {
+                return output[node];
+            }
+        }
+        return NO_MATCH;
+    }
+
+    private int step(int node, char c) {
+        while (true) {
+            int next = child(node, c);
+            if (next >= 0) {
+                return next;
+            }
+            if (node == 0) {
+                return 0;
+            }
+            node = fail[node];
+        }
+    }
+
+    private int child(int node, char c) {
+        int lo = edgeStart[node];
+        int hi = edgeEnd[node] - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            char label = labels[mid];
+            if (label < c) {
+                lo = mid + 1;
+            } else if (label > c) {
+                hi = mid - 1;
+            } else {
+                return targets[mid];
+            }
+        }
+        return -1;
+    }
+
+    // Per-char lowercase, the same folding find() applies to the text
+    private static String fold(String keyword) {
+        StringBuilder folded = new StringBuilder(keyword.length());
+        for (int i = 0; i < keyword.length(); i++) {
+            folded.append(Character.toLowerCase(keyword.charAt(i)));
+        }
+        return folded.toString();
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.sssshhift.features.smartauto;
+
+import com.example.sssshhift.calendar.CalendarInstance;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A block of matching calendar instances the phone stays silent through. It is keyed by its
+ * first instance, so the same block keeps its key while later instances are added to it.
+ */
+public final class SilenceWindow {
+    private final long eventId;
+    private final long start;
+    private long end;
+    private int instanceCount;
+
+    private SilenceWindow(long eventId, long start, long end) {
+        this.eventId = eventId;
+        this.start = start;
+        this.end = end;
+        this.instanceCount = 1;
+    }
+
+    /**
+     * Sweep the instances in begin order, merging every instance that starts at most gapMs after
+     * the current block ends into that block
+     * @return disjoint windows in start order
+     */
+    public static List<SilenceWindow> merge(List<CalendarInstance> instances, long gapMs) {
+        List<CalendarInstance> sorted = new ArrayList<>(instances);
+        Collections.sort(sorted, new Comparator<CalendarInstance>() {
+            @Override
+            public int compare(CalendarInstance a, CalendarInstance b) {
+                return Long.compare(a.getBegin(), b.getBegin());
+            }
+        });
+
+        List<SilenceWindow> windows = new ArrayList<>();
+        SilenceWindow current = null;
+        for (CalendarInstance instance : sorted) {
+            if (current != null && instance.getBegin() <= current.end + gapMs) {
+                current.end = Math.max(current.end, instance.getEnd());
+                current.instanceCount++;
+            } else {
+                current = new SilenceWindow(instance.getEventId(), instance.getBegin(), instance.getEnd());
+                windows.add(current);
+            }
+        }
+        return windows;
+    }
+
+    // Event id of the first instance
+    public long getEventId() { return eventId; }
+
+    public long getStart() { return start; }
+
+    public long getEnd() { return end; }
+
+    public int getInstanceCount() { return instanceCount; }
+}
@@ -7,178 +7,201 @@ import android.content.Context;
 import android.content.Intent;
 import android.content.SharedPreferences;
 import android.media.AudioManager;
-import android.os.Build;
-import android.provider.Settings;
 import android.util.Log;
 import androidx.preference.PreferenceManager;
 
+import com.example.sssshhift.engine.ProfileEngine;
+import com.example.sssshhift.engine.RingerActuator;
+import com.example.sssshhift.engine.TriggerEvent;
+import com.example.sssshhift.features.smartauto.data.SmartAutoDatabase;
+import com.example.sssshhift.features.smartauto.data.SmartAutoEvent;
+import com.example.sssshhift.features.smartauto.data.SmartAutoEventDao;
+import com.example.sssshhift.scheduler.Transition;
+import com.example.sssshhift.scheduler.TransitionScheduler;
+
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 public class SmartAutoAlarmManager {
     private static final String TAG = "SmartAutoAlarmManager";
-    private static final String PREF_PREVIOUS_RINGER_MODE = "previous_ringer_mode_";
-    private static final String PREF_ACTIVE_EVENTS = "active_calendar_events";
-    private static final String PREF_EVENT_END_TIME = "event_end_time_";
-    private static final int REVERT_BUFFER_TIME = 2 * 60 * 1000; // 2 minutes buffer
 
-    /**
-     * Get the set of active calendar events
-     * @param context Application context
-     * @return Set of active event keys in format "eventStart_eventEnd"
-     */
-    public static Set<String> getActiveEvents(Context context) {
-        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
-        return new HashSet<>(prefs.getStringSet(PREF_ACTIVE_EVENTS, new HashSet<>()));
-    }
+    // Ended events are kept this long so a late revert still finds the saved mode
+    private static final long PRUNE_GRACE_MS = 24 * 60 * 60 * 1000L;
+
+    // Event state is read and written on one thread, in the order changes arrive
+    private static final ExecutorService STATE_EXECUTOR = Executors.newSingleThreadExecutor();
+    // An edge waits for its ringer change, plus any edge queued before it on the state thread
+    private static final long EDGE_TIMEOUT_MS = 2 * RingerActuator.CONFIRM_TIMEOUT_MS;
 
     /**
-     * Update the set of active calendar events
-     * @param context Application context
-     * @param activeEvents Updated set of active events
+     * Drop state of events that have ended
      */
-    public static void updateActiveEvents(Context context, Set<String> activeEvents) {
-        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
-        prefs.edit().putStringSet(PREF_ACTIVE_EVENTS, activeEvents).apply();
+    public static void pruneEnded(Context context) {
+        STATE_EXECUTOR.execute(() -> {
+            int removed = dao(context).deleteEndedBefore(System.currentTimeMillis() - PRUNE_GRACE_MS);
+            if (removed > 0) {
+                Log.d(TAG, "Cleaned up " + removed + " expired events");
+            }
+        });
     }
 
     /**
-     * Clean up the stored ringer mode preference for a specific event
-     * @param context Application context
-     * @param eventStartTime Event start time in milliseconds
+     * Replace the scheduled blocks with the given ones. Each block gets one silence edge and one
+     * revert edge, whatever the number of events merged into it. Blocks that disappeared are
+     * dropped unless they already silenced the phone, those still revert at their end.
      */
-    public static void cleanupRingerModePreference(Context context, long eventStartTime) {
-        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
-        prefs.edit()
-            .remove(PREF_PREVIOUS_RINGER_MODE + eventStartTime)
-            .remove(PREF_EVENT_END_TIME + eventStartTime)
-            .apply();
-        Log.d(TAG, "Cleaned up ringer mode preference for event at: " + new Date(eventStartTime));
-    }
-
-    public static void scheduleRingerModeChange(Context context, long eventStart, long eventEnd) {
-        synchronized (SmartAutoAlarmManager.class) {
-            Log.d(TAG, "Scheduling ringer mode change for event: " + new Date(eventStart) + " to " + new Date(eventEnd));
-
-            AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
-            if (alarmManager == null) {
-                Log.e(TAG, "AlarmManager not available");
-                return;
-            }
-
+    public static void scheduleWindows(Context context, List<SilenceWindow> windows) {
+        STATE_EXECUTOR.execute(() -> {
             SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
             int preEventOffset = prefs.getInt("auto_mode_pre_event_offset", 5);
             boolean revertAfterEvent = prefs.getBoolean("auto_mode_revert_after_event", true);
 
-            // Get current active events
-            Set<String> activeEvents = getActiveEvents(context);
-            String eventKey = eventStart + "_" + eventEnd;
+            TransitionScheduler scheduler = TransitionScheduler.getInstance(context);
+            SmartAutoEventDao dao = dao(context);
 
-            // Get current time and calculate silent mode time
-            long currentTime = System.currentTimeMillis();
-            long silentTime = eventStart - (preEventOffset * 60 * 1000);
-
-            // Cancel any existing alarms for this event
-            cancelScheduledChanges(context, eventStart);
-
-            // Store event end time
-            prefs.edit().putLong(PREF_EVENT_END_TIME + eventStart, eventEnd).apply();
-
-            // Add event to active events
-            activeEvents.add(eventKey);
-            updateActiveEvents(context, activeEvents);
-
-            // Schedule silent mode activation if we haven't passed the start time
-            if (silentTime > currentTime) {
-                scheduleAlarm(context, silentTime, true, eventStart, "ACTIVATE_SILENT");
-                Log.d(TAG, "Scheduled silent mode activation for: " + new Date(silentTime));
-            } else if (currentTime < eventEnd) {
-                // If we're between start and end time, activate silent mode immediately
-                changeRingerMode(context, true, eventStart);
-                Log.d(TAG, "Activated silent mode immediately");
+            Set<String> targets = new HashSet<>();
+            for (SilenceWindow window : windows) {
+                targets.add(targetFor(window.getEventId(), window.getStart()));
             }
+            dropStaleWindows(context, scheduler, dao, targets);
 
-            // Schedule multiple revert alarms for redundancy
-            if (revertAfterEvent && currentTime < eventEnd) {
-                // Schedule primary revert alarm at event end
-                scheduleAlarm(context, eventEnd, false, eventStart, "PRIMARY_REVERT");
-                Log.d(TAG, "Scheduled primary revert alarm for: " + new Date(eventEnd));
+            long currentTime = System.currentTimeMillis();
+            List<Transition> transitions = new ArrayList<>();
+            for (SilenceWindow window : windows) {
+                long eventId = window.getEventId();
+                long start = window.getStart();
+                long end = window.getEnd();
+                long silentTime = start - (preEventOffset * 60 * 1000L);
+                Log.d(TAG, "Scheduling block of " + window.getInstanceCount() + " events: "
+                        + new Date(start) + " to " + new Date(end));
+
+                dao.track(eventId, start, end);
 
-                // Schedule backup revert alarms
-                scheduleAlarm(context, eventEnd + 60000, false, eventStart, "BACKUP_REVERT_1");
-                scheduleAlarm(context, eventEnd + 120000, false, eventStart, "BACKUP_REVERT_2");
-                scheduleAlarm(context, eventEnd + 300000, false, eventStart, "BACKUP_REVERT_3");
-                Log.d(TAG, "Scheduled backup revert alarms");
+                // One edge per direction on the shared timeline, the scheduler re-arms and catches up
+                String target = targetFor(eventId, start);
+                if (silentTime > currentTime) {
+                    transitions.add(new Transition(Transition.SOURCE_SMART_AUTO, target, null, true,
+                            silentTime, AudioManager.RINGER_MODE_SILENT, end, false));
+                } else if (currentTime < end) {
+                    // If we're inside the block, activate silent mode immediately (once)
+                    changeRingerMode(context, true, eventId, start, end);
+                }
 
-                // Schedule a final cleanup check
-                scheduleAlarm(context, eventEnd + REVERT_BUFFER_TIME, false, eventStart, "FINAL_CLEANUP");
+                if (revertAfterEvent && currentTime < end) {
+                    transitions.add(new Transition(Transition.SOURCE_SMART_AUTO, target, null, false,
+                            end, Transition.NO_RINGER_MODE, end, false));
+                }
+            }
+
+            // Same source and target replace the edges of the previous run
+            scheduler.scheduleAll(transitions);
+            Log.d(TAG, "Scheduled " + windows.size() + " silence blocks");
+        });
+    }
+
+    // Pending blocks missing from the new set, e.g. their events were deleted or merged into another
+    private static void dropStaleWindows(Context context, TransitionScheduler scheduler, SmartAutoEventDao dao,
+                                         Set<String> targets) {
+        Set<String> seen = new HashSet<>();
+        for (Transition transition : scheduler.getPending()) {
+            String target = transition.getTarget();
+            if (!Transition.SOURCE_SMART_AUTO.equals(transition.getSource())
+                    || targets.contains(target) || !seen.add(target)) {
+                continue;
+            }
+            long eventId = parseEventId(target);
+            long start = parseEventStart(target);
+            SmartAutoEvent event = dao.get(eventId, start);
+            if (event == null || !event.isSilenced()) {
+                cancelScheduledChanges(context, eventId, start);
+                dao.delete(eventId, start);
+                Log.d(TAG, "Dropped stale block " + target);
             }
         }
     }
 
-    private static void scheduleAlarm(Context context, long triggerTime, boolean toSilent, long eventStart, String type) {
-        AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
-        if (alarmManager == null) return;
+    /**
+     * Apply a smart-auto edge dispatched by the transition scheduler
+     */
+    public static void onTransition(Context context, String target, long eventEnd, boolean toSilent) {
+        long eventId = parseEventId(target);
+        long eventStart = parseEventStart(target);
+        Log.d(TAG, String.format("Transition for event %d at %d, toSilent=%b", eventId, eventStart, toSilent));
+        onEdge(context, eventId, eventStart, eventEnd, toSilent);
+    }
 
-        Intent intent = new Intent(context, SmartAutoReceiver.class);
-        intent.putExtra("to_silent", toSilent);
-        intent.putExtra("event_start", eventStart);
-        intent.putExtra("trigger_time", triggerTime);
-        intent.putExtra("alarm_type", type);
-        
-        // Make the intent unique for each alarm type
-        String action = "com.example.sssshhift.SMART_AUTO_" + type + "_" + eventStart + "_" + triggerTime;
-        intent.setAction(action);
-        
-        // Add flags to ensure delivery
-        intent.addFlags(Intent.FLAG_INCLUDE_STOPPED_PACKAGES);
-        intent.addFlags(Intent.FLAG_RECEIVER_FOREGROUND);
-
-        // Create unique request code
-        int requestCode = (int) ((eventStart + triggerTime + type.hashCode()) % Integer.MAX_VALUE);
-
-        PendingIntent pendingIntent = PendingIntent.getBroadcast(
-                context,
-                requestCode,
-                intent,
-                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE
-        );
-
-        // Schedule with exact timing and wake up the device
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
-            alarmManager.setExactAndAllowWhileIdle(AlarmManager.RTC_WAKEUP, triggerTime, pendingIntent);
-        } else {
-            alarmManager.setExact(AlarmManager.RTC_WAKEUP, triggerTime, pendingIntent);
-        }
+    /**
+     * Apply an edge for an instance on the state thread and wait for it, so the dispatching
+     * receiver's wake lock covers the change. Silencing after the end is skipped.
+     */
+    private static void onEdge(Context context, long eventId, long eventStart, long eventEnd, boolean toSilent) {
+        awaitOnStateThread(STATE_EXECUTOR.submit(() -> {
+            if (!toSilent || System.currentTimeMillis() < eventEnd) {
+                changeRingerMode(context, toSilent, eventId, eventStart, eventEnd);
+            }
+        }));
+    }
 
-        Log.d(TAG, String.format("Scheduled %s alarm for %s (Request code: %d)", type, new Date(triggerTime), requestCode));
+    /**
+     * End of an instance tracked by an earlier version, which only knew its start. Waits like
+     * {@link #onEdge}.
+     */
+    static void onLegacyAlarm(Context context, long eventStart, boolean toSilent) {
+        awaitOnStateThread(STATE_EXECUTOR.submit(() -> {
+            SmartAutoEvent event = dao(context).get(SmartAutoEvent.LEGACY_EVENT_ID, eventStart);
+            long eventEnd = event != null ? event.getInstanceEnd() : 0;
+            if (toSilent == (System.currentTimeMillis() < eventEnd)) {
+                changeRingerMode(context, toSilent, SmartAutoEvent.LEGACY_EVENT_ID, eventStart, eventEnd);
+            }
+        }));
     }
 
-    public static void changeRingerMode(Context context, boolean toSilent, long eventStart) {
+    private static void awaitOnStateThread(Future<?> work) {
+        try {
+            work.get(EDGE_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (TimeoutException e) {
+            Log.w(TAG, "Edge not applied within " + EDGE_TIMEOUT_MS + " ms");
+        } catch (Exception e) {
+            Log.e(TAG, "Error applying edge: " + e.getMessage());
+        }
+    }
+
+    // Called on the state thread
+    private static void changeRingerMode(Context context, boolean toSilent, long eventId, long eventStart, long eventEnd) {
         AudioManager audioManager = (AudioManager) context.getSystemService(Context.AUDIO_SERVICE);
         if (audioManager == null) return;
 
-        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
-        String prefKey = PREF_PREVIOUS_RINGER_MODE + eventStart;
+        SmartAutoEventDao dao = dao(context);
+        long currentTime = System.currentTimeMillis();
 
         try {
             if (toSilent) {
                 // Store current ringer mode before changing to silent
                 int currentMode = audioManager.getRingerMode();
-                prefs.edit().putInt(prefKey, currentMode).apply();
-                audioManager.setRingerMode(AudioManager.RINGER_MODE_SILENT);
+                if (!dao.beginSilence(eventId, eventStart, eventEnd, currentMode, currentTime)) {
+                    Log.d(TAG, "Event " + eventId + " already silenced the phone");
+                    return;
+                }
+                ProfileEngine.getInstance(context).handle(TriggerEvent.forRingerMode(
+                        TriggerEvent.SOURCE_SMART_AUTO, null, AudioManager.RINGER_MODE_SILENT, true));
                 Log.d(TAG, "Changed to silent mode, stored previous mode: " + currentMode);
             } else {
-                // Check if we should actually revert (no other active events)
-                if (shouldRevertRingerMode(context, eventStart)) {
-                    // Restore previous ringer mode
-                    int previousMode = prefs.getInt(prefKey, AudioManager.RINGER_MODE_NORMAL);
-                    audioManager.setRingerMode(previousMode);
+                // Only revert when no other event is still silencing the phone
+                int previousMode = dao.finish(eventId, eventStart, currentTime);
+                if (previousMode != SmartAutoEventDao.NO_RINGER_MODE) {
+                    ProfileEngine.getInstance(context).handle(TriggerEvent.forRingerMode(
+                            TriggerEvent.SOURCE_SMART_AUTO, null, previousMode, false));
                     Log.d(TAG, "Reverted to previous mode: " + previousMode);
-                    
-                    // Clean up the preference
-                    cleanupRingerModePreference(context, eventStart);
                 } else {
                     Log.d(TAG, "Skipping revert as other events are still active");
                 }
@@ -188,44 +211,34 @@ public class SmartAutoAlarmManager {
         }
     }
 
-    private static boolean shouldRevertRingerMode(Context context, long eventStart) {
-        Set<String> activeEvents = getActiveEvents(context);
-        long currentTime = System.currentTimeMillis();
-        
-        // Remove this event from active events
-        String eventToRemove = null;
-        for (String eventKey : activeEvents) {
-            if (eventKey.startsWith(eventStart + "_")) {
-                eventToRemove = eventKey;
-                break;
-            }
-        }
-        if (eventToRemove != null) {
-            activeEvents.remove(eventToRemove);
-            updateActiveEvents(context, activeEvents);
-        }
+    private static SmartAutoEventDao dao(Context context) {
+        return SmartAutoDatabase.getDatabase(context).eventDao();
+    }
 
-        // Check remaining active events
-        for (String eventKey : activeEvents) {
-            try {
-                String[] parts = eventKey.split("_");
-                long eventEnd = Long.parseLong(parts[1]);
-                if (eventEnd > currentTime) {
-                    return false; // Found another active event
-                }
-            } catch (Exception e) {
-                Log.e(TAG, "Error parsing event key: " + eventKey);
-            }
-        }
-        
-        return true;
+    private static String targetFor(long eventId, long eventStart) {
+        return eventId + "_" + eventStart;
+    }
+
+    // Targets are "<eventId>_<start>", earlier versions used just "<start>"
+    private static long parseEventId(String target) {
+        int separator = target.lastIndexOf('_');
+        return separator > 0 ? Long.parseLong(target.substring(0, separator)) : SmartAutoEvent.LEGACY_EVENT_ID;
     }
 
-    public static void cancelScheduledChanges(Context context, long eventStart) {
+    private static long parseEventStart(String target) {
+        return Long.parseLong(target.substring(target.lastIndexOf('_') + 1));
+    }
+
+    public static void cancelScheduledChanges(Context context, long eventId, long eventStart) {
+        TransitionScheduler scheduler = TransitionScheduler.getInstance(context);
+        scheduler.cancel(Transition.SOURCE_SMART_AUTO, targetFor(eventId, eventStart));
+        // Edges scheduled by earlier versions, keyed by start only
+        scheduler.cancel(Transition.SOURCE_SMART_AUTO, String.valueOf(eventStart));
+
         AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
         if (alarmManager == null) return;
 
-        // Cancel all possible alarm types
+        // Cancel alarms armed per type by earlier versions
         String[] types = {"ACTIVATE_SILENT", "PRIMARY_REVERT", "BACKUP_REVERT_1", 
                          "BACKUP_REVERT_2", "BACKUP_REVERT_3", "FINAL_CLEANUP"};
         
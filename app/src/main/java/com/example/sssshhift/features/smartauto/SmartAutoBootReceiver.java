@@ -1,6 +1,5 @@
 package com.example.sssshhift.features.smartauto;
 
-import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 import android.content.SharedPreferences;
@@ -10,14 +9,15 @@ import androidx.preference.PreferenceManager;
 
 import java.util.Arrays;
 import java.util.HashSet;
-import java.util.Set;
 
-public class SmartAutoBootReceiver extends BroadcastReceiver {
+import com.example.sssshhift.receivers.AsyncReceiver;
+
+public class SmartAutoBootReceiver extends AsyncReceiver {
     private static final String TAG = "SmartAutoBootReceiver";
     private static final String PREF_LAST_BOOT_TIME = "last_boot_time";
 
     @Override
-    public void onReceive(Context context, Intent intent) {
+    protected void onReceiveAsync(Context context, Intent intent) {
         if (intent == null || intent.getAction() == null) {
             Log.e(TAG, "Received null intent or action");
             return;
@@ -69,8 +69,8 @@ public class SmartAutoBootReceiver extends BroadcastReceiver {
             // Cancel any existing work first
             SmartAutoWorker.cancelWork(context);
 
-            // Clean up any stale alarms
-            cleanupStaleAlarms(context);
+            // Clean up state of events that ended while the device was off
+            SmartAutoAlarmManager.pruneEnded(context);
 
             // Schedule new work
             SmartAutoWorker.scheduleWork(context);
@@ -81,43 +81,12 @@ public class SmartAutoBootReceiver extends BroadcastReceiver {
         }
     }
 
-    private void cleanupStaleAlarms(Context context) {
-        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
-        long currentTime = System.currentTimeMillis();
-
-        // Clean up active events
-        Set<String> activeEvents = SmartAutoAlarmManager.getActiveEvents(context);
-        if (!activeEvents.isEmpty()) {
-            Set<String> updatedEvents = new HashSet<>();
-            
-            for (String eventKey : activeEvents) {
-                try {
-                    String[] parts = eventKey.split("_");
-                    long eventEnd = Long.parseLong(parts[1]);
-                    if (eventEnd >= currentTime) {
-                        updatedEvents.add(eventKey);
-                    } else {
-                        Log.d(TAG, "Removing stale event: " + eventKey);
-                        // Clean up associated preferences
-                        SmartAutoAlarmManager.cleanupRingerModePreference(context, Long.parseLong(parts[0]));
-                    }
-                } catch (Exception e) {
-                    Log.e(TAG, "Error parsing event key: " + eventKey, e);
-                }
-            }
-
-            if (activeEvents.size() != updatedEvents.size()) {
-                Log.d(TAG, "Cleaned up " + (activeEvents.size() - updatedEvents.size()) + " stale events");
-                SmartAutoAlarmManager.updateActiveEvents(context, updatedEvents);
-            }
-        }
-    }
-
     private void resetPreferences(SharedPreferences prefs) {
         SharedPreferences.Editor editor = prefs.edit();
         editor.putBoolean("auto_mode_enabled", false)
               .putStringSet("auto_mode_keywords", new HashSet<>(Arrays.asList("meeting", "team")))
               .putInt("auto_mode_pre_event_offset", 5)
+              .putInt("auto_mode_merge_gap", 5)
               .putBoolean("auto_mode_revert_after_event", true)
               .putBoolean("auto_mode_busy_events_only", true)
               .apply();
@@ -0,0 +1,46 @@
+package com.example.sssshhift.features.smartauto;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+import androidx.preference.PreferenceManager;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Holds the compiled {@link EventRuleMatcher} for the process. It is compiled on first use and
+ * again only when the settings screen saves, never per worker run or per event.
+ */
+public final class SmartAutoRules {
+    private static final String TAG = "SmartAutoRules";
+    private static final String PREF_KEYWORDS = "auto_mode_keywords";
+    private static final String PREF_BUSY_EVENTS_ONLY = "auto_mode_busy_events_only";
+
+    private static volatile EventRuleMatcher matcher;
+
+    private SmartAutoRules() {
+    }
+
+    public static EventRuleMatcher get(Context context) {
+        EventRuleMatcher current = matcher;
+        return current != null ? current : rebuild(context);
+    }
+
+    /**
+     * Compile the saved rules again, called after the settings changed
+     */
+    public static synchronized EventRuleMatcher rebuild(Context context) {
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
+        Set<String> rules = new HashSet<>(prefs.getStringSet(PREF_KEYWORDS, new HashSet<>()));
+        boolean busyEventsOnly = prefs.getBoolean(PREF_BUSY_EVENTS_ONLY, true);
+
+        EventRuleMatcher compiled = EventRuleMatcher.fromRules(rules, busyEventsOnly);
+        for (String rule : compiled.getInvalidRules()) {
+            Log.w(TAG, "Ignoring invalid rule: " + rule);
+        }
+        matcher = compiled;
+        Log.d(TAG, "Compiled " + rules.size() + " smart auto rules");
+        return compiled;
+    }
+}
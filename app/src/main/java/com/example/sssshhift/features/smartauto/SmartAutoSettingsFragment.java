@@ -35,6 +35,7 @@ public class SmartAutoSettingsFragment extends Fragment {
     private static final String PREF_AUTO_MODE_ENABLED = "auto_mode_enabled";
     private static final String PREF_KEYWORDS = "auto_mode_keywords";
     private static final String PREF_PRE_EVENT_OFFSET = "auto_mode_pre_event_offset";
+    private static final String PREF_MERGE_GAP = "auto_mode_merge_gap";
     private static final String PREF_REVERT_AFTER_EVENT = "auto_mode_revert_after_event";
     private static final String PREF_BUSY_EVENTS_ONLY = "auto_mode_busy_events_only";
 
@@ -43,6 +44,7 @@ public class SmartAutoSettingsFragment extends Fragment {
     private ChipGroup chipGroupKeywords;
     private TextInputEditText editTextNewKeyword;
     private TextInputEditText editTextPreEventTime;
+    private TextInputEditText editTextMergeGap;
     private SwitchMaterial switchRevertAfterEvent;
     private SwitchMaterial switchBusyEventsOnly;
 
@@ -68,6 +70,7 @@ public class SmartAutoSettingsFragment extends Fragment {
         chipGroupKeywords = view.findViewById(R.id.chip_group_keywords);
         editTextNewKeyword = view.findViewById(R.id.edit_text_new_keyword);
         editTextPreEventTime = view.findViewById(R.id.edit_text_pre_event_time);
+        editTextMergeGap = view.findViewById(R.id.edit_text_merge_gap);
         switchRevertAfterEvent = view.findViewById(R.id.switch_revert_after_event);
         switchBusyEventsOnly = view.findViewById(R.id.switch_busy_events_only);
     }
@@ -80,6 +83,7 @@ public class SmartAutoSettingsFragment extends Fragment {
 
         // Load pre-event time
         editTextPreEventTime.setText(String.valueOf(prefs.getInt(PREF_PRE_EVENT_OFFSET, 5)));
+        editTextMergeGap.setText(String.valueOf(prefs.getInt(PREF_MERGE_GAP, 5)));
 
         // Load keywords
         Set<String> keywords = prefs.getStringSet(PREF_KEYWORDS, null);
@@ -133,11 +137,25 @@ public class SmartAutoSettingsFragment extends Fragment {
             }
         });
 
+        editTextMergeGap.setOnFocusChangeListener((v, hasFocus) -> {
+            if (!hasFocus) {
+                try {
+                    int minutes = Integer.parseInt(editTextMergeGap.getText().toString());
+                    prefs.edit().putInt(PREF_MERGE_GAP, minutes).apply();
+                } catch (NumberFormatException e) {
+                    editTextMergeGap.setText("5");
+                    prefs.edit().putInt(PREF_MERGE_GAP, 5).apply();
+                }
+            }
+        });
+
         switchRevertAfterEvent.setOnCheckedChangeListener((buttonView, isChecked) ->
             prefs.edit().putBoolean(PREF_REVERT_AFTER_EVENT, isChecked).apply());
 
-        switchBusyEventsOnly.setOnCheckedChangeListener((buttonView, isChecked) ->
-            prefs.edit().putBoolean(PREF_BUSY_EVENTS_ONLY, isChecked).apply());
+        switchBusyEventsOnly.setOnCheckedChangeListener((buttonView, isChecked) -> {
+            prefs.edit().putBoolean(PREF_BUSY_EVENTS_ONLY, isChecked).apply();
+            SmartAutoRules.rebuild(requireContext());
+        });
     }
 
     private void addKeywordChip(String keyword) {
@@ -173,6 +191,9 @@ public class SmartAutoSettingsFragment extends Fragment {
         }
         prefs.edit().putStringSet(PREF_KEYWORDS, keywords).apply();
         Log.d("SmartAutoSettings", "Saved keywords: " + keywords);
+
+        // The worker matches against the compiled rules, not the raw set
+        SmartAutoRules.rebuild(requireContext());
     }
 
     private boolean checkAndRequestPermissions() {
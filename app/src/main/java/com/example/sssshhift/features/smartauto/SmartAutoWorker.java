@@ -1,18 +1,12 @@
 package com.example.sssshhift.features.smartauto;
 
 import android.Manifest;
-import android.annotation.SuppressLint;
 import android.app.AlarmManager;
 import android.app.NotificationManager;
-import android.content.ContentResolver;
-import android.content.ContentUris;
 import android.content.Context;
 import android.content.SharedPreferences;
 import android.content.pm.PackageManager;
-import android.database.Cursor;
-import android.net.Uri;
 import android.os.Build;
-import android.provider.CalendarContract;
 import android.provider.Settings;
 import android.util.Log;
 import androidx.annotation.NonNull;
@@ -27,7 +21,13 @@ import androidx.work.PeriodicWorkRequest;
 import androidx.work.WorkManager;
 import androidx.work.Worker;
 import androidx.work.WorkerParameters;
+
+import com.example.sssshhift.calendar.CalendarInstance;
+import com.example.sssshhift.calendar.CalendarSnapshot;
+
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 import java.util.Date;
@@ -76,6 +76,7 @@ public class SmartAutoWorker extends Worker {
             // Get current settings
             Set<String> keywords = prefs.getStringSet("auto_mode_keywords", new HashSet<>());
             int preEventOffset = prefs.getInt("auto_mode_pre_event_offset", 5);
+            int mergeGap = prefs.getInt("auto_mode_merge_gap", 5);
             boolean revertAfterEvent = prefs.getBoolean("auto_mode_revert_after_event", true);
             boolean busyEventsOnly = prefs.getBoolean("auto_mode_busy_events_only", true);
             
@@ -89,7 +90,7 @@ public class SmartAutoWorker extends Worker {
             long windowStart = now;
             long windowEnd = now + TimeUnit.HOURS.toMillis(24);
 
-            checkUpcomingEvents(context, windowStart, windowEnd, keywords, preEventOffset, busyEventsOnly);
+            checkUpcomingEvents(context, windowStart, windowEnd, SmartAutoRules.get(context), preEventOffset, mergeGap);
             
             // Schedule next check
             scheduleNextCheck(context);
@@ -110,143 +111,42 @@ public class SmartAutoWorker extends Worker {
         }
     }
 
-    private void checkUpcomingEvents(Context context, long windowStart, long windowEnd, Set<String> keywords, int preEventOffset, boolean busyEventsOnly) {
+    private void checkUpcomingEvents(Context context, long windowStart, long windowEnd, EventRuleMatcher matcher,
+                                     int preEventOffset, int mergeGap) {
         Log.d(TAG, "Starting calendar check with settings:");
-        Log.d(TAG, "Keywords: " + keywords);
         Log.d(TAG, "Pre-event offset: " + preEventOffset + " minutes");
-        Log.d(TAG, "Busy events only: " + busyEventsOnly);
+        Log.d(TAG, "Merge gap: " + mergeGap + " minutes");
 
         Log.d(TAG, "Checking events between: " + new Date(windowStart) + " and " + new Date(windowEnd));
 
         // Clean up old events first
-        cleanupOldEvents(context);
-
-        ContentResolver contentResolver = context.getContentResolver();
-        Uri.Builder builder = CalendarContract.Instances.CONTENT_URI.buildUpon();
-        ContentUris.appendId(builder, windowStart);
-        ContentUris.appendId(builder, windowEnd);
-
-        String[] projection = new String[]{
-                CalendarContract.Instances.EVENT_ID,
-                CalendarContract.Instances.TITLE,
-                CalendarContract.Instances.BEGIN,
-                CalendarContract.Instances.END,
-                CalendarContract.Instances.AVAILABILITY,
-                CalendarContract.Instances.CALENDAR_ID
-        };
-
-        // Query calendar events
-        try (Cursor cursor = contentResolver.query(builder.build(), projection, null, null, null)) {
-            if (cursor != null && cursor.moveToFirst()) {
-                Log.d(TAG, "Found calendar events to check");
-                int eventCount = cursor.getCount();
-                Log.d(TAG, "Total events found: " + eventCount);
-
-                do {
-                    @SuppressLint("Range") String title = cursor.getString(cursor.getColumnIndex(CalendarContract.Instances.TITLE));
-                    @SuppressLint("Range") long begin = cursor.getLong(cursor.getColumnIndex(CalendarContract.Instances.BEGIN));
-                    @SuppressLint("Range") long end = cursor.getLong(cursor.getColumnIndex(CalendarContract.Instances.END));
-                    @SuppressLint("Range") int availability = cursor.getInt(cursor.getColumnIndex(CalendarContract.Instances.AVAILABILITY));
-                    @SuppressLint("Range") long calendarId = cursor.getLong(cursor.getColumnIndex(CalendarContract.Instances.CALENDAR_ID));
-
-                    Log.d(TAG, "Checking event: " + title);
-                    Log.d(TAG, "Event details - Start: " + new Date(begin) + 
-                               ", End: " + new Date(end) + 
-                               ", Calendar ID: " + calendarId + 
-                               ", Availability: " + availability);
-
-                    if (isEventMatch(title, availability, busyEventsOnly, keywords)) {
-                        Log.d(TAG, "Event matches criteria, scheduling ringer mode change");
-                        scheduleRingerModeChange(context, begin, end);
-                    } else {
-                        Log.d(TAG, "Event does not match criteria - " +
-                                  "Title match: " + (title != null && containsKeyword(title, keywords)) +
-                                  ", Busy check: " + (!busyEventsOnly || availability == CalendarContract.Events.AVAILABILITY_BUSY));
-                    }
-                } while (cursor.moveToNext());
-            } else {
-                Log.d(TAG, "No calendar events found in the time window");
-            }
-        } catch (Exception e) {
-            Log.e(TAG, "Error querying calendar", e);
-            throw e;
-        }
-    }
-
-    private void cleanupOldEvents(Context context) {
-        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
-        Set<String> activeEvents = SmartAutoAlarmManager.getActiveEvents(context);
-        Set<String> updatedEvents = new HashSet<>();
-        long currentTime = System.currentTimeMillis();
-
-        for (String eventKey : activeEvents) {
-            try {
-                String[] parts = eventKey.split("_");
-                long eventEnd = Long.parseLong(parts[1]);
-                if (eventEnd >= currentTime) {
-                    updatedEvents.add(eventKey);
-                } else {
-                    Log.d(TAG, "Removing expired event: " + eventKey);
-                    // Clean up any associated preferences
-                    SmartAutoAlarmManager.cleanupRingerModePreference(context, Long.parseLong(parts[0]));
+        SmartAutoAlarmManager.pruneEnded(context);
+
+        List<CalendarInstance> matching = new ArrayList<>();
+        if (matcher.isEmpty()) {
+            Log.d(TAG, "No rules defined, nothing to match");
+        } else {
+            // Served from the shared snapshot, no provider query per run
+            List<CalendarInstance> instances = CalendarSnapshot.getInstance(context).getOverlapping(windowStart, windowEnd);
+            Log.d(TAG, "Total events found: " + instances.size());
+
+            for (CalendarInstance instance : instances) {
+                String rule = matcher.findMatch(instance.getCalendarId(), instance.getAvailability(),
+                        instance.getTitle(), instance.getOrganizer(), instance.getLocation());
+                if (rule != null) {
+                    Log.d(TAG, "Event '" + instance.getTitle() + "' matched rule '" + rule + "'");
+                    matching.add(instance);
                 }
-            } catch (Exception e) {
-                Log.e(TAG, "Error parsing event key: " + eventKey, e);
             }
         }
 
-        if (activeEvents.size() != updatedEvents.size()) {
-            Log.d(TAG, "Cleaned up " + (activeEvents.size() - updatedEvents.size()) + " expired events");
-            SmartAutoAlarmManager.updateActiveEvents(context, updatedEvents);
-        }
-    }
-
-    private boolean containsKeyword(String title, Set<String> keywords) {
-        String titleLower = title.toLowerCase().trim();
-        for (String keyword : keywords) {
-            if (titleLower.contains(keyword.toLowerCase().trim())) {
-                return true;
-            }
-        }
-        return false;
-    }
-
-    private boolean isEventMatch(String title, int availability, boolean busyEventsOnly, Set<String> keywords) {
-        if (busyEventsOnly && availability != CalendarContract.Events.AVAILABILITY_BUSY) {
-            Log.d(TAG, "Event skipped: not marked as busy");
-            return false;
-        }
-
-        if (title == null) {
-            Log.d(TAG, "Event skipped: null title");
-            return false;
-        }
-
-        if (keywords == null || keywords.isEmpty()) {
-            Log.d(TAG, "Event skipped: no keywords defined");
-            return false;
-        }
-
-        String titleLower = title.toLowerCase().trim();
-        Log.d(TAG, "Checking title '" + titleLower + "' against keywords: " + keywords);
-
-        for (String keyword : keywords) {
-            String keywordLower = keyword.toLowerCase().trim();
-            if (titleLower.contains(keywordLower)) {
-                Log.d(TAG, "Event matched keyword: " + keyword);
-                return true;
-            }
-        }
-        
-        Log.d(TAG, "Event did not match any keywords");
-        return false;
-    }
+        // A gap shorter than the pre-event offset would be silenced early anyway, so it merges too
+        long gapMs = TimeUnit.MINUTES.toMillis(Math.max(mergeGap, preEventOffset));
+        List<SilenceWindow> windows = SilenceWindow.merge(matching, gapMs);
+        Log.d(TAG, "Merged " + matching.size() + " events into " + windows.size() + " silence blocks");
 
-    private void scheduleRingerModeChange(Context context, long eventStart, long eventEnd) {
-        Log.d(TAG, "Scheduling ringer mode change for event:");
-        Log.d(TAG, "Event start: " + new Date(eventStart));
-        Log.d(TAG, "Event end: " + new Date(eventEnd));
-        SmartAutoAlarmManager.scheduleRingerModeChange(context, eventStart, eventEnd);
+        // Also run with no blocks, so blocks whose events are gone get dropped
+        SmartAutoAlarmManager.scheduleWindows(context, windows);
     }
 
     private void scheduleNextCheck(Context context) {
@@ -0,0 +1,87 @@
+package com.example.sssshhift.features.smartauto.data;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+import androidx.annotation.NonNull;
+import androidx.preference.PreferenceManager;
+import androidx.room.Database;
+import androidx.room.Room;
+import androidx.room.RoomDatabase;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+import java.util.HashSet;
+import java.util.Set;
+
+@Database(entities = {SmartAutoEvent.class}, version = 1, exportSchema = false)
+public abstract class SmartAutoDatabase extends RoomDatabase {
+    private static final String TAG = "SmartAutoDatabase";
+    private static final String DATABASE_NAME = "smart_auto_database";
+
+    // Where earlier versions kept the same state, in default SharedPreferences
+    private static final String LEGACY_PREF_ACTIVE_EVENTS = "active_calendar_events";
+    private static final String LEGACY_PREF_PREVIOUS_RINGER_MODE = "previous_ringer_mode_";
+    private static final String LEGACY_PREF_EVENT_END_TIME = "event_end_time_";
+
+    private static volatile SmartAutoDatabase INSTANCE;
+
+    public abstract SmartAutoEventDao eventDao();
+
+    public static SmartAutoDatabase getDatabase(final Context context) {
+        if (INSTANCE == null) {
+            synchronized (SmartAutoDatabase.class) {
+                if (INSTANCE == null) {
+                    final Context appContext = context.getApplicationContext();
+                    INSTANCE = Room.databaseBuilder(appContext, SmartAutoDatabase.class, DATABASE_NAME)
+                            .addCallback(new Callback() {
+                                @Override
+                                public void onCreate(@NonNull SupportSQLiteDatabase db) {
+                                    importLegacyPreferences(appContext, db);
+                                }
+                            })
+                            .build();
+                    Log.d(TAG, "Database initialized successfully");
+                }
+            }
+        }
+        return INSTANCE;
+    }
+
+    // Runs once, when the table is created, then drops the preference keys
+    private static void importLegacyPreferences(Context context, SupportSQLiteDatabase db) {
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
+        Set<String> activeEvents = prefs.getStringSet(LEGACY_PREF_ACTIVE_EVENTS, null);
+        if (activeEvents == null) {
+            return;
+        }
+
+        SharedPreferences.Editor editor = prefs.edit().remove(LEGACY_PREF_ACTIVE_EVENTS);
+        int imported = 0;
+        for (String eventKey : new HashSet<>(activeEvents)) {
+            try {
+                String[] parts = eventKey.split("_");
+                long start = Long.parseLong(parts[0]);
+                long end = Long.parseLong(parts[1]);
+
+                ContentValues values = new ContentValues();
+                values.put("event_id", SmartAutoEvent.LEGACY_EVENT_ID);
+                values.put("instance_start", start);
+                values.put("instance_end", end);
+                if (prefs.contains(LEGACY_PREF_PREVIOUS_RINGER_MODE + start)) {
+                    values.put("previous_ringer_mode", prefs.getInt(LEGACY_PREF_PREVIOUS_RINGER_MODE + start, 0));
+                }
+                db.insert("smart_auto_events", SQLiteDatabase.CONFLICT_IGNORE, values);
+                imported++;
+
+                editor.remove(LEGACY_PREF_PREVIOUS_RINGER_MODE + start)
+                        .remove(LEGACY_PREF_EVENT_END_TIME + start);
+            } catch (Exception e) {
+                Log.e(TAG, "Error importing event key: " + eventKey, e);
+            }
+        }
+        editor.apply();
+        Log.d(TAG, "Imported " + imported + " events from preferences");
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.sssshhift.features.smartauto.data;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.Index;
+
+/**
+ * One calendar instance smart-auto acts on. The previous ringer mode is set once the instance
+ * silenced the phone, and is what gets restored when the last active instance ends.
+ */
+@Entity(tableName = "smart_auto_events",
+        primaryKeys = {"event_id", "instance_start"},
+        indices = {@Index(value = "instance_end", name = "index_smart_auto_events_end")})
+public class SmartAutoEvent {
+    // Instances tracked before event ids were stored
+    public static final long LEGACY_EVENT_ID = -1;
+
+    @ColumnInfo(name = "event_id")
+    private long eventId;
+
+    @ColumnInfo(name = "instance_start")
+    private long instanceStart;
+
+    @ColumnInfo(name = "instance_end")
+    private long instanceEnd;
+
+    @Nullable
+    @ColumnInfo(name = "previous_ringer_mode")
+    private Integer previousRingerMode;
+
+    public SmartAutoEvent(long eventId, long instanceStart, long instanceEnd, @Nullable Integer previousRingerMode) {
+        this.eventId = eventId;
+        this.instanceStart = instanceStart;
+        this.instanceEnd = instanceEnd;
+        this.previousRingerMode = previousRingerMode;
+    }
+
+    public long getEventId() { return eventId; }
+    public void setEventId(long eventId) { this.eventId = eventId; }
+
+    public long getInstanceStart() { return instanceStart; }
+    public void setInstanceStart(long instanceStart) { this.instanceStart = instanceStart; }
+
+    public long getInstanceEnd() { return instanceEnd; }
+    public void setInstanceEnd(long instanceEnd) { this.instanceEnd = instanceEnd; }
+
+    @Nullable
+    public Integer getPreviousRingerMode() { return previousRingerMode; }
+    public void setPreviousRingerMode(@Nullable Integer previousRingerMode) { this.previousRingerMode = previousRingerMode; }
+
+    public boolean isSilenced() {
+        return previousRingerMode != null;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return eventId + "_" + instanceStart;
+    }
+}
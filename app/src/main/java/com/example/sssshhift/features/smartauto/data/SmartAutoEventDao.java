@@ -0,0 +1,98 @@
+package com.example.sssshhift.features.smartauto.data;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+import androidx.room.Transaction;
+
+/**
+ * Smart-auto event state. Each public operation is one transaction, so overlapping events
+ * handled from different threads never see half an update.
+ */
+@Dao
+public abstract class SmartAutoEventDao {
+    public static final int NO_RINGER_MODE = -1;
+
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    public abstract long insertIfAbsent(SmartAutoEvent event);
+
+    @Query("SELECT * FROM smart_auto_events WHERE event_id = :eventId AND instance_start = :start")
+    public abstract SmartAutoEvent get(long eventId, long start);
+
+    @Query("UPDATE smart_auto_events SET instance_end = :end WHERE event_id = :eventId AND instance_start = :start")
+    public abstract int updateEnd(long eventId, long start, long end);
+
+    @Query("UPDATE smart_auto_events SET previous_ringer_mode = :mode "
+            + "WHERE event_id = :eventId AND instance_start = :start")
+    public abstract int updatePreviousRingerMode(long eventId, long start, int mode);
+
+    @Query("DELETE FROM smart_auto_events WHERE event_id = :eventId AND instance_start = :start")
+    public abstract int delete(long eventId, long start);
+
+    /**
+     * Drop instances that ended before the given time, a range delete on the end index
+     */
+    @Query("DELETE FROM smart_auto_events WHERE instance_end < :time")
+    public abstract int deleteEndedBefore(long time);
+
+    /**
+     * Whether another instance is still silencing the phone. Instances that have not started
+     * yet do not count, they save the mode again when they begin.
+     */
+    @Query("SELECT EXISTS(SELECT 1 FROM smart_auto_events WHERE instance_end > :now "
+            + "AND previous_ringer_mode IS NOT NULL AND NOT (event_id = :eventId AND instance_start = :start))")
+    public abstract boolean isOtherSilencing(long eventId, long start, long now);
+
+    // Mode saved by another instance that is still silencing the phone
+    @Query("SELECT previous_ringer_mode FROM smart_auto_events WHERE instance_end > :now "
+            + "AND previous_ringer_mode IS NOT NULL AND NOT (event_id = :eventId AND instance_start = :start) "
+            + "ORDER BY instance_start LIMIT 1")
+    public abstract Integer getInheritedRingerMode(long eventId, long start, long now);
+
+    /**
+     * Start tracking an instance, or move its end if it was already tracked
+     */
+    @Transaction
+    public void track(long eventId, long start, long end) {
+        if (insertIfAbsent(new SmartAutoEvent(eventId, start, end, null)) == -1) {
+            updateEnd(eventId, start, end);
+        }
+    }
+
+    /**
+     * Record that the instance silences the phone. An instance overlapping one that already
+     * silenced it inherits that one's saved mode, so the mode from before the first is restored.
+     * @return false if the instance had already silenced the phone
+     */
+    @Transaction
+    public boolean beginSilence(long eventId, long start, long end, int currentMode, long now) {
+        SmartAutoEvent event = get(eventId, start);
+        if (event != null && event.isSilenced()) {
+            return false;
+        }
+        Integer inherited = getInheritedRingerMode(eventId, start, now);
+        int mode = inherited != null ? inherited : currentMode;
+        if (event == null) {
+            insertIfAbsent(new SmartAutoEvent(eventId, start, end, mode));
+        } else {
+            updatePreviousRingerMode(eventId, start, mode);
+        }
+        return true;
+    }
+
+    /**
+     * Stop tracking the instance
+     * @return the mode to restore, or NO_RINGER_MODE if it never silenced the phone or another
+     * instance still does
+     */
+    @Transaction
+    public int finish(long eventId, long start, long now) {
+        SmartAutoEvent event = get(eventId, start);
+        delete(eventId, start);
+        if (event == null || !event.isSilenced() || isOtherSilencing(eventId, start, now)) {
+            return NO_RINGER_MODE;
+        }
+        return event.getPreviousRingerMode();
+    }
+}
@@ -1,10 +1,11 @@
 package com.example.sssshhift.fragments;
 
-import android.content.ContentValues;
 import android.content.Context;
 import android.content.Intent;
-import android.database.Cursor;
+import android.database.ContentObserver;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -18,10 +19,13 @@ import androidx.cardview.widget.CardView;
 import com.example.sssshhift.MainActivity;
 import com.example.sssshhift.R;
 import com.example.sssshhift.activities.AddProfileActivity;
+import com.example.sssshhift.data.ProfileStats;
 import com.example.sssshhift.provider.ProfileContentProvider;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class HomeFragment extends Fragment {
 
@@ -32,6 +36,19 @@ public class HomeFragment extends Fragment {
     private CardView cardQuickAdd;
     private CardView cardViewProfiles;
 
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final ExecutorService statsExecutor = Executors.newSingleThreadExecutor();
+    private final SimpleDateFormat timeFormat = new SimpleDateFormat("HH:mm", Locale.getDefault());
+    private final SimpleDateFormat dateFormat = new SimpleDateFormat("MMM dd, yyyy 'at' HH:mm", Locale.getDefault());
+
+    // The stats cursor is notified on any profile change, so re-query on the same uri
+    private final ContentObserver statsObserver = new ContentObserver(mainHandler) {
+        @Override
+        public void onChange(boolean selfChange) {
+            loadStats();
+        }
+    };
+
     @Nullable
     @Override
     public View onCreateView(@NonNull LayoutInflater inflater, @Nullable ViewGroup container, @Nullable Bundle savedInstanceState) {
@@ -39,11 +56,25 @@ public class HomeFragment extends Fragment {
 
         initViews(view);
         setupClickListeners();
+        requireContext().getContentResolver().registerContentObserver(
+                ProfileContentProvider.CONTENT_URI, true, statsObserver);
         loadDashboardData();
 
         return view;
     }
 
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        requireContext().getContentResolver().unregisterContentObserver(statsObserver);
+    }
+
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        statsExecutor.shutdownNow();
+    }
+
     private void initViews(View view) {
         tvWelcome = view.findViewById(R.id.tv_welcome);
         tvActiveProfiles = view.findViewById(R.id.tv_active_profiles_count);
@@ -71,7 +102,6 @@ public class HomeFragment extends Fragment {
     private void loadDashboardData() {
         try {
             // Set welcome message with current time
-            SimpleDateFormat timeFormat = new SimpleDateFormat("HH:mm", Locale.getDefault());
             String currentTime = timeFormat.format(new Date());
             int hour = Integer.parseInt(currentTime.split(":")[0]);
 
@@ -86,43 +116,38 @@ public class HomeFragment extends Fragment {
 
             tvWelcome.setText(greeting + "!");
 
-            // Get profile statistics
-            Cursor cursor = requireContext().getContentResolver().query(
-                    ProfileContentProvider.CONTENT_URI,
-                    null,
-                    null,
-                    null,
-                    null
-            );
-
-            int totalProfiles = 0;
-            int activeProfiles = 0;
-
-            if (cursor != null) {
-                totalProfiles = cursor.getCount();
-
-                while (cursor.moveToNext()) {
-                    int isActive = cursor.getInt(cursor.getColumnIndexOrThrow("is_active"));
-                    if (isActive == 1) {
-                        activeProfiles++;
-                    }
-                }
-                cursor.close();
-            }
-
-            tvTotalProfiles.setText(String.valueOf(totalProfiles));
-            tvActiveProfiles.setText(String.valueOf(activeProfiles));
-
-            // Set last activity (you can customize this based on your needs)
-            SimpleDateFormat dateFormat = new SimpleDateFormat("MMM dd, yyyy 'at' HH:mm", Locale.getDefault());
-            tvLastActivity.setText("Last updated: " + dateFormat.format(new Date()));
-
+            loadStats();
         } catch (Exception e) {
             e.printStackTrace();
             Toast.makeText(getContext(), "Error loading dashboard data", Toast.LENGTH_SHORT).show();
         }
     }
 
+    private void loadStats() {
+        Context appContext = requireContext().getApplicationContext();
+        statsExecutor.execute(() -> {
+            ProfileStats stats = ProfileStats.query(appContext);
+            mainHandler.post(() -> showStats(stats));
+        });
+    }
+
+    private void showStats(ProfileStats stats) {
+        if (getView() == null) {
+            return; // View destroyed while the query ran
+        }
+
+        tvTotalProfiles.setText(String.valueOf(stats.getTotal()));
+        tvActiveProfiles.setText(String.valueOf(stats.getActive()));
+
+        StringBuilder status = new StringBuilder("Last updated: ");
+        status.append(stats.getLastChange() != ProfileStats.NONE
+                ? dateFormat.format(new Date(stats.getLastChange())) : "Never");
+        if (stats.getNextActivation() != ProfileStats.NONE) {
+            status.append("\nNext activation: ").append(timeFormat.format(new Date(stats.getNextActivation())));
+        }
+        tvLastActivity.setText(status.toString());
+    }
+
     @Override
     public void onResume() {
         super.onResume();
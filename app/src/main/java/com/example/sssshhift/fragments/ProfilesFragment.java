@@ -1,16 +1,23 @@
 package com.example.sssshhift.fragments;
 
+import android.content.ContentProviderOperation;
+import android.content.ContentUris;
 import android.content.ContentValues;
 import android.content.Context;
 import android.content.Intent;
-import android.database.Cursor;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.view.LayoutInflater;
+import android.view.Menu;
+import android.view.MenuItem;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.Toast;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.appcompat.app.AppCompatActivity;
+import androidx.appcompat.view.ActionMode;
 import androidx.fragment.app.Fragment;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
@@ -19,6 +26,9 @@ import com.example.sssshhift.MainActivity;
 import com.example.sssshhift.R;
 import com.example.sssshhift.activities.EditProfileActivity;
 import com.example.sssshhift.adapters.ProfileAdapter;
+import com.example.sssshhift.data.ProfileDatabaseHelper;
+import com.example.sssshhift.data.ProfileRepository;
+import com.example.sssshhift.models.CompiledProfile;
 import com.example.sssshhift.models.Profile;
 import com.example.sssshhift.provider.ProfileContentProvider;
 import com.example.sssshhift.utils.NotificationUtils;
@@ -26,12 +36,47 @@ import com.example.sssshhift.utils.PhoneSettingsManager;
 import com.example.sssshhift.utils.ProfileUtils;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class ProfilesFragment extends Fragment implements ProfileAdapter.OnProfileInteractionListener {
 
     private RecyclerView recyclerView;
     private ProfileAdapter adapter;
-    private List<Profile> profileList;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final ExecutorService loadExecutor = Executors.newSingleThreadExecutor();
+    private ActionMode selectionMode;
+
+    private final ActionMode.Callback selectionCallback = new ActionMode.Callback() {
+        @Override
+        public boolean onCreateActionMode(ActionMode mode, Menu menu) {
+            mode.getMenuInflater().inflate(R.menu.profiles_selection_menu, menu);
+            return true;
+        }
+
+        @Override
+        public boolean onPrepareActionMode(ActionMode mode, Menu menu) {
+            return false;
+        }
+
+        @Override
+        public boolean onActionItemClicked(ActionMode mode, MenuItem item) {
+            int itemId = item.getItemId();
+            if (itemId == R.id.action_enable_selected || itemId == R.id.action_disable_selected) {
+                setProfilesActive(adapter.getSelectedProfiles(), itemId == R.id.action_enable_selected);
+                mode.finish();
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public void onDestroyActionMode(ActionMode mode) {
+            selectionMode = null;
+            adapter.clearSelection();
+        }
+    };
+    private final ProfileRepository.Listener repositoryListener = this::loadProfiles;
 
     @Nullable
     @Override
@@ -40,59 +85,46 @@ public class ProfilesFragment extends Fragment implements ProfileAdapter.OnProfi
 
         initViews(view);
         loadProfiles();
+        ProfileRepository.getInstance(requireContext()).addListener(repositoryListener);
 
         return view;
     }
 
+    @Override
+    public void onDestroyView() {
+        if (selectionMode != null) {
+            selectionMode.finish();
+        }
+        ProfileRepository.getInstance(requireContext()).removeListener(repositoryListener);
+        super.onDestroyView();
+    }
+
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        loadExecutor.shutdownNow();
+    }
+
     private void initViews(View view) {
         recyclerView = view.findViewById(R.id.profiles_recycler_view);
         recyclerView.setLayoutManager(new LinearLayoutManager(getContext()));
 
-        profileList = new ArrayList<>();
-        adapter = new ProfileAdapter(profileList, this);
+        adapter = new ProfileAdapter(this);
         recyclerView.setAdapter(adapter);
     }
 
     private void loadProfiles() {
-        profileList.clear();
-
-        try {
-            Cursor cursor = requireContext().getContentResolver().query(
-                    ProfileContentProvider.CONTENT_URI,
-                    null,
-                    null,
-                    null,
-                    "created_at DESC"
-            );
-
-            if (cursor != null) {
-                while (cursor.moveToNext()) {
-                    Profile profile = new Profile();
-                    profile.setId(cursor.getLong(cursor.getColumnIndexOrThrow("_id")));
-                    profile.setName(cursor.getString(cursor.getColumnIndexOrThrow("name")));
-                    profile.setTriggerType(cursor.getString(cursor.getColumnIndexOrThrow("trigger_type")));
-                    profile.setTriggerValue(cursor.getString(cursor.getColumnIndexOrThrow("trigger_value")));
-                    profile.setRingerMode(cursor.getString(cursor.getColumnIndexOrThrow("ringer_mode")));
-                    profile.setActions(cursor.getString(cursor.getColumnIndexOrThrow("actions")));
-                    profile.setActive(cursor.getInt(cursor.getColumnIndexOrThrow("is_active")) == 1);
-                    profile.setCreatedAt(cursor.getLong(cursor.getColumnIndexOrThrow("created_at")));
-
-                    // Load end time if available
-                    int endTimeIndex = cursor.getColumnIndex("end_time");
-                    if (endTimeIndex != -1) {
-                        profile.setEndTime(cursor.getString(endTimeIndex));
-                    }
-
-                    profileList.add(profile);
+        ProfileRepository repository = ProfileRepository.getInstance(requireContext());
+        // The first read hits the database, later reads are served from memory (newest first).
+        // The adapter diffs the new list in the background and only rebinds changed rows.
+        loadExecutor.execute(() -> {
+            List<Profile> profiles = repository.getAll();
+            mainHandler.post(() -> {
+                if (adapter != null && getView() != null) {
+                    adapter.submitList(profiles);
                 }
-                cursor.close();
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
-            Toast.makeText(getContext(), "Error loading profiles", Toast.LENGTH_SHORT).show();
-        }
-
-        adapter.notifyDataSetChanged();
+            });
+        });
     }
 
     public void refreshProfiles() {
@@ -118,8 +150,8 @@ public class ProfilesFragment extends Fragment implements ProfileAdapter.OnProfi
             );
 
             if (updatedRows > 0) {
-                // Update local profile object
-                profile.setActive(isActive);
+                // The repository delivers the updated row, which rebinds just this item's
+                // switch. The listed profile is shared with the cache, so it is not mutated here.
 
                 // Handle based on profile type
                 if ("location".equals(profile.getTriggerType())) {
@@ -127,8 +159,6 @@ public class ProfilesFragment extends Fragment implements ProfileAdapter.OnProfi
                 } else if ("time".equals(profile.getTriggerType())) {
                     handleTimeProfileToggle(profile, isActive);
                 }
-
-                adapter.notifyDataSetChanged();
             }
         } catch (Exception e) {
             e.printStackTrace();
@@ -136,6 +166,90 @@ public class ProfilesFragment extends Fragment implements ProfileAdapter.OnProfi
         }
     }
 
+    @Override
+    public void onSelectionChanged(int selectedCount) {
+        if (selectedCount == 0) {
+            if (selectionMode != null) {
+                selectionMode.finish();
+            }
+            return;
+        }
+        if (selectionMode == null && getActivity() instanceof AppCompatActivity) {
+            selectionMode = ((AppCompatActivity) getActivity()).startSupportActionMode(selectionCallback);
+        }
+        if (selectionMode != null) {
+            selectionMode.setTitle(selectedCount + " selected");
+        }
+    }
+
+    /**
+     * Enable or disable several profiles with one batched write, then reschedule them in one pass
+     */
+    private void setProfilesActive(List<Profile> profiles, boolean isActive) {
+        List<Profile> changed = new ArrayList<>();
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+        for (Profile profile : profiles) {
+            if (profile.isActive() == isActive) {
+                continue;
+            }
+            changed.add(profile);
+            operations.add(ContentProviderOperation
+                    .newUpdate(ContentUris.withAppendedId(ProfileContentProvider.CONTENT_URI, profile.getId()))
+                    .withValue(ProfileDatabaseHelper.COLUMN_IS_ACTIVE, isActive ? 1 : 0)
+                    .build());
+        }
+        if (changed.isEmpty()) {
+            return;
+        }
+
+        Context appContext = requireContext().getApplicationContext();
+        loadExecutor.execute(() -> {
+            boolean written;
+            try {
+                // One transaction and one change notification for the whole selection
+                appContext.getContentResolver().applyBatch(ProfileContentProvider.AUTHORITY, operations);
+                written = true;
+            } catch (Exception e) {
+                e.printStackTrace();
+                written = false;
+            }
+
+            boolean success = written;
+            mainHandler.post(() -> {
+                if (!isAdded()) {
+                    return;
+                }
+                if (success) {
+                    rescheduleProfiles(changed, isActive);
+                    Toast.makeText(requireContext(), (isActive ? "Enabled " : "Disabled ") + changed.size()
+                            + " profiles", Toast.LENGTH_SHORT).show();
+                } else {
+                    Toast.makeText(requireContext(), "Error updating profiles", Toast.LENGTH_SHORT).show();
+                }
+            });
+        });
+    }
+
+    private void rescheduleProfiles(List<Profile> profiles, boolean isActive) {
+        List<CompiledProfile> timeProfiles = new ArrayList<>();
+        List<String> timeProfileNames = new ArrayList<>();
+        for (Profile profile : profiles) {
+            if ("time".equals(profile.getTriggerType())) {
+                timeProfiles.add(profile.getCompiled());
+                timeProfileNames.add(profile.getName());
+            } else if ("location".equals(profile.getTriggerType()) && !isActive) {
+                handleLocationProfileToggle(profile, false);
+            }
+        }
+
+        // A single timeline update for all time profiles
+        if (isActive) {
+            ProfileUtils.scheduleProfiles(requireContext(), timeProfiles);
+        } else {
+            ProfileUtils.cancelProfileAlarms(requireContext(), timeProfileNames);
+        }
+    }
+
     private void handleLocationProfileToggle(Profile profile, boolean isActive) {
         if (!isActive) {
             // Deactivate the profile if it was the active one
@@ -150,7 +264,7 @@ public class ProfilesFragment extends Fragment implements ProfileAdapter.OnProfi
                     .apply();
                 
                 // Deactivate the profile settings
-                PhoneSettingsManager.deactivateProfile(requireContext(), profile.getActions());
+                PhoneSettingsManager.deactivateProfile(requireContext(), profile.getCompiled().getActions());
                 Toast.makeText(requireContext(), "Location profile deactivated", Toast.LENGTH_SHORT).show();
             }
         }
@@ -158,7 +272,7 @@ public class ProfilesFragment extends Fragment implements ProfileAdapter.OnProfi
 
     private void handleTimeProfileToggle(Profile profile, boolean isActive) {
         if (isActive) {
-            ProfileUtils.scheduleProfile(requireContext(), profile.getName(), true, profile.getTriggerValue(), profile.getEndTime());
+            ProfileUtils.scheduleProfile(requireContext(), profile.getCompiled());
             String message = "Timer profile enabled for " + profile.getTriggerValue();
             if (profile.getEndTime() != null && !profile.getEndTime().isEmpty()) {
                 message += " until " + profile.getEndTime();
@@ -201,7 +315,7 @@ public class ProfilesFragment extends Fragment implements ProfileAdapter.OnProfi
 
             if (deletedRows > 0) {
                 Toast.makeText(getContext(), "Profile deleted: " + profile.getName(), Toast.LENGTH_SHORT).show();
-                loadProfiles(); // Refresh the list
+                // The repository listener removes the row from the list
             } else {
                 Toast.makeText(getContext(), "Failed to delete profile", Toast.LENGTH_SHORT).show();
             }
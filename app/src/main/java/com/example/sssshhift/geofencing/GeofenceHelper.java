@@ -72,8 +72,20 @@ public class GeofenceHelper {
                 .setRequestId(geofenceId)
                 .setCircularRegion(latitude, longitude, radius)
                 .setExpirationDuration(GEOFENCE_EXPIRATION_TIME)
+                // No DWELL, GeofenceStateMachine confirms the enter with its own deadline
                 .setTransitionTypes(Geofence.GEOFENCE_TRANSITION_ENTER | Geofence.GEOFENCE_TRANSITION_EXIT)
-                .setLoiteringDelay(30000) // 30 seconds loitering delay
+                .build();
+    }
+
+    /**
+     * Exit-only fence around the user, leaving it means the registered set has to be rotated
+     */
+    public Geofence createRefreshGeofence(String geofenceId, double latitude, double longitude, float radius) {
+        return new Geofence.Builder()
+                .setRequestId(geofenceId)
+                .setCircularRegion(latitude, longitude, radius)
+                .setExpirationDuration(GEOFENCE_EXPIRATION_TIME)
+                .setTransitionTypes(Geofence.GEOFENCE_TRANSITION_EXIT)
                 .build();
     }
 
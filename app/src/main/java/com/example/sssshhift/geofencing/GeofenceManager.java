@@ -2,15 +2,14 @@ package com.example.sssshhift.geofencing;
 
 import android.content.Context;
 import android.util.Log;
-import com.google.android.gms.location.Geofence;
+import com.example.sssshhift.engine.TriggerEvent;
 import com.example.sssshhift.location.LocationUtils;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 /**
- * Main controller class for managing all geofencing operations
+ * Main controller class for managing all geofencing operations. Fences are kept in the
+ * persistent {@link GeofenceRegistry}, so they survive process death and reboots.
  */
 public class GeofenceManager {
 
@@ -18,8 +17,7 @@ public class GeofenceManager {
     private static GeofenceManager instance;
 
     private Context context;
-    private GeofenceHelper geofenceHelper;
-    private Map<String, GeofenceData> activeGeofences;
+    private GeofenceRegistry registry;
 
     /**
      * Data class to hold geofence information
@@ -62,8 +60,7 @@ public class GeofenceManager {
 
     private GeofenceManager(Context context) {
         this.context = context.getApplicationContext();
-        this.geofenceHelper = new GeofenceHelper(this.context);
-        this.activeGeofences = new HashMap<>();
+        this.registry = GeofenceRegistry.getInstance(this.context);
     }
 
     public static synchronized GeofenceManager getInstance(Context context) {
@@ -74,7 +71,7 @@ public class GeofenceManager {
     }
 
     /**
-     * Add a geofence for a profile
+     * Add a geofence for a profile, replacing the profile's previous one
      */
     public void addProfileGeofence(String profileId, String locationName, double latitude, double longitude,
                                    float radius, GeofenceManagerCallback callback) {
@@ -95,139 +92,84 @@ public class GeofenceManager {
             return;
         }
 
-        // Create unique geofence ID
-        String geofenceId = "profile_" + profileId + "_" + System.currentTimeMillis();
-
-        // Create geofence data
-        GeofenceData geofenceData = new GeofenceData(geofenceId, profileId, latitude, longitude, radius, locationName);
-
-        // Add geofence using helper
-        geofenceHelper.addGeofence(geofenceId, latitude, longitude, radius, new GeofenceHelper.GeofenceCallback() {
-            @Override
-            public void onSuccess(String message) {
-                Log.d(TAG, "Geofence added successfully: " + geofenceId);
-                geofenceData.setActive(true);
-                activeGeofences.put(geofenceId, geofenceData);
+        long id;
+        try {
+            id = Long.parseLong(profileId);
+        } catch (NumberFormatException e) {
+            String error = "Invalid profile id: " + profileId;
+            Log.e(TAG, error);
+            if (callback != null) callback.onError(error);
+            return;
+        }
 
-                if (callback != null) {
-                    callback.onGeofenceAdded(geofenceId, true, message);
-                }
-            }
+        // Stable id, adding again replaces the fence instead of duplicating it
+        String geofenceId = GeofenceRegistry.profileFenceId(id);
+        registry.put(new GeofenceRegistry.Entry(geofenceId, id, locationName, latitude, longitude, radius,
+                TriggerEvent.NO_RINGER_MODE));
+        Log.d(TAG, "Geofence stored: " + geofenceId);
 
-            @Override
-            public void onFailure(String error) {
-                Log.e(TAG, "Failed to add geofence: " + error);
-                if (callback != null) {
-                    callback.onGeofenceAdded(geofenceId, false, error);
-                }
-            }
-        });
+        if (callback != null) {
+            callback.onGeofenceAdded(geofenceId, true, "Geofence stored");
+        }
     }
 
     /**
      * Remove a specific geofence
      */
     public void removeGeofence(String geofenceId, GeofenceManagerCallback callback) {
-        if (!activeGeofences.containsKey(geofenceId)) {
+        if (registry.get(geofenceId) == null) {
             String error = "Geofence not found: " + geofenceId;
             Log.w(TAG, error);
             if (callback != null) callback.onError(error);
             return;
         }
 
-        geofenceHelper.removeGeofence(geofenceId, new GeofenceHelper.GeofenceCallback() {
-            @Override
-            public void onSuccess(String message) {
-                Log.d(TAG, "Geofence removed successfully: " + geofenceId);
-                activeGeofences.remove(geofenceId);
-
-                if (callback != null) {
-                    callback.onGeofenceRemoved(geofenceId, true, message);
-                }
-            }
-
-            @Override
-            public void onFailure(String error) {
-                Log.e(TAG, "Failed to remove geofence: " + error);
-                if (callback != null) {
-                    callback.onGeofenceRemoved(geofenceId, false, error);
-                }
-            }
-        });
+        registry.remove(geofenceId);
+        Log.d(TAG, "Geofence removed: " + geofenceId);
+        if (callback != null) {
+            callback.onGeofenceRemoved(geofenceId, true, "Geofence removed");
+        }
     }
 
     /**
      * Remove all geofences for a specific profile
      */
     public void removeProfileGeofences(String profileId, GeofenceManagerCallback callback) {
-        List<String> geofencesToRemove = new ArrayList<>();
-
-        for (GeofenceData geofenceData : activeGeofences.values()) {
-            if (geofenceData.getProfileId().equals(profileId)) {
-                geofencesToRemove.add(geofenceData.getId());
-            }
-        }
-
-        if (geofencesToRemove.isEmpty()) {
+        List<GeofenceData> geofences = getProfileGeofences(profileId);
+        if (geofences.isEmpty()) {
             Log.d(TAG, "No geofences found for profile: " + profileId);
             return;
         }
 
-        geofenceHelper.removeGeofences(geofencesToRemove, new GeofenceHelper.GeofenceCallback() {
-            @Override
-            public void onSuccess(String message) {
-                Log.d(TAG, "Profile geofences removed successfully: " + profileId);
-
-                // Remove from active geofences
-                for (String geofenceId : geofencesToRemove) {
-                    activeGeofences.remove(geofenceId);
-                }
-
-                if (callback != null) {
-                    callback.onGeofenceRemoved(profileId, true, message);
-                }
-            }
-
-            @Override
-            public void onFailure(String error) {
-                Log.e(TAG, "Failed to remove profile geofences: " + error);
-                if (callback != null) {
-                    callback.onGeofenceRemoved(profileId, false, error);
-                }
-            }
-        });
+        for (GeofenceData geofenceData : geofences) {
+            registry.remove(geofenceData.getId());
+        }
+        Log.d(TAG, "Profile geofences removed: " + profileId);
+        if (callback != null) {
+            callback.onGeofenceRemoved(profileId, true, "Profile geofences removed");
+        }
     }
 
     /**
      * Remove all geofences
      */
     public void removeAllGeofences(GeofenceManagerCallback callback) {
-        geofenceHelper.removeAllGeofences(new GeofenceHelper.GeofenceCallback() {
-            @Override
-            public void onSuccess(String message) {
-                Log.d(TAG, "All geofences removed successfully");
-                activeGeofences.clear();
-
-                if (callback != null) {
-                    callback.onGeofenceRemoved("all", true, message);
-                }
-            }
-
-            @Override
-            public void onFailure(String error) {
-                Log.e(TAG, "Failed to remove all geofences: " + error);
-                if (callback != null) {
-                    callback.onGeofenceRemoved("all", false, error);
-                }
-            }
-        });
+        registry.clear();
+        Log.d(TAG, "All geofences removed");
+        if (callback != null) {
+            callback.onGeofenceRemoved("all", true, "All geofences removed");
+        }
     }
 
     /**
-     * Get all active geofences
+     * Get all stored geofences, isActive tells whether one is currently registered
      */
     public List<GeofenceData> getActiveGeofences() {
-        return new ArrayList<>(activeGeofences.values());
+        List<GeofenceData> geofences = new ArrayList<>();
+        for (GeofenceRegistry.Entry entry : registry.getAll()) {
+            geofences.add(toData(entry));
+        }
+        return geofences;
     }
 
     /**
@@ -235,9 +177,9 @@ public class GeofenceManager {
      */
     public List<GeofenceData> getProfileGeofences(String profileId) {
         List<GeofenceData> profileGeofences = new ArrayList<>();
-        for (GeofenceData geofenceData : activeGeofences.values()) {
-            if (geofenceData.getProfileId().equals(profileId)) {
-                profileGeofences.add(geofenceData);
+        for (GeofenceRegistry.Entry entry : registry.getAll()) {
+            if (String.valueOf(entry.getProfileId()).equals(profileId)) {
+                profileGeofences.add(toData(entry));
             }
         }
         return profileGeofences;
@@ -247,19 +189,15 @@ public class GeofenceManager {
      * Check if a profile has any active geofences
      */
     public boolean hasProfileGeofences(String profileId) {
-        for (GeofenceData geofenceData : activeGeofences.values()) {
-            if (geofenceData.getProfileId().equals(profileId)) {
-                return true;
-            }
-        }
-        return false;
+        return !getProfileGeofences(profileId).isEmpty();
     }
 
     /**
      * Get geofence data by ID
      */
     public GeofenceData getGeofenceData(String geofenceId) {
-        return activeGeofences.get(geofenceId);
+        GeofenceRegistry.Entry entry = registry.get(geofenceId);
+        return entry == null ? null : toData(entry);
     }
 
     /**
@@ -271,12 +209,16 @@ public class GeofenceManager {
     }
 
     /**
-     * Get total number of active geofences
+     * Get total number of stored geofences
      */
     public int getActiveGeofenceCount() {
-        return activeGeofences.size();
+        return registry.getAll().size();
     }
 
-
-
-}
\ No newline at end of file
+    private GeofenceData toData(GeofenceRegistry.Entry entry) {
+        GeofenceData data = new GeofenceData(entry.getId(), String.valueOf(entry.getProfileId()),
+                entry.getLatitude(), entry.getLongitude(), entry.getRadiusMeters(), entry.getName());
+        data.setActive(registry.isRegistered(entry.getId()));
+        return data;
+    }
+}
@@ -0,0 +1,598 @@
+package com.example.sssshhift.geofencing;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.location.Location;
+import android.media.AudioManager;
+import android.util.Log;
+
+import com.example.sssshhift.data.ProfileRepository;
+import com.example.sssshhift.engine.TriggerEvent;
+import com.example.sssshhift.location.FenceIndex;
+import com.example.sssshhift.location.LocationUtils;
+import com.example.sssshhift.models.CompiledProfile;
+import com.example.sssshhift.models.Profile;
+import com.google.android.gms.location.Geofence;
+import com.google.android.gms.location.LocationServices;
+import com.google.android.gms.tasks.Tasks;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Persistent registry of every geofence the app wants, the single source of truth for what is
+ * registered with Play Services. Location profiles are mirrored into it automatically, standalone
+ * fences (see LocationProfileManager) are added explicitly. Fence ids are stable, so re-adding a
+ * fence replaces it instead of piling up duplicates.
+ *
+ * Play Services allows at most 100 fences per app. Beyond that only the fences nearest to the
+ * user are registered, together with a refresh fence around the user that is smaller than the
+ * distance to any fence left out. Leaving the refresh fence rotates the registered set.
+ */
+public class GeofenceRegistry {
+    private static final String TAG = "GeofenceRegistry";
+    private static final String PREFS_NAME = "geofence_registry";
+    private static final String KEY_ENTRIES = "entries";
+    private static final String KEY_REGISTERED = "registered";
+    private static final String KEY_ANCHOR_LAT = "anchor_lat";
+    private static final String KEY_ANCHOR_LNG = "anchor_lng";
+    // Store of the old LocationProfileManager, imported once
+    private static final String LEGACY_PREFS_NAME = "location_profiles";
+
+    public static final String REFRESH_FENCE_ID = "registry_refresh";
+    private static final String PROFILE_FENCE_PREFIX = "profile_";
+    private static final String STANDALONE_FENCE_PREFIX = "location_";
+
+    // Play Services per-app limit, the refresh fence takes one slot when it is exceeded
+    static final int MAX_FENCES = 100;
+    private static final float MIN_REFRESH_RADIUS_METERS = 200;
+    // Bound on each of the last location and the registration when waiting for them
+    private static final long REGISTER_TIMEOUT_MS = 10_000;
+    private static final float MAX_REFRESH_RADIUS_METERS = 50_000;
+
+    public static final class Entry {
+        private final String id;
+        private final long profileId;
+        private final String name;
+        private final double latitude;
+        private final double longitude;
+        private final float radiusMeters;
+        private final int ringerMode;
+
+        /**
+         * @param profileId the linked profile, or TriggerEvent.NO_PROFILE_ID for a standalone fence
+         * @param ringerMode applied on enter by a standalone fence, TriggerEvent.NO_RINGER_MODE otherwise
+         */
+        public Entry(String id, long profileId, String name, double latitude, double longitude,
+                     float radiusMeters, int ringerMode) {
+            this.id = id;
+            this.profileId = profileId;
+            this.name = name;
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.radiusMeters = radiusMeters;
+            this.ringerMode = ringerMode;
+        }
+
+        public String getId() { return id; }
+
+        public long getProfileId() { return profileId; }
+
+        public boolean isStandalone() { return profileId == TriggerEvent.NO_PROFILE_ID; }
+
+        public String getName() { return name; }
+
+        public double getLatitude() { return latitude; }
+
+        public double getLongitude() { return longitude; }
+
+        public float getRadiusMeters() { return radiusMeters; }
+
+        public int getRingerMode() { return ringerMode; }
+
+        // Whether Play Services has to be told about a change from the other entry
+        boolean sameFence(Entry other) {
+            return other != null && latitude == other.latitude && longitude == other.longitude
+                    && radiusMeters == other.radiusMeters;
+        }
+
+        boolean sameAs(Entry other) {
+            return sameFence(other) && profileId == other.profileId && ringerMode == other.ringerMode
+                    && (name == null ? other.name == null : name.equals(other.name));
+        }
+
+        JSONObject toJson() throws JSONException {
+            JSONObject json = new JSONObject();
+            json.put("id", id);
+            json.put("profileId", profileId);
+            json.put("name", name);
+            json.put("lat", latitude);
+            json.put("lng", longitude);
+            json.put("radius", radiusMeters);
+            json.put("ringerMode", ringerMode);
+            return json;
+        }
+
+        static Entry fromJson(JSONObject json) throws JSONException {
+            return new Entry(json.getString("id"), json.getLong("profileId"), json.optString("name", null),
+                    json.getDouble("lat"), json.getDouble("lng"), (float) json.getDouble("radius"),
+                    json.optInt("ringerMode", TriggerEvent.NO_RINGER_MODE));
+        }
+    }
+
+    private static GeofenceRegistry instance;
+
+    private final Context context;
+    private final SharedPreferences prefs;
+    private final GeofenceHelper geofenceHelper;
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+    private final Set<String> registered = new HashSet<>(); // Ids Play Services currently knows
+    private double anchorLatitude = Double.NaN; // Position the registered set was chosen for
+    private double anchorLongitude = Double.NaN;
+
+    private GeofenceRegistry(Context context) {
+        this.context = context.getApplicationContext();
+        this.prefs = this.context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        this.geofenceHelper = new GeofenceHelper(this.context);
+        load();
+        importLegacyStore();
+
+        // Location profiles are mirrored whenever they change
+        ProfileRepository.getInstance(this.context).addListener(this::syncProfiles);
+    }
+
+    public static synchronized GeofenceRegistry getInstance(Context context) {
+        if (instance == null) {
+            instance = new GeofenceRegistry(context);
+        }
+        return instance;
+    }
+
+    public static String profileFenceId(long profileId) {
+        return PROFILE_FENCE_PREFIX + profileId;
+    }
+
+    public static String newStandaloneFenceId() {
+        return STANDALONE_FENCE_PREFIX + UUID.randomUUID();
+    }
+
+    public synchronized Entry get(String fenceId) {
+        return entries.get(fenceId);
+    }
+
+    public synchronized List<Entry> getAll() {
+        return new ArrayList<>(entries.values());
+    }
+
+    public synchronized boolean isRegistered(String fenceId) {
+        return registered.contains(fenceId);
+    }
+
+    /**
+     * Add or replace a fence and register it
+     */
+    public void put(Entry entry) {
+        boolean moved;
+        synchronized (this) {
+            Entry old = entries.put(entry.getId(), entry);
+            if (entry.sameAs(old)) {
+                return;
+            }
+            moved = old != null && !entry.sameFence(old);
+            if (moved) {
+                registered.remove(entry.getId()); // Has to be sent again
+            }
+            persist();
+        }
+        if (moved) {
+            GeofenceStateMachine.getInstance(context).forget(entry.getId());
+        }
+        refreshSelection(false);
+    }
+
+    public void remove(String fenceId) {
+        synchronized (this) {
+            if (entries.remove(fenceId) == null) {
+                return;
+            }
+            persist();
+        }
+        GeofenceStateMachine.getInstance(context).forget(fenceId);
+        refreshSelection(false);
+    }
+
+    /**
+     * Remove every fence, including the ones of location profiles until they change again
+     */
+    public void clear() {
+        List<String> removed;
+        synchronized (this) {
+            removed = new ArrayList<>(entries.keySet());
+            entries.clear();
+            registered.clear();
+            persist();
+        }
+        for (String fenceId : removed) {
+            GeofenceStateMachine.getInstance(context).forget(fenceId);
+        }
+        geofenceHelper.removeAllGeofences(logCallback("Removed all geofences"));
+    }
+
+    /**
+     * Register everything from scratch in a single request. Play Services forgets all fences
+     * on reboot, so this runs at boot and after the app is updated.
+     */
+    public void registerAll() {
+        syncProfiles(false);
+        refreshSelection(true);
+    }
+
+    /**
+     * Like {@link #registerAll}, but returns once Play Services has answered. For the boot path,
+     * whose wake lock has to last until the fences are back. Not to be called on the main thread.
+     */
+    public void registerAllAndWait() {
+        syncProfiles(false);
+        if (!LocationUtils.hasLocationPermissions(context)) {
+            Log.w(TAG, "No location permission, geofences not registered");
+            return;
+        }
+
+        try {
+            Location location = null;
+            try {
+                location = Tasks.await(LocationServices.getFusedLocationProviderClient(context).getLastLocation(),
+                        REGISTER_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            } catch (SecurityException e) {
+                Log.e(TAG, "Location permission revoked", e);
+                return;
+            } catch (ExecutionException | TimeoutException e) {
+                Log.w(TAG, "No last location, keeping the previous anchor: " + e.getMessage());
+            }
+
+            CountDownLatch done = new CountDownLatch(1);
+            if (location != null) {
+                applySelection(location.getLatitude(), location.getLongitude(), true, done::countDown);
+            } else {
+                applySelection(anchorLatitude, anchorLongitude, true, done::countDown);
+            }
+            if (!done.await(REGISTER_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                Log.w(TAG, "Geofences not registered within " + REGISTER_TIMEOUT_MS + " ms");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Mirror the active location profiles into the registry
+     */
+    public void syncProfiles() {
+        if (syncProfiles(true)) {
+            Log.d(TAG, "Location profile fences changed");
+        }
+    }
+
+    /**
+     * The refresh fence was left, rotate the registered set around the new position
+     */
+    public void onRefreshExit(Location location) {
+        if (location == null) {
+            refreshSelection(false);
+        } else {
+            applySelection(location.getLatitude(), location.getLongitude(), false, null);
+        }
+    }
+
+    // Returns whether anything changed
+    private boolean syncProfiles(boolean register) {
+        List<Profile> profiles = ProfileRepository.getInstance(context).getActiveByTriggerType("location");
+        List<String> stale = new ArrayList<>();
+        boolean changed = false;
+
+        synchronized (this) {
+            Map<String, Entry> wanted = new HashMap<>();
+            for (Profile profile : profiles) {
+                CompiledProfile compiled = profile.getCompiled();
+                if (!compiled.hasLocation()) {
+                    continue;
+                }
+                Entry entry = new Entry(profileFenceId(compiled.getId()), compiled.getId(), compiled.getName(),
+                        compiled.getLatitude(), compiled.getLongitude(), (float) compiled.getRadiusMeters(),
+                        TriggerEvent.NO_RINGER_MODE);
+                wanted.put(entry.getId(), entry);
+            }
+
+            Iterator<Entry> iterator = entries.values().iterator();
+            while (iterator.hasNext()) {
+                Entry entry = iterator.next();
+                if (!entry.isStandalone() && !wanted.containsKey(entry.getId())) {
+                    // Deleted, disabled or no longer a location profile
+                    iterator.remove();
+                    stale.add(entry.getId());
+                    changed = true;
+                }
+            }
+
+            for (Entry entry : wanted.values()) {
+                Entry old = entries.get(entry.getId());
+                if (entry.sameAs(old)) {
+                    continue;
+                }
+                if (old != null && !entry.sameFence(old)) {
+                    registered.remove(entry.getId());
+                    stale.add(entry.getId());
+                }
+                entries.put(entry.getId(), entry);
+                changed = true;
+            }
+
+            if (changed) {
+                persist();
+            }
+        }
+
+        for (String fenceId : stale) {
+            GeofenceStateMachine.getInstance(context).forget(fenceId);
+        }
+        if (changed && register) {
+            refreshSelection(false);
+        }
+        return changed;
+    }
+
+    private void refreshSelection(boolean replaceAll) {
+        if (!LocationUtils.hasLocationPermissions(context)) {
+            Log.w(TAG, "No location permission, geofences not registered");
+            return;
+        }
+
+        try {
+            LocationServices.getFusedLocationProviderClient(context).getLastLocation()
+                    .addOnCompleteListener(task -> {
+                        Location location = task.isSuccessful() ? task.getResult() : null;
+                        if (location != null) {
+                            applySelection(location.getLatitude(), location.getLongitude(), replaceAll, null);
+                        } else {
+                            // No fix available, keep the previous anchor
+                            applySelection(anchorLatitude, anchorLongitude, replaceAll, null);
+                        }
+                    });
+        } catch (SecurityException e) {
+            Log.e(TAG, "Location permission revoked", e);
+        }
+    }
+
+    // Diff the fences that should be registered around the position against what is registered.
+    // onDone, if any, runs once Play Services has answered the last request.
+    private void applySelection(double latitude, double longitude, boolean replaceAll, Runnable onDone) {
+        List<Geofence> toAdd = new ArrayList<>();
+        List<String> toRemove = new ArrayList<>();
+
+        synchronized (this) {
+            boolean hasAnchor = !Double.isNaN(latitude) && !Double.isNaN(longitude);
+            List<Entry> all = new ArrayList<>(entries.values());
+            List<Entry> selected = all.size() <= MAX_FENCES ? all
+                    : hasAnchor ? selectNearest(all, latitude, longitude, MAX_FENCES - 1)
+                    : all.subList(0, MAX_FENCES - 1);
+
+            Set<String> selectedIds = new HashSet<>();
+            for (Entry entry : selected) {
+                selectedIds.add(entry.getId());
+                if (replaceAll || !registered.contains(entry.getId())) {
+                    toAdd.add(geofenceHelper.createGeofence(entry.getId(), entry.getLatitude(),
+                            entry.getLongitude(), entry.getRadiusMeters()));
+                }
+            }
+
+            if (selected.size() < all.size()) {
+                if (hasAnchor) {
+                    float radius = refreshRadius(all, selectedIds, latitude, longitude);
+                    selectedIds.add(REFRESH_FENCE_ID);
+                    toAdd.add(geofenceHelper.createRefreshGeofence(REFRESH_FENCE_ID, latitude, longitude, radius));
+                    Log.d(TAG, "Registering nearest " + selected.size() + " of " + all.size()
+                            + " fences, refresh radius " + radius + "m");
+                } else {
+                    Log.w(TAG, "No position known, registering the first " + selected.size() + " fences");
+                }
+            }
+
+            for (String fenceId : registered) {
+                if (!selectedIds.contains(fenceId)) {
+                    toRemove.add(fenceId);
+                }
+            }
+
+            registered.clear();
+            registered.addAll(selectedIds);
+            if (hasAnchor) {
+                anchorLatitude = latitude;
+                anchorLongitude = longitude;
+            }
+            persist();
+        }
+
+        Runnable addFences = () -> {
+            if (!toAdd.isEmpty()) {
+                // All changes go out as one GeofencingRequest
+                geofenceHelper.addGeofences(toAdd, logCallback("Registered " + toAdd.size() + " geofences", onDone));
+            } else if (onDone != null) {
+                onDone.run();
+            }
+        };
+
+        if (replaceAll) {
+            geofenceHelper.removeAllGeofences(chain(addFences));
+        } else if (!toRemove.isEmpty()) {
+            geofenceHelper.removeGeofences(toRemove, chain(addFences));
+        } else {
+            addFences.run();
+        }
+    }
+
+    /**
+     * The limit fences with the closest edges to the position
+     */
+    static List<Entry> selectNearest(List<Entry> entries, double latitude, double longitude, int limit) {
+        Map<Entry, Double> edgeDistance = new HashMap<>();
+        for (Entry entry : entries) {
+            double distance = FenceIndex.distanceMeters(latitude, longitude, entry.getLatitude(), entry.getLongitude());
+            edgeDistance.put(entry, Math.max(0, distance - entry.getRadiusMeters()));
+        }
+
+        List<Entry> sorted = new ArrayList<>(entries);
+        Collections.sort(sorted, new Comparator<Entry>() {
+            @Override
+            public int compare(Entry a, Entry b) {
+                return Double.compare(edgeDistance.get(a), edgeDistance.get(b));
+            }
+        });
+        return sorted.subList(0, Math.min(limit, sorted.size()));
+    }
+
+    /**
+     * Radius of the refresh fence: the user has to leave it before reaching any fence that is
+     * not registered
+     */
+    static float refreshRadius(List<Entry> entries, Set<String> selectedIds, double latitude, double longitude) {
+        double closestSkipped = Double.POSITIVE_INFINITY;
+        for (Entry entry : entries) {
+            if (selectedIds.contains(entry.getId())) {
+                continue;
+            }
+            double distance = FenceIndex.distanceMeters(latitude, longitude, entry.getLatitude(), entry.getLongitude());
+            closestSkipped = Math.min(closestSkipped, distance - entry.getRadiusMeters());
+        }
+        return (float) Math.max(MIN_REFRESH_RADIUS_METERS, Math.min(MAX_REFRESH_RADIUS_METERS, closestSkipped));
+    }
+
+    private GeofenceHelper.GeofenceCallback chain(Runnable next) {
+        return new GeofenceHelper.GeofenceCallback() {
+            @Override
+            public void onSuccess(String message) {
+                next.run();
+            }
+
+            @Override
+            public void onFailure(String error) {
+                Log.e(TAG, error);
+                next.run();
+            }
+        };
+    }
+
+    private static GeofenceHelper.GeofenceCallback logCallback(String success) {
+        return logCallback(success, null);
+    }
+
+    private static GeofenceHelper.GeofenceCallback logCallback(String success, Runnable then) {
+        return new GeofenceHelper.GeofenceCallback() {
+            @Override
+            public void onSuccess(String message) {
+                Log.d(TAG, success);
+                if (then != null) then.run();
+            }
+
+            @Override
+            public void onFailure(String error) {
+                Log.e(TAG, error);
+                if (then != null) then.run();
+            }
+        };
+    }
+
+    private void load() {
+        try {
+            JSONArray entriesJson = new JSONArray(prefs.getString(KEY_ENTRIES, "[]"));
+            for (int i = 0; i < entriesJson.length(); i++) {
+                Entry entry = Entry.fromJson(entriesJson.getJSONObject(i));
+                entries.put(entry.getId(), entry);
+            }
+
+            JSONArray registeredJson = new JSONArray(prefs.getString(KEY_REGISTERED, "[]"));
+            for (int i = 0; i < registeredJson.length(); i++) {
+                registered.add(registeredJson.getString(i));
+            }
+
+            if (prefs.contains(KEY_ANCHOR_LAT)) {
+                anchorLatitude = Double.longBitsToDouble(prefs.getLong(KEY_ANCHOR_LAT, 0));
+                anchorLongitude = Double.longBitsToDouble(prefs.getLong(KEY_ANCHOR_LNG, 0));
+            }
+            Log.d(TAG, "Loaded " + entries.size() + " geofences");
+        } catch (JSONException e) {
+            Log.e(TAG, "Error loading geofence registry", e);
+        }
+    }
+
+    // Standalone fences used to be stored as "<uuid>_name", "<uuid>_lat", ... keys
+    private void importLegacyStore() {
+        SharedPreferences legacy = context.getSharedPreferences(LEGACY_PREFS_NAME, Context.MODE_PRIVATE);
+        Map<String, ?> all = legacy.getAll();
+        if (all.isEmpty()) {
+            return;
+        }
+
+        try {
+            for (String key : all.keySet()) {
+                if (!key.endsWith("_name")) {
+                    continue;
+                }
+                String uuid = key.substring(0, key.length() - "_name".length());
+                Entry entry = new Entry(STANDALONE_FENCE_PREFIX + uuid, TriggerEvent.NO_PROFILE_ID,
+                        legacy.getString(key, ""),
+                        legacy.getFloat(uuid + "_lat", 0), legacy.getFloat(uuid + "_lng", 0),
+                        legacy.getFloat(uuid + "_radius", (float) CompiledProfile.DEFAULT_RADIUS_METERS),
+                        legacy.getInt(uuid + "_mode", AudioManager.RINGER_MODE_NORMAL));
+                entries.put(entry.getId(), entry);
+            }
+            Log.d(TAG, "Imported legacy location profiles, " + entries.size() + " geofences");
+        } catch (ClassCastException e) {
+            Log.e(TAG, "Error importing legacy location profiles", e);
+        }
+
+        persist();
+        legacy.edit().clear().apply();
+    }
+
+    private void persist() {
+        try {
+            JSONArray entriesJson = new JSONArray();
+            for (Entry entry : entries.values()) {
+                entriesJson.put(entry.toJson());
+            }
+
+            JSONArray registeredJson = new JSONArray();
+            for (String fenceId : registered) {
+                registeredJson.put(fenceId);
+            }
+
+            SharedPreferences.Editor editor = prefs.edit()
+                    .putString(KEY_ENTRIES, entriesJson.toString())
+                    .putString(KEY_REGISTERED, registeredJson.toString());
+            if (!Double.isNaN(anchorLatitude)) {
+                editor.putLong(KEY_ANCHOR_LAT, Double.doubleToRawLongBits(anchorLatitude))
+                        .putLong(KEY_ANCHOR_LNG, Double.doubleToRawLongBits(anchorLongitude));
+            }
+            editor.apply();
+        } catch (JSONException e) {
+            Log.e(TAG, "Error saving geofence registry", e);
+        }
+    }
+}
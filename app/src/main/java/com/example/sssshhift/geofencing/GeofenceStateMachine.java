@@ -0,0 +1,271 @@
+package com.example.sssshhift.geofencing;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.media.AudioManager;
+import android.util.Log;
+
+import com.example.sssshhift.engine.ProfileEngine;
+import com.example.sssshhift.engine.TriggerEvent;
+import com.example.sssshhift.scheduler.Transition;
+import com.example.sssshhift.scheduler.TransitionScheduler;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Per-fence state machine between raw geofence transitions and the profile engine.
+ * An ENTER has to be confirmed by dwelling before the profile is applied, an EXIT is only acted on after a hysteresis period without re-entering, and a
+ * profile is not actuated again within its cooldown. Flapping on a fence edge therefore
+ * never reaches the engine. Pending confirmations are edges on the shared
+ * {@link TransitionScheduler} timeline, and all state is persisted so it survives the
+ * process being killed between transitions.
+ */
+public class GeofenceStateMachine {
+    private static final String TAG = "GeofenceStateMachine";
+    private static final String PREFS_NAME = "geofence_states";
+    private static final String KEY_FENCES = "fences";
+    private static final String KEY_COOLDOWNS = "cooldowns";
+
+    static final long DWELL_CONFIRM_MS = 30 * 1000;
+    static final long EXIT_HYSTERESIS_MS = 2 * 60 * 1000;
+    static final long PROFILE_COOLDOWN_MS = 60 * 1000;
+
+    public enum State { OUTSIDE, ENTERING, INSIDE, EXITING }
+
+    private static GeofenceStateMachine instance;
+
+    private final Context context;
+    private final SharedPreferences prefs;
+    private final Map<String, FenceState> fences = new HashMap<>();
+    // Keyed by profile id, or by fence id for standalone fences
+    private final Map<String, Long> lastActuationByProfile = new HashMap<>();
+
+    private GeofenceStateMachine(Context context) {
+        this.context = context.getApplicationContext();
+        this.prefs = this.context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        load();
+    }
+
+    public static synchronized GeofenceStateMachine getInstance(Context context) {
+        if (instance == null) {
+            instance = new GeofenceStateMachine(context);
+        }
+        return instance;
+    }
+
+    /**
+     * Feed a raw ENTER or EXIT transition reported for a fence linked to a profile
+     */
+    public void onEnter(String fenceId, long profileId) {
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            FenceState fence = getOrCreate(fenceId, profileId);
+            switch (fence.state) {
+                case OUTSIDE:
+                    moveTo(fence, State.ENTERING, now + DWELL_CONFIRM_MS);
+                    break;
+                case EXITING:
+                    // Came back before the exit was confirmed, the profile is still applied
+                    moveTo(fence, State.INSIDE, 0);
+                    break;
+                default:
+                    return; // Already entering or inside
+            }
+            persist();
+        }
+    }
+
+    public void onExit(String fenceId, long profileId) {
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            FenceState fence = getOrCreate(fenceId, profileId);
+            switch (fence.state) {
+                case ENTERING:
+                    // Left again before the dwell was confirmed, nothing was applied
+                    moveTo(fence, State.OUTSIDE, 0);
+                    break;
+                case INSIDE:
+                    moveTo(fence, State.EXITING, now + EXIT_HYSTERESIS_MS);
+                    break;
+                default:
+                    return; // Already outside or exiting
+            }
+            persist();
+        }
+    }
+
+    /**
+     * Called by the scheduler when a dwell or hysteresis deadline is reached
+     */
+    public void onDeadline(String fenceId, boolean entering) {
+        confirm(fenceId, entering);
+    }
+
+    /**
+     * The fence was removed (profile deleted, disabled or moved), forget its state
+     */
+    public void forget(String fenceId) {
+        synchronized (this) {
+            if (fences.remove(fenceId) == null) {
+                return;
+            }
+            TransitionScheduler.getInstance(context).cancel(Transition.SOURCE_GEOFENCE, fenceId);
+            persist();
+        }
+    }
+
+    public synchronized State getState(String fenceId) {
+        FenceState fence = fences.get(fenceId);
+        return fence == null ? State.OUTSIDE : fence.state;
+    }
+
+    private void confirm(String fenceId, boolean entering) {
+        long now = System.currentTimeMillis();
+        long profileId;
+        synchronized (this) {
+            FenceState fence = fences.get(fenceId);
+            State expected = entering ? State.ENTERING : State.EXITING;
+            if (fence == null || fence.state != expected) {
+                return; // Stale deadline, the fence moved on since it was armed
+            }
+
+            // Within the profile's cooldown the actuation is deferred, not dropped
+            Long lastActuation = lastActuationByProfile.get(fence.cooldownKey());
+            if (lastActuation != null && now < lastActuation + PROFILE_COOLDOWN_MS) {
+                moveTo(fence, expected, lastActuation + PROFILE_COOLDOWN_MS);
+                persist();
+                Log.d(TAG, "Profile " + fence.profileId + " in cooldown, deferring " + fenceId);
+                return;
+            }
+
+            moveTo(fence, entering ? State.INSIDE : State.OUTSIDE, 0);
+            lastActuationByProfile.put(fence.cooldownKey(), now);
+            profileId = fence.profileId;
+            persist();
+        }
+
+        // One actuation per confirmed transition, outside the lock
+        Log.d(TAG, (entering ? "Confirmed enter " : "Confirmed exit ") + fenceId);
+        TriggerEvent event;
+        if (profileId != TriggerEvent.NO_PROFILE_ID) {
+            event = TriggerEvent.forProfileId(TriggerEvent.SOURCE_GEOFENCE, profileId, entering);
+        } else {
+            // Standalone fences carry their own ringer mode and revert to normal on exit
+            GeofenceRegistry.Entry entry = GeofenceRegistry.getInstance(context).get(fenceId);
+            if (entry == null) {
+                return;
+            }
+            event = TriggerEvent.forRingerMode(TriggerEvent.SOURCE_GEOFENCE, entry.getName(),
+                    entering ? entry.getRingerMode() : AudioManager.RINGER_MODE_NORMAL, entering);
+        }
+        ProfileEngine.getInstance(context).handle(event);
+    }
+
+    private FenceState getOrCreate(String fenceId, long profileId) {
+        FenceState fence = fences.get(fenceId);
+        if (fence == null) {
+            fence = new FenceState(profileId, State.OUTSIDE, 0);
+            fences.put(fenceId, fence);
+        }
+        fence.fenceId = fenceId;
+        return fence;
+    }
+
+    // Every state has at most one pending deadline, which is the only wakeup it causes
+    private void moveTo(FenceState fence, State state, long deadline) {
+        Log.d(TAG, fence.fenceId + ": " + fence.state + " -> " + state);
+        fence.state = state;
+        fence.deadline = deadline;
+
+        TransitionScheduler scheduler = TransitionScheduler.getInstance(context);
+        if (deadline > 0) {
+            boolean entering = state == State.ENTERING;
+            // Replaces any edge armed for this fence before
+            scheduler.cancel(Transition.SOURCE_GEOFENCE, fence.fenceId);
+            scheduler.schedule(new Transition(Transition.SOURCE_GEOFENCE, fence.fenceId, null, entering,
+                    deadline, Transition.NO_RINGER_MODE, 0, false));
+        } else {
+            scheduler.cancel(Transition.SOURCE_GEOFENCE, fence.fenceId);
+        }
+    }
+
+    private void load() {
+        try {
+            JSONObject fencesJson = new JSONObject(prefs.getString(KEY_FENCES, "{}"));
+            Iterator<String> ids = fencesJson.keys();
+            while (ids.hasNext()) {
+                String fenceId = ids.next();
+                JSONObject json = fencesJson.getJSONObject(fenceId);
+                FenceState fence = new FenceState(json.getLong("profileId"),
+                        State.valueOf(json.getString("state")), json.optLong("deadline", 0));
+                fence.fenceId = fenceId;
+                fences.put(fenceId, fence);
+            }
+
+            JSONObject cooldownsJson = new JSONObject(prefs.getString(KEY_COOLDOWNS, "{}"));
+            Iterator<String> profileIds = cooldownsJson.keys();
+            while (profileIds.hasNext()) {
+                String profileId = profileIds.next();
+                lastActuationByProfile.put(profileId, cooldownsJson.getLong(profileId));
+            }
+            Log.d(TAG, "Loaded " + fences.size() + " fence states");
+        } catch (JSONException | IllegalArgumentException e) {
+            Log.e(TAG, "Error loading fence states", e);
+        }
+    }
+
+    private void persist() {
+        try {
+            JSONObject fencesJson = new JSONObject();
+            for (Map.Entry<String, FenceState> entry : fences.entrySet()) {
+                FenceState fence = entry.getValue();
+                if (fence.state == State.OUTSIDE) {
+                    continue; // The default, not worth storing
+                }
+                JSONObject json = new JSONObject();
+                json.put("profileId", fence.profileId);
+                json.put("state", fence.state.name());
+                json.put("deadline", fence.deadline);
+                fencesJson.put(entry.getKey(), json);
+            }
+
+            // Expired cooldowns no longer matter
+            long now = System.currentTimeMillis();
+            JSONObject cooldownsJson = new JSONObject();
+            for (Map.Entry<String, Long> entry : lastActuationByProfile.entrySet()) {
+                if (entry.getValue() + PROFILE_COOLDOWN_MS > now) {
+                    cooldownsJson.put(entry.getKey(), entry.getValue());
+                }
+            }
+
+            prefs.edit()
+                    .putString(KEY_FENCES, fencesJson.toString())
+                    .putString(KEY_COOLDOWNS, cooldownsJson.toString())
+                    .apply();
+        } catch (JSONException e) {
+            Log.e(TAG, "Error saving fence states", e);
+        }
+    }
+
+    private static class FenceState {
+        String fenceId;
+        final long profileId;
+        State state;
+        long deadline; // 0 if nothing is pending
+
+        FenceState(long profileId, State state, long deadline) {
+            this.profileId = profileId;
+            this.state = state;
+            this.deadline = deadline;
+        }
+
+        String cooldownKey() {
+            return profileId != TriggerEvent.NO_PROFILE_ID ? String.valueOf(profileId) : fenceId;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.sssshhift.location;
+
+import com.google.android.gms.location.Priority;
+
+/**
+ * Picks how often and how precisely to sample location from the distance to the nearest fence
+ * boundary and the recent speed. Far from every fence the interval is stretched and the priority
+ * lowered; when a boundary could be reached soon the request tightens again.
+ */
+public class AdaptiveSamplingPolicy {
+    // Assume at least highway speed, a standing user can start driving at any time
+    static final double MIN_ASSUMED_SPEED_MPS = 30;
+    // Recent speed decays by this factor per fix, so a stop at a traffic light does not relax sampling
+    private static final double SPEED_DECAY = 0.7;
+    // Always sample tightly this close to a boundary, GPS error alone can cross it
+    static final double NEAR_BOUNDARY_METERS = 150;
+
+    public enum Tier {
+        NEAR(Priority.PRIORITY_HIGH_ACCURACY, 5_000, 0),
+        APPROACHING(Priority.PRIORITY_HIGH_ACCURACY, 15_000, 10),
+        MEDIUM(Priority.PRIORITY_BALANCED_POWER_ACCURACY, 60_000, 50),
+        FAR(Priority.PRIORITY_BALANCED_POWER_ACCURACY, 180_000, 150),
+        // Not low power, city-block accuracy is too coarse for the boundary distance
+        IDLE(Priority.PRIORITY_BALANCED_POWER_ACCURACY, 600_000, 300);
+
+        private final int priority;
+        private final long intervalMillis;
+        private final float minUpdateDistanceMeters;
+
+        Tier(int priority, long intervalMillis, float minUpdateDistanceMeters) {
+            this.priority = priority;
+            this.intervalMillis = intervalMillis;
+            this.minUpdateDistanceMeters = minUpdateDistanceMeters;
+        }
+
+        public int getPriority() { return priority; }
+
+        public long getIntervalMillis() { return intervalMillis; }
+
+        public long getMinIntervalMillis() { return intervalMillis / 2; }
+
+        public float getMinUpdateDistanceMeters() { return minUpdateDistanceMeters; }
+    }
+
+    private static final Tier[] TIERS = Tier.values(); // values() copies the array on every call
+
+    private Tier tier = Tier.NEAR;
+    private double recentSpeedMps = 0;
+    private double lastLatitude = Double.NaN;
+    private double lastLongitude = Double.NaN;
+    private long lastFixMillis = 0;
+
+    public Tier getTier() {
+        return tier;
+    }
+
+    /**
+     * Start over at the tightest tier, e.g. after the fences changed
+     */
+    public void reset() {
+        tier = Tier.NEAR;
+        lastLatitude = Double.NaN;
+        lastLongitude = Double.NaN;
+        lastFixMillis = 0;
+    }
+
+    /**
+     * Feed a fix and the distance from it to the nearest fence boundary
+     * @param reportedSpeedMps speed reported with the fix, negative if unknown
+     * @param accuracyMeters horizontal accuracy of the fix, negative if unknown
+     * @return the tier to sample at from now on
+     */
+    public Tier onFix(double latitude, double longitude, long fixTimeMillis, double reportedSpeedMps,
+                      double accuracyMeters, double boundaryDistanceMeters) {
+        double speed = reportedSpeedMps;
+        if (speed < 0 && lastFixMillis > 0 && fixTimeMillis > lastFixMillis) {
+            // No speed from the provider, derive it from the previous fix
+            speed = FenceIndex.distanceMeters(lastLatitude, lastLongitude, latitude, longitude)
+                    / ((fixTimeMillis - lastFixMillis) / 1000.0);
+        }
+        recentSpeedMps = Math.max(Math.max(speed, 0), recentSpeedMps * SPEED_DECAY);
+
+        lastLatitude = latitude;
+        lastLongitude = longitude;
+        lastFixMillis = fixTimeMillis;
+
+        // The boundary may be as close as the fix is inaccurate
+        double distance = boundaryDistanceMeters - Math.max(accuracyMeters, 0);
+        Tier target = tierFor(distance, Math.max(recentSpeedMps, MIN_ASSUMED_SPEED_MPS));
+
+        // Tighten at once, but relax one tier per fix so a single odd fix cannot open a gap
+        if (target.ordinal() < tier.ordinal()) {
+            tier = target;
+        } else if (target.ordinal() > tier.ordinal()) {
+            tier = TIERS[tier.ordinal() + 1];
+        }
+        return tier;
+    }
+
+    static Tier tierFor(double boundaryDistanceMeters, double speedMps) {
+        if (boundaryDistanceMeters <= NEAR_BOUNDARY_METERS) {
+            return Tier.NEAR;
+        }
+        if (Double.isInfinite(boundaryDistanceMeters)) {
+            return Tier.IDLE;
+        }
+
+        // Sample at least twice before the boundary can be reached
+        double secondsToBoundary = (boundaryDistanceMeters - NEAR_BOUNDARY_METERS) / speedMps;
+        for (int i = TIERS.length - 1; i > 0; i--) {
+            Tier candidate = TIERS[i];
+            if (candidate.intervalMillis * 2 <= secondsToBoundary * 1000
+                    && candidate.minUpdateDistanceMeters * 2 <= boundaryDistanceMeters - NEAR_BOUNDARY_METERS) {
+                return candidate;
+            }
+        }
+        return Tier.NEAR;
+    }
+}
@@ -0,0 +1,190 @@
+package com.example.sssshhift.location;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable grid index over circular fences. Each fence is stored in every grid cell its
+ * bounding box overlaps, so a position only has to be checked against the fences of its own
+ * cell. Lookups do a binary search over the sorted cell keys and allocate nothing.
+ */
+public final class FenceIndex<T> {
+    // ~1.1 km of latitude per cell, a few fences per cell for typical radii
+    static final double CELL_DEGREES = 0.01;
+
+    private static final double EARTH_RADIUS_METERS = 6371008.8;
+    private static final double METERS_PER_DEGREE_LAT = 111320.0;
+    private static final double MIN_COS_LAT = 0.01; // Avoid huge boxes near the poles
+    private static final int MAX_SEARCH_RINGS = 40; // ~40 km, anything further counts as unreachable
+
+    public interface Visitor<T> {
+        void onInside(T payload, double distanceMeters);
+    }
+
+    private final long[] cellKeys; // Sorted
+    private final Fence<T>[][] cells; // Parallel to cellKeys
+    private final int size;
+
+    private FenceIndex(long[] cellKeys, Fence<T>[][] cells, int size) {
+        this.cellKeys = cellKeys;
+        this.cells = cells;
+        this.size = size;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Visit every fence containing the position
+     * @return number of fences visited
+     */
+    public int forEachContaining(double latitude, double longitude, Visitor<T> visitor) {
+        Fence<T>[] candidates = cellAt(latitude, longitude);
+        if (candidates == null) {
+            return 0;
+        }
+
+        int inside = 0;
+        for (Fence<T> fence : candidates) {
+            double distance = distanceMeters(latitude, longitude, fence.latitude, fence.longitude);
+            if (distance <= fence.radiusMeters) {
+                visitor.onInside(fence.payload, distance);
+                inside++;
+            }
+        }
+        return inside;
+    }
+
+    /**
+     * Distance from the position to the closest fence edge (to the exit when inside a fence),
+     * or POSITIVE_INFINITY if no fence is within the search range. Searches outwards ring by
+     * ring and stops once no unvisited cell can hold anything closer.
+     */
+    public double nearestBoundaryMeters(double latitude, double longitude) {
+        if (cellKeys.length == 0) {
+            return Double.POSITIVE_INFINITY;
+        }
+
+        int latCell = cellOf(latitude);
+        int lngCell = cellOf(longitude);
+        double cosLat = Math.max(MIN_COS_LAT, Math.cos(Math.toRadians(latitude)));
+        double cellMeters = CELL_DEGREES * METERS_PER_DEGREE_LAT * Math.min(1, cosLat);
+
+        double best = Double.POSITIVE_INFINITY;
+        for (int ring = 0; ring <= MAX_SEARCH_RINGS; ring++) {
+            for (int dLat = -ring; dLat <= ring; dLat++) {
+                // Only the outline of the ring, inner cells were visited already
+                int step = (dLat == -ring || dLat == ring) ? 1 : 2 * ring;
+                for (int dLng = -ring; dLng <= ring; dLng += Math.max(1, step)) {
+                    int index = Arrays.binarySearch(cellKeys, cellKey(latCell + dLat, lngCell + dLng));
+                    if (index < 0) {
+                        continue;
+                    }
+                    for (Fence<T> fence : cells[index]) {
+                        double distance = distanceMeters(latitude, longitude, fence.latitude, fence.longitude);
+                        best = Math.min(best, Math.abs(distance - fence.radiusMeters));
+                    }
+                }
+            }
+            // Fences only stored in further rings are at least this far away
+            if (best <= ring * cellMeters) {
+                break;
+            }
+        }
+        return best;
+    }
+
+    // Number of fences a lookup at this position has to test
+    int candidateCount(double latitude, double longitude) {
+        Fence<T>[] candidates = cellAt(latitude, longitude);
+        return candidates == null ? 0 : candidates.length;
+    }
+
+    private Fence<T>[] cellAt(double latitude, double longitude) {
+        int index = Arrays.binarySearch(cellKeys, cellKey(cellOf(latitude), cellOf(longitude)));
+        return index >= 0 ? cells[index] : null;
+    }
+
+    /**
+     * Haversine distance, within a fraction of a percent of Location.distanceBetween at fence scales
+     */
+    public static double distanceMeters(double lat1, double lng1, double lat2, double lng2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLng = Math.toRadians(lng2 - lng1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
+                * Math.sin(dLng / 2) * Math.sin(dLng / 2);
+        return 2 * EARTH_RADIUS_METERS * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    private static int cellOf(double degrees) {
+        return (int) Math.floor(degrees / CELL_DEGREES);
+    }
+
+    private static long cellKey(int latCell, int lngCell) {
+        return ((long) latCell << 32) | (lngCell & 0xffffffffL);
+    }
+
+    public static final class Builder<T> {
+        private final List<Fence<T>> fences = new ArrayList<>();
+
+        public Builder<T> add(double latitude, double longitude, double radiusMeters, T payload) {
+            fences.add(new Fence<>(latitude, longitude, radiusMeters, payload));
+            return this;
+        }
+
+        @SuppressWarnings("unchecked")
+        public FenceIndex<T> build() {
+            Map<Long, List<Fence<T>>> byCell = new HashMap<>();
+            for (Fence<T> fence : fences) {
+                double latSpan = fence.radiusMeters / METERS_PER_DEGREE_LAT;
+                double cosLat = Math.max(MIN_COS_LAT, Math.cos(Math.toRadians(fence.latitude)));
+                double lngSpan = fence.radiusMeters / (METERS_PER_DEGREE_LAT * cosLat);
+
+                for (int latCell = cellOf(fence.latitude - latSpan); latCell <= cellOf(fence.latitude + latSpan); latCell++) {
+                    for (int lngCell = cellOf(fence.longitude - lngSpan); lngCell <= cellOf(fence.longitude + lngSpan); lngCell++) {
+                        long key = cellKey(latCell, lngCell);
+                        List<Fence<T>> cell = byCell.get(key);
+                        if (cell == null) {
+                            cell = new ArrayList<>(2);
+                            byCell.put(key, cell);
+                        }
+                        cell.add(fence);
+                    }
+                }
+            }
+
+            long[] keys = new long[byCell.size()];
+            int i = 0;
+            for (long key : byCell.keySet()) {
+                keys[i++] = key;
+            }
+            Arrays.sort(keys);
+
+            Fence<T>[][] cells = new Fence[keys.length][];
+            for (i = 0; i < keys.length; i++) {
+                List<Fence<T>> cell = byCell.get(keys[i]);
+                cells[i] = cell.toArray(new Fence[0]);
+            }
+            return new FenceIndex<>(keys, cells, fences.size());
+        }
+    }
+
+    private static final class Fence<T> {
+        final double latitude;
+        final double longitude;
+        final double radiusMeters;
+        final T payload;
+
+        Fence(double latitude, double longitude, double radiusMeters, T payload) {
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.radiusMeters = radiusMeters;
+            this.payload = payload;
+        }
+    }
+}
@@ -3,7 +3,6 @@ package com.example.sssshhift.location;
 import android.app.NotificationChannel;
 import android.app.NotificationManager;
 import android.app.PendingIntent;
-import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 import android.content.SharedPreferences;
@@ -15,13 +14,15 @@ import com.google.android.gms.location.Geofence;
 import com.google.android.gms.location.GeofencingEvent;
 import java.util.List;
 
-public class LocationReceiver extends BroadcastReceiver {
+import com.example.sssshhift.receivers.AsyncReceiver;
+
+public class LocationReceiver extends AsyncReceiver {
     private static final String TAG = "LocationReceiver";
     private static final String PREFS_NAME = "location_profiles";
     private static final String CHANNEL_ID = "location_profiles";
 
     @Override
-    public void onReceive(Context context, Intent intent) {
+    protected void onReceiveAsync(Context context, Intent intent) {
         createNotificationChannel(context);
         
         GeofencingEvent geofencingEvent = GeofencingEvent.fromIntent(intent);
@@ -2,7 +2,6 @@ package com.example.sssshhift.location;
 
 import android.app.NotificationChannel;
 import android.app.NotificationManager;
-import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 import android.os.Build;
@@ -15,16 +14,17 @@ import com.google.android.gms.location.Geofence;
 import com.google.android.gms.location.GeofencingEvent;
 import com.google.android.gms.location.GeofenceStatusCodes;
 import com.example.sssshhift.R;
+import com.example.sssshhift.receivers.AsyncReceiver;
 
 import java.util.List;
 
-public class LocationTriggerReceiver extends BroadcastReceiver {
+public class LocationTriggerReceiver extends AsyncReceiver {
     private static final String TAG = "LocationTriggerReceiver";
     private static final String CHANNEL_ID = "location_trigger_channel";
     private static final int NOTIFICATION_ID = 1001;
 
     @Override
-    public void onReceive(Context context, Intent intent) {
+    protected void onReceiveAsync(Context context, Intent intent) {
         GeofencingEvent geofencingEvent = GeofencingEvent.fromIntent(intent);
         if (geofencingEvent == null) {
             Log.e(TAG, "Geofencing event is null");
@@ -0,0 +1,185 @@
+package com.example.sssshhift.models;
+
+import android.media.AudioManager;
+
+/**
+ * Immutable, pre-parsed form of a {@link Profile}. The string columns are parsed once when
+ * the profile is loaded, so triggers, the engine and the list never split or parse again.
+ */
+public final class CompiledProfile {
+    public static final int NO_MINUTE = -1;
+    public static final double DEFAULT_RADIUS_METERS = 100;
+
+    // Action bits
+    public static final int ACTION_WIFI = 1;
+    public static final int ACTION_BLUETOOTH = 1 << 1;
+    public static final int ACTION_DATA = 1 << 2;
+    public static final int ACTION_DND = 1 << 3;
+    public static final int[] ALL_ACTIONS = {ACTION_WIFI, ACTION_BLUETOOTH, ACTION_DATA, ACTION_DND};
+
+    public enum RingerMode {
+        SILENT(AudioManager.RINGER_MODE_SILENT, "🔇 Silent"),
+        VIBRATE(AudioManager.RINGER_MODE_VIBRATE, "📳 Vibrate"),
+        NORMAL(AudioManager.RINGER_MODE_NORMAL, "🔊 Normal");
+
+        private final int audioMode;
+        private final String label;
+
+        RingerMode(int audioMode, String label) {
+            this.audioMode = audioMode;
+            this.label = label;
+        }
+
+        // One of the AudioManager.RINGER_MODE_* values
+        public int getAudioMode() { return audioMode; }
+
+        public String getLabel() { return label; }
+
+        public static RingerMode fromString(String ringerMode) {
+            if ("silent".equalsIgnoreCase(ringerMode)) return SILENT;
+            if ("vibrate".equalsIgnoreCase(ringerMode)) return VIBRATE;
+            return NORMAL;
+        }
+    }
+
+    private final long id;
+    private final String name;
+    private final boolean timeTrigger;
+    private final boolean locationTrigger;
+    private final int startMinute;
+    private final int endMinute;
+    private final double latitude;
+    private final double longitude;
+    private final double radiusMeters;
+    private final RingerMode ringerMode;
+    private final int actions;
+    private final boolean active;
+
+    private CompiledProfile(Profile profile) {
+        this.id = profile.getId();
+        this.name = profile.getName();
+        this.timeTrigger = "time".equals(profile.getTriggerType());
+        this.locationTrigger = "location".equals(profile.getTriggerType());
+        this.startMinute = timeTrigger ? parseMinuteOfDay(profile.getTriggerValue()) : NO_MINUTE;
+        this.endMinute = parseMinuteOfDay(profile.getEndTime());
+        this.ringerMode = RingerMode.fromString(profile.getRingerMode());
+        this.actions = parseActions(profile.getActions());
+        this.active = profile.isActive();
+
+        double lat = Double.NaN;
+        double lng = Double.NaN;
+        if (locationTrigger && profile.getTriggerValue() != null) {
+            String value = profile.getTriggerValue();
+            int comma = value.indexOf(',');
+            if (comma > 0) {
+                try {
+                    lat = Double.parseDouble(value.substring(0, comma).trim());
+                    lng = Double.parseDouble(value.substring(comma + 1).trim());
+                } catch (NumberFormatException e) {
+                    lat = Double.NaN;
+                    lng = Double.NaN;
+                }
+            }
+        }
+        this.latitude = lat;
+        this.longitude = lng;
+        this.radiusMeters = profile.getRadius();
+    }
+
+    public static CompiledProfile compile(Profile profile) {
+        return new CompiledProfile(profile);
+    }
+
+    /**
+     * Minutes since midnight for "HH:mm", or NO_MINUTE if missing or malformed
+     */
+    public static int parseMinuteOfDay(String time) {
+        if (time == null) {
+            return NO_MINUTE;
+        }
+        int colon = time.indexOf(':');
+        if (colon <= 0) {
+            return NO_MINUTE;
+        }
+        try {
+            int hour = Integer.parseInt(time.substring(0, colon).trim());
+            int minute = Integer.parseInt(time.substring(colon + 1).trim());
+            if (hour < 0 || hour > 23 || minute < 0 || minute > 59) {
+                return NO_MINUTE;
+            }
+            return hour * 60 + minute;
+        } catch (NumberFormatException e) {
+            return NO_MINUTE;
+        }
+    }
+
+    /**
+     * Bitmask of ACTION_* values for a comma-separated action list, unknown actions are dropped
+     */
+    public static int parseActions(String actions) {
+        if (actions == null || actions.isEmpty()) {
+            return 0;
+        }
+        int mask = 0;
+        for (String action : actions.split(",")) {
+            switch (action.trim().toLowerCase()) {
+                case "wifi":
+                    mask |= ACTION_WIFI;
+                    break;
+                case "bluetooth":
+                    mask |= ACTION_BLUETOOTH;
+                    break;
+                case "data":
+                    mask |= ACTION_DATA;
+                    break;
+                case "dnd":
+                    mask |= ACTION_DND;
+                    break;
+                default:
+                    break;
+            }
+        }
+        return mask;
+    }
+
+    public static String getActionLabel(int action) {
+        switch (action) {
+            case ACTION_WIFI: return "📶 Wi-Fi";
+            case ACTION_BLUETOOTH: return "🔵 Bluetooth";
+            case ACTION_DATA: return "📱 Data";
+            case ACTION_DND: return "🚫 DND";
+            default: return "";
+        }
+    }
+
+    public long getId() { return id; }
+
+    public String getName() { return name; }
+
+    public boolean isTimeTrigger() { return timeTrigger; }
+
+    public boolean isLocationTrigger() { return locationTrigger; }
+
+    // Minute of day, NO_MINUTE if not a time profile
+    public int getStartMinute() { return startMinute; }
+
+    // Minute of day, NO_MINUTE if the profile has no end time
+    public int getEndMinute() { return endMinute; }
+
+    public boolean hasLocation() { return !Double.isNaN(latitude) && !Double.isNaN(longitude); }
+
+    // NaN if not a location profile
+    public double getLatitude() { return latitude; }
+
+    public double getLongitude() { return longitude; }
+
+    public double getRadiusMeters() { return radiusMeters; }
+
+    public RingerMode getRingerMode() { return ringerMode; }
+
+    public int getActions() { return actions; }
+
+    public boolean hasAction(int action) { return (actions & action) != 0; }
+
+    public boolean isActive() { return active; }
+}
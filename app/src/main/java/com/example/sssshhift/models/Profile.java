@@ -10,6 +10,7 @@ public class Profile {
     private String actions; // comma-separated actions
     private boolean isActive;
     private long createdAt;
+    private CompiledProfile compiled; // Parsed on first use, reset by every setter
 
     // Constructors
     public Profile() {}
@@ -29,31 +30,43 @@ public class Profile {
 
     // Getters and Setters
     public long getId() { return id; }
-    public void setId(long id) { this.id = id; }
+    public void setId(long id) { this.id = id; compiled = null; }
 
     public String getName() { return name; }
-    public void setName(String name) { this.name = name; }
+    public void setName(String name) { this.name = name; compiled = null; }
 
     public String getTriggerType() { return triggerType; }
-    public void setTriggerType(String triggerType) { this.triggerType = triggerType; }
+    public void setTriggerType(String triggerType) { this.triggerType = triggerType; compiled = null; }
 
     public String getTriggerValue() { return triggerValue; }
-    public void setTriggerValue(String triggerValue) { this.triggerValue = triggerValue; }
+    public void setTriggerValue(String triggerValue) { this.triggerValue = triggerValue; compiled = null; }
 
     public String getEndTime() { return endTime; }
-    public void setEndTime(String endTime) { this.endTime = endTime; }
+    public void setEndTime(String endTime) { this.endTime = endTime; compiled = null; }
 
     public String getRingerMode() { return ringerMode; }
-    public void setRingerMode(String ringerMode) { this.ringerMode = ringerMode; }
+    public void setRingerMode(String ringerMode) { this.ringerMode = ringerMode; compiled = null; }
 
     public String getActions() { return actions; }
-    public void setActions(String actions) { this.actions = actions; }
+    public void setActions(String actions) { this.actions = actions; compiled = null; }
 
     public boolean isActive() { return isActive; }
-    public void setActive(boolean active) { isActive = active; }
+    public void setActive(boolean active) { isActive = active; compiled = null; }
 
     public long getCreatedAt() { return createdAt; }
-    public void setCreatedAt(long createdAt) { this.createdAt = createdAt; }
+    public void setCreatedAt(long createdAt) { this.createdAt = createdAt; compiled = null; }
+
+    /**
+     * Pre-parsed form of this profile, shared by everyone holding the same instance
+     */
+    public CompiledProfile getCompiled() {
+        CompiledProfile current = compiled;
+        if (current == null) {
+            current = CompiledProfile.compile(this);
+            compiled = current;
+        }
+        return current;
+    }
 
     // Utility methods
     public String getFormattedTrigger() {
@@ -69,12 +82,7 @@ public class Profile {
     }
 
     public String getFormattedRingerMode() {
-        switch (ringerMode) {
-            case "silent": return "🔇 Silent";
-            case "vibrate": return "📳 Vibrate";
-            case "normal": return "🔊 Normal";
-            default: return "🔊 Normal";
-        }
+        return getCompiled().getRingerMode().getLabel();
     }
 
     public String[] getActionsList() {
@@ -1,8 +1,14 @@
 package com.example.sssshhift.provider;
 
 import android.content.ContentProvider;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
+import android.content.ContentResolver;
 import android.content.ContentUris;
 import android.content.ContentValues;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.content.OperationApplicationException;
 import android.content.UriMatcher;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
@@ -11,23 +17,76 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import com.example.sssshhift.data.ProfileDatabaseHelper;
 
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+
 public class ProfileContentProvider extends ContentProvider {
 
-    private static final String AUTHORITY = "com.example.sssshhift.provider";
+    public static final String AUTHORITY = "com.example.sssshhift.provider";
     private static final String PATH_PROFILES = "profiles";
+    private static final String PATH_STATS = PATH_PROFILES + "/stats";
     public static final Uri CONTENT_URI = Uri.parse("content://" + AUTHORITY + "/" + PATH_PROFILES);
 
+    /**
+     * Single-row aggregate over all profiles. The cursor is notified on any change under
+     * {@link #CONTENT_URI}, so observers of that uri can simply re-query it.
+     */
+    public static final Uri STATS_URI = Uri.parse("content://" + AUTHORITY + "/" + PATH_STATS);
+
+    // Columns of the stats row
+    public static final String STATS_TOTAL = "total";
+    public static final String STATS_ACTIVE = "active";
+    public static final String STATS_INACTIVE = "inactive";
+    public static final String STATS_TIME = "time_count";
+    public static final String STATS_LOCATION = "location_count";
+    public static final String STATS_NEXT_ACTIVATION = "next_activation"; // Epoch ms, null if none
+    public static final String STATS_LAST_CHANGE = "last_change"; // Epoch ms, 0 if never
+
     private static final int PROFILES = 100;
     private static final int PROFILE_ID = 101;
+    private static final int PROFILE_STATS = 102;
+
+    // Deletes leave no row behind, so their time is kept here for the last change stat
+    private static final String PREFS_NAME = "profile_provider";
+    private static final String KEY_LAST_DELETED_AT = "last_deleted_at";
+
+    // Active time profiles store "HH:mm", their next start is the nearest minute of day
+    // after now (1..1440 minutes ahead, wrapping to tomorrow)
+    private static final String MINUTE_OF_DAY =
+            "(CAST(substr(" + ProfileDatabaseHelper.COLUMN_TRIGGER_VALUE + ", 1, 2) AS INTEGER) * 60 + " +
+                    "CAST(substr(" + ProfileDatabaseHelper.COLUMN_TRIGGER_VALUE + ", 4, 2) AS INTEGER))";
+
+    private static final String STATS_QUERY =
+            "SELECT COUNT(*) AS " + STATS_TOTAL + ", " +
+                    "IFNULL(SUM(" + ProfileDatabaseHelper.COLUMN_IS_ACTIVE + " = 1), 0) AS " + STATS_ACTIVE + ", " +
+                    "IFNULL(SUM(" + ProfileDatabaseHelper.COLUMN_IS_ACTIVE + " != 1), 0) AS " + STATS_INACTIVE + ", " +
+                    "IFNULL(SUM(" + ProfileDatabaseHelper.COLUMN_TRIGGER_TYPE + " = 'time'), 0) AS " + STATS_TIME + ", " +
+                    "IFNULL(SUM(" + ProfileDatabaseHelper.COLUMN_TRIGGER_TYPE + " = 'location'), 0) AS " + STATS_LOCATION + ", " +
+                    "MIN(CASE WHEN " + ProfileDatabaseHelper.COLUMN_IS_ACTIVE + " = 1" +
+                    " AND " + ProfileDatabaseHelper.COLUMN_TRIGGER_TYPE + " = 'time'" +
+                    " AND " + ProfileDatabaseHelper.COLUMN_TRIGGER_VALUE + " GLOB '[0-2][0-9]:[0-5][0-9]'" +
+                    " THEN CAST(?1 AS INTEGER) + ((" + MINUTE_OF_DAY + " - CAST(?2 AS INTEGER) + 1439) % 1440 + 1) * 60000" +
+                    " END) AS " + STATS_NEXT_ACTIVATION + ", " +
+                    "MAX(IFNULL(MAX(" + ProfileDatabaseHelper.COLUMN_UPDATED_AT + "), 0), CAST(?3 AS INTEGER)) AS " + STATS_LAST_CHANGE +
+                    " FROM " + ProfileDatabaseHelper.TABLE_PROFILES;
+
+    // Above this many rows a single collection-level notification is sent instead
+    private static final int MAX_ROW_NOTIFICATIONS = 32;
 
     private static final UriMatcher sUriMatcher = new UriMatcher(UriMatcher.NO_MATCH);
     static {
         sUriMatcher.addURI(AUTHORITY, PATH_PROFILES, PROFILES);
         sUriMatcher.addURI(AUTHORITY, PATH_PROFILES + "/#", PROFILE_ID);
+        sUriMatcher.addURI(AUTHORITY, PATH_STATS, PROFILE_STATS);
     }
 
     private ProfileDatabaseHelper mDbHelper;
 
+    // Non-null while a batch runs on this thread: writes skip their own notifications and
+    // only record whether anything changed, the batch then notifies once
+    private final ThreadLocal<Boolean> mBatchChanged = new ThreadLocal<>();
+
     @Override
     public boolean onCreate() {
         mDbHelper = new ProfileDatabaseHelper(getContext());
@@ -53,6 +112,11 @@ public class ProfileContentProvider extends ContentProvider {
                 cursor = database.query(ProfileDatabaseHelper.TABLE_PROFILES, projection, selection,
                         selectionArgs, null, null, sortOrder);
                 break;
+            case PROFILE_STATS:
+                cursor = queryStats(database);
+                // Stats change with every profile, observe the whole collection
+                cursor.setNotificationUri(getContext().getContentResolver(), CONTENT_URI);
+                return cursor;
             default:
                 throw new IllegalArgumentException("Unknown URI: " + uri);
         }
@@ -61,28 +125,120 @@ public class ProfileContentProvider extends ContentProvider {
         return cursor;
     }
 
+    private Cursor queryStats(SQLiteDatabase database) {
+        Calendar minuteStart = Calendar.getInstance();
+        minuteStart.set(Calendar.SECOND, 0);
+        minuteStart.set(Calendar.MILLISECOND, 0);
+        int minuteOfDay = minuteStart.get(Calendar.HOUR_OF_DAY) * 60 + minuteStart.get(Calendar.MINUTE);
+
+        return database.rawQuery(STATS_QUERY, new String[]{
+                String.valueOf(minuteStart.getTimeInMillis()),
+                String.valueOf(minuteOfDay),
+                String.valueOf(getPrefs().getLong(KEY_LAST_DELETED_AT, 0))
+        });
+    }
+
+    private SharedPreferences getPrefs() {
+        return getContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
     @Nullable
     @Override
     public Uri insert(@NonNull Uri uri, @Nullable ContentValues values) {
         SQLiteDatabase database = mDbHelper.getWritableDatabase();
-        long id = database.insert(ProfileDatabaseHelper.TABLE_PROFILES, null, values);
+        long id = database.insert(ProfileDatabaseHelper.TABLE_PROFILES, null, withUpdatedAt(values));
 
         if (id != -1) {
-            getContext().getContentResolver().notifyChange(uri, null);
-            return ContentUris.withAppendedId(uri, id);
+            Uri rowUri = ContentUris.withAppendedId(CONTENT_URI, id);
+            if (!deferNotification()) {
+                getContext().getContentResolver().notifyChange(rowUri, null);
+            }
+            return rowUri;
         }
         return null;
     }
 
+    /**
+     * Inserts all rows in one transaction and sends a single collection-level notification
+     */
+    @Override
+    public int bulkInsert(@NonNull Uri uri, @NonNull ContentValues[] values) {
+        if (sUriMatcher.match(uri) != PROFILES) {
+            throw new IllegalArgumentException("Unknown URI: " + uri);
+        }
+
+        SQLiteDatabase database = mDbHelper.getWritableDatabase();
+        int inserted = 0;
+        database.beginTransaction();
+        try {
+            for (ContentValues value : values) {
+                if (database.insert(ProfileDatabaseHelper.TABLE_PROFILES, null, withUpdatedAt(value)) != -1) {
+                    inserted++;
+                }
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+
+        if (inserted > 0 && !deferNotification()) {
+            getContext().getContentResolver().notifyChange(CONTENT_URI, null);
+        }
+        return inserted;
+    }
+
+    /**
+     * Runs all operations in one transaction. Nothing is written if any operation fails, and
+     * observers get a single collection-level notification once everything is committed.
+     */
+    @NonNull
+    @Override
+    public ContentProviderResult[] applyBatch(@NonNull ArrayList<ContentProviderOperation> operations)
+            throws OperationApplicationException {
+        SQLiteDatabase database = mDbHelper.getWritableDatabase();
+        boolean changed;
+        ContentProviderResult[] results;
+
+        database.beginTransaction();
+        mBatchChanged.set(Boolean.FALSE);
+        try {
+            results = super.applyBatch(operations);
+            database.setTransactionSuccessful();
+        } finally {
+            changed = Boolean.TRUE.equals(mBatchChanged.get());
+            mBatchChanged.remove();
+            database.endTransaction();
+        }
+
+        if (changed) {
+            getContext().getContentResolver().notifyChange(CONTENT_URI, null);
+        }
+        return results;
+    }
+
+    // True inside a batch, which notifies once at the end instead
+    private boolean deferNotification() {
+        if (mBatchChanged.get() == null) {
+            return false;
+        }
+        mBatchChanged.set(Boolean.TRUE);
+        return true;
+    }
+
     @Override
     public int update(@NonNull Uri uri, @Nullable ContentValues values, @Nullable String selection,
                       @Nullable String[] selectionArgs) {
         SQLiteDatabase database = mDbHelper.getWritableDatabase();
         int rowsUpdated;
+        List<Long> affectedIds = null;
+        values = withUpdatedAt(values);
 
         int match = sUriMatcher.match(uri);
         switch (match) {
             case PROFILES:
+                // A batch notifies the whole collection anyway
+                affectedIds = mBatchChanged.get() == null
+                        ? findAffectedIds(database, selection, selectionArgs) : null;
                 rowsUpdated = database.update(ProfileDatabaseHelper.TABLE_PROFILES, values, selection, selectionArgs);
                 break;
             case PROFILE_ID:
@@ -95,7 +251,7 @@ public class ProfileContentProvider extends ContentProvider {
         }
 
         if (rowsUpdated != 0) {
-            getContext().getContentResolver().notifyChange(uri, null);
+            notifyRows(uri, affectedIds);
         }
         return rowsUpdated;
     }
@@ -104,10 +260,14 @@ public class ProfileContentProvider extends ContentProvider {
     public int delete(@NonNull Uri uri, @Nullable String selection, @Nullable String[] selectionArgs) {
         SQLiteDatabase database = mDbHelper.getWritableDatabase();
         int rowsDeleted;
+        List<Long> affectedIds = null;
 
         int match = sUriMatcher.match(uri);
         switch (match) {
             case PROFILES:
+                // A batch notifies the whole collection anyway
+                affectedIds = mBatchChanged.get() == null
+                        ? findAffectedIds(database, selection, selectionArgs) : null;
                 rowsDeleted = database.delete(ProfileDatabaseHelper.TABLE_PROFILES, selection, selectionArgs);
                 break;
             case PROFILE_ID:
@@ -120,11 +280,52 @@ public class ProfileContentProvider extends ContentProvider {
         }
 
         if (rowsDeleted != 0) {
-            getContext().getContentResolver().notifyChange(uri, null);
+            getPrefs().edit().putLong(KEY_LAST_DELETED_AT, System.currentTimeMillis()).apply();
+            notifyRows(uri, affectedIds);
         }
         return rowsDeleted;
     }
 
+    // Copy so the caller's values are left untouched
+    private static ContentValues withUpdatedAt(@Nullable ContentValues values) {
+        ContentValues stamped = values != null ? new ContentValues(values) : new ContentValues();
+        stamped.put(ProfileDatabaseHelper.COLUMN_UPDATED_AT, System.currentTimeMillis());
+        return stamped;
+    }
+
+    /**
+     * Ids matched by a collection-level selection, or null if there are too many to
+     * notify one by one (observers then reload everything)
+     */
+    @Nullable
+    private List<Long> findAffectedIds(SQLiteDatabase database, @Nullable String selection,
+                                       @Nullable String[] selectionArgs) {
+        List<Long> ids = new ArrayList<>();
+        try (Cursor cursor = database.query(ProfileDatabaseHelper.TABLE_PROFILES,
+                new String[]{ProfileDatabaseHelper.COLUMN_ID}, selection, selectionArgs,
+                null, null, null, String.valueOf(MAX_ROW_NOTIFICATIONS + 1))) {
+            while (cursor.moveToNext()) {
+                ids.add(cursor.getLong(0));
+            }
+        }
+        return ids.size() > MAX_ROW_NOTIFICATIONS ? null : ids;
+    }
+
+    // Row uris let observers refresh just the changed profiles
+    private void notifyRows(@NonNull Uri uri, @Nullable List<Long> affectedIds) {
+        if (deferNotification()) {
+            return;
+        }
+        ContentResolver resolver = getContext().getContentResolver();
+        if (sUriMatcher.match(uri) == PROFILE_ID || affectedIds == null) {
+            resolver.notifyChange(uri, null);
+            return;
+        }
+        for (long id : affectedIds) {
+            resolver.notifyChange(ContentUris.withAppendedId(CONTENT_URI, id), null);
+        }
+    }
+
     @Nullable
     @Override
     public String getType(@NonNull Uri uri) {
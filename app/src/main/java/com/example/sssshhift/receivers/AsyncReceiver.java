@@ -0,0 +1,64 @@
+package com.example.sssshhift.receivers;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.os.PowerManager;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Base for the app's receivers. onReceive only calls goAsync() and hands the work to a background
+ * executor, which holds a partial wake lock from the start to the end of the work. The hold time
+ * is recorded per receiver in {@link ReceiverStats}.
+ */
+public abstract class AsyncReceiver extends BroadcastReceiver {
+    private static final String TAG = "AsyncReceiver";
+
+    // Safety net only, the lock is released as soon as the work returns
+    private static final long WAKE_LOCK_TIMEOUT_MS = 60_000;
+
+    private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool();
+
+    @Override
+    public final void onReceive(Context context, Intent intent) {
+        // Null when called directly instead of for a broadcast, the work still runs in the background
+        final PendingResult result = goAsync();
+        final Context appContext = context.getApplicationContext();
+        final String name = getClass().getSimpleName();
+
+        EXECUTOR.execute(() -> {
+            PowerManager powerManager = (PowerManager) appContext.getSystemService(Context.POWER_SERVICE);
+            PowerManager.WakeLock wakeLock = powerManager != null
+                    ? powerManager.newWakeLock(PowerManager.PARTIAL_WAKE_LOCK, "Sssshhhift:" + name)
+                    : null;
+            long acquiredAt = SystemClock.elapsedRealtime();
+            if (wakeLock != null) {
+                wakeLock.acquire(WAKE_LOCK_TIMEOUT_MS);
+            }
+
+            try {
+                onReceiveAsync(appContext, intent);
+            } catch (Exception e) {
+                Log.e(TAG, "Error in " + name + ": " + e.getMessage(), e);
+            } finally {
+                if (wakeLock != null && wakeLock.isHeld()) {
+                    wakeLock.release();
+                }
+                ReceiverStats.getInstance(appContext).record(name, SystemClock.elapsedRealtime() - acquiredAt);
+                if (result != null) {
+                    result.finish();
+                }
+            }
+        });
+    }
+
+    /**
+     * The receiver's work, on a background thread under a partial wake lock. Anything started
+     * here that finishes later must be waited for, the lock is released when this returns.
+     */
+    protected abstract void onReceiveAsync(Context context, Intent intent);
+}
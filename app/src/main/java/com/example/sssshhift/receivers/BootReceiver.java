@@ -1,4 +1,51 @@
 package com.example.sssshhift.receivers;
 
-public class BootReceiver {
+import android.content.Context;
+import android.content.Intent;
+import android.util.Log;
+
+import com.example.sssshhift.calendar.CalendarMonitor;
+import com.example.sssshhift.geofencing.GeofenceRegistry;
+import com.example.sssshhift.scheduler.TransitionScheduler;
+import com.example.sssshhift.usage.session.SessionTracker;
+import com.example.sssshhift.utils.ProfileUtils;
+
+/**
+ * Restores the transition timeline after a reboot, an app update or a clock change, rebuilding
+ * the daily profile edges for the latter, and the registered geofences after a reboot or an app
+ * update. Calendar windows are recomputed in every case, and a usage session left open by a
+ * reboot is closed.
+ */
+public class BootReceiver extends AsyncReceiver {
+    private static final String TAG = "BootReceiver";
+
+    @Override
+    protected void onReceiveAsync(Context context, Intent intent) {
+        if (intent == null || intent.getAction() == null) {
+            return;
+        }
+
+        Log.d(TAG, "Received action: " + intent.getAction());
+
+        switch (intent.getAction()) {
+            case Intent.ACTION_BOOT_COMPLETED:
+                SessionTracker.getInstance(context).recoverAfterBoot();
+                // Fall through
+            case Intent.ACTION_MY_PACKAGE_REPLACED:
+                // Play Services drops every fence on reboot, waited for so the lock covers it
+                GeofenceRegistry.getInstance(context).registerAllAndWait();
+                TransitionScheduler.getInstance(context).catchUp();
+                break;
+            case Intent.ACTION_TIME_CHANGED:
+            case Intent.ACTION_TIMEZONE_CHANGED:
+                // Daily edges keep their wall-clock time, e.g. 09:00 stays 09:00 in the new zone
+                ProfileUtils.rescheduleTimeProfiles(context);
+                // Apply edges missed while we were down and re-arm the next one
+                TransitionScheduler.getInstance(context).catchUp();
+                break;
+        }
+
+        // Re-registers the calendar observer, windows move with the clock and the time zone
+        CalendarMonitor.getInstance(context).start();
+    }
 }
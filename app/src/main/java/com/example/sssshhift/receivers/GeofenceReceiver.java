@@ -1,20 +1,20 @@
 package com.example.sssshhift.receivers;
 
-import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 import android.util.Log;
 import com.google.android.gms.location.Geofence;
 import com.google.android.gms.location.GeofencingEvent;
-import com.example.sssshhift.services.ProfileService;
+import com.example.sssshhift.geofencing.GeofenceRegistry;
+import com.example.sssshhift.geofencing.GeofenceStateMachine;
 import java.util.List;
 
-public class GeofenceReceiver extends BroadcastReceiver {
+public class GeofenceReceiver extends AsyncReceiver {
 
     private static final String TAG = "GeofenceReceiver";
 
     @Override
-    public void onReceive(Context context, Intent intent) {
+    protected void onReceiveAsync(Context context, Intent intent) {
         Log.d(TAG, "GeofenceReceiver triggered");
 
         if (context == null || intent == null) {
@@ -52,6 +52,12 @@ public class GeofenceReceiver extends BroadcastReceiver {
                     Log.d(TAG, "Processing geofence: " + geofenceId +
                             ", Transition: " + getTransitionString(geofenceTransition));
 
+                    if (GeofenceRegistry.REFRESH_FENCE_ID.equals(geofenceId)) {
+                        // Moved away from where the registered fences were chosen
+                        GeofenceRegistry.getInstance(context).onRefreshExit(geofencingEvent.getTriggeringLocation());
+                        continue;
+                    }
+
                     // Handle geofence transition
                     handleGeofenceTransition(context, geofenceId, geofenceTransition);
                 }
@@ -64,23 +70,22 @@ public class GeofenceReceiver extends BroadcastReceiver {
     }
 
     private void handleGeofenceTransition(Context context, String geofenceId, int transitionType) {
-        try {
-            // Start ProfileService to handle the geofence transition
-            Intent serviceIntent = new Intent(context, ProfileService.class);
-            serviceIntent.setAction(ProfileService.ACTION_GEOFENCE_TRANSITION);
-            serviceIntent.putExtra(ProfileService.EXTRA_GEOFENCE_ID, geofenceId);
-            serviceIntent.putExtra(ProfileService.EXTRA_TRANSITION_TYPE, transitionType);
-
-            // Start as foreground service for Android 8.0+
-            if (android.os.Build.VERSION.SDK_INT >= android.os.Build.VERSION_CODES.O) {
-                context.startForegroundService(serviceIntent);
-            } else {
-                context.startService(serviceIntent);
-            }
+        GeofenceRegistry.Entry entry = GeofenceRegistry.getInstance(context).get(geofenceId);
+        if (entry == null) {
+            Log.w(TAG, "Geofence is not in the registry: " + geofenceId);
+            return;
+        }
+        long profileId = entry.getProfileId();
 
-            Log.d(TAG, "Started ProfileService for geofence: " + geofenceId);
-        } catch (Exception e) {
-            Log.e(TAG, "Error starting ProfileService", e);
+        // Raw transitions only feed the state machine, it decides when the profile actually changes
+        GeofenceStateMachine stateMachine = GeofenceStateMachine.getInstance(context);
+        switch (transitionType) {
+            case Geofence.GEOFENCE_TRANSITION_ENTER:
+                stateMachine.onEnter(geofenceId, profileId);
+                break;
+            case Geofence.GEOFENCE_TRANSITION_EXIT:
+                stateMachine.onExit(geofenceId, profileId);
+                break;
         }
     }
 
@@ -1,22 +1,21 @@
 package com.example.sssshhift.receivers;
 
-import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
-import android.database.Cursor;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
 import android.widget.Toast;
 
-import com.example.sssshhift.data.ProfileDatabaseHelper;
-import com.example.sssshhift.utils.NotificationUtils;
-import com.example.sssshhift.utils.PhoneSettingsManager;
+import com.example.sssshhift.engine.ProfileEngine;
+import com.example.sssshhift.engine.TriggerEvent;
 import com.example.sssshhift.utils.ProfileUtils;
 
-public class ProfileTimerReceiver extends BroadcastReceiver {
+public class ProfileTimerReceiver extends AsyncReceiver {
     private static final String TAG = "ProfileTimerReceiver";
 
     @Override
-    public void onReceive(Context context, Intent intent) {
+    protected void onReceiveAsync(Context context, Intent intent) {
         Log.d(TAG, "ProfileTimerReceiver triggered");
 
         try {
@@ -33,152 +32,24 @@ public class ProfileTimerReceiver extends BroadcastReceiver {
                     ", isStartTime: " + isStartTime +
                     ", scheduledTime: " + scheduledTime);
 
-            if (isStartTime) {
-                // Activate the profile
-                activateProfile(context, profileName);
+            applyTransition(context, profileName, isStartTime);
 
-                // Show notification
-                NotificationUtils.showProfileActivatedNotification(context, profileName);
-
-                // Reschedule for next day (daily recurring)
-                ProfileUtils.rescheduleProfileForNextDay(context, profileName, scheduledTime, true);
-
-            } else {
-                // Deactivate the profile (end time)
-                deactivateProfile(context, profileName);
-
-                // Show notification
-                NotificationUtils.showProfileEndedNotification(context, profileName);
-
-                // Reschedule for next day (daily recurring)
-                ProfileUtils.rescheduleProfileForNextDay(context, profileName, scheduledTime, false);
-            }
+            // Alarm armed by an earlier version, move the profile onto the shared timeline
+            ProfileUtils.rescheduleProfileForNextDay(context, profileName, scheduledTime, isStartTime);
 
         } catch (Exception e) {
             Log.e(TAG, "Error processing profile timer", e);
-            Toast.makeText(context, "Error processing profile timer: " + e.getMessage(),
-                    Toast.LENGTH_SHORT).show();
-        }
-    }
-
-    private void activateProfile(Context context, String profileName) {
-        Log.d(TAG, "Activating profile: " + profileName);
-
-        try {
-            // Get profile from database
-            ProfileDatabaseHelper dbHelper = new ProfileDatabaseHelper(context);
-            Cursor cursor = dbHelper.getProfileByName(profileName);
-
-            if (cursor != null && cursor.moveToFirst()) {
-                // Extract profile settings
-                String ringerMode = cursor.getString(cursor.getColumnIndexOrThrow(ProfileDatabaseHelper.COLUMN_RINGER_MODE));
-                String actions = cursor.getString(cursor.getColumnIndexOrThrow(ProfileDatabaseHelper.COLUMN_ACTIONS));
-
-                // Apply ringer mode
-                PhoneSettingsManager.setRingerMode(context, ringerMode);
-
-                // Apply actions (Wi-Fi, Bluetooth, etc.)
-                if (actions != null && !actions.isEmpty()) {
-                    applyProfileActions(context, actions, true);
-                }
-
-                // Mark profile as active in database
-                dbHelper.updateProfileActiveStatus(profileName, true);
-
-                Log.d(TAG, "Profile activated successfully: " + profileName);
-
-            } else {
-                Log.e(TAG, "Profile not found in database: " + profileName);
-            }
-
-            if (cursor != null) {
-                cursor.close();
-            }
-
-        } catch (Exception e) {
-            Log.e(TAG, "Error activating profile: " + profileName, e);
-        }
-    }
-
-    private void deactivateProfile(Context context, String profileName) {
-        Log.d(TAG, "Deactivating profile: " + profileName);
-
-        try {
-            // Get profile from database
-            ProfileDatabaseHelper dbHelper = new ProfileDatabaseHelper(context);
-            Cursor cursor = dbHelper.getProfileByName(profileName);
-
-            if (cursor != null && cursor.moveToFirst()) {
-                // Extract profile settings to reverse them
-                String actions = cursor.getString(cursor.getColumnIndexOrThrow(ProfileDatabaseHelper.COLUMN_ACTIONS));
-
-                // Restore normal ringer mode
-                PhoneSettingsManager.setRingerMode(context, "normal");
-
-                // Reverse actions (if any)
-                if (actions != null && !actions.isEmpty()) {
-                    applyProfileActions(context, actions, false);
-                }
-
-                // Mark profile as inactive in database
-                dbHelper.updateProfileActiveStatus(profileName, false);
-
-                Log.d(TAG, "Profile deactivated successfully: " + profileName);
-
-            } else {
-                Log.e(TAG, "Profile not found in database: " + profileName);
-            }
-
-            if (cursor != null) {
-                cursor.close();
-            }
-
-        } catch (Exception e) {
-            Log.e(TAG, "Error deactivating profile: " + profileName, e);
+            // Toasts need the main thread
+            new Handler(Looper.getMainLooper()).post(() -> Toast.makeText(context,
+                    "Error processing profile timer: " + e.getMessage(), Toast.LENGTH_SHORT).show());
         }
     }
 
-    private void applyProfileActions(Context context, String actions, boolean activate) {
-        Log.d(TAG, "Applying profile actions: " + actions + ", activate: " + activate);
-
-        if (actions == null || actions.isEmpty()) {
-            return;
-        }
-
-        String[] actionArray = actions.split(",");
-
-        for (String action : actionArray) {
-            action = action.trim();
-
-            switch (action) {
-                case "wifi":
-                    // Note: Direct Wi-Fi control requires system-level permissions
-                    // Show notification instead for user to manually toggle
-                    NotificationUtils.showWifiToggleNotification(context, activate);
-                    break;
-
-                case "bluetooth":
-                    PhoneSettingsManager.toggleBluetooth(context, activate);
-                    break;
-
-                case "data":
-                    // Mobile data toggle requires system permissions
-                    // Show notification for manual toggle
-                    Log.d(TAG, "Mobile data toggle requested: " + activate);
-                    break;
-
-                case "dnd":
-                    if (activate) {
-                        PhoneSettingsManager.enableDoNotDisturb(context);
-                    } else {
-                        PhoneSettingsManager.disableDoNotDisturb(context);
-                    }
-                    break;
-
-                default:
-                    Log.w(TAG, "Unknown action: " + action);
-                    break;
-            }
-        }
+    /**
+     * Activate or deactivate a time profile, called by the transition scheduler
+     */
+    public static void applyTransition(Context context, String profileName, boolean isStartTime) {
+        ProfileEngine.getInstance(context).handle(
+                TriggerEvent.forProfile(TriggerEvent.SOURCE_PROFILE_TIMER, profileName, isStartTime));
     }
 }
\ No newline at end of file
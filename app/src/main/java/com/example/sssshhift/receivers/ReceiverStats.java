@@ -0,0 +1,83 @@
+package com.example.sssshhift.receivers;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Iterator;
+
+/**
+ * Wake lock hold time per receiver, kept across restarts so the battery cost can be compared
+ * between versions
+ */
+public final class ReceiverStats {
+    private static final String TAG = "ReceiverStats";
+    private static final String PREFS_NAME = "receiver_stats";
+    private static final String KEY_STATS = "hold_times";
+
+    private static ReceiverStats instance;
+
+    private final SharedPreferences prefs;
+    private JSONObject stats; // name -> {count, total_ms, max_ms}
+
+    private ReceiverStats(Context context) {
+        this.prefs = context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        try {
+            this.stats = new JSONObject(prefs.getString(KEY_STATS, "{}"));
+        } catch (JSONException e) {
+            Log.e(TAG, "Error loading receiver stats", e);
+            this.stats = new JSONObject();
+        }
+    }
+
+    public static synchronized ReceiverStats getInstance(Context context) {
+        if (instance == null) {
+            instance = new ReceiverStats(context);
+        }
+        return instance;
+    }
+
+    synchronized void record(String receiver, long holdMs) {
+        try {
+            JSONObject entry = stats.optJSONObject(receiver);
+            if (entry == null) {
+                entry = new JSONObject();
+                stats.put(receiver, entry);
+            }
+            entry.put("count", entry.optLong("count") + 1);
+            entry.put("total_ms", entry.optLong("total_ms") + holdMs);
+            entry.put("max_ms", Math.max(entry.optLong("max_ms"), holdMs));
+            prefs.edit().putString(KEY_STATS, stats.toString()).apply();
+        } catch (JSONException e) {
+            Log.e(TAG, "Error recording receiver stats", e);
+        }
+        Log.d(TAG, receiver + " held the wake lock for " + holdMs + " ms");
+    }
+
+    /**
+     * Per-receiver hold time summary, e.g. "BootReceiver: n=2 avg=35ms max=52ms total=70ms"
+     */
+    public synchronized String getReport() {
+        StringBuilder report = new StringBuilder();
+        Iterator<String> names = stats.keys();
+        while (names.hasNext()) {
+            String name = names.next();
+            JSONObject entry = stats.optJSONObject(name);
+            if (entry == null) continue;
+            long count = entry.optLong("count");
+            long total = entry.optLong("total_ms");
+            if (report.length() > 0) report.append('\n');
+            report.append(String.format("%s: n=%d avg=%dms max=%dms total=%dms", name, count,
+                    count == 0 ? 0 : total / count, entry.optLong("max_ms"), total));
+        }
+        return report.toString();
+    }
+
+    public synchronized void reset() {
+        stats = new JSONObject();
+        prefs.edit().remove(KEY_STATS).apply();
+    }
+}
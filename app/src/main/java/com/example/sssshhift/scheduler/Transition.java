@@ -0,0 +1,100 @@
+package com.example.sssshhift.scheduler;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * A single edge on the scheduler timeline (a profile, timer or smart-auto event
+ * starting or ending at a given wall-clock time, a calendar busy window boundary, or a
+ * geofence confirmation deadline).
+ */
+public class Transition {
+    public static final String SOURCE_PROFILE = "profile";
+    public static final String SOURCE_TIMER = "timer";
+    public static final String SOURCE_SMART_AUTO = "smart_auto";
+    public static final String SOURCE_GEOFENCE = "geofence";
+    public static final String SOURCE_CALENDAR = "calendar";
+
+    public static final int NO_RINGER_MODE = -1;
+
+    private final String source;
+    private final String target;
+    private final String label;
+    private final boolean start;
+    private final long triggerAt;
+    private final int ringerMode;
+    private final long windowEnd;
+    private final boolean daily;
+
+    public Transition(String source, String target, String label, boolean start, long triggerAt,
+                      int ringerMode, long windowEnd, boolean daily) {
+        this.source = source;
+        this.target = target;
+        this.label = label;
+        this.start = start;
+        this.triggerAt = triggerAt;
+        this.ringerMode = ringerMode;
+        this.windowEnd = windowEnd;
+        this.daily = daily;
+    }
+
+    public static String keyOf(String source, String target, boolean start) {
+        return source + ":" + target + ":" + (start ? "start" : "end");
+    }
+
+    public String getKey() { return keyOf(source, target, start); }
+
+    public String getSource() { return source; }
+
+    // Profile name for SOURCE_PROFILE, "start_end" for SOURCE_TIMER, event start for SOURCE_SMART_AUTO
+    public String getTarget() { return target; }
+
+    // Display name shown in notifications
+    public String getLabel() { return label; }
+
+    public boolean isStart() { return start; }
+
+    public long getTriggerAt() { return triggerAt; }
+
+    public int getRingerMode() { return ringerMode; }
+
+    // End of the window this edge belongs to (smart-auto event end), 0 if unused
+    public long getWindowEnd() { return windowEnd; }
+
+    public boolean isDaily() { return daily; }
+
+    public Transition withTriggerAt(long newTriggerAt) {
+        return new Transition(source, target, label, start, newTriggerAt, ringerMode, windowEnd, daily);
+    }
+
+    JSONObject toJson() throws JSONException {
+        JSONObject json = new JSONObject();
+        json.put("source", source);
+        json.put("target", target);
+        json.put("label", label);
+        json.put("start", start);
+        json.put("triggerAt", triggerAt);
+        json.put("ringerMode", ringerMode);
+        json.put("windowEnd", windowEnd);
+        json.put("daily", daily);
+        return json;
+    }
+
+    static Transition fromJson(JSONObject json) throws JSONException {
+        return new Transition(
+                json.getString("source"),
+                json.getString("target"),
+                json.optString("label", null),
+                json.getBoolean("start"),
+                json.getLong("triggerAt"),
+                json.optInt("ringerMode", NO_RINGER_MODE),
+                json.optLong("windowEnd", 0),
+                json.optBoolean("daily", false)
+        );
+    }
+
+    @Override
+    public String toString() {
+        return getKey() + "@" + triggerAt;
+    }
+}
@@ -0,0 +1,24 @@
+package com.example.sssshhift.scheduler;
+
+import android.content.Context;
+import android.content.Intent;
+import android.util.Log;
+
+import com.example.sssshhift.receivers.AsyncReceiver;
+
+/**
+ * Receives the single wakeup armed by {@link TransitionScheduler}
+ */
+public class TransitionAlarmReceiver extends AsyncReceiver {
+    private static final String TAG = "TransitionAlarmReceiver";
+
+    @Override
+    protected void onReceiveAsync(Context context, Intent intent) {
+        if (intent == null || !TransitionScheduler.ACTION_TIMELINE_ALARM.equals(intent.getAction())) {
+            Log.e(TAG, "Received invalid intent");
+            return;
+        }
+
+        TransitionScheduler.getInstance(context).onAlarm();
+    }
+}
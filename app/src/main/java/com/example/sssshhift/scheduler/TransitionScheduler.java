@@ -0,0 +1,324 @@
+package com.example.sssshhift.scheduler;
+
+import android.app.AlarmManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.os.Build;
+import android.util.Log;
+
+import com.example.sssshhift.calendar.CalendarMonitor;
+import com.example.sssshhift.features.smartauto.SmartAutoAlarmManager;
+import com.example.sssshhift.geofencing.GeofenceStateMachine;
+import com.example.sssshhift.receivers.ProfileTimerReceiver;
+import com.example.sssshhift.timer.TimerAlarmReceiver;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Keeps time, timer and smart-auto transitions on one ordered timeline and arms
+ * exactly one wakeup for the earliest pending edge. When that alarm fires the due
+ * edges are dispatched, daily edges are moved to their next occurrence and the
+ * next edge is armed. The timeline is persisted so missed edges are caught up at boot.
+ */
+public class TransitionScheduler {
+    private static final String TAG = "TransitionScheduler";
+    private static final String PREFS_NAME = "transition_timeline";
+    private static final String KEY_TIMELINE = "timeline";
+    public static final String ACTION_TIMELINE_ALARM = "com.example.sssshhift.TIMELINE_ALARM";
+    private static final int ALARM_REQUEST_CODE = 7301;
+    private static final long DUE_TOLERANCE_MS = 1000; // Fire edges up to 1 second early
+
+    private static final Comparator<Transition> TIMELINE_ORDER = (a, b) -> {
+        int byTime = Long.compare(a.getTriggerAt(), b.getTriggerAt());
+        return byTime != 0 ? byTime : a.getKey().compareTo(b.getKey());
+    };
+
+    private static TransitionScheduler instance;
+
+    private final Context context;
+    private final AlarmManager alarmManager;
+    private final SharedPreferences prefs;
+    private final Map<String, Transition> transitionsByKey = new HashMap<>();
+    private final TreeSet<Transition> timeline = new TreeSet<>(TIMELINE_ORDER);
+    private long armedAt = 0; // Not persisted, alarms do not survive a reboot
+
+    private TransitionScheduler(Context context) {
+        this.context = context.getApplicationContext();
+        this.alarmManager = (AlarmManager) this.context.getSystemService(Context.ALARM_SERVICE);
+        this.prefs = this.context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        load();
+    }
+
+    public static synchronized TransitionScheduler getInstance(Context context) {
+        if (instance == null) {
+            instance = new TransitionScheduler(context);
+        }
+        return instance;
+    }
+
+    /**
+     * Add or replace a transition and re-arm the wakeup if it became the earliest edge
+     */
+    public synchronized void schedule(Transition transition) {
+        put(transition);
+        persist();
+        rearm();
+    }
+
+    /**
+     * Add or replace several transitions with a single persist and re-arm
+     */
+    public synchronized void scheduleAll(Collection<Transition> transitions) {
+        for (Transition transition : transitions) {
+            put(transition);
+        }
+        persist();
+        rearm();
+    }
+
+    /**
+     * Remove both edges of a target (e.g. a profile or a smart-auto event)
+     */
+    public synchronized void cancel(String source, String target) {
+        boolean removed = remove(Transition.keyOf(source, target, true));
+        removed |= remove(Transition.keyOf(source, target, false));
+        if (removed) {
+            persist();
+            rearm();
+        }
+    }
+
+    /**
+     * Remove both edges of several targets with a single persist and re-arm
+     */
+    public synchronized void cancelAll(String source, Collection<String> targets) {
+        boolean removed = false;
+        for (String target : targets) {
+            removed |= remove(Transition.keyOf(source, target, true));
+            removed |= remove(Transition.keyOf(source, target, false));
+        }
+        if (removed) {
+            persist();
+            rearm();
+        }
+    }
+
+    public synchronized Transition peekNext() {
+        return timeline.isEmpty() ? null : timeline.first();
+    }
+
+    public synchronized List<Transition> getPending() {
+        return new ArrayList<>(timeline);
+    }
+
+    /**
+     * Called when the armed wakeup fires: dispatch every due edge and arm the next one
+     */
+    public void onAlarm() {
+        runDue("alarm");
+    }
+
+    /**
+     * Called after boot, package replace or a clock change. Alarms are gone at this point,
+     * so missed edges are applied and the next edge is armed again.
+     */
+    public void catchUp() {
+        synchronized (this) {
+            armedAt = 0;
+        }
+        runDue("catch-up");
+    }
+
+    private void runDue(String reason) {
+        List<Transition> due;
+        synchronized (this) {
+            due = drainDue(System.currentTimeMillis());
+            persist();
+            rearm();
+        }
+
+        Log.d(TAG, "Dispatching " + due.size() + " transitions (" + reason + ")");
+        // Dispatch outside the lock, handlers may schedule new transitions
+        for (Transition transition : due) {
+            dispatch(transition);
+        }
+    }
+
+    private List<Transition> drainDue(long now) {
+        List<Transition> expired = new ArrayList<>();
+        while (!timeline.isEmpty() && timeline.first().getTriggerAt() <= now + DUE_TOLERANCE_MS) {
+            Transition transition = timeline.pollFirst();
+            transitionsByKey.remove(transition.getKey());
+            expired.add(transition);
+
+            if (transition.isDaily()) {
+                put(transition.withTriggerAt(nextDailyOccurrence(transition.getTriggerAt(), now)));
+            }
+        }
+
+        // Only the latest edge of each target matters. If a whole window was missed
+        // (its start and end are both due) nothing is applied at all.
+        Map<String, Transition> latestByTarget = new LinkedHashMap<>();
+        Map<String, Boolean> startSeen = new HashMap<>();
+        for (Transition transition : expired) {
+            String targetKey = transition.getSource() + ":" + transition.getTarget();
+            latestByTarget.remove(targetKey);
+            latestByTarget.put(targetKey, transition);
+            if (transition.isStart()) {
+                startSeen.put(targetKey, true);
+            }
+        }
+
+        List<Transition> due = new ArrayList<>();
+        for (Map.Entry<String, Transition> entry : latestByTarget.entrySet()) {
+            Transition latest = entry.getValue();
+            if (!latest.isStart() && startSeen.containsKey(entry.getKey())) {
+                Log.d(TAG, "Skipping fully missed window: " + entry.getKey());
+                continue;
+            }
+            due.add(latest);
+        }
+        return due;
+    }
+
+    private static long nextDailyOccurrence(long triggerAt, long now) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(triggerAt);
+        while (calendar.getTimeInMillis() <= now + DUE_TOLERANCE_MS) {
+            calendar.add(Calendar.DAY_OF_MONTH, 1);
+        }
+        return calendar.getTimeInMillis();
+    }
+
+    private void dispatch(Transition transition) {
+        try {
+            switch (transition.getSource()) {
+                case Transition.SOURCE_PROFILE:
+                    ProfileTimerReceiver.applyTransition(context, transition.getTarget(), transition.isStart());
+                    break;
+
+                case Transition.SOURCE_TIMER:
+                    // Runs here, under the wake lock of the receiver that dispatched the edge
+                    TimerAlarmReceiver.handleEdge(context, transition.getKey(), transition.getTriggerAt(),
+                            transition.getRingerMode(), transition.isStart(), transition.getLabel());
+                    break;
+
+                case Transition.SOURCE_SMART_AUTO:
+                    // Returns once the state thread has applied the edge
+                    SmartAutoAlarmManager.onTransition(context, transition.getTarget(),
+                            transition.getWindowEnd(), transition.isStart());
+                    break;
+
+                case Transition.SOURCE_CALENDAR:
+                    CalendarMonitor.getInstance(context).onBoundary(transition.getTarget(), transition.isStart(),
+                            transition.getLabel());
+                    break;
+
+                case Transition.SOURCE_GEOFENCE:
+                    GeofenceStateMachine.getInstance(context).onDeadline(transition.getTarget(), transition.isStart());
+                    break;
+
+                default:
+                    Log.w(TAG, "Unknown transition source: " + transition.getSource());
+                    break;
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Error dispatching transition " + transition, e);
+        }
+    }
+
+    private void put(Transition transition) {
+        remove(transition.getKey());
+        transitionsByKey.put(transition.getKey(), transition);
+        timeline.add(transition);
+    }
+
+    private boolean remove(String key) {
+        Transition existing = transitionsByKey.remove(key);
+        if (existing != null) {
+            timeline.remove(existing);
+            return true;
+        }
+        return false;
+    }
+
+    private void rearm() {
+        if (alarmManager == null) {
+            Log.e(TAG, "AlarmManager not available");
+            return;
+        }
+
+        PendingIntent pendingIntent = createAlarmIntent();
+        if (timeline.isEmpty()) {
+            alarmManager.cancel(pendingIntent);
+            armedAt = 0;
+            Log.d(TAG, "Timeline empty, wakeup cancelled");
+            return;
+        }
+
+        long triggerAt = timeline.first().getTriggerAt();
+        if (triggerAt == armedAt) {
+            return; // Earliest edge unchanged, the armed alarm is still correct
+        }
+
+        // Replaces the previously armed alarm, there is only ever one
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S && !alarmManager.canScheduleExactAlarms()) {
+            alarmManager.setAndAllowWhileIdle(AlarmManager.RTC_WAKEUP, triggerAt, pendingIntent);
+        } else if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            alarmManager.setExactAndAllowWhileIdle(AlarmManager.RTC_WAKEUP, triggerAt, pendingIntent);
+        } else {
+            alarmManager.setExact(AlarmManager.RTC_WAKEUP, triggerAt, pendingIntent);
+        }
+        armedAt = triggerAt;
+        Log.d(TAG, "Armed wakeup for " + timeline.first() + " (" + timeline.size() + " pending)");
+    }
+
+    private PendingIntent createAlarmIntent() {
+        Intent intent = new Intent(context, TransitionAlarmReceiver.class);
+        intent.setAction(ACTION_TIMELINE_ALARM);
+        intent.addFlags(Intent.FLAG_RECEIVER_FOREGROUND);
+        return PendingIntent.getBroadcast(
+                context,
+                ALARM_REQUEST_CODE,
+                intent,
+                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE
+        );
+    }
+
+    private void load() {
+        try {
+            JSONArray array = new JSONArray(prefs.getString(KEY_TIMELINE, "[]"));
+            for (int i = 0; i < array.length(); i++) {
+                put(Transition.fromJson(array.getJSONObject(i)));
+            }
+            Log.d(TAG, "Loaded " + timeline.size() + " transitions");
+        } catch (JSONException e) {
+            Log.e(TAG, "Error loading timeline", e);
+        }
+    }
+
+    private void persist() {
+        try {
+            JSONArray array = new JSONArray();
+            for (Transition transition : timeline) {
+                array.put(transition.toJson());
+            }
+            prefs.edit().putString(KEY_TIMELINE, array.toString()).apply();
+        } catch (JSONException e) {
+            Log.e(TAG, "Error saving timeline", e);
+        }
+    }
+}
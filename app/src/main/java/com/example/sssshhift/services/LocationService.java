@@ -5,10 +5,8 @@ import android.app.NotificationChannel;
 import android.app.NotificationManager;
 import android.app.PendingIntent;
 import android.app.Service;
-import android.content.ContentResolver;
 import android.content.Context;
 import android.content.Intent;
-import android.database.Cursor;
 import android.location.Location;
 import android.os.Build;
 import android.os.IBinder;
@@ -19,14 +17,16 @@ import androidx.core.app.NotificationCompat;
 
 import com.example.sssshhift.R;
 import com.example.sssshhift.MainActivity;
-import com.example.sssshhift.data.ProfileDatabaseHelper;
+import com.example.sssshhift.data.ProfileRepository;
+import com.example.sssshhift.engine.ProfileEngine;
+import com.example.sssshhift.engine.TriggerEvent;
+import com.example.sssshhift.location.FenceIndex;
+import com.example.sssshhift.models.CompiledProfile;
 import com.example.sssshhift.models.Profile;
-import com.example.sssshhift.provider.ProfileContentProvider;
 import com.example.sssshhift.utils.LocationHandler;
-import com.google.android.gms.maps.model.LatLng;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.HashSet;
+import java.util.Set;
 
 public class LocationService extends Service implements LocationHandler.LocationUpdateListener {
     private static final String TAG = "LocationService";
@@ -34,14 +34,27 @@ public class LocationService extends Service implements LocationHandler.Location
     private static final int NOTIFICATION_ID = 1;
 
     private LocationHandler locationHandler;
-    private List<Profile> locationBasedProfiles;
+    private volatile FenceIndex<CompiledProfile> fenceIndex = new FenceIndex.Builder<CompiledProfile>().build();
+    private final ProfileRepository.Listener profilesListener = this::loadLocationBasedProfiles;
+
+    // Profiles whose fence contained the previous and the current fix, only touched on the main looper
+    private Set<Long> insideProfileIds = new HashSet<>();
+    private Set<Long> containingProfileIds = new HashSet<>();
+
+    private final FenceIndex.Visitor<CompiledProfile> applyFence = (profile, distanceMeters) -> {
+        // Only entering the fence is a trigger, later fixes inside it are not
+        if (containingProfileIds.add(profile.getId()) && !insideProfileIds.contains(profile.getId())) {
+            ProfileEngine.getInstance(this).handle(
+                    TriggerEvent.forProfileId(TriggerEvent.SOURCE_LOCATION, profile.getId(), true));
+        }
+    };
 
     @Override
     public void onCreate() {
         super.onCreate();
         locationHandler = new LocationHandler(this);
         locationHandler.setLocationUpdateListener(this);
-        locationBasedProfiles = new ArrayList<>();
+        ProfileRepository.getInstance(this).addListener(profilesListener);
         createNotificationChannel();
         startForeground(NOTIFICATION_ID, createNotification());
     }
@@ -63,6 +76,10 @@ public class LocationService extends Service implements LocationHandler.Location
     public void onLocationUpdate(Location location) {
         Log.d(TAG, "Location update received: " + location.getLatitude() + ", " + location.getLongitude());
         checkAndTriggerProfiles(location);
+
+        // Let the handler stretch or tighten sampling based on how close the next fence is
+        locationHandler.onFenceDistance(location,
+                fenceIndex.nearestBoundaryMeters(location.getLatitude(), location.getLongitude()));
     }
 
     @Override
@@ -70,58 +87,32 @@ public class LocationService extends Service implements LocationHandler.Location
         Log.e(TAG, "Location error: " + error);
     }
 
+    // Rebuilt whenever profiles change, fixes only read the current index
     private void loadLocationBasedProfiles() {
-        locationBasedProfiles.clear();
-        ContentResolver resolver = getContentResolver();
-        String selection = ProfileDatabaseHelper.COLUMN_TRIGGER_TYPE + "=? AND " + 
-                          ProfileDatabaseHelper.COLUMN_IS_ACTIVE + "=?";
-        String[] selectionArgs = new String[]{"location", "1"};
-
-        try (Cursor cursor = resolver.query(
-                ProfileContentProvider.CONTENT_URI,
-                null,
-                selection,
-                selectionArgs,
-                null)) {
-
-            if (cursor != null && cursor.moveToFirst()) {
-                do {
-                    Profile profile = new Profile();
-                    profile.setId(cursor.getLong(cursor.getColumnIndexOrThrow(ProfileDatabaseHelper.COLUMN_ID)));
-                    profile.setName(cursor.getString(cursor.getColumnIndexOrThrow(ProfileDatabaseHelper.COLUMN_NAME)));
-                    profile.setTriggerType(cursor.getString(cursor.getColumnIndexOrThrow(ProfileDatabaseHelper.COLUMN_TRIGGER_TYPE)));
-                    profile.setTriggerValue(cursor.getString(cursor.getColumnIndexOrThrow(ProfileDatabaseHelper.COLUMN_TRIGGER_VALUE)));
-                    profile.setRingerMode(cursor.getString(cursor.getColumnIndexOrThrow(ProfileDatabaseHelper.COLUMN_RINGER_MODE)));
-                    profile.setActions(cursor.getString(cursor.getColumnIndexOrThrow(ProfileDatabaseHelper.COLUMN_ACTIONS)));
-                    locationBasedProfiles.add(profile);
-                } while (cursor.moveToNext());
+        FenceIndex.Builder<CompiledProfile> builder = new FenceIndex.Builder<>();
+        for (Profile profile : ProfileRepository.getInstance(this).getActiveByTriggerType("location")) {
+            CompiledProfile compiled = profile.getCompiled();
+            if (compiled.hasLocation()) {
+                builder.add(compiled.getLatitude(), compiled.getLongitude(), compiled.getRadiusMeters(), compiled);
             }
-        } catch (Exception e) {
-            Log.e(TAG, "Error loading location-based profiles", e);
+        }
+        fenceIndex = builder.build();
+        Log.d(TAG, "Indexed " + fenceIndex.size() + " location profiles");
+
+        // A new or moved fence may be close, sample tightly until the next fix says otherwise
+        if (locationHandler != null) {
+            locationHandler.resetSampling();
         }
     }
 
     private void checkAndTriggerProfiles(Location currentLocation) {
-        LatLng currentLatLng = new LatLng(currentLocation.getLatitude(), currentLocation.getLongitude());
-
-        for (Profile profile : locationBasedProfiles) {
-            try {
-                String[] coords = profile.getTriggerValue().split(",");
-                if (coords.length == 2) {
-                    double lat = Double.parseDouble(coords[0]);
-                    double lng = Double.parseDouble(coords[1]);
-                    LatLng profileLocation = new LatLng(lat, lng);
-
-                    if (LocationHandler.isInGeofence(currentLatLng, profileLocation, 100)) {
-                        // Apply profile settings
-                        LocationHandler.applyRingerMode(this, profile.getRingerMode());
-                        // TODO: Apply other actions (WiFi, Bluetooth, etc.)
-                    }
-                }
-            } catch (Exception e) {
-                Log.e(TAG, "Error processing profile: " + profile.getName(), e);
-            }
-        }
+        // Only fences in the grid cell of this fix are tested
+        containingProfileIds.clear();
+        fenceIndex.forEachContaining(currentLocation.getLatitude(), currentLocation.getLongitude(), applyFence);
+
+        Set<Long> previous = insideProfileIds;
+        insideProfileIds = containingProfileIds;
+        containingProfileIds = previous;
     }
 
     private void createNotificationChannel() {
@@ -158,6 +149,7 @@ public class LocationService extends Service implements LocationHandler.Location
     @Override
     public void onDestroy() {
         super.onDestroy();
+        ProfileRepository.getInstance(this).removeListener(profilesListener);
         if (locationHandler != null) {
             locationHandler.stopLocationUpdates();
         }
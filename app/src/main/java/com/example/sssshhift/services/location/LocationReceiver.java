@@ -1,15 +1,16 @@
 package com.example.sssshhift.services.location;
 
-import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 import android.media.AudioManager;
 import com.google.android.gms.location.Geofence;
 import com.google.android.gms.location.GeofencingEvent;
 
-public class LocationReceiver extends BroadcastReceiver {
+import com.example.sssshhift.receivers.AsyncReceiver;
+
+public class LocationReceiver extends AsyncReceiver {
     @Override
-    public void onReceive(Context context, Intent intent) {
+    protected void onReceiveAsync(Context context, Intent intent) {
         GeofencingEvent geofencingEvent = GeofencingEvent.fromIntent(intent);
         
         if (geofencingEvent != null && !geofencingEvent.hasError()) {
@@ -2,19 +2,20 @@ package com.example.sssshhift.services.timer;
 
 import android.app.NotificationChannel;
 import android.app.NotificationManager;
-import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 import android.media.AudioManager;
 import android.os.Build;
 import androidx.core.app.NotificationCompat;
 
-public class TimerReceiver extends BroadcastReceiver {
+import com.example.sssshhift.receivers.AsyncReceiver;
+
+public class TimerReceiver extends AsyncReceiver {
     private static final String CHANNEL_ID = "TimerNotificationChannel";
     private static final int NOTIFICATION_ID = 2;
 
     @Override
-    public void onReceive(Context context, Intent intent) {
+    protected void onReceiveAsync(Context context, Intent intent) {
         if (intent != null) {
             int ringerMode = intent.getIntExtra("RINGER_MODE", AudioManager.RINGER_MODE_NORMAL);
             boolean isStart = intent.getBooleanExtra("IS_START", true);
@@ -0,0 +1,169 @@
+package com.example.sssshhift.timer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Recently fired alarms, used to drop a timer edge that is delivered again. A fixed ring of
+ * (alarm id, fire time, fired at) entries is kept in memory with an index for lookups and
+ * mirrored slot by slot into a file of constant size. Entries older than the TTL are ignored and
+ * the oldest one is overwritten when the ring is full.
+ */
+final class AlarmDedupStore {
+    static final int CAPACITY = 64;
+    static final long TTL_MS = 60 * 60 * 1000L; // Well past any repeat delivery of an edge
+    static final int MAX_ID_BYTES = 48; // Longer ids are truncated
+
+    // fire time, fired at, id length, id, crc
+    static final int SLOT_BYTES = 8 + 8 + 2 + MAX_ID_BYTES + 4;
+    private static final int CRC_OFFSET = SLOT_BYTES - 4;
+
+    private final File file;
+    private final String[] alarmIds = new String[CAPACITY];
+    private final long[] alarmTimes = new long[CAPACITY];
+    private final long[] firedAt = new long[CAPACITY];
+    private final Map<String, Integer> slotByKey = new HashMap<>();
+    private int next;
+
+    AlarmDedupStore(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Load the slots that are intact and not expired. A new or unreadable file starts empty.
+     */
+    synchronized void load(long now) throws IOException {
+        slotByKey.clear();
+        next = 0;
+        if (!file.exists()) {
+            return;
+        }
+
+        byte[] bytes = new byte[CAPACITY * SLOT_BYTES];
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            in.readFully(bytes, 0, (int) Math.min(in.length(), bytes.length));
+        }
+
+        long newest = Long.MIN_VALUE;
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        for (int slot = 0; slot < CAPACITY; slot++) {
+            int offset = slot * SLOT_BYTES;
+            CRC32 crc = new CRC32();
+            crc.update(bytes, offset, CRC_OFFSET);
+            if (buffer.getInt(offset + CRC_OFFSET) != (int) crc.getValue()) {
+                alarmIds[slot] = null;
+                continue;
+            }
+            alarmTimes[slot] = buffer.getLong(offset);
+            firedAt[slot] = buffer.getLong(offset + 8);
+            int length = Math.max(0, Math.min(buffer.getShort(offset + 16), MAX_ID_BYTES));
+            alarmIds[slot] = new String(bytes, offset + 18, length, StandardCharsets.UTF_8);
+            if (isExpired(slot, now)) {
+                continue;
+            }
+            slotByKey.put(keyOf(alarmIds[slot], alarmTimes[slot]), slot);
+            // Continue the ring after the newest entry, so the oldest is overwritten first
+            if (firedAt[slot] > newest) {
+                newest = firedAt[slot];
+                next = (slot + 1) % CAPACITY;
+            }
+        }
+    }
+
+    /**
+     * Time the alarm last fired, or 0 if it has not fired within the TTL
+     */
+    synchronized long lastFired(String alarmId, long alarmTime, long now) {
+        String key = keyOf(truncate(alarmId), alarmTime);
+        Integer slot = slotByKey.get(key);
+        if (slot == null) {
+            return 0;
+        }
+        if (isExpired(slot, now)) {
+            slotByKey.remove(key);
+            return 0;
+        }
+        return firedAt[slot];
+    }
+
+    /**
+     * Mark the alarm as fired unless it already fired within the window
+     * @return true if the alarm was marked, i.e. this delivery should run
+     */
+    synchronized boolean markIfNotFired(String alarmId, long alarmTime, long now, long window) throws IOException {
+        String id = truncate(alarmId);
+        long last = lastFired(id, alarmTime, now);
+        if (last != 0 && now - last <= window) {
+            return false;
+        }
+
+        String key = keyOf(id, alarmTime);
+        Integer existing = slotByKey.get(key);
+        int slot;
+        if (existing != null) {
+            slot = existing;
+        } else {
+            slot = next;
+            next = (next + 1) % CAPACITY;
+            if (alarmIds[slot] != null) {
+                String evicted = keyOf(alarmIds[slot], alarmTimes[slot]);
+                Integer evictedSlot = slotByKey.get(evicted);
+                if (evictedSlot != null && evictedSlot == slot) {
+                    slotByKey.remove(evicted);
+                }
+            }
+        }
+        alarmIds[slot] = id;
+        alarmTimes[slot] = alarmTime;
+        firedAt[slot] = now;
+        slotByKey.put(key, slot);
+        write(slot);
+        return true;
+    }
+
+    private boolean isExpired(int slot, long now) {
+        return now - firedAt[slot] > TTL_MS;
+    }
+
+    private static String keyOf(String alarmId, long alarmTime) {
+        return alarmId + "@" + alarmTime;
+    }
+
+    // The id as it reads back from a slot
+    private static String truncate(String alarmId) {
+        byte[] bytes = alarmId != null ? alarmId.getBytes(StandardCharsets.UTF_8) : new byte[0];
+        if (bytes.length <= MAX_ID_BYTES) {
+            return alarmId != null ? alarmId : "";
+        }
+        return new String(bytes, 0, MAX_ID_BYTES, StandardCharsets.UTF_8);
+    }
+
+    // Only the changed slot is written, the file never grows past the ring
+    private void write(int slot) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(SLOT_BYTES);
+        buffer.putLong(alarmTimes[slot]);
+        buffer.putLong(firedAt[slot]);
+        byte[] id = alarmIds[slot].getBytes(StandardCharsets.UTF_8);
+        int length = Math.min(id.length, MAX_ID_BYTES);
+        buffer.putShort((short) length);
+        buffer.put(id, 0, length);
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 0, CRC_OFFSET);
+        buffer.putInt(CRC_OFFSET, (int) crc.getValue());
+
+        try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+            if (out.length() != CAPACITY * SLOT_BYTES) {
+                out.setLength(CAPACITY * SLOT_BYTES);
+            }
+            out.seek((long) slot * SLOT_BYTES);
+            out.write(buffer.array());
+            out.getFD().sync();
+        }
+    }
+}
@@ -2,224 +2,133 @@ package com.example.sssshhift.timer;
 
 import android.app.NotificationChannel;
 import android.app.NotificationManager;
-import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
-import android.content.SharedPreferences;
 import android.media.AudioManager;
 import android.os.Build;
 import android.util.Log;
 import androidx.core.app.NotificationCompat;
-import android.os.Handler;
-import android.os.Looper;
-import android.os.PowerManager;
-import android.provider.Settings;
-import android.app.Service;
-import android.content.ComponentName;
-import android.media.AudioAttributes;
+import android.os.SystemClock;
 import android.app.Notification;
 import android.app.PendingIntent;
-import android.graphics.Color;
 
 import com.example.sssshhift.MainActivity;
 import com.example.sssshhift.R;
+import com.example.sssshhift.engine.RingerActuator;
+import com.example.sssshhift.engine.TriggerEvent;
+import com.example.sssshhift.receivers.AsyncReceiver;
 
-public class TimerAlarmReceiver extends BroadcastReceiver {
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class TimerAlarmReceiver extends AsyncReceiver {
     private static final String TAG = "TimerAlarmReceiver";
     private static final String CHANNEL_ID = "timer_notification_channel";
     private static final String CHANNEL_NAME = "Timer Notifications";
     private static final int NOTIFICATION_ID = 1001;
-    private static final int MAX_RETRIES = 15; // Increased retries
-    private static final long RETRY_DELAY = 1000; // 1 second
-    private static final String PREFS_NAME = "timer_receiver_prefs";
-    private static final String KEY_LAST_EXECUTED = "last_executed_";
+    // Held one last_executed_<time> key per alarm ever fired, replaced by the de-dup store
+    private static final String LEGACY_PREFS_NAME = "timer_receiver_prefs";
     private static final long EXECUTION_WINDOW = 60000; // 1 minute
 
-    private PowerManager.WakeLock wakeLock;
-    private Handler handler;
-    private int retryCount = 0;
-    private AudioManager audioManager;
-    private NotificationManager notificationManager;
+    private static AlarmDedupStore dedupStore;
 
     @Override
-    public void onReceive(Context context, Intent intent) {
+    protected void onReceiveAsync(Context context, Intent intent) {
         if (intent == null || intent.getAction() == null) {
             Log.e(TAG, "Null intent or action received");
             return;
         }
+        handleEdge(context, intent.getStringExtra("ALARM_ID"), intent.getLongExtra("ALARM_TIME", 0),
+                intent.getIntExtra("RINGER_MODE", AudioManager.RINGER_MODE_NORMAL),
+                intent.getBooleanExtra("IS_START", true), intent.getStringExtra("PROFILE_NAME"));
+    }
 
-        // Initialize handler on main thread
-        handler = new Handler(Looper.getMainLooper());
-
-        // Get system services
-        PowerManager powerManager = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
-        audioManager = (AudioManager) context.getSystemService(Context.AUDIO_SERVICE);
-        notificationManager = (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
-
-        // Create a full wake lock
-        wakeLock = powerManager.newWakeLock(
-            PowerManager.FULL_WAKE_LOCK | 
-            PowerManager.ACQUIRE_CAUSES_WAKEUP | 
-            PowerManager.ON_AFTER_RELEASE,
-            "Sssshhhift:TimerFullWakeLock"
-        );
-        
-        wakeLock.acquire(10*60*1000L); // 10 minutes max
-
+    /**
+     * Apply a timer edge and wait for the actuator to confirm it. Runs on the caller's thread,
+     * which has to hold a wake lock, e.g. inside a receiver's onReceiveAsync.
+     * @param alarmId the transition's key, tells edges due at the same time apart
+     */
+    public static void handleEdge(Context context, String alarmId, long alarmTime, int ringerMode,
+                                  boolean isStart, String profileName) {
+        long receivedAtNanos = SystemClock.elapsedRealtimeNanos();
         try {
-            // Force screen on
-            PowerManager.WakeLock screenWakeLock = powerManager.newWakeLock(
-                PowerManager.SCREEN_BRIGHT_WAKE_LOCK | PowerManager.ACQUIRE_CAUSES_WAKEUP,
-                "Sssshhhift:ScreenWakeLock"
-            );
-            screenWakeLock.acquire(5000);
-
-            String alarmType = intent.getStringExtra("ALARM_TYPE");
-            long alarmTime = intent.getLongExtra("ALARM_TIME", 0);
-            
-            if (shouldProcessAlarm(context, alarmTime, alarmType)) {
-                // Start aggressive ringer mode change
-                startRingerModeChange(context, intent);
+            if (shouldProcessAlarm(context, alarmId, alarmTime)) {
+                CountDownLatch done = startRingerModeChange(context, ringerMode, isStart, profileName,
+                        receivedAtNanos);
+                if (!done.await(RingerActuator.CONFIRM_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                    Log.w(TAG, "Ringer mode change not confirmed within " + RingerActuator.CONFIRM_TIMEOUT_MS + " ms");
+                }
             } else {
-                Log.d(TAG, "Skipping redundant alarm of type: " + alarmType);
-                releaseWakeLock();
+                Log.d(TAG, "Skipping repeated alarm: " + alarmId + " at " + alarmTime);
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         } catch (Exception e) {
-            Log.e(TAG, "Error in onReceive: " + e.getMessage());
-            releaseWakeLock();
+            Log.e(TAG, "Error handling timer edge: " + e.getMessage());
         }
     }
 
-    private void startRingerModeChange(Context context, Intent intent) {
-        int targetMode = intent.getIntExtra("RINGER_MODE", AudioManager.RINGER_MODE_NORMAL);
-        boolean isStart = intent.getBooleanExtra("IS_START", true);
-        String profileName = intent.getStringExtra("PROFILE_NAME");
-
-        // Start a repeated attempt to change the ringer mode
-        handler.post(new Runnable() {
-            @Override
-            public void run() {
-                if (!changeRingerMode(context, targetMode, isStart, profileName)) {
-                    if (retryCount < MAX_RETRIES) {
-                        retryCount++;
-                        Log.d(TAG, "Retry attempt " + retryCount);
-                        handler.postDelayed(this, RETRY_DELAY);
-                    } else {
-                        Log.e(TAG, "Failed to change ringer mode after " + MAX_RETRIES + " attempts");
-                        showErrorNotification(context);
-                        releaseWakeLock();
-                    }
-                } else {
-                    Log.d(TAG, "Successfully changed ringer mode");
-                    releaseWakeLock();
-                }
-            }
-        });
-    }
-
-    private boolean changeRingerMode(Context context, int targetMode, boolean isStart, String profileName) {
-        try {
-            // Get system services
-            AudioManager audioManager = (AudioManager) context.getSystemService(Context.AUDIO_SERVICE);
-            NotificationManager notificationManager = (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
-
-            if (audioManager == null) {
-                Log.e(TAG, "AudioManager is null");
-                return false;
-            }
-
-            // Method 1: Direct audio manager
-            audioManager.setRingerMode(targetMode);
-            Thread.sleep(100); // Small delay to let the change take effect
-
-            // Method 2: Interruption filter (for Android M and above)
-            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M && notificationManager != null) {
-                try {
-                    int filter = NotificationManager.INTERRUPTION_FILTER_ALL;
-                    switch (targetMode) {
-                        case AudioManager.RINGER_MODE_SILENT:
-                            filter = NotificationManager.INTERRUPTION_FILTER_NONE;
+    // Counted down once the actuator confirms or gives up
+    private static CountDownLatch startRingerModeChange(Context context, int targetMode, boolean isStart,
+                                                        String profileName, long receivedAtNanos) {
+        CountDownLatch done = new CountDownLatch(1);
+
+        // Confirmed by the system broadcasts on the actuator's thread, which also retries
+        boolean accepted = RingerActuator.getInstance(context).apply(targetFor(context, targetMode),
+                TriggerEvent.SOURCE_TIMER, receivedAtNanos, (outcome, latencyMs) -> {
+                    switch (outcome) {
+                        case CONFIRMED:
+                            String action = isStart ? "activated" : "deactivated";
+                            showNotification(context, String.format("%s profile %s - %s mode",
+                                    profileName, action, getRingerModeName(targetMode)));
+                            Log.d(TAG, "Changed ringer mode to " + getRingerModeName(targetMode)
+                                    + " in " + latencyMs + " ms");
+                            break;
+                        case SUPERSEDED:
+                            // A newer trigger owns the ringer now
+                            Log.d(TAG, "Change to " + getRingerModeName(targetMode) + " superseded");
                             break;
-                        case AudioManager.RINGER_MODE_VIBRATE:
-                            filter = NotificationManager.INTERRUPTION_FILTER_PRIORITY;
+                        case FAILED:
+                            Log.e(TAG, "Failed to change ringer mode to " + getRingerModeName(targetMode));
+                            showErrorNotification(context);
                             break;
                     }
-                    notificationManager.setInterruptionFilter(filter);
-                    Thread.sleep(100);
-                } catch (Exception e) {
-                    Log.e(TAG, "Error setting interruption filter: " + e.getMessage());
-                }
-            }
-
-            // Method 3: Audio attributes (for Android P and above)
-            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.P) {
-                try {
-                    AudioAttributes.Builder builder = new AudioAttributes.Builder();
-                    builder.setUsage(AudioAttributes.USAGE_NOTIFICATION_RINGTONE);
-                    builder.setContentType(AudioAttributes.CONTENT_TYPE_SONIFICATION);
-                    audioManager.setStreamVolume(AudioManager.STREAM_RING, 
-                        targetMode == AudioManager.RINGER_MODE_SILENT ? 0 : audioManager.getStreamMaxVolume(AudioManager.STREAM_RING),
-                        0);
-                    Thread.sleep(100);
-                } catch (Exception e) {
-                    Log.e(TAG, "Error setting audio attributes: " + e.getMessage());
-                }
-            }
-
-            // Verify the change
-            int currentMode = audioManager.getRingerMode();
-            if (currentMode != targetMode) {
-                Log.w(TAG, "Ringer mode verification failed. Expected: " + getRingerModeName(targetMode) + 
-                          ", Current: " + getRingerModeName(currentMode));
-                
-                // Try one more time with a longer delay
-                audioManager.setRingerMode(targetMode);
-                Thread.sleep(500);
-                
-                currentMode = audioManager.getRingerMode();
-                if (currentMode != targetMode) {
-                    Log.e(TAG, "Failed to change ringer mode after retry");
-                    return false;
-                }
-            }
+                    done.countDown();
+                });
 
-            // Show notification
-            String action = isStart ? "activated" : "deactivated";
-            String message = String.format("%s profile %s - %s mode", 
-                profileName, action, getRingerModeName(targetMode));
-            showNotification(context, message);
-
-            Log.d(TAG, "Successfully changed ringer mode to " + getRingerModeName(targetMode));
-            return true;
-
-        } catch (Exception e) {
-            Log.e(TAG, "Error changing ringer mode: " + e.getMessage());
-            return false;
+        if (!accepted) {
+            showErrorNotification(context);
+            done.countDown();
         }
+        return done;
     }
 
-    private void showSuccessNotification(Context context, int ringerMode, boolean isStart, String profileName) {
-        try {
-            createNotificationChannel(context);
-            String title = isStart ? "Profile Activated" : "Profile Ended";
-            String message = String.format("%s has %s - Phone is now in %s mode", 
-                profileName, isStart ? "started" : "ended", getRingerModeName(ringerMode));
-
-            NotificationCompat.Builder builder = new NotificationCompat.Builder(context, CHANNEL_ID)
-                .setSmallIcon(android.R.drawable.ic_lock_silent_mode)
-                .setContentTitle(title)
-                .setContentText(message)
-                .setPriority(NotificationCompat.PRIORITY_HIGH)
-                .setCategory(NotificationCompat.CATEGORY_ALARM)
-                .setAutoCancel(true);
-
-            notificationManager.notify(NOTIFICATION_ID, builder.build());
-        } catch (Exception e) {
-            Log.e(TAG, "Error showing success notification: " + e.getMessage());
+    // Timer profiles also set the interruption filter and the ring volume with the ringer mode
+    private static RingerActuator.Target targetFor(Context context, int targetMode) {
+        RingerActuator.Target target = RingerActuator.Target.ringerMode(targetMode);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            int filter = NotificationManager.INTERRUPTION_FILTER_ALL;
+            switch (targetMode) {
+                case AudioManager.RINGER_MODE_SILENT:
+                    filter = NotificationManager.INTERRUPTION_FILTER_NONE;
+                    break;
+                case AudioManager.RINGER_MODE_VIBRATE:
+                    filter = NotificationManager.INTERRUPTION_FILTER_PRIORITY;
+                    break;
+            }
+            target = target.withInterruptionFilter(filter);
         }
+        // Silent and vibrate already mute the ring stream, raising its volume would switch to normal
+        AudioManager audioManager = (AudioManager) context.getSystemService(Context.AUDIO_SERVICE);
+        if (targetMode == AudioManager.RINGER_MODE_NORMAL && audioManager != null) {
+            target = target.withRingVolume(audioManager.getStreamMaxVolume(AudioManager.STREAM_RING));
+        }
+        return target;
     }
 
-    private void showErrorNotification(Context context) {
+    private static void showErrorNotification(Context context) {
         try {
             createNotificationChannel(context);
             NotificationCompat.Builder builder = new NotificationCompat.Builder(context, CHANNEL_ID)
@@ -229,48 +138,42 @@ public class TimerAlarmReceiver extends BroadcastReceiver {
                 .setPriority(NotificationCompat.PRIORITY_HIGH)
                 .setCategory(NotificationCompat.CATEGORY_ERROR);
 
-            notificationManager.notify(NOTIFICATION_ID + 1, builder.build());
+            NotificationManager notificationManager =
+                (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
+            if (notificationManager != null) {
+                notificationManager.notify(NOTIFICATION_ID + 1, builder.build());
+            }
         } catch (Exception e) {
             Log.e(TAG, "Error showing error notification: " + e.getMessage());
         }
     }
 
-    private void releaseWakeLock() {
-        try {
-            if (wakeLock != null && wakeLock.isHeld()) {
-                wakeLock.release();
+    private static synchronized AlarmDedupStore getDedupStore(Context context) {
+        if (dedupStore == null) {
+            dedupStore = new AlarmDedupStore(new File(context.getFilesDir(), "timer_alarms.bin"));
+            try {
+                dedupStore.load(System.currentTimeMillis());
+            } catch (IOException e) {
+                Log.e(TAG, "Error loading fired alarms: " + e.getMessage());
             }
-        } catch (Exception e) {
-            Log.e(TAG, "Error releasing wake lock: " + e.getMessage());
+            context.deleteSharedPreferences(LEGACY_PREFS_NAME);
         }
+        return dedupStore;
     }
 
-    private boolean shouldProcessAlarm(Context context, long alarmTime, String alarmType) {
-        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
-        long lastExecuted = prefs.getLong(KEY_LAST_EXECUTED + alarmTime, 0);
-        long currentTime = System.currentTimeMillis();
-
-        // If this is the first execution or we're outside the execution window
-        if (lastExecuted == 0 || currentTime - lastExecuted > EXECUTION_WINDOW) {
-            // Mark this alarm as executed
-            prefs.edit().putLong(KEY_LAST_EXECUTED + alarmTime, currentTime).apply();
+    // First execution or outside the execution window, marks this alarm as executed
+    private static boolean shouldProcessAlarm(Context context, String alarmId, long alarmTime) {
+        try {
+            return getDedupStore(context).markIfNotFired(alarmId, alarmTime,
+                    System.currentTimeMillis(), EXECUTION_WINDOW);
+        } catch (IOException e) {
+            // Marked in memory, only a restart before a repeat delivery would run it twice
+            Log.e(TAG, "Error saving fired alarm: " + e.getMessage());
             return true;
         }
-
-        // For EARLY type alarms, only process if no other alarm has executed
-        if ("EARLY".equals(alarmType)) {
-            return false;
-        }
-
-        // For BACKUP type alarms, only process if we're more than 30 seconds past the intended time
-        if ("BACKUP".equals(alarmType)) {
-            return currentTime - alarmTime > 30000;
-        }
-
-        return false;
     }
 
-    private String getRingerModeName(int ringerMode) {
+    private static String getRingerModeName(int ringerMode) {
         switch (ringerMode) {
             case AudioManager.RINGER_MODE_SILENT:
                 return "Silent";
@@ -283,7 +186,7 @@ public class TimerAlarmReceiver extends BroadcastReceiver {
         }
     }
 
-    private void createNotificationChannel(Context context) {
+    private static void createNotificationChannel(Context context) {
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
             try {
                 NotificationChannel channel = new NotificationChannel(
@@ -307,7 +210,7 @@ public class TimerAlarmReceiver extends BroadcastReceiver {
         }
     }
 
-    private void showNotification(Context context, String message) {
+    private static void showNotification(Context context, String message) {
         try {
             createNotificationChannel(context);
 
@@ -332,6 +235,8 @@ public class TimerAlarmReceiver extends BroadcastReceiver {
                 .setVibrate(new long[]{0, 500, 200, 500});
 
             // Show the notification
+            NotificationManager notificationManager =
+                (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
             if (notificationManager != null) {
                 notificationManager.notify(NOTIFICATION_ID, builder.build());
                 Log.d(TAG, "Notification shown: " + message);
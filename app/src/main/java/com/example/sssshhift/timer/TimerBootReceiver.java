@@ -1,27 +1,24 @@
 package com.example.sssshhift.timer;
 
-import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 import android.content.SharedPreferences;
-import android.media.AudioManager;
-import android.os.Build;
-import android.os.Handler;
-import android.os.Looper;
-import android.os.PowerManager;
 import android.util.Log;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
-public class TimerBootReceiver extends BroadcastReceiver {
+import com.example.sssshhift.engine.ProfileEngine;
+import com.example.sssshhift.engine.TriggerEvent;
+import com.example.sssshhift.receivers.AsyncReceiver;
+
+public class TimerBootReceiver extends AsyncReceiver {
     private static final String TAG = "TimerBootReceiver";
     private static final String PREFS_NAME = "TimerProfiles";
     private static final String PROFILES_KEY = "active_profiles";
-    private static final long RESTORE_DELAY = 30000; // 30 seconds delay after boot
 
     @Override
-    public void onReceive(Context context, Intent intent) {
+    protected void onReceiveAsync(Context context, Intent intent) {
         if (intent == null || intent.getAction() == null) {
             return;
         }
@@ -36,30 +33,8 @@ public class TimerBootReceiver extends BroadcastReceiver {
             case Intent.ACTION_MY_PACKAGE_REPLACED:
             case Intent.ACTION_TIMEZONE_CHANGED:
             case Intent.ACTION_TIME_CHANGED:
-                // Acquire wake lock to ensure we complete our work
-                PowerManager powerManager = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
-                PowerManager.WakeLock wakeLock = null;
-                
-                try {
-                    if (powerManager != null) {
-                        wakeLock = powerManager.newWakeLock(
-                            PowerManager.PARTIAL_WAKE_LOCK,
-                            "Sssshhhift:TimerBootWakeLock"
-                        );
-                        wakeLock.acquire(10 * 60 * 1000L); // 10 minutes max
-                    }
-
-                    // Delay the restore to ensure system is fully booted
-                    new Handler(Looper.getMainLooper()).postDelayed(
-                        () -> restoreTimerProfiles(context), 
-                        RESTORE_DELAY
-                    );
-
-                } finally {
-                    if (wakeLock != null && wakeLock.isHeld()) {
-                        wakeLock.release();
-                    }
-                }
+                // Runs inside the receiver's work, under its wake lock
+                restoreTimerProfiles(context);
                 break;
         }
     }
@@ -93,10 +68,8 @@ public class TimerBootReceiver extends BroadcastReceiver {
                     profileManager.scheduleProfile(currentTime, endTime, ringerMode, profileName);
                     
                     // Immediately set the ringer mode
-                    AudioManager audioManager = (AudioManager) context.getSystemService(Context.AUDIO_SERVICE);
-                    if (audioManager != null) {
-                        audioManager.setRingerMode(ringerMode);
-                    }
+                    ProfileEngine.getInstance(context).handle(
+                            TriggerEvent.forRingerMode(TriggerEvent.SOURCE_TIMER, null, ringerMode, true));
                     
                     Log.d(TAG, "Restored active profile: " + profileName + " (end time only)");
                     
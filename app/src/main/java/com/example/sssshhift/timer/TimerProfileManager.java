@@ -1,7 +1,6 @@
 package com.example.sssshhift.timer;
 
 import android.app.AlarmManager;
-import android.app.PendingIntent;
 import android.content.Context;
 import android.content.Intent;
 import android.content.SharedPreferences;
@@ -12,6 +11,12 @@ import android.util.Log;
 import android.os.PowerManager;
 import android.provider.Settings;
 
+import com.example.sssshhift.scheduler.Transition;
+import com.example.sssshhift.scheduler.TransitionScheduler;
+
+import java.util.ArrayList;
+import java.util.List;
+
 public class TimerProfileManager {
     private static final String TAG = "TimerProfileManager";
     private static final String PREFS_NAME = "timer_manager_prefs";
@@ -55,82 +60,29 @@ public class TimerProfileManager {
                 }
             }
 
-            // Schedule start time with redundancy
-            boolean startScheduled = scheduleAlarmWithRedundancy(startTime, ringerMode, true, profileName);
-            
-            // Schedule end time with redundancy
-            boolean endScheduled = scheduleAlarmWithRedundancy(endTime, AudioManager.RINGER_MODE_NORMAL, false, profileName);
+            // Both edges go on the shared timeline, which keeps a single wakeup armed
+            String target = timelineTarget(startTime, endTime);
+            List<Transition> transitions = new ArrayList<>();
+            transitions.add(new Transition(Transition.SOURCE_TIMER, target, profileName, true,
+                    startTime, ringerMode, endTime, false));
+            transitions.add(new Transition(Transition.SOURCE_TIMER, target, profileName, false,
+                    endTime, AudioManager.RINGER_MODE_NORMAL, endTime, false));
+            TransitionScheduler.getInstance(context).scheduleAll(transitions);
 
-            // Save the profile for persistence
-            if (startScheduled && endScheduled) {
-                TimerBootReceiver.saveProfile(context, startTime, endTime, ringerMode, profileName);
-            }
+            saveScheduledAlarm(startTime, ringerMode, true, profileName);
+            saveScheduledAlarm(endTime, AudioManager.RINGER_MODE_NORMAL, false, profileName);
 
-            return startScheduled && endScheduled;
+            // Save the profile for persistence
+            TimerBootReceiver.saveProfile(context, startTime, endTime, ringerMode, profileName);
+            return true;
         } catch (Exception e) {
             Log.e(TAG, "Error scheduling profile", e);
             return false;
         }
     }
 
-    private boolean scheduleAlarmWithRedundancy(long triggerTime, int ringerMode, boolean isStart, String profileName) {
-        try {
-            // Create intents with different flags for redundancy
-            PendingIntent primaryIntent = createPendingIntent(triggerTime, ringerMode, isStart, profileName);
-            PendingIntent backupIntent = createBackupPendingIntent(triggerTime, ringerMode, isStart, profileName);
-            PendingIntent earlyIntent = createEarlyPendingIntent(triggerTime, ringerMode, isStart, profileName);
-            PendingIntent extraIntent = createExtraBackupPendingIntent(triggerTime, ringerMode, isStart, profileName);
-            
-            // Cancel any existing alarms first
-            alarmManager.cancel(primaryIntent);
-            alarmManager.cancel(backupIntent);
-            alarmManager.cancel(earlyIntent);
-            alarmManager.cancel(extraIntent);
-
-            // Schedule multiple alarms with different methods for maximum reliability
-            
-            // 1. Primary alarm using setAlarmClock (highest priority, shows in system UI)
-            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
-                AlarmManager.AlarmClockInfo alarmInfo = new AlarmManager.AlarmClockInfo(triggerTime, null);
-                alarmManager.setAlarmClock(alarmInfo, primaryIntent);
-            }
-
-            // 2. Backup alarm using setExactAndAllowWhileIdle
-            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
-                alarmManager.setExactAndAllowWhileIdle(AlarmManager.RTC_WAKEUP, triggerTime, backupIntent);
-            }
-
-            // 3. Early alarm (2 minutes before) using setAlarmClock
-            long earlyTime = triggerTime - (2 * 60 * 1000); // 2 minutes earlier
-            if (earlyTime > System.currentTimeMillis()) {
-                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
-                    AlarmManager.AlarmClockInfo earlyAlarmInfo = new AlarmManager.AlarmClockInfo(earlyTime, null);
-                    alarmManager.setAlarmClock(earlyAlarmInfo, earlyIntent);
-                }
-            }
-
-            // 4. Extra backup using setAndAllowWhileIdle (30 seconds before)
-            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
-                alarmManager.setAndAllowWhileIdle(AlarmManager.RTC_WAKEUP, triggerTime - 30000, extraIntent);
-            }
-
-            // For older versions, use setExact as fallback
-            if (Build.VERSION.SDK_INT < Build.VERSION_CODES.M) {
-                alarmManager.setExact(AlarmManager.RTC_WAKEUP, triggerTime, primaryIntent);
-                alarmManager.setExact(AlarmManager.RTC_WAKEUP, triggerTime - 30000, extraIntent);
-            }
-
-            // Save the scheduled alarm details
-            saveScheduledAlarm(triggerTime, ringerMode, isStart, profileName);
-
-            Log.d(TAG, String.format("Scheduled multiple alarms for %s at %d (early: %d)", 
-                (isStart ? "start" : "end"), triggerTime, earlyTime));
-            return true;
-        } catch (Exception e) {
-            Log.e(TAG, "Error scheduling alarm: " + e.getMessage());
-            e.printStackTrace();
-            return false;
-        }
+    private static String timelineTarget(long startTime, long endTime) {
+        return startTime + "_" + endTime;
     }
 
     private void saveScheduledTime(long time, boolean isStart) {
@@ -154,86 +106,6 @@ public class TimerProfileManager {
         }
     }
 
-    private PendingIntent createPendingIntent(long time, int ringerMode, boolean isStart, String profileName) {
-        Intent intent = new Intent(context, TimerAlarmReceiver.class);
-        String action = isStart ? "com.example.sssshhift.START_TIMER" : "com.example.sssshhift.END_TIMER";
-        intent.setAction(action);
-        intent.putExtra("RINGER_MODE", ringerMode);
-        intent.putExtra("IS_START", isStart);
-        intent.putExtra("PROFILE_NAME", profileName);
-        intent.putExtra("ALARM_TIME", time);
-        intent.putExtra("ALARM_TYPE", "PRIMARY");
-        intent.addFlags(Intent.FLAG_RECEIVER_FOREGROUND);
-        intent.addFlags(Intent.FLAG_INCLUDE_STOPPED_PACKAGES);
-
-        int flags = PendingIntent.FLAG_UPDATE_CURRENT;
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
-            flags |= PendingIntent.FLAG_IMMUTABLE;
-        }
-
-        return PendingIntent.getBroadcast(context, (int) ((time / 1000) % Integer.MAX_VALUE) + (isStart ? 100000 : 200000), intent, flags);
-    }
-
-    private PendingIntent createBackupPendingIntent(long time, int ringerMode, boolean isStart, String profileName) {
-        Intent intent = new Intent(context, TimerAlarmReceiver.class);
-        String action = isStart ? "com.example.sssshhift.START_TIMER_BACKUP" : "com.example.sssshhift.END_TIMER_BACKUP";
-        intent.setAction(action);
-        intent.putExtra("RINGER_MODE", ringerMode);
-        intent.putExtra("IS_START", isStart);
-        intent.putExtra("PROFILE_NAME", profileName);
-        intent.putExtra("ALARM_TIME", time);
-        intent.putExtra("ALARM_TYPE", "BACKUP");
-        intent.addFlags(Intent.FLAG_RECEIVER_FOREGROUND);
-        intent.addFlags(Intent.FLAG_INCLUDE_STOPPED_PACKAGES);
-
-        int flags = PendingIntent.FLAG_UPDATE_CURRENT;
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
-            flags |= PendingIntent.FLAG_IMMUTABLE;
-        }
-
-        return PendingIntent.getBroadcast(context, (int) ((time / 1000) % Integer.MAX_VALUE) + (isStart ? 300000 : 400000), intent, flags);
-    }
-
-    private PendingIntent createEarlyPendingIntent(long time, int ringerMode, boolean isStart, String profileName) {
-        Intent intent = new Intent(context, TimerAlarmReceiver.class);
-        String action = isStart ? "com.example.sssshhift.START_TIMER_EARLY" : "com.example.sssshhift.END_TIMER_EARLY";
-        intent.setAction(action);
-        intent.putExtra("RINGER_MODE", ringerMode);
-        intent.putExtra("IS_START", isStart);
-        intent.putExtra("PROFILE_NAME", profileName);
-        intent.putExtra("ALARM_TIME", time);
-        intent.putExtra("ALARM_TYPE", "EARLY");
-        intent.addFlags(Intent.FLAG_RECEIVER_FOREGROUND);
-        intent.addFlags(Intent.FLAG_INCLUDE_STOPPED_PACKAGES);
-
-        int flags = PendingIntent.FLAG_UPDATE_CURRENT;
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
-            flags |= PendingIntent.FLAG_IMMUTABLE;
-        }
-
-        return PendingIntent.getBroadcast(context, (int) ((time / 1000) % Integer.MAX_VALUE) + (isStart ? 500000 : 600000), intent, flags);
-    }
-
-    private PendingIntent createExtraBackupPendingIntent(long time, int ringerMode, boolean isStart, String profileName) {
-        Intent intent = new Intent(context, TimerAlarmReceiver.class);
-        String action = isStart ? "com.example.sssshhift.START_TIMER_EXTRA" : "com.example.sssshhift.END_TIMER_EXTRA";
-        intent.setAction(action);
-        intent.putExtra("RINGER_MODE", ringerMode);
-        intent.putExtra("IS_START", isStart);
-        intent.putExtra("PROFILE_NAME", profileName);
-        intent.putExtra("ALARM_TIME", time);
-        intent.putExtra("ALARM_TYPE", "EXTRA");
-        intent.addFlags(Intent.FLAG_RECEIVER_FOREGROUND);
-        intent.addFlags(Intent.FLAG_INCLUDE_STOPPED_PACKAGES);
-
-        int flags = PendingIntent.FLAG_UPDATE_CURRENT;
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
-            flags |= PendingIntent.FLAG_IMMUTABLE;
-        }
-
-        return PendingIntent.getBroadcast(context, (int) ((time / 1000) % Integer.MAX_VALUE) + (isStart ? 700000 : 800000), intent, flags);
-    }
-
     private boolean checkPermissions() {
         // Check for DND permission
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
@@ -264,16 +136,8 @@ public class TimerProfileManager {
 
     public void cancelProfile(long startTime, long endTime) {
         try {
-            // Cancel all variants of the alarms
-            cancelAlarm(createPendingIntent(startTime, AudioManager.RINGER_MODE_NORMAL, true, ""));
-            cancelAlarm(createBackupPendingIntent(startTime, AudioManager.RINGER_MODE_NORMAL, true, ""));
-            cancelAlarm(createEarlyPendingIntent(startTime, AudioManager.RINGER_MODE_NORMAL, true, ""));
-            cancelAlarm(createExtraBackupPendingIntent(startTime, AudioManager.RINGER_MODE_NORMAL, true, ""));
-            
-            cancelAlarm(createPendingIntent(endTime, AudioManager.RINGER_MODE_NORMAL, false, ""));
-            cancelAlarm(createBackupPendingIntent(endTime, AudioManager.RINGER_MODE_NORMAL, false, ""));
-            cancelAlarm(createEarlyPendingIntent(endTime, AudioManager.RINGER_MODE_NORMAL, false, ""));
-            cancelAlarm(createExtraBackupPendingIntent(endTime, AudioManager.RINGER_MODE_NORMAL, false, ""));
+            TransitionScheduler.getInstance(context)
+                    .cancel(Transition.SOURCE_TIMER, timelineTarget(startTime, endTime));
             
             // Clear saved alarm details
             SharedPreferences.Editor editor = prefs.edit();
@@ -292,12 +156,4 @@ public class TimerProfileManager {
             Log.e(TAG, "Error cancelling profile: " + e.getMessage());
         }
     }
-
-    private void cancelAlarm(PendingIntent pendingIntent) {
-        try {
-            alarmManager.cancel(pendingIntent);
-        } catch (Exception e) {
-            Log.e(TAG, "Error cancelling alarm: " + e.getMessage());
-        }
-    }
 } 
\ No newline at end of file
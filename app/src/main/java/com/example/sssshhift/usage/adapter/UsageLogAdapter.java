@@ -44,7 +44,7 @@ public class UsageLogAdapter extends RecyclerView.Adapter<UsageLogAdapter.ViewHo
         holder.modeIcon.setImageResource(getModeIcon(log.getMode()));
         
         // Set duration
-        holder.duration.setText(formatDuration(log.getDurationMinutes()));
+        holder.duration.setText(formatDuration(log.getDurationMs()));
         
         // Set relative timestamp
         holder.timestamp.setText(getRelativeTimeSpan(log.getStartTime()));
@@ -84,8 +84,11 @@ public class UsageLogAdapter extends RecyclerView.Adapter<UsageLogAdapter.ViewHo
         }
     }
 
-    private String formatDuration(long minutes) {
-        if (minutes < 60) {
+    private String formatDuration(long durationMs) {
+        long minutes = durationMs / (60 * 1000);
+        if (minutes == 0) {
+            return (durationMs / 1000) + " sec";
+        } else if (minutes < 60) {
             return minutes + " min";
         } else {
             long hours = minutes / 60;
@@ -0,0 +1,35 @@
+package com.example.sssshhift.usage.data;
+
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+
+/**
+ * Rollup of usage logs per local day and hour of day they started in, maintained with every insert
+ */
+@Entity(tableName = "usage_daily_hour", primaryKeys = {"day", "hour"})
+public class UsageDailyHour {
+    // Local midnight of the day, in epoch milliseconds
+    @ColumnInfo(name = "day")
+    private long day;
+
+    @ColumnInfo(name = "hour")
+    private int hour;
+
+    @ColumnInfo(name = "count")
+    private int count;
+
+    public UsageDailyHour(long day, int hour, int count) {
+        this.day = day;
+        this.hour = hour;
+        this.count = count;
+    }
+
+    public long getDay() { return day; }
+    public void setDay(long day) { this.day = day; }
+
+    public int getHour() { return hour; }
+    public void setHour(int hour) { this.hour = hour; }
+
+    public int getCount() { return count; }
+    public void setCount(int count) { this.count = count; }
+}
@@ -0,0 +1,45 @@
+package com.example.sssshhift.usage.data;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+
+/**
+ * Rollup of usage logs per local day and mode, maintained with every insert
+ */
+@Entity(tableName = "usage_daily_mode", primaryKeys = {"day", "mode"})
+public class UsageDailyMode {
+    // Local midnight of the day, in epoch milliseconds
+    @ColumnInfo(name = "day")
+    private long day;
+
+    @NonNull
+    @ColumnInfo(name = "mode")
+    private String mode;
+
+    @ColumnInfo(name = "count")
+    private int count;
+
+    @ColumnInfo(name = "total_ms")
+    private long totalMs;
+
+    public UsageDailyMode(long day, @NonNull String mode, int count, long totalMs) {
+        this.day = day;
+        this.mode = mode;
+        this.count = count;
+        this.totalMs = totalMs;
+    }
+
+    public long getDay() { return day; }
+    public void setDay(long day) { this.day = day; }
+
+    @NonNull
+    public String getMode() { return mode; }
+    public void setMode(@NonNull String mode) { this.mode = mode; }
+
+    public int getCount() { return count; }
+    public void setCount(int count) { this.count = count; }
+
+    public long getTotalMs() { return totalMs; }
+    public void setTotalMs(long totalMs) { this.totalMs = totalMs; }
+}
@@ -1,48 +1,129 @@
 package com.example.sssshhift.usage.data;
 
 import android.content.Context;
+import android.database.Cursor;
 import androidx.room.Database;
 import androidx.room.Room;
 import androidx.room.RoomDatabase;
 import androidx.room.TypeConverters;
+import androidx.room.migration.Migration;
+import androidx.sqlite.db.SupportSQLiteDatabase;
 import android.util.Log;
+import androidx.annotation.NonNull;
 
-@Database(entities = {UsageLog.class}, version = 1, exportSchema = false)
+@Database(entities = {UsageLog.class, UsageDailyMode.class, UsageDailyHour.class}, version = 3, exportSchema = false)
 @TypeConverters({DateConverter.class})
 public abstract class UsageDatabase extends RoomDatabase {
     private static final String TAG = "UsageDatabase";
     private static volatile UsageDatabase INSTANCE;
+    private static final int AUTO_VACUUM_INCREMENTAL = 2;
     public abstract UsageLogDao usageLogDao();
 
+    // Day key of a stored startTime: local midnight, back in epoch milliseconds
+    private static final String LOCAL_DAY_SQL =
+            "strftime('%s', date(startTime / 1000, 'unixepoch', 'localtime'), 'utc') * 1000";
+
+    /**
+     * Adds the startTime index and the rollup tables, and builds the rollups from existing logs
+     */
+    static final Migration MIGRATION_1_2 = new Migration(1, 2) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_usage_logs_startTime` ON `usage_logs` (`startTime`)");
+            db.execSQL("CREATE TABLE IF NOT EXISTS `usage_daily_mode` (`day` INTEGER NOT NULL, "
+                    + "`mode` TEXT NOT NULL, `count` INTEGER NOT NULL, `total_minutes` INTEGER NOT NULL, "
+                    + "PRIMARY KEY(`day`, `mode`))");
+            db.execSQL("CREATE TABLE IF NOT EXISTS `usage_daily_hour` (`day` INTEGER NOT NULL, "
+                    + "`hour` INTEGER NOT NULL, `count` INTEGER NOT NULL, PRIMARY KEY(`day`, `hour`))");
+
+            // The one time localtime is evaluated per row
+            db.execSQL("INSERT INTO usage_daily_mode (day, mode, count, total_minutes) "
+                    + "SELECT " + LOCAL_DAY_SQL + ", mode, COUNT(*), SUM(durationMinutes) FROM usage_logs "
+                    + "WHERE startTime IS NOT NULL AND mode IS NOT NULL GROUP BY 1, 2");
+            db.execSQL("INSERT INTO usage_daily_hour (day, hour, count) "
+                    + "SELECT " + LOCAL_DAY_SQL + ", "
+                    + "CAST(strftime('%H', startTime / 1000, 'unixepoch', 'localtime') AS INTEGER), COUNT(*) "
+                    + "FROM usage_logs WHERE startTime IS NOT NULL AND mode IS NOT NULL GROUP BY 1, 2");
+        }
+    };
+
+    /**
+     * Durations move from whole minutes to milliseconds. Logs take theirs from the end and start
+     * times where both are known; rollups only have minutes to scale.
+     */
+    static final Migration MIGRATION_2_3 = new Migration(2, 3) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE `usage_logs_new` (`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, "
+                    + "`mode` TEXT, `startTime` INTEGER, `endTime` INTEGER, `durationMs` INTEGER NOT NULL)");
+            db.execSQL("INSERT INTO usage_logs_new (id, mode, startTime, endTime, durationMs) "
+                    + "SELECT id, mode, startTime, endTime, CASE WHEN startTime IS NOT NULL AND endTime IS NOT NULL "
+                    + "THEN MAX(endTime - startTime, 0) ELSE durationMinutes * 60000 END FROM usage_logs");
+            // Keep ids of archived logs from being handed out again
+            db.execSQL("DELETE FROM sqlite_sequence WHERE name = 'usage_logs_new'");
+            db.execSQL("INSERT INTO sqlite_sequence (name, seq) "
+                    + "SELECT 'usage_logs_new', seq FROM sqlite_sequence WHERE name = 'usage_logs'");
+            db.execSQL("DROP TABLE usage_logs");
+            db.execSQL("ALTER TABLE usage_logs_new RENAME TO usage_logs");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_usage_logs_startTime` ON `usage_logs` (`startTime`)");
+
+            db.execSQL("CREATE TABLE `usage_daily_mode_new` (`day` INTEGER NOT NULL, "
+                    + "`mode` TEXT NOT NULL, `count` INTEGER NOT NULL, `total_ms` INTEGER NOT NULL, "
+                    + "PRIMARY KEY(`day`, `mode`))");
+            db.execSQL("INSERT INTO usage_daily_mode_new (day, mode, count, total_ms) "
+                    + "SELECT day, mode, count, total_minutes * 60000 FROM usage_daily_mode");
+            db.execSQL("DROP TABLE usage_daily_mode");
+            db.execSQL("ALTER TABLE usage_daily_mode_new RENAME TO usage_daily_mode");
+        }
+    };
+
     public static UsageDatabase getDatabase(final Context context) {
         if (INSTANCE == null) {
             synchronized (UsageDatabase.class) {
                 if (INSTANCE == null) {
-                    try {
-                        INSTANCE = Room.databaseBuilder(
-                            context.getApplicationContext(),
-                            UsageDatabase.class,
-                            "usage_database"
-                        )
-                        .fallbackToDestructiveMigration() // Allow database recreation if no migration found
-                        .build();
-                        Log.d(TAG, "Database initialized successfully");
-                    } catch (Exception e) {
-                        Log.e(TAG, "Error initializing database: " + e.getMessage(), e);
-                        // If database creation fails, try to delete and recreate
-                        context.deleteDatabase("usage_database");
-                        INSTANCE = Room.databaseBuilder(
-                            context.getApplicationContext(),
-                            UsageDatabase.class,
-                            "usage_database"
-                        )
-                        .fallbackToDestructiveMigration()
-                        .build();
-                        Log.d(TAG, "Database recreated after error");
-                    }
+                    // No destructive fallback, a missing migration must fail loudly instead of wiping history
+                    INSTANCE = Room.databaseBuilder(
+                        context.getApplicationContext(),
+                        UsageDatabase.class,
+                        "usage_database"
+                    )
+                    .addMigrations(MIGRATION_1_2, MIGRATION_2_3)
+                    .build();
+                    Log.d(TAG, "Database initialized successfully");
                 }
             }
         }
         return INSTANCE;
     }
-} 
\ No newline at end of file
+
+    /**
+     * Return free pages to the file system, at most the given number per call. The first call
+     * switches the file to incremental auto-vacuum, which takes one full VACUUM.
+     */
+    public void incrementalVacuum(int maxPages) {
+        SupportSQLiteDatabase db = getOpenHelper().getWritableDatabase();
+        if (queryLong(db, "PRAGMA auto_vacuum") != AUTO_VACUUM_INCREMENTAL) {
+            db.execSQL("PRAGMA auto_vacuum = INCREMENTAL");
+            db.execSQL("VACUUM");
+            Log.d(TAG, "Enabled incremental auto-vacuum");
+            return;
+        }
+
+        long freePages = queryLong(db, "PRAGMA freelist_count");
+        if (freePages > 0) {
+            // Each result row is one step of the vacuum, so the cursor has to be drained
+            try (Cursor cursor = db.query("PRAGMA incremental_vacuum(" + maxPages + ")")) {
+                while (cursor.moveToNext()) {
+                    // Nothing to read
+                }
+            }
+            Log.d(TAG, "Incremental vacuum, " + freePages + " free pages before");
+        }
+    }
+
+    private static long queryLong(SupportSQLiteDatabase db, String sql) {
+        try (Cursor cursor = db.query(sql)) {
+            return cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        }
+    }
+}
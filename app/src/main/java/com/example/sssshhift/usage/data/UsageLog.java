@@ -1,11 +1,12 @@
 package com.example.sssshhift.usage.data;
 
 import androidx.room.Entity;
+import androidx.room.Index;
 import androidx.room.PrimaryKey;
 import androidx.room.ColumnInfo;
 import java.util.Date;
 
-@Entity(tableName = "usage_logs")
+@Entity(tableName = "usage_logs", indices = {@Index(value = "startTime")})
 public class UsageLog {
     @PrimaryKey(autoGenerate = true)
     private int id;
@@ -19,14 +20,14 @@ public class UsageLog {
     @ColumnInfo(name = "endTime")
     private Date endTime;
     
-    @ColumnInfo(name = "durationMinutes")
-    private long durationMinutes;
+    @ColumnInfo(name = "durationMs")
+    private long durationMs;
 
-    public UsageLog(String mode, Date startTime, Date endTime, long durationMinutes) {
+    public UsageLog(String mode, Date startTime, Date endTime, long durationMs) {
         this.mode = mode;
         this.startTime = startTime;
         this.endTime = endTime;
-        this.durationMinutes = durationMinutes;
+        this.durationMs = durationMs;
     }
 
     // Getters and Setters
@@ -42,6 +43,6 @@ public class UsageLog {
     public Date getEndTime() { return endTime; }
     public void setEndTime(Date endTime) { this.endTime = endTime; }
     
-    public long getDurationMinutes() { return durationMinutes; }
-    public void setDurationMinutes(long durationMinutes) { this.durationMinutes = durationMinutes; }
+    public long getDurationMs() { return durationMs; }
+    public void setDurationMs(long durationMs) { this.durationMs = durationMs; }
 } 
\ No newline at end of file
@@ -2,30 +2,121 @@ package com.example.sssshhift.usage.data;
 
 import androidx.lifecycle.LiveData;
 import androidx.room.*;
+
+import java.util.Calendar;
+import java.util.Collections;
 import java.util.List;
 
+/**
+ * Raw logs plus the day x mode and day x hour rollups. Logs are only inserted together with
+ * their rollup increments, and the insights queries read the rollups.
+ */
 @Dao
-public interface UsageLogDao {
-    @Insert(onConflict = OnConflictStrategy.REPLACE)
-    void insert(UsageLog log);
+public abstract class UsageLogDao {
+    @Insert
+    abstract void insertLogs(List<UsageLog> logs);
+
+    @Query("INSERT OR IGNORE INTO usage_daily_mode (day, mode, count, total_ms) VALUES (:day, :mode, 0, 0)")
+    abstract void ensureDailyMode(long day, String mode);
+
+    @Query("UPDATE usage_daily_mode SET count = count + 1, total_ms = total_ms + :durationMs " +
+           "WHERE day = :day AND mode = :mode")
+    abstract void incrementDailyMode(long day, String mode, long durationMs);
+
+    @Query("INSERT OR IGNORE INTO usage_daily_hour (day, hour, count) VALUES (:day, :hour, 0)")
+    abstract void ensureDailyHour(long day, int hour);
+
+    @Query("UPDATE usage_daily_hour SET count = count + 1 WHERE day = :day AND hour = :hour")
+    abstract void incrementDailyHour(long day, int hour);
+
+    @Transaction
+    public void insert(UsageLog log) {
+        insertAll(Collections.singletonList(log));
+    }
+
+    /**
+     * Insert the logs and add them to the rollups, in one transaction
+     */
+    @Transaction
+    public void insertAll(List<UsageLog> logs) {
+        insertLogs(logs);
+
+        Calendar calendar = Calendar.getInstance();
+        for (UsageLog log : logs) {
+            if (log.getStartTime() == null || log.getMode() == null) {
+                continue;
+            }
+            calendar.setTime(log.getStartTime());
+            int hour = calendar.get(Calendar.HOUR_OF_DAY);
+            long day = startOfDay(calendar);
 
-    @Query("SELECT * FROM usage_logs WHERE startTime >= :timestamp ORDER BY startTime DESC")
-    LiveData<List<UsageLog>> getLogsAfter(long timestamp);
+            ensureDailyMode(day, log.getMode());
+            incrementDailyMode(day, log.getMode(), log.getDurationMs());
+            ensureDailyHour(day, hour);
+            incrementDailyHour(day, hour);
+        }
+    }
 
-    @Query("SELECT mode as mode, COUNT(*) as count, SUM(durationMinutes) as totalDuration " +
-           "FROM usage_logs " +
-           "WHERE startTime >= :timestamp " +
+    /**
+     * Newest logs in the window, for display only
+     */
+    @Query("SELECT * FROM usage_logs WHERE startTime >= :from AND startTime < :until " +
+           "ORDER BY startTime DESC LIMIT :limit")
+    public abstract LiveData<List<UsageLog>> getRecentLogs(long from, long until, int limit);
+
+    @Query("SELECT COALESCE(SUM(count), 0) FROM usage_daily_mode " +
+           "WHERE day BETWEEN :fromDay AND :toDay")
+    public abstract LiveData<Integer> getLogCount(long fromDay, long toDay);
+
+    @Query("SELECT mode as mode, SUM(count) as count, SUM(total_ms) as totalDuration " +
+           "FROM usage_daily_mode " +
+           "WHERE day BETWEEN :fromDay AND :toDay " +
            "GROUP BY mode ORDER BY count DESC LIMIT 1")
-    LiveData<UsageModeCount> getMostUsedMode(long timestamp);
+    public abstract LiveData<UsageModeCount> getMostUsedMode(long fromDay, long toDay);
 
-    @Query("SELECT strftime('%H', datetime(startTime/1000, 'unixepoch', 'localtime')) as hour, " +
-           "COUNT(*) as count " +
-           "FROM usage_logs " +
-           "WHERE startTime >= :timestamp " +
+    @Query("SELECT hour as hour, SUM(count) as count " +
+           "FROM usage_daily_hour " +
+           "WHERE day BETWEEN :fromDay AND :toDay " +
            "GROUP BY hour ORDER BY count DESC LIMIT 1")
-    LiveData<PeakHourCount> getPeakHour(long timestamp);
+    public abstract LiveData<PeakHourCount> getPeakHour(long fromDay, long toDay);
+
+    @Query("SELECT COALESCE(SUM(total_ms), 0) FROM usage_daily_mode " +
+           "WHERE mode = :mode COLLATE NOCASE AND day BETWEEN :fromDay AND :toDay")
+    public abstract LiveData<Long> getTotalDurationForMode(String mode, long fromDay, long toDay);
+
+    /**
+     * Whether a log for the session starting at startTime is already stored
+     */
+    @Query("SELECT COUNT(*) > 0 FROM usage_logs WHERE startTime = :startTime AND mode = :mode")
+    public abstract boolean hasLog(String mode, long startTime);
+
+    /**
+     * Oldest logs that started before the cutoff, in insertion order, for the retention pass
+     */
+    @Query("SELECT * FROM usage_logs WHERE startTime < :cutoff ORDER BY id LIMIT :limit")
+    public abstract List<UsageLog> getLogsBefore(long cutoff, int limit);
+
+    /**
+     * Remove archived logs. Their rollup rows stay.
+     */
+    @Query("DELETE FROM usage_logs WHERE id IN (:ids)")
+    public abstract int deleteLogs(List<Integer> ids);
+
+    /**
+     * Local midnight of the day containing the timestamp, the key of the rollup tables
+     */
+    public static long dayOf(long timestamp) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(timestamp);
+        return startOfDay(calendar);
+    }
 
-    @Query("SELECT SUM(durationMinutes) FROM usage_logs " +
-           "WHERE mode = :mode AND startTime >= :timestamp")
-    LiveData<Long> getTotalDurationForMode(String mode, long timestamp);
-} 
\ No newline at end of file
+    private static long startOfDay(Calendar calendar) {
+        Calendar day = (Calendar) calendar.clone();
+        day.set(Calendar.HOUR_OF_DAY, 0);
+        day.set(Calendar.MINUTE, 0);
+        day.set(Calendar.SECOND, 0);
+        day.set(Calendar.MILLISECOND, 0);
+        return day.getTimeInMillis();
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.sssshhift.usage.data;
+
+import java.util.Calendar;
+
+/**
+ * Range of local days the insights cover, both ends inclusive. Rolling spans end today and are
+ * resolved again by {@link #refreshed()}, so a screen left open does not drift.
+ */
+public final class UsageWindow {
+    public enum Span { DAY, WEEK, MONTH, CUSTOM }
+
+    private final Span span;
+    private final long fromDay; // Local midnight of the first day
+    private final long toDay;   // Local midnight of the last day
+
+    private UsageWindow(Span span, long fromDay, long toDay) {
+        this.span = span;
+        this.fromDay = fromDay;
+        this.toDay = toDay;
+    }
+
+    /**
+     * Today, the last 7 days or the last 30 days, ending today
+     */
+    public static UsageWindow rolling(Span span) {
+        long today = UsageLogDao.dayOf(System.currentTimeMillis());
+        switch (span) {
+            case DAY:
+                return new UsageWindow(span, today, today);
+            case WEEK:
+                return new UsageWindow(span, addDays(today, -6), today);
+            case MONTH:
+                return new UsageWindow(span, addDays(today, -29), today);
+            default:
+                throw new IllegalArgumentException("Not a rolling span: " + span);
+        }
+    }
+
+    /**
+     * The days containing the two timestamps, in either order
+     */
+    public static UsageWindow custom(long from, long to) {
+        long fromDay = UsageLogDao.dayOf(Math.min(from, to));
+        long toDay = UsageLogDao.dayOf(Math.max(from, to));
+        return new UsageWindow(Span.CUSTOM, fromDay, toDay);
+    }
+
+    /**
+     * The same span resolved against the current day; custom ranges stay as they are
+     */
+    public UsageWindow refreshed() {
+        return span == Span.CUSTOM ? this : rolling(span);
+    }
+
+    public Span getSpan() { return span; }
+
+    public long getFromDay() { return fromDay; }
+
+    public long getToDay() { return toDay; }
+
+    // Exclusive end in epoch milliseconds, for queries on raw logs
+    public long getUntilTime() {
+        return addDays(toDay, 1);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof UsageWindow)) return false;
+        UsageWindow other = (UsageWindow) o;
+        return span == other.span && fromDay == other.fromDay && toDay == other.toDay;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * span.hashCode() + Long.hashCode(fromDay)) + Long.hashCode(toDay);
+    }
+
+    // Calendar arithmetic, days are not always 24 hours long
+    private static long addDays(long day, int days) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(day);
+        calendar.add(Calendar.DAY_OF_YEAR, days);
+        return calendar.getTimeInMillis();
+    }
+}
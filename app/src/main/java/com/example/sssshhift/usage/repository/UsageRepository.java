@@ -2,67 +2,53 @@ package com.example.sssshhift.usage.repository;
 
 import android.app.Application;
 import androidx.lifecycle.LiveData;
-import androidx.lifecycle.MutableLiveData;
-import androidx.room.Room;
 
 import com.example.sssshhift.usage.data.UsageLog;
 import com.example.sssshhift.usage.data.UsageModeCount;
 import com.example.sssshhift.usage.data.PeakHourCount;
 import com.example.sssshhift.usage.data.UsageDatabase;
 import com.example.sssshhift.usage.data.UsageLogDao;
+import com.example.sssshhift.usage.data.UsageWindow;
 
 import java.util.List;
-import java.util.Calendar;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
+/**
+ * Process-wide access to usage data, on the shared {@link UsageDatabase}. Rows are written by
+ * the session tracker.
+ */
 public class UsageRepository {
+    private static UsageRepository instance;
+
     private final UsageLogDao usageLogDao;
-    private final ExecutorService executorService;
-    private final LiveData<List<UsageLog>> recentLogs;
-    private final LiveData<UsageModeCount> mostUsedMode;
-    private final LiveData<PeakHourCount> peakHour;
-    private final LiveData<Long> silentModeDuration;
 
-    public UsageRepository(Application application) {
-        UsageDatabase database = Room.databaseBuilder(
-            application,
-            UsageDatabase.class,
-            "usage_database"
-        ).build();
+    private UsageRepository(Application application) {
+        usageLogDao = UsageDatabase.getDatabase(application).usageLogDao();
+    }
 
-        usageLogDao = database.usageLogDao();
-        executorService = Executors.newSingleThreadExecutor();
-        
-        // Get timestamp for 7 days ago
-        Calendar calendar = Calendar.getInstance();
-        calendar.add(Calendar.DAY_OF_YEAR, -7);
-        long weekAgoTimestamp = calendar.getTimeInMillis();
-        
-        // Initialize LiveData with proper time filtering
-        recentLogs = usageLogDao.getLogsAfter(weekAgoTimestamp);
-        mostUsedMode = usageLogDao.getMostUsedMode(weekAgoTimestamp);
-        peakHour = usageLogDao.getPeakHour(weekAgoTimestamp);
-        silentModeDuration = usageLogDao.getTotalDurationForMode("silent", weekAgoTimestamp);
+    public static synchronized UsageRepository getInstance(Application application) {
+        if (instance == null) {
+            instance = new UsageRepository(application);
+        }
+        return instance;
     }
 
-    public LiveData<List<UsageLog>> getRecentLogs() {
-        return recentLogs;
+    public LiveData<List<UsageLog>> getRecentLogs(UsageWindow window, int limit) {
+        return usageLogDao.getRecentLogs(window.getFromDay(), window.getUntilTime(), limit);
     }
 
-    public LiveData<UsageModeCount> getMostUsedMode() {
-        return mostUsedMode;
+    public LiveData<Integer> getLogCount(UsageWindow window) {
+        return usageLogDao.getLogCount(window.getFromDay(), window.getToDay());
     }
 
-    public LiveData<PeakHourCount> getPeakHour() {
-        return peakHour;
+    public LiveData<UsageModeCount> getMostUsedMode(UsageWindow window) {
+        return usageLogDao.getMostUsedMode(window.getFromDay(), window.getToDay());
     }
 
-    public LiveData<Long> getSilentModeDuration() {
-        return silentModeDuration;
+    public LiveData<PeakHourCount> getPeakHour(UsageWindow window) {
+        return usageLogDao.getPeakHour(window.getFromDay(), window.getToDay());
     }
 
-    public void insert(UsageLog log) {
-        executorService.execute(() -> usageLogDao.insert(log));
+    public LiveData<Long> getTotalDuration(String mode, UsageWindow window) {
+        return usageLogDao.getTotalDurationForMode(mode, window.getFromDay(), window.getToDay());
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,405 @@
+package com.example.sssshhift.usage.retention;
+
+import com.example.sssshhift.usage.data.UsageLog;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Append-only archive of usage logs moved out of the database. Each append writes one segment:
+ * a fixed header with the id and start time ranges, then a deflated payload holding the rows
+ * column by column (mode dictionary, then ids, modes, starts, ends and durations as varints,
+ * delta coded where that keeps them small). A torn last segment is cut off on the next append.
+ */
+public final class UsageArchive {
+    public static final long NO_TIME = Long.MIN_VALUE;
+
+    private static final int MAGIC = 0x55534741; // "USGA"
+    private static final int VERSION = 1;
+    // magic, version, rows, min/max id, min/max start, payload length, crc
+    private static final int HEADER_BYTES = 4 + 4 + 4 + 8 + 8 + 8 + 8 + 4 + 8;
+
+    /**
+     * Receives archived rows in the order they were appended
+     */
+    public interface RowVisitor {
+        void onRow(long id, String mode, long startTime, long endTime, long durationMs);
+    }
+
+    private final File file;
+
+    public UsageArchive(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Append the logs as one segment and sync it to disk. Logs without a start time are skipped.
+     */
+    public synchronized void append(List<UsageLog> logs) throws IOException {
+        List<UsageLog> rows = new ArrayList<>(logs.size());
+        for (UsageLog log : logs) {
+            if (log.getStartTime() != null) {
+                rows.add(log);
+            }
+        }
+        if (rows.isEmpty()) {
+            return;
+        }
+
+        long minId = Long.MAX_VALUE, maxId = Long.MIN_VALUE;
+        long minStart = Long.MAX_VALUE, maxStart = Long.MIN_VALUE;
+        for (UsageLog log : rows) {
+            long start = log.getStartTime().getTime();
+            minId = Math.min(minId, log.getId());
+            maxId = Math.max(maxId, log.getId());
+            minStart = Math.min(minStart, start);
+            maxStart = Math.max(maxStart, start);
+        }
+
+        byte[] payload = deflate(encodeColumns(rows));
+        CRC32 crc = new CRC32();
+        crc.update(payload, 0, payload.length);
+
+        File parent = file.getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Cannot create " + parent);
+        }
+
+        try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+            // Drop whatever a crashed append left behind
+            out.setLength(validLength());
+            out.seek(out.length());
+
+            ByteArrayOutputStream segment = new ByteArrayOutputStream(HEADER_BYTES + payload.length);
+            DataOutputStream header = new DataOutputStream(segment);
+            header.writeInt(MAGIC);
+            header.writeInt(VERSION);
+            header.writeInt(rows.size());
+            header.writeLong(minId);
+            header.writeLong(maxId);
+            header.writeLong(minStart);
+            header.writeLong(maxStart);
+            header.writeInt(payload.length);
+            header.writeLong(crc.getValue());
+            header.write(payload);
+            header.flush();
+
+            out.write(segment.toByteArray());
+            out.getFD().sync();
+        }
+    }
+
+    /**
+     * Stream the archived rows starting in [from, until). Segments outside the range are skipped
+     * without being inflated.
+     * @return number of rows visited
+     */
+    public synchronized int scan(long from, long until, RowVisitor visitor) throws IOException {
+        if (!file.exists()) {
+            return 0;
+        }
+        int visited = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            Header header;
+            while ((header = readHeader(in)) != null) {
+                if (header.maxStart < from || header.minStart >= until) {
+                    skipFully(in, header.payloadLength);
+                    continue;
+                }
+                byte[] payload = readPayload(in, header);
+                if (payload == null) {
+                    break; // Torn or damaged tail
+                }
+                visited += decodeColumns(inflate(payload), header.rows, from, until, visitor);
+            }
+        }
+        return visited;
+    }
+
+    /**
+     * Ids in the last segment, to recognise rows appended by a run that stopped before deleting them
+     */
+    public synchronized Set<Integer> lastSegmentIds() throws IOException {
+        final Set<Integer> ids = new HashSet<>();
+        if (!file.exists()) {
+            return ids;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            Header header;
+            byte[] last = null;
+            int lastRows = 0;
+            while ((header = readHeader(in)) != null) {
+                byte[] payload = readPayload(in, header);
+                if (payload == null) {
+                    break;
+                }
+                last = payload;
+                lastRows = header.rows;
+            }
+            if (last != null) {
+                decodeColumns(inflate(last), lastRows, Long.MIN_VALUE, Long.MAX_VALUE,
+                        (id, mode, startTime, endTime, durationMs) -> ids.add((int) id));
+            }
+        }
+        return ids;
+    }
+
+    public long size() {
+        return file.length();
+    }
+
+    // Length of the leading run of complete segments, only the last one has its checksum checked
+    private long validLength() throws IOException {
+        if (!file.exists()) {
+            return 0;
+        }
+        long valid = 0;
+        long lastStart = -1;
+        Header last = null;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            Header header;
+            while ((header = readHeader(in)) != null) {
+                if (!skipFully(in, header.payloadLength)) {
+                    break;
+                }
+                lastStart = valid;
+                last = header;
+                valid += HEADER_BYTES + header.payloadLength;
+            }
+        }
+        if (last != null) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                skipFully(in, lastStart + HEADER_BYTES);
+                if (readPayload(in, last) == null) {
+                    valid = lastStart;
+                }
+            }
+        }
+        return valid;
+    }
+
+    private static final class Header {
+        int rows;
+        long minStart;
+        long maxStart;
+        int payloadLength;
+        long crc;
+    }
+
+    // Null at the end of the file or at a header that is cut short or not ours
+    private static Header readHeader(DataInputStream in) throws IOException {
+        try {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return null;
+            }
+            Header header = new Header();
+            header.rows = in.readInt();
+            in.readLong(); // min id
+            in.readLong(); // max id
+            header.minStart = in.readLong();
+            header.maxStart = in.readLong();
+            header.payloadLength = in.readInt();
+            header.crc = in.readLong();
+            return header.rows >= 0 && header.payloadLength >= 0 ? header : null;
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    private static byte[] readPayload(DataInputStream in, Header header) throws IOException {
+        byte[] payload = new byte[header.payloadLength];
+        try {
+            in.readFully(payload);
+        } catch (EOFException e) {
+            return null;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(payload, 0, payload.length);
+        return crc.getValue() == header.crc ? payload : null;
+    }
+
+    private static boolean skipFully(InputStream in, long count) throws IOException {
+        while (count > 0) {
+            long skipped = in.skip(count);
+            if (skipped <= 0) {
+                if (in.read() < 0) {
+                    return false;
+                }
+                skipped = 1;
+            }
+            count -= skipped;
+        }
+        return true;
+    }
+
+    private static byte[] encodeColumns(List<UsageLog> rows) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+
+        // Mode dictionary, index 0 stands for no mode
+        Map<String, Integer> dictionary = new HashMap<>();
+        List<String> modes = new ArrayList<>();
+        for (UsageLog log : rows) {
+            String mode = log.getMode();
+            if (mode != null && !dictionary.containsKey(mode)) {
+                dictionary.put(mode, modes.size() + 1);
+                modes.add(mode);
+            }
+        }
+        writeVarint(out, modes.size());
+        for (String mode : modes) {
+            out.writeUTF(mode);
+        }
+
+        long previous = 0;
+        for (UsageLog log : rows) {
+            writeVarint(out, zigzag(log.getId() - previous));
+            previous = log.getId();
+        }
+        for (UsageLog log : rows) {
+            writeVarint(out, log.getMode() == null ? 0 : dictionary.get(log.getMode()));
+        }
+        previous = 0;
+        for (UsageLog log : rows) {
+            long start = log.getStartTime().getTime();
+            writeVarint(out, zigzag(start - previous));
+            previous = start;
+        }
+        // End relative to start, shifted by one so 0 means no end
+        for (UsageLog log : rows) {
+            long start = log.getStartTime().getTime();
+            writeVarint(out, log.getEndTime() == null ? 0 : zigzag(log.getEndTime().getTime() - start) + 1);
+        }
+        for (UsageLog log : rows) {
+            writeVarint(out, zigzag(log.getDurationMs()));
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static int decodeColumns(byte[] columns, int rows, long from, long until, RowVisitor visitor)
+            throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(columns));
+
+        String[] modes = new String[(int) readVarint(in) + 1];
+        for (int i = 1; i < modes.length; i++) {
+            modes[i] = in.readUTF();
+        }
+
+        long[] ids = new long[rows];
+        long previous = 0;
+        for (int i = 0; i < rows; i++) {
+            previous += unzigzag(readVarint(in));
+            ids[i] = previous;
+        }
+        int[] modeIndexes = new int[rows];
+        for (int i = 0; i < rows; i++) {
+            modeIndexes[i] = (int) readVarint(in);
+        }
+        long[] starts = new long[rows];
+        previous = 0;
+        for (int i = 0; i < rows; i++) {
+            previous += unzigzag(readVarint(in));
+            starts[i] = previous;
+        }
+        long[] ends = new long[rows];
+        for (int i = 0; i < rows; i++) {
+            long end = readVarint(in);
+            ends[i] = end == 0 ? NO_TIME : starts[i] + unzigzag(end - 1);
+        }
+
+        int visited = 0;
+        for (int i = 0; i < rows; i++) {
+            long duration = unzigzag(readVarint(in));
+            if (starts[i] >= from && starts[i] < until) {
+                visitor.onRow(ids[i], modes[modeIndexes[i]], starts[i], ends[i], duration);
+                visited++;
+            }
+        }
+        return visited;
+    }
+
+    private static byte[] deflate(byte[] data) {
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, data.length / 4));
+            byte[] buffer = new byte[4096];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] data) throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length * 4);
+            byte[] buffer = new byte[4096];
+            while (!inflater.finished()) {
+                int count = inflater.inflate(buffer);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IOException("Truncated archive segment");
+                }
+                out.write(buffer, 0, count);
+            }
+            return out.toByteArray();
+        } catch (DataFormatException e) {
+            throw new IOException("Damaged archive segment", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void writeVarint(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarint(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.sssshhift.usage.retention;
+
+import android.content.Context;
+import android.util.Log;
+import androidx.annotation.NonNull;
+import androidx.work.Constraints;
+import androidx.work.ExistingPeriodicWorkPolicy;
+import androidx.work.PeriodicWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import com.example.sssshhift.usage.data.UsageDatabase;
+import com.example.sssshhift.usage.data.UsageLog;
+import com.example.sssshhift.usage.data.UsageLogDao;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Daily retention pass. Raw logs older than the retention period are appended to the archive
+ * and then deleted; their totals are already in the rollup tables, which are kept. Afterwards
+ * freed pages are handed back with an incremental vacuum.
+ */
+public class UsageRetentionWorker extends Worker {
+    private static final String TAG = "UsageRetentionWorker";
+    private static final String WORK_NAME = "usage_retention";
+
+    // Covers every window the insights screen offers without the archive
+    private static final int RAW_RETENTION_DAYS = 31;
+    private static final int BATCH_SIZE = 500; // Below SQLite's bound parameter limit
+    private static final int VACUUM_PAGES = 512;
+
+    public UsageRetentionWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    /**
+     * Archive of the logs moved out of the database, readable for long-range reports
+     */
+    public static UsageArchive getArchive(Context context) {
+        return new UsageArchive(new File(new File(context.getFilesDir(), "usage_archive"), "usage_logs.bin"));
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        Context context = getApplicationContext();
+        UsageDatabase database = UsageDatabase.getDatabase(context);
+        UsageLogDao dao = database.usageLogDao();
+        UsageArchive archive = getArchive(context);
+
+        try {
+            long cutoff = retentionCutoff();
+            // Rows of a run that archived a batch but stopped before deleting it
+            Set<Integer> archived = archive.lastSegmentIds();
+            int moved = 0;
+
+            while (!isStopped()) {
+                List<UsageLog> batch = dao.getLogsBefore(cutoff, BATCH_SIZE);
+                if (batch.isEmpty()) {
+                    break;
+                }
+
+                List<UsageLog> fresh = new ArrayList<>(batch.size());
+                List<Integer> ids = new ArrayList<>(batch.size());
+                for (UsageLog log : batch) {
+                    ids.add(log.getId());
+                    if (!archived.contains(log.getId())) {
+                        fresh.add(log);
+                    }
+                }
+
+                // Synced to disk before the rows go, a crash in between only repeats the delete
+                if (!fresh.isEmpty()) {
+                    archive.append(fresh);
+                    archived = new HashSet<>();
+                    for (UsageLog log : fresh) {
+                        archived.add(log.getId());
+                    }
+                }
+                dao.deleteLogs(ids);
+                moved += fresh.size();
+
+                if (batch.size() < BATCH_SIZE) {
+                    break;
+                }
+            }
+
+            database.incrementalVacuum(VACUUM_PAGES);
+            Log.d(TAG, "Archived " + moved + " usage logs, archive is " + archive.size() + " bytes");
+            return Result.success();
+        } catch (IOException e) {
+            Log.e(TAG, "Error writing usage archive: " + e.getMessage(), e);
+            return Result.retry();
+        } catch (Exception e) {
+            Log.e(TAG, "Error in usage retention: " + e.getMessage(), e);
+            return Result.retry();
+        }
+    }
+
+    // Local midnight RAW_RETENTION_DAYS days ago, so whole days are archived
+    private static long retentionCutoff() {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(UsageLogDao.dayOf(System.currentTimeMillis()));
+        calendar.add(Calendar.DAY_OF_YEAR, -RAW_RETENTION_DAYS);
+        return calendar.getTimeInMillis();
+    }
+
+    /**
+     * Schedule the daily pass, keeping an already scheduled one
+     */
+    public static void schedule(Context context) {
+        Constraints constraints = new Constraints.Builder()
+                .setRequiresBatteryNotLow(true)
+                .setRequiresStorageNotLow(true)
+                .build();
+
+        PeriodicWorkRequest request = new PeriodicWorkRequest.Builder(
+                UsageRetentionWorker.class, 1, TimeUnit.DAYS)
+                .setConstraints(constraints)
+                .build();
+
+        WorkManager.getInstance(context).enqueueUniquePeriodicWork(
+                WORK_NAME, ExistingPeriodicWorkPolicy.KEEP, request);
+    }
+}
@@ -0,0 +1,158 @@
+package com.example.sssshhift.usage.session;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+
+/**
+ * Fixed-size state file holding the open session and a closed one not yet stored. The file has
+ * two slots that are written in turn, so a torn write leaves the previous state readable.
+ */
+final class SessionJournal {
+    static final int MAX_MODE_BYTES = 32;
+
+    private static final int MAGIC = 0x53534A31; // "SSJ1"
+    private static final int SLOT_BYTES = 128;
+    // magic, seq, open session, pending session, then the crc
+    private static final int CRC_OFFSET = 4 + 8 + (1 + 8 + 2 + MAX_MODE_BYTES) + (1 + 8 + 8 + 2 + MAX_MODE_BYTES);
+
+    /**
+     * Journaled state, sessions are null when absent
+     */
+    static final class State {
+        final String openMode;
+        final long openStart;
+        final String pendingMode;
+        final long pendingStart;
+        final long pendingEnd;
+
+        State(String openMode, long openStart, String pendingMode, long pendingStart, long pendingEnd) {
+            this.openMode = openMode;
+            this.openStart = openStart;
+            this.pendingMode = pendingMode;
+            this.pendingStart = pendingStart;
+            this.pendingEnd = pendingEnd;
+        }
+
+        static State empty() {
+            return new State(null, 0, null, 0, 0);
+        }
+
+        State withPending(String mode, long start, long end) {
+            return new State(openMode, openStart, mode, start, end);
+        }
+
+        State withoutPending() {
+            return new State(openMode, openStart, null, 0, 0);
+        }
+
+        State withOpen(String mode, long start) {
+            return new State(mode, start, pendingMode, pendingStart, pendingEnd);
+        }
+    }
+
+    private final File file;
+    private long seq;
+
+    SessionJournal(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Newest intact slot, or an empty state for a new or unreadable file
+     */
+    State read() throws IOException {
+        if (!file.exists()) {
+            return State.empty();
+        }
+        byte[] bytes = new byte[SLOT_BYTES * 2];
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            in.readFully(bytes, 0, (int) Math.min(in.length(), bytes.length));
+        }
+
+        State newest = null;
+        long newestSeq = -1;
+        for (int slot = 0; slot < 2; slot++) {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes, slot * SLOT_BYTES, SLOT_BYTES).slice();
+            if (!isIntact(buffer)) {
+                continue;
+            }
+            buffer.position(4);
+            long slotSeq = buffer.getLong();
+            if (slotSeq > newestSeq) {
+                newestSeq = slotSeq;
+                newest = decode(buffer);
+            }
+        }
+        seq = Math.max(seq, newestSeq);
+        return newest != null ? newest : State.empty();
+    }
+
+    /**
+     * Write the state over the older slot and sync it
+     */
+    void write(State state) throws IOException {
+        seq++;
+        ByteBuffer buffer = ByteBuffer.allocate(SLOT_BYTES);
+        buffer.putInt(MAGIC);
+        buffer.putLong(seq);
+        putSession(buffer, state.openMode, state.openStart, 0, false);
+        putSession(buffer, state.pendingMode, state.pendingStart, state.pendingEnd, true);
+
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 0, CRC_OFFSET);
+        buffer.putInt(CRC_OFFSET, (int) crc.getValue());
+
+        try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+            out.seek((seq % 2) * SLOT_BYTES);
+            out.write(buffer.array());
+            out.getFD().sync();
+        }
+    }
+
+    private static boolean isIntact(ByteBuffer buffer) {
+        if (buffer.getInt(0) != MAGIC) {
+            return false;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), buffer.arrayOffset(), CRC_OFFSET);
+        return buffer.getInt(CRC_OFFSET) == (int) crc.getValue();
+    }
+
+    private static State decode(ByteBuffer buffer) {
+        boolean open = buffer.get() != 0;
+        long openStart = buffer.getLong();
+        String openMode = getMode(buffer);
+
+        boolean pending = buffer.get() != 0;
+        long pendingStart = buffer.getLong();
+        long pendingEnd = buffer.getLong();
+        String pendingMode = getMode(buffer);
+
+        return new State(open ? openMode : null, openStart,
+                pending ? pendingMode : null, pendingStart, pendingEnd);
+    }
+
+    private static void putSession(ByteBuffer buffer, String mode, long start, long end, boolean withEnd) {
+        buffer.put((byte) (mode != null ? 1 : 0));
+        buffer.putLong(start);
+        if (withEnd) {
+            buffer.putLong(end);
+        }
+        byte[] bytes = mode != null ? mode.getBytes(StandardCharsets.UTF_8) : new byte[0];
+        int length = Math.min(bytes.length, MAX_MODE_BYTES);
+        buffer.putShort((short) length);
+        buffer.put(bytes, 0, length);
+        buffer.position(buffer.position() + MAX_MODE_BYTES - length);
+    }
+
+    private static String getMode(ByteBuffer buffer) {
+        int length = Math.min(buffer.getShort(), MAX_MODE_BYTES);
+        byte[] bytes = new byte[MAX_MODE_BYTES];
+        buffer.get(bytes);
+        return new String(bytes, 0, Math.max(length, 0), StandardCharsets.UTF_8);
+    }
+}
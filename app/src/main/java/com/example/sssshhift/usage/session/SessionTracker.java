@@ -0,0 +1,172 @@
+package com.example.sssshhift.usage.session;
+
+import android.content.Context;
+import android.media.AudioManager;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.example.sssshhift.usage.data.UsageDatabase;
+import com.example.sssshhift.usage.data.UsageLog;
+import com.example.sssshhift.usage.data.UsageLogDao;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Date;
+
+/**
+ * Tracks the ringer mode session that is currently open. The session is journaled when it
+ * starts, so it survives the process; it is closed and stored on the next transition, or at
+ * the boot time when the device restarted in between. A change made while the process was dead
+ * is picked up when the journal is loaded. A closed session stays in the journal until its row
+ * is written.
+ */
+public final class SessionTracker {
+    private static final String TAG = "SessionTracker";
+
+    private static SessionTracker instance;
+
+    private final UsageLogDao dao;
+    private final AudioManager audioManager;
+    private final SessionJournal journal;
+    private final Handler handler;
+    // Read once, so every catch-up in this process agrees on it and a session opened at the boot
+    // time is not closed again as if it predated the boot
+    private final long bootTime;
+
+    // Journal state, only touched on the handler thread
+    private SessionJournal.State state = SessionJournal.State.empty();
+
+    private SessionTracker(Context context) {
+        Context appContext = context.getApplicationContext();
+        this.dao = UsageDatabase.getDatabase(appContext).usageLogDao();
+        this.audioManager = (AudioManager) appContext.getSystemService(Context.AUDIO_SERVICE);
+        this.journal = new SessionJournal(new File(appContext.getFilesDir(), "usage_session.state"));
+        this.bootTime = System.currentTimeMillis() - SystemClock.elapsedRealtime();
+
+        // Journal and database writes run off the main thread, in call order
+        HandlerThread thread = new HandlerThread(TAG);
+        thread.start();
+        this.handler = new Handler(thread.getLooper());
+
+        handler.post(this::load);
+    }
+
+    public static synchronized SessionTracker getInstance(Context context) {
+        if (instance == null) {
+            instance = new SessionTracker(context);
+        }
+        return instance;
+    }
+
+    /**
+     * Record the ringer mode now in effect. Same mode as the open session is not a transition.
+     */
+    public void onRingerModeChanged(int ringerMode) {
+        final long now = System.currentTimeMillis();
+        final String mode = modeName(ringerMode);
+        handler.post(() -> transition(mode, now));
+    }
+
+    /**
+     * After a reboot the open session ended when the device went down; the boot time is the
+     * closest bound we have. A new session starts then, with the mode the device came up in.
+     * Nothing changes if loading the journal already did this.
+     */
+    public void recoverAfterBoot() {
+        handler.post(this::catchUp);
+    }
+
+    private void load() {
+        try {
+            state = journal.read();
+            // A closed session a killed process did not get to store
+            storePending();
+            if (state.openMode != null) {
+                Log.d(TAG, "Resumed " + state.openMode + " session from " + new Date(state.openStart));
+            }
+            catchUp();
+        } catch (IOException e) {
+            Log.e(TAG, "Error reading session journal: " + e.getMessage(), e);
+        }
+    }
+
+    // Changes made while the process was dead were not broadcast to us, so the journaled session
+    // is compared with the current mode. A reboot ended it at the boot time, when the current
+    // session started; any other change is only known from now on.
+    private void catchUp() {
+        long now = System.currentTimeMillis();
+        long start = now;
+        if (state.openMode != null && state.openStart < bootTime) {
+            close(bootTime);
+            start = bootTime;
+        }
+        if (audioManager != null) {
+            String mode = modeName(audioManager.getRingerMode());
+            if (state.openMode != null && !mode.equals(state.openMode)) {
+                Log.d(TAG, "Ringer mode changed to " + mode + " while not tracked");
+            }
+            transition(mode, Math.max(start, state.openStart));
+        }
+    }
+
+    private void transition(String mode, long time) {
+        if (mode.equals(state.openMode)) {
+            return;
+        }
+        if (state.openMode != null) {
+            close(time);
+        }
+        state = state.withOpen(mode, time);
+        persist();
+        Log.d(TAG, "Opened " + mode + " session");
+    }
+
+    // Journal the session as closed first, then store it
+    private void close(long end) {
+        storePending();
+        state = state.withPending(state.openMode, state.openStart, Math.max(end, state.openStart))
+                .withOpen(null, 0);
+        persist();
+        storePending();
+    }
+
+    private void storePending() {
+        if (state.pendingMode == null) {
+            return;
+        }
+        try {
+            // The row may already be in if the process died before the journal was cleared
+            if (!dao.hasLog(state.pendingMode, state.pendingStart)) {
+                long durationMs = state.pendingEnd - state.pendingStart;
+                dao.insert(new UsageLog(state.pendingMode, new Date(state.pendingStart),
+                        new Date(state.pendingEnd), durationMs));
+                Log.d(TAG, String.format("Logged usage: %s mode for %d ms", state.pendingMode, durationMs));
+            }
+            state = state.withoutPending();
+            persist();
+        } catch (Exception e) {
+            Log.e(TAG, "Error storing usage session: " + e.getMessage(), e);
+        }
+    }
+
+    private void persist() {
+        try {
+            journal.write(state);
+        } catch (IOException e) {
+            Log.e(TAG, "Error writing session journal: " + e.getMessage(), e);
+        }
+    }
+
+    static String modeName(int ringerMode) {
+        switch (ringerMode) {
+            case AudioManager.RINGER_MODE_SILENT:
+                return "SILENT";
+            case AudioManager.RINGER_MODE_VIBRATE:
+                return "VIBRATE";
+            default:
+                return "NORMAL";
+        }
+    }
+}
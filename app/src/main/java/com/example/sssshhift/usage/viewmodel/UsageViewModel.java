@@ -8,14 +8,20 @@ import androidx.lifecycle.Transformations;
 import com.example.sssshhift.usage.data.UsageLog;
 import com.example.sssshhift.usage.data.UsageModeCount;
 import com.example.sssshhift.usage.data.PeakHourCount;
+import com.example.sssshhift.usage.data.UsageWindow;
 import com.example.sssshhift.usage.repository.UsageRepository;
 
 import java.util.List;
-import java.util.Calendar;
-import java.util.concurrent.TimeUnit;
 
+/**
+ * Insights for the selected window. Every value is an aggregate computed by the database on the
+ * rollups, and each one is re-queried when the window changes.
+ */
 public class UsageViewModel extends AndroidViewModel {
+    private static final int RECENT_LIMIT = 50;
+
     private final UsageRepository repository;
+    private final MutableLiveData<UsageWindow> window = new MutableLiveData<>();
     private final LiveData<List<UsageLog>> recentActivity;
     private final LiveData<Long> totalSilentTime;
     private final LiveData<Integer> totalProfilesActivated;
@@ -24,37 +30,57 @@ public class UsageViewModel extends AndroidViewModel {
 
     public UsageViewModel(Application application) {
         super(application);
-        repository = new UsageRepository(application);
-        recentActivity = repository.getRecentLogs();
-        
-        // Calculate total silent time
-        totalSilentTime = Transformations.map(recentActivity, logs -> {
-            long totalMinutes = 0;
-            if (logs != null) {
-                for (UsageLog log : logs) {
-                    if ("SILENT".equalsIgnoreCase(log.getMode())) {
-                        totalMinutes += log.getDurationMinutes();
-                    }
-                }
-            }
-            return totalMinutes;
-        });
-
-        // Count total profiles activated
-        totalProfilesActivated = Transformations.map(recentActivity, logs -> 
-            logs != null ? logs.size() : 0);
-
-        // Calculate most used mode
-        mostUsedMode = repository.getMostUsedMode();
-
-        // Get peak activity hour
-        peakHour = repository.getPeakHour();
+        repository = UsageRepository.getInstance(application);
+        window.setValue(UsageWindow.rolling(UsageWindow.Span.WEEK));
+
+        // Only the newest rows are loaded for the list, the totals never touch raw logs
+        recentActivity = Transformations.switchMap(window, w -> repository.getRecentLogs(w, RECENT_LIMIT));
+        totalSilentTime = Transformations.switchMap(window, w -> repository.getTotalDuration("SILENT", w));
+        totalProfilesActivated = Transformations.switchMap(window, repository::getLogCount);
+        mostUsedMode = Transformations.switchMap(window, repository::getMostUsedMode);
+        peakHour = Transformations.switchMap(window, repository::getPeakHour);
+    }
+
+    public LiveData<UsageWindow> getWindow() {
+        return window;
+    }
+
+    /**
+     * Show today, the last 7 days or the last 30 days
+     */
+    public void setSpan(UsageWindow.Span span) {
+        setWindow(UsageWindow.rolling(span));
+    }
+
+    /**
+     * Show the days between the two timestamps
+     */
+    public void setCustomRange(long from, long to) {
+        setWindow(UsageWindow.custom(from, to));
+    }
+
+    /**
+     * Move a rolling window to the current day, e.g. when the screen comes back after midnight
+     */
+    public void refresh() {
+        UsageWindow current = window.getValue();
+        if (current != null) {
+            setWindow(current.refreshed());
+        }
+    }
+
+    // Same days keep the current queries
+    private void setWindow(UsageWindow next) {
+        if (!next.equals(window.getValue())) {
+            window.setValue(next);
+        }
     }
 
     public LiveData<List<UsageLog>> getRecentActivity() {
         return recentActivity;
     }
 
+    // Milliseconds
     public LiveData<Long> getTotalSilentTime() {
         return totalSilentTime;
     }
@@ -70,4 +96,4 @@ public class UsageViewModel extends AndroidViewModel {
     public LiveData<PeakHourCount> getPeakHour() {
         return peakHour;
     }
-} 
\ No newline at end of file
+}
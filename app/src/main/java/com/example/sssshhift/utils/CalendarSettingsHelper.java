@@ -8,7 +8,6 @@ import android.preference.PreferenceManager;
 
 public class CalendarSettingsHelper {
     private static final String PREF_CALENDAR_MONITORING_ENABLED = "calendar_monitoring_enabled";
-    private static final String PREF_CALENDAR_CHECK_INTERVAL = "calendar_check_interval";
     private static final String PREF_CALENDAR_BUFFER_TIME = "calendar_buffer_time";
 
     private SharedPreferences sharedPreferences;
@@ -34,23 +33,8 @@ public class CalendarSettingsHelper {
     }
 
     /**
-     * Get calendar check interval in milliseconds (default: 30 seconds)
-     */
-    public long getCalendarCheckInterval() {
-        return sharedPreferences.getLong(PREF_CALENDAR_CHECK_INTERVAL, 30000);
-    }
-
-    /**
-     * Set calendar check interval
-     */
-    public void setCalendarCheckInterval(long intervalMs) {
-        sharedPreferences.edit()
-                .putLong(PREF_CALENDAR_CHECK_INTERVAL, intervalMs)
-                .apply();
-    }
-
-    /**
-     * Get buffer time before/after events in minutes (default: 1 minute)
+     * Get buffer time before/after events in minutes (default: 1 minute).
+     * Silence starts this long before an event and ends this long after it.
      */
     public int getCalendarBufferTime() {
         return sharedPreferences.getInt(PREF_CALENDAR_BUFFER_TIME, 1);
@@ -71,7 +55,6 @@ public class CalendarSettingsHelper {
     public void resetToDefaults() {
         sharedPreferences.edit()
                 .putBoolean(PREF_CALENDAR_MONITORING_ENABLED, true)
-                .putLong(PREF_CALENDAR_CHECK_INTERVAL, 30000)
                 .putInt(PREF_CALENDAR_BUFFER_TIME, 1)
                 .apply();
     }
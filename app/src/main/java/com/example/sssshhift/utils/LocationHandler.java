@@ -15,24 +15,24 @@ import androidx.annotation.NonNull;
 import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
 
+import com.example.sssshhift.location.AdaptiveSamplingPolicy;
 import com.google.android.gms.location.FusedLocationProviderClient;
 import com.google.android.gms.location.LocationCallback;
 import com.google.android.gms.location.LocationRequest;
 import com.google.android.gms.location.LocationResult;
 import com.google.android.gms.location.LocationServices;
-import com.google.android.gms.location.Priority;
 import com.google.android.gms.maps.model.LatLng;
 
 public class LocationHandler {
     private static final String TAG = "LocationHandler";
-    private static final long UPDATE_INTERVAL = 10000; // 10 seconds
-    private static final long FASTEST_INTERVAL = 5000; // 5 seconds
     private static final int LOCATION_PERMISSION_REQUEST_CODE = 1001;
 
     private final Context context;
     private final FusedLocationProviderClient fusedLocationClient;
     private LocationCallback locationCallback;
     private LocationUpdateListener locationUpdateListener;
+    private final AdaptiveSamplingPolicy samplingPolicy = new AdaptiveSamplingPolicy();
+    private AdaptiveSamplingPolicy.Tier requestedTier;
 
     public interface LocationUpdateListener {
         void onLocationUpdate(Location location);
@@ -67,10 +67,9 @@ public class LocationHandler {
             return;
         }
 
-        LocationRequest locationRequest = new LocationRequest.Builder(Priority.PRIORITY_HIGH_ACCURACY)
-            .setIntervalMillis(UPDATE_INTERVAL)
-            .setMinUpdateIntervalMillis(FASTEST_INTERVAL)
-            .build();
+        if (locationCallback != null) {
+            return; // Already running, the sampling policy adjusts the request
+        }
 
         locationCallback = new LocationCallback() {
             @Override
@@ -82,8 +81,51 @@ public class LocationHandler {
             }
         };
 
+        samplingPolicy.reset();
+        requestUpdates(samplingPolicy.getTier());
+    }
+
+    /**
+     * Report the distance from a fix to the nearest fence boundary. Sampling is relaxed while no
+     * fence can be reached soon and tightened again close to a boundary.
+     */
+    public void onFenceDistance(Location location, double boundaryDistanceMeters) {
+        AdaptiveSamplingPolicy.Tier tier = samplingPolicy.onFix(
+                location.getLatitude(), location.getLongitude(), location.getTime(),
+                location.hasSpeed() ? location.getSpeed() : -1,
+                location.hasAccuracy() ? location.getAccuracy() : -1, boundaryDistanceMeters);
+        if (tier != requestedTier) {
+            Log.d(TAG, String.format("Sampling %s -> %s (boundary %.0f m)", requestedTier, tier, boundaryDistanceMeters));
+            requestUpdates(tier);
+        }
+    }
+
+    /**
+     * Go back to the tightest sampling, e.g. after fences were added or moved
+     */
+    public void resetSampling() {
+        samplingPolicy.reset();
+        if (requestedTier != null && requestedTier != samplingPolicy.getTier()) {
+            requestUpdates(samplingPolicy.getTier());
+        }
+    }
+
+    @SuppressLint("MissingPermission")
+    private void requestUpdates(AdaptiveSamplingPolicy.Tier tier) {
+        if (locationCallback == null) {
+            return;
+        }
+
+        LocationRequest locationRequest = new LocationRequest.Builder(tier.getPriority())
+            .setIntervalMillis(tier.getIntervalMillis())
+            .setMinUpdateIntervalMillis(tier.getMinIntervalMillis())
+            .setMinUpdateDistanceMeters(tier.getMinUpdateDistanceMeters())
+            .build();
+
         try {
+            // Replaces the previous request for the same callback
             fusedLocationClient.requestLocationUpdates(locationRequest, locationCallback, Looper.getMainLooper());
+            requestedTier = tier;
         } catch (SecurityException e) {
             if (locationUpdateListener != null) {
                 locationUpdateListener.onLocationError("Security exception: " + e.getMessage());
@@ -124,6 +166,7 @@ public class LocationHandler {
         if (locationCallback != null) {
             fusedLocationClient.removeLocationUpdates(locationCallback);
             locationCallback = null;
+            requestedTier = null;
         }
     }
 
@@ -153,5 +153,35 @@ public class NotificationUtils {
         manager.notify(1003, builder.build());
     }
 
+    /**
+     * Ask for exact alarms from code that cannot start an activity, e.g. a receiver
+     */
+    public static void showExactAlarmPermissionNotification(Context context) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.S) {
+            return;
+        }
+        createNotificationChannel(context);
+
+        Intent intent = new Intent(Settings.ACTION_REQUEST_SCHEDULE_EXACT_ALARM);
+        intent.setData(android.net.Uri.parse("package:" + context.getPackageName()));
+        PendingIntent pendingIntent = PendingIntent.getActivity(
+                context,
+                0,
+                intent,
+                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE
+        );
+
+        NotificationCompat.Builder builder = new NotificationCompat.Builder(context, CHANNEL_ID)
+                .setSmallIcon(R.drawable.ic_settings)
+                .setContentTitle("Exact Alarms Needed")
+                .setContentText("Please allow exact alarms for timer functionality.")
+                .setPriority(NotificationCompat.PRIORITY_HIGH)
+                .setAutoCancel(true)
+                .setContentIntent(pendingIntent);
+
+        NotificationManagerCompat manager = NotificationManagerCompat.from(context);
+        manager.notify(1004, builder.build());
+    }
+
 
 }
\ No newline at end of file
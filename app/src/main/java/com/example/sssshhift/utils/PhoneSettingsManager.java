@@ -7,29 +7,25 @@ import android.media.AudioManager;
 import android.os.Build;
 import android.util.Log;
 
+import com.example.sssshhift.models.CompiledProfile;
+
 public class PhoneSettingsManager {
     private static final String TAG = "PhoneSettingsManager";
 
     public static void setRingerMode(Context context, String ringerMode) {
+        setRingerMode(context, CompiledProfile.RingerMode.fromString(ringerMode).getAudioMode());
+    }
+
+    /**
+     * Set one of the AudioManager.RINGER_MODE_* values
+     * @return true if the mode was applied
+     */
+    public static boolean setRingerMode(Context context, int mode) {
         try {
             AudioManager audioManager = (AudioManager) context.getSystemService(Context.AUDIO_SERVICE);
             if (audioManager == null) {
                 Log.e(TAG, "AudioManager is null");
-                return;
-            }
-
-            int mode;
-            switch (ringerMode.toLowerCase()) {
-                case "silent":
-                    mode = AudioManager.RINGER_MODE_SILENT;
-                    break;
-                case "vibrate":
-                    mode = AudioManager.RINGER_MODE_VIBRATE;
-                    break;
-                case "normal":
-                default:
-                    mode = AudioManager.RINGER_MODE_NORMAL;
-                    break;
+                return false;
             }
 
             // Check if we have Do Not Disturb permission
@@ -41,15 +37,17 @@ public class PhoneSettingsManager {
                     Log.w(TAG, "Do Not Disturb permission not granted, cannot change ringer mode");
                     // Request permission through notification
                     NotificationUtils.showPermissionRequiredNotification(context);
-                    return;
+                    return false;
                 }
             }
 
             audioManager.setRingerMode(mode);
-            Log.d(TAG, "Ringer mode set to: " + ringerMode);
+            Log.d(TAG, "Ringer mode set to: " + mode);
+            return true;
 
         } catch (Exception e) {
-            Log.e(TAG, "Error setting ringer mode to: " + ringerMode, e);
+            Log.e(TAG, "Error setting ringer mode to: " + mode, e);
+            return false;
         }
     }
 
@@ -164,84 +162,71 @@ public class PhoneSettingsManager {
     }
 
     public static void applyActions(Context context, String actions) {
+        applyActions(context, CompiledProfile.parseActions(actions));
+    }
+
+    /**
+     * Apply a bitmask of CompiledProfile.ACTION_* values
+     */
+    public static void applyActions(Context context, int actions) {
         Log.d(TAG, "Applying profile actions: " + actions);
 
-        if (actions == null || actions.isEmpty()) {
-            return;
+        if ((actions & CompiledProfile.ACTION_WIFI) != 0) {
+            // Note: Direct Wi-Fi control requires system-level permissions
+            // Show notification instead for user to manually toggle
+            NotificationUtils.showWifiToggleNotification(context, true);
         }
 
-        String[] actionArray = actions.split(",");
-
-        for (String action : actionArray) {
-            action = action.trim();
-
-            switch (action) {
-                case "wifi":
-                    // Note: Direct Wi-Fi control requires system-level permissions
-                    // Show notification instead for user to manually toggle
-                    NotificationUtils.showWifiToggleNotification(context, true);
-                    break;
-
-                case "bluetooth":
-                    toggleBluetooth(context, true);
-                    break;
-
-                case "data":
-                    // Mobile data toggle requires system permissions
-                    // Show notification for manual toggle
-                    Log.d(TAG, "Mobile data toggle requested");
-                    break;
+        if ((actions & CompiledProfile.ACTION_BLUETOOTH) != 0) {
+            toggleBluetooth(context, true);
+        }
 
-                case "dnd":
-                    enableDoNotDisturb(context);
-                    break;
+        if ((actions & CompiledProfile.ACTION_DATA) != 0) {
+            // Mobile data toggle requires system permissions
+            // Show notification for manual toggle
+            Log.d(TAG, "Mobile data toggle requested");
+        }
 
-                default:
-                    Log.w(TAG, "Unknown action: " + action);
-                    break;
-            }
+        if ((actions & CompiledProfile.ACTION_DND) != 0) {
+            enableDoNotDisturb(context);
         }
     }
 
     public static void deactivateProfile(Context context, String actions) {
+        deactivateProfile(context, CompiledProfile.parseActions(actions));
+    }
+
+    /**
+     * Restore normal ringer mode and reverse a bitmask of CompiledProfile.ACTION_* values
+     */
+    public static void deactivateProfile(Context context, int actions) {
         Log.d(TAG, "Deactivating profile actions");
 
         // Reset ringer mode to normal
-        setRingerMode(context, "normal");
+        setRingerMode(context, AudioManager.RINGER_MODE_NORMAL);
+        revertActions(context, actions);
+    }
 
-        // If there were no actions, we're done
-        if (actions == null || actions.isEmpty()) {
-            return;
+    /**
+     * Reverse a bitmask of CompiledProfile.ACTION_* values, leaving the ringer mode alone
+     */
+    public static void revertActions(Context context, int actions) {
+        if ((actions & CompiledProfile.ACTION_WIFI) != 0) {
+            // Show notification to manually disable WiFi
+            NotificationUtils.showWifiToggleNotification(context, false);
         }
 
-        // Reverse each action
-        String[] actionArray = actions.split(",");
-        for (String action : actionArray) {
-            action = action.trim();
-
-            switch (action) {
-                case "wifi":
-                    // Show notification to manually disable WiFi
-                    NotificationUtils.showWifiToggleNotification(context, false);
-                    break;
-
-                case "bluetooth":
-                    toggleBluetooth(context, false);
-                    break;
-
-                case "data":
-                    // Show notification for manual data toggle
-                    Log.d(TAG, "Mobile data disable requested");
-                    break;
-
-                case "dnd":
-                    disableDoNotDisturb(context);
-                    break;
-
-                default:
-                    Log.w(TAG, "Unknown action to deactivate: " + action);
-                    break;
-            }
+        if ((actions & CompiledProfile.ACTION_BLUETOOTH) != 0) {
+            toggleBluetooth(context, false);
+        }
+
+        if ((actions & CompiledProfile.ACTION_DATA) != 0) {
+            // Show notification for manual data toggle
+            Log.d(TAG, "Mobile data disable requested");
+        }
+
+        if ((actions & CompiledProfile.ACTION_DND) != 0) {
+            disableDoNotDisturb(context);
         }
     }
-}
\ No newline at end of file
+}
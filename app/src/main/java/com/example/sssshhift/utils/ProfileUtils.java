@@ -5,71 +5,142 @@ import android.app.PendingIntent;
 import android.content.Context;
 import android.content.Intent;
 import android.os.Build;
-import android.provider.Settings;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
 import android.widget.Toast;
 
+import com.example.sssshhift.data.ProfileRepository;
 import com.example.sssshhift.receivers.ProfileTimerReceiver;
+import com.example.sssshhift.models.CompiledProfile;
 import com.example.sssshhift.models.Profile;
+import com.example.sssshhift.scheduler.Transition;
+import com.example.sssshhift.scheduler.TransitionScheduler;
 
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collection;
+import java.util.List;
 
 public class ProfileUtils {
     private static final String TAG = "ProfileUtils";
 
     public static void scheduleProfile(Context context, String profileName, boolean isStartTime, String time, String endTime) {
+        scheduleProfile(context, profileName, CompiledProfile.parseMinuteOfDay(time),
+                CompiledProfile.parseMinuteOfDay(endTime));
+    }
+
+    /**
+     * Schedule a time profile from its already parsed start and end
+     */
+    public static void scheduleProfile(Context context, CompiledProfile profile) {
+        scheduleProfile(context, profile.getName(), profile.getStartMinute(), profile.getEndMinute());
+    }
+
+    /**
+     * Schedule several time profiles with a single timeline update
+     */
+    public static void scheduleProfiles(Context context, Collection<CompiledProfile> profiles) {
         try {
-            // Schedule start time
-            if (time != null && !time.isEmpty()) {
-                scheduleProfileAlarm(context, profileName, time, true);
-                Log.d(TAG, "Scheduled start alarm for profile: " + profileName + " at " + time);
+            List<Transition> transitions = new ArrayList<>();
+            for (CompiledProfile profile : profiles) {
+                if (!addDailyTransitions(context, profile.getName(), profile.getStartMinute(),
+                        profile.getEndMinute(), transitions)) {
+                    return;
+                }
             }
+            TransitionScheduler.getInstance(context).scheduleAll(transitions);
+            Log.d(TAG, "Scheduled " + profiles.size() + " profiles");
+
+        } catch (Exception e) {
+            Log.e(TAG, "Error scheduling profiles", e);
+            showError(context, "Error scheduling profiles: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Rebuild the daily edges of every active time profile from its start and end minute. The
+     * timeline keeps absolute instants, which are off after a clock or time zone change.
+     */
+    public static void rescheduleTimeProfiles(Context context) {
+        List<CompiledProfile> profiles = new ArrayList<>();
+        for (Profile profile : ProfileRepository.getInstance(context).getActiveByTriggerType("time")) {
+            profiles.add(profile.getCompiled());
+        }
+        scheduleProfiles(context, profiles);
+    }
 
-            // Schedule end time if provided
-            if (endTime != null && !endTime.isEmpty()) {
-                scheduleProfileAlarm(context, profileName, endTime, false);
-                Log.d(TAG, "Scheduled end alarm for profile: " + profileName + " at " + endTime);
+    private static void scheduleProfile(Context context, String profileName, int startMinute, int endMinute) {
+        try {
+            List<Transition> transitions = new ArrayList<>();
+            if (!addDailyTransitions(context, profileName, startMinute, endMinute, transitions)) {
+                return;
             }
 
+            TransitionScheduler.getInstance(context).scheduleAll(transitions);
+
         } catch (Exception e) {
             Log.e(TAG, "Error scheduling profile: " + profileName, e);
-            Toast.makeText(context, "Error scheduling profile: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+            showError(context, "Error scheduling profile: " + e.getMessage());
+        }
+    }
+
+    // Returns false if exact alarms are not permitted
+    private static boolean addDailyTransitions(Context context, String profileName, int startMinute,
+                                               int endMinute, List<Transition> transitions) {
+        // Schedule start time
+        if (startMinute != CompiledProfile.NO_MINUTE) {
+            Transition start = createDailyTransition(context, profileName, startMinute, true);
+            if (start == null) return false;
+            transitions.add(start);
+            Log.d(TAG, "Scheduled start alarm for profile: " + profileName + " at minute " + startMinute);
+        }
+
+        // Schedule end time if provided
+        if (endMinute != CompiledProfile.NO_MINUTE) {
+            Transition end = createDailyTransition(context, profileName, endMinute, false);
+            if (end == null) return false;
+            transitions.add(end);
+            Log.d(TAG, "Scheduled end alarm for profile: " + profileName + " at minute " + endMinute);
         }
+        return true;
     }
 
     private static void scheduleProfileAlarm(Context context, String profileName, String time, boolean isStartTime) {
+        Transition transition = createDailyTransition(context, profileName,
+                CompiledProfile.parseMinuteOfDay(time), isStartTime);
+        if (transition != null) {
+            TransitionScheduler.getInstance(context).schedule(transition);
+        }
+    }
+
+    /**
+     * Build the daily timeline edge for a profile, or null if exact alarms are not permitted
+     */
+    private static Transition createDailyTransition(Context context, String profileName, int minuteOfDay, boolean isStartTime) {
         AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
         if (alarmManager == null) {
             Log.e(TAG, "AlarmManager is null");
-            return;
+            return null;
         }
 
-        // Check if app can schedule exact alarms (Android 12+)
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S) {
-            if (!alarmManager.canScheduleExactAlarms()) {
-                // Request exact alarm permission
-                try {
-                    Intent intent = new Intent(Settings.ACTION_REQUEST_SCHEDULE_EXACT_ALARM);
-                    intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
-                    context.startActivity(intent);
-                    Toast.makeText(context, "Please allow exact alarms for timer functionality", Toast.LENGTH_LONG).show();
-                    return;
-                } catch (Exception e) {
-                    Log.e(TAG, "Error requesting exact alarm permission", e);
-                }
-            }
+        // Check if app can schedule exact alarms (Android 12+). Also reached from receivers, which
+        // cannot start the settings screen, so the request goes through a notification.
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S && !alarmManager.canScheduleExactAlarms()) {
+            Log.w(TAG, "Exact alarms not permitted, not scheduling profile: " + profileName);
+            NotificationUtils.showExactAlarmPermissionNotification(context);
+            return null;
         }
 
         try {
-            // Parse time (HH:mm format)
-            String[] timeParts = time.split(":");
-            int hour = Integer.parseInt(timeParts[0]);
-            int minute = Integer.parseInt(timeParts[1]);
+            if (minuteOfDay == CompiledProfile.NO_MINUTE) {
+                throw new IllegalArgumentException("Invalid time for profile: " + profileName);
+            }
 
             // Create calendar instance for today
             Calendar calendar = Calendar.getInstance();
-            calendar.set(Calendar.HOUR_OF_DAY, hour);
-            calendar.set(Calendar.MINUTE, minute);
+            calendar.set(Calendar.HOUR_OF_DAY, minuteOfDay / 60);
+            calendar.set(Calendar.MINUTE, minuteOfDay % 60);
             calendar.set(Calendar.SECOND, 0);
             calendar.set(Calendar.MILLISECOND, 0);
 
@@ -78,51 +149,49 @@ public class ProfileUtils {
                 calendar.add(Calendar.DAY_OF_MONTH, 1);
             }
 
-            // Create unique request code for this alarm
-            int requestCode = generateRequestCode(profileName, isStartTime);
-
-            // Create intent for the alarm receiver
-            Intent intent = new Intent(context, ProfileTimerReceiver.class);
-            intent.putExtra("profile_name", profileName);
-            intent.putExtra("is_start_time", isStartTime);
-            intent.putExtra("scheduled_time", time);
-
-            PendingIntent pendingIntent = PendingIntent.getBroadcast(
-                    context,
-                    requestCode,
-                    intent,
-                    PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE
-            );
-
-            // Schedule the alarm
-            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
-                alarmManager.setExactAndAllowWhileIdle(
-                        AlarmManager.RTC_WAKEUP,
-                        calendar.getTimeInMillis(),
-                        pendingIntent
-                );
-            } else {
-                alarmManager.setExact(
-                        AlarmManager.RTC_WAKEUP,
-                        calendar.getTimeInMillis(),
-                        pendingIntent
-                );
-            }
-
             Log.d(TAG, "Alarm scheduled for " + calendar.getTime() + " (Profile: " + profileName + ", Start: " + isStartTime + ")");
 
+            // Daily edge, the scheduler moves it to the next day once it has fired
+            return new Transition(Transition.SOURCE_PROFILE, profileName, profileName, isStartTime,
+                    calendar.getTimeInMillis(), Transition.NO_RINGER_MODE, 0, true);
+
         } catch (Exception e) {
             Log.e(TAG, "Error creating alarm for profile: " + profileName, e);
             throw e;
         }
     }
 
+    // Also called on receiver threads, toasts need the main thread
+    private static void showError(Context context, String message) {
+        Context appContext = context.getApplicationContext();
+        new Handler(Looper.getMainLooper()).post(() ->
+                Toast.makeText(appContext, message, Toast.LENGTH_SHORT).show());
+    }
+
     public static void cancelProfileAlarms(Context context, String profileName) {
         AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
         if (alarmManager == null) return;
 
+        TransitionScheduler.getInstance(context).cancel(Transition.SOURCE_PROFILE, profileName);
+        cancelLegacyAlarms(context, alarmManager, profileName);
+    }
+
+    /**
+     * Cancel several profiles with a single timeline update
+     */
+    public static void cancelProfileAlarms(Context context, Collection<String> profileNames) {
+        AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        if (alarmManager == null) return;
+
+        TransitionScheduler.getInstance(context).cancelAll(Transition.SOURCE_PROFILE, profileNames);
+        for (String profileName : profileNames) {
+            cancelLegacyAlarms(context, alarmManager, profileName);
+        }
+    }
+
+    private static void cancelLegacyAlarms(Context context, AlarmManager alarmManager, String profileName) {
         try {
-            // Cancel start time alarm
+            // Cancel alarms armed per profile by earlier versions
             int startRequestCode = generateRequestCode(profileName, true);
             Intent startIntent = new Intent(context, ProfileTimerReceiver.class);
             PendingIntent startPendingIntent = PendingIntent.getBroadcast(
@@ -177,7 +246,7 @@ public class ProfileUtils {
             }
         } catch (Exception e) {
             Log.e(TAG, "Error scheduling profile: " + profile.getName(), e);
-            Toast.makeText(context, "Error scheduling profile: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+            showError(context, "Error scheduling profile: " + e.getMessage());
         }
     }
 
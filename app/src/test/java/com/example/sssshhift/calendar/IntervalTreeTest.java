@@ -0,0 +1,190 @@
+package com.example.sssshhift.calendar;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Queries checked against a brute-force scan over the same intervals in begin order
+ */
+public class IntervalTreeTest {
+
+    private static class Span implements IntervalTree.Interval {
+        final long begin;
+        final long end;
+
+        Span(long begin, long end) {
+            this.begin = begin;
+            this.end = end;
+        }
+
+        @Override
+        public long getBegin() { return begin; }
+
+        @Override
+        public long getEnd() { return end; }
+
+        @Override
+        public String toString() { return "[" + begin + ", " + end + "]"; }
+    }
+
+    @Test
+    public void overlappingMatchesBruteForce() {
+        Random random = new Random(7);
+        for (int round = 0; round < 200; round++) {
+            List<Span> spans = randomSpans(random, random.nextInt(60));
+            IntervalTree<Span> tree = IntervalTree.of(spans);
+            List<Span> sorted = sortedByBegin(spans);
+
+            for (int q = 0; q < 50; q++) {
+                long from = random.nextInt(120) - 10;
+                long to = from + random.nextInt(30);
+                List<Span> expected = new ArrayList<>();
+                for (Span span : sorted) {
+                    if (span.begin <= to && span.end >= from) {
+                        expected.add(span);
+                    }
+                }
+
+                List<Span> actual = new ArrayList<>();
+                assertTrue(tree.forEachOverlapping(from, to, span -> actual.add(span)));
+                assertEquals("[" + from + ", " + to + "] in " + sorted, expected, actual);
+            }
+        }
+    }
+
+    @Test
+    public void startingBetweenMatchesBruteForce() {
+        Random random = new Random(11);
+        for (int round = 0; round < 200; round++) {
+            List<Span> spans = randomSpans(random, random.nextInt(60));
+            IntervalTree<Span> tree = IntervalTree.of(spans);
+            List<Span> sorted = sortedByBegin(spans);
+
+            for (int q = 0; q < 50; q++) {
+                long from = random.nextInt(120) - 10;
+                long to = from + random.nextInt(30);
+                List<Span> expected = new ArrayList<>();
+                for (Span span : sorted) {
+                    if (span.begin >= from && span.begin <= to) {
+                        expected.add(span);
+                    }
+                }
+
+                List<Span> actual = new ArrayList<>();
+                tree.forEachStartingBetween(from, to, span -> actual.add(span));
+                assertEquals("[" + from + ", " + to + "] in " + sorted, expected, actual);
+            }
+        }
+    }
+
+    @Test
+    public void endpointsAreInclusive() {
+        Span span = new Span(10, 20);
+        IntervalTree<Span> tree = IntervalTree.of(Collections.singletonList(span));
+
+        assertEquals(1, overlapping(tree, 20, 30).size());
+        assertEquals(1, overlapping(tree, 0, 10).size());
+        assertEquals(1, overlapping(tree, 15, 15).size());
+        assertEquals(0, overlapping(tree, 21, 30).size());
+        assertEquals(0, overlapping(tree, 0, 9).size());
+
+        List<Span> starting = new ArrayList<>();
+        tree.forEachStartingBetween(10, 10, starting::add);
+        assertEquals(1, starting.size());
+    }
+
+    @Test
+    public void equalBeginsAreAllFound() {
+        List<Span> spans = new ArrayList<>();
+        for (int i = 0; i < 9; i++) {
+            spans.add(new Span(50, 50 + i));
+        }
+        spans.add(new Span(40, 45));
+        spans.add(new Span(60, 70));
+        IntervalTree<Span> tree = IntervalTree.of(spans);
+
+        List<Span> starting = new ArrayList<>();
+        tree.forEachStartingBetween(50, 50, starting::add);
+        assertEquals(9, starting.size());
+        for (Span span : starting) {
+            assertEquals(50, span.begin);
+        }
+
+        // Only the equal-begin spans reaching 55 or later
+        assertEquals(4, overlapping(tree, 55, 59).size());
+    }
+
+    @Test
+    public void visitorCanStopEarly() {
+        Random random = new Random(3);
+        List<Span> spans = randomSpans(random, 40);
+        IntervalTree<Span> tree = IntervalTree.of(spans);
+
+        List<Span> all = overlapping(tree, 0, 100);
+        for (int limit = 1; limit <= all.size(); limit++) {
+            List<Span> visited = new ArrayList<>();
+            final int max = limit;
+            boolean completed = tree.forEachOverlapping(0, 100, span -> {
+                visited.add(span);
+                return visited.size() < max;
+            });
+            assertFalse(completed);
+            assertEquals(all.subList(0, limit), visited);
+
+            List<Span> started = new ArrayList<>();
+            tree.forEachStartingBetween(0, 100, span -> {
+                started.add(span);
+                return started.size() < max;
+            });
+            assertEquals(Math.min(limit, tree.size()), started.size());
+        }
+    }
+
+    @Test
+    public void emptyTree() {
+        IntervalTree<Span> tree = IntervalTree.of(new ArrayList<>());
+        assertEquals(0, tree.size());
+        assertTrue(overlapping(tree, Long.MIN_VALUE, Long.MAX_VALUE).isEmpty());
+        assertTrue(tree.toList().isEmpty());
+    }
+
+    @Test
+    public void toListIsInBeginOrder() {
+        List<Span> spans = Arrays.asList(new Span(30, 40), new Span(10, 50), new Span(20, 25), new Span(10, 15));
+        IntervalTree<Span> tree = IntervalTree.of(spans);
+        assertEquals(sortedByBegin(spans), tree.toList());
+    }
+
+    private static List<Span> overlapping(IntervalTree<Span> tree, long from, long to) {
+        List<Span> result = new ArrayList<>();
+        tree.forEachOverlapping(from, to, result::add);
+        return result;
+    }
+
+    // Narrow range, so equal begins and shared endpoints are common
+    private static List<Span> randomSpans(Random random, int count) {
+        List<Span> spans = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            long begin = random.nextInt(100);
+            spans.add(new Span(begin, begin + random.nextInt(random.nextBoolean() ? 5 : 40)));
+        }
+        return spans;
+    }
+
+    // Same order the tree keeps, the sort is stable for equal intervals
+    private static List<Span> sortedByBegin(List<Span> spans) {
+        List<Span> sorted = new ArrayList<>(spans);
+        sorted.sort((a, b) -> {
+            int byBegin = Long.compare(a.begin, b.begin);
+            return byBegin != 0 ? byBegin : Long.compare(a.end, b.end);
+        });
+        return sorted;
+    }
+}
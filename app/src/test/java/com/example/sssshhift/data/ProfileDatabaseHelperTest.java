@@ -0,0 +1,160 @@
+package com.example.sssshhift.data;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Schema v3: the hot lookups must be served by the new indexes, and the upgrade must
+ * survive duplicate names.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class ProfileDatabaseHelperTest {
+    private static final int PROFILE_COUNT = 10_000;
+
+    private Context context;
+    private ProfileDatabaseHelper helper;
+
+    @Before
+    public void setUp() {
+        context = ApplicationProvider.getApplicationContext();
+        context.deleteDatabase(ProfileDatabaseHelper.DATABASE_NAME);
+    }
+
+    @After
+    public void tearDown() {
+        if (helper != null) {
+            helper.close();
+        }
+        context.deleteDatabase(ProfileDatabaseHelper.DATABASE_NAME);
+    }
+
+    @Test
+    public void nameLookup_usesUniqueNameIndex() {
+        SQLiteDatabase db = openPopulated();
+        String plan = queryPlan(db, "SELECT * FROM profiles WHERE name = ?", "Profile 42");
+        assertTrue(plan, plan.contains(ProfileDatabaseHelper.INDEX_NAME));
+    }
+
+    @Test
+    public void activeByTriggerType_usesCompositeIndex() {
+        SQLiteDatabase db = openPopulated();
+        String plan = queryPlan(db, "SELECT * FROM profiles WHERE trigger_type = ? AND is_active = ?",
+                "location", "1");
+        assertTrue(plan, plan.contains(ProfileDatabaseHelper.INDEX_TRIGGER_ACTIVE));
+    }
+
+    @Test
+    public void orderByCreatedAt_usesCreatedAtIndex() {
+        SQLiteDatabase db = openPopulated();
+        String plan = queryPlan(db, "SELECT * FROM profiles ORDER BY created_at DESC");
+        assertTrue(plan, plan.contains(ProfileDatabaseHelper.INDEX_CREATED_AT));
+        assertFalse(plan, plan.contains("TEMP B-TREE"));
+    }
+
+    @Test
+    public void nameLookup_at10kProfiles_isFast() {
+        SQLiteDatabase db = openPopulated();
+        int lookups = 1_000;
+
+        long start = System.nanoTime();
+        for (int i = 0; i < lookups; i++) {
+            try (Cursor cursor = db.query(ProfileDatabaseHelper.TABLE_PROFILES, null,
+                    ProfileDatabaseHelper.COLUMN_NAME + "=?", new String[]{"Profile " + (i * 7 % PROFILE_COUNT)},
+                    null, null, null)) {
+                assertTrue(cursor.moveToFirst());
+            }
+        }
+        double avgMicros = (System.nanoTime() - start) / 1e3 / lookups;
+
+        // Generous bound, a full table scan at this size is an order of magnitude slower
+        assertTrue("Average lookup took " + avgMicros + " us", avgMicros < 2_000);
+    }
+
+    @Test
+    public void upgradeFromV2_renamesDuplicatesAndCreatesIndexes() {
+        SQLiteDatabase v2 = context.openOrCreateDatabase(ProfileDatabaseHelper.DATABASE_NAME,
+                Context.MODE_PRIVATE, null);
+        v2.execSQL("CREATE TABLE profiles (_id INTEGER PRIMARY KEY AUTOINCREMENT, name TEXT NOT NULL, " +
+                "trigger_type TEXT NOT NULL, trigger_value TEXT NOT NULL, end_time TEXT, " +
+                "ringer_mode TEXT NOT NULL, actions TEXT, is_active INTEGER DEFAULT 0, " +
+                "created_at INTEGER NOT NULL)");
+        insertProfile(v2, "Work", 1);
+        insertProfile(v2, "Work", 2);
+        insertProfile(v2, "Work (2)", 3);
+        insertProfile(v2, "Work", 4);
+        insertProfile(v2, "Home", 5);
+        v2.setVersion(2);
+        v2.close();
+
+        helper = new ProfileDatabaseHelper(context);
+        SQLiteDatabase db = helper.getWritableDatabase();
+
+        Set<String> names = new HashSet<>();
+        try (Cursor cursor = db.query(ProfileDatabaseHelper.TABLE_PROFILES,
+                new String[]{ProfileDatabaseHelper.COLUMN_NAME}, null, null, null, null,
+                ProfileDatabaseHelper.COLUMN_ID)) {
+            while (cursor.moveToNext()) {
+                assertTrue("Duplicate name after upgrade: " + cursor.getString(0), names.add(cursor.getString(0)));
+            }
+        }
+        assertEquals(5, names.size());
+        assertTrue(names.contains("Work"));
+        assertTrue(names.contains("Work (3)"));
+        assertTrue(names.contains("Work (4)"));
+
+        String plan = queryPlan(db, "SELECT * FROM profiles WHERE name = ?", "Work");
+        assertTrue(plan, plan.contains(ProfileDatabaseHelper.INDEX_NAME));
+    }
+
+    private SQLiteDatabase openPopulated() {
+        helper = new ProfileDatabaseHelper(context);
+        SQLiteDatabase db = helper.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            for (int i = 0; i < PROFILE_COUNT; i++) {
+                insertProfile(db, "Profile " + i, i);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        return db;
+    }
+
+    private static void insertProfile(SQLiteDatabase db, String name, long createdAt) {
+        ContentValues values = new ContentValues();
+        values.put(ProfileDatabaseHelper.COLUMN_NAME, name);
+        values.put(ProfileDatabaseHelper.COLUMN_TRIGGER_TYPE, createdAt % 2 == 0 ? "time" : "location");
+        values.put(ProfileDatabaseHelper.COLUMN_TRIGGER_VALUE, "09:00");
+        values.put(ProfileDatabaseHelper.COLUMN_RINGER_MODE, "silent");
+        values.put(ProfileDatabaseHelper.COLUMN_IS_ACTIVE, createdAt % 3 == 0 ? 1 : 0);
+        values.put(ProfileDatabaseHelper.COLUMN_CREATED_AT, createdAt);
+        db.insertOrThrow(ProfileDatabaseHelper.TABLE_PROFILES, null, values);
+    }
+
+    private static String queryPlan(SQLiteDatabase db, String sql, String... args) {
+        StringBuilder plan = new StringBuilder();
+        try (Cursor cursor = db.rawQuery("EXPLAIN QUERY PLAN " + sql, args)) {
+            int detail = cursor.getColumnIndexOrThrow("detail");
+            while (cursor.moveToNext()) {
+                plan.append(cursor.getString(detail)).append('\n');
+            }
+        }
+        return plan.toString();
+    }
+}
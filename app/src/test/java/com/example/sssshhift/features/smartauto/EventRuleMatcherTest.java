@@ -0,0 +1,163 @@
+package com.example.sssshhift.features.smartauto;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Rule semantics, agreement with the old per-keyword substring loop, and a benchmark of
+ * thousands of instances against hundreds of keywords
+ */
+public class EventRuleMatcherTest {
+    private static final String[] WORDS = {
+            "sync", "review", "planning", "retro", "lunch", "1:1", "quarterly", "budget", "design",
+            "interview", "onboarding", "standup", "demo", "offsite", "roadmap", "kickoff", "training"
+    };
+
+    @Test
+    public void titleKeywordsAreCaseInsensitiveSubstrings() {
+        EventRuleMatcher matcher = EventRuleMatcher.fromRules(Arrays.asList(" Meeting ", "team"), false);
+
+        assertEquals("meeting", matcher.findMatch(1, EventRuleMatcher.AVAILABILITY_BUSY, "Weekly MEETING", null, null));
+        assertTrue(matcher.matches(1, EventRuleMatcher.AVAILABILITY_FREE, "Steam engine talk", null, null));
+        assertFalse(matcher.matches(1, EventRuleMatcher.AVAILABILITY_BUSY, "Dentist", null, null));
+        assertFalse(matcher.matches(1, EventRuleMatcher.AVAILABILITY_BUSY, null, null, null));
+    }
+
+    @Test
+    public void overlappingKeywordsAreFound() {
+        EventRuleMatcher matcher = EventRuleMatcher.fromRules(Arrays.asList("he", "she", "hers", "his"), false);
+
+        assertTrue(matcher.matches(1, 0, "ushers", null, null));
+        assertTrue(matcher.matches(1, 0, "ahishers", null, null));
+        assertFalse(matcher.matches(1, 0, "hxsx", null, null));
+    }
+
+    @Test
+    public void filtersNarrowAndFieldRulesSelect() {
+        EventRuleMatcher matcher = EventRuleMatcher.fromRules(Arrays.asList(
+                "location:Room 4", "organizer:@corp.com", "regex:^1:1 ", "calendar:7", "calendar:9"), true);
+
+        assertEquals("location:room 4",
+                matcher.findMatch(7, EventRuleMatcher.AVAILABILITY_BUSY, "Chat", null, "Building A, ROOM 4"));
+        assertEquals("organizer:@corp.com",
+                matcher.findMatch(9, EventRuleMatcher.AVAILABILITY_BUSY, "Chat", "boss@corp.com", null));
+        assertTrue(matcher.matches(7, EventRuleMatcher.AVAILABILITY_BUSY, "1:1 with Sam", null, null));
+        assertFalse(matcher.matches(7, EventRuleMatcher.AVAILABILITY_BUSY, "Our 1:1 ", null, null));
+
+        // Right fields, but another calendar or not busy
+        assertFalse(matcher.matches(8, EventRuleMatcher.AVAILABILITY_BUSY, "Chat", null, "Room 4"));
+        assertFalse(matcher.matches(7, EventRuleMatcher.AVAILABILITY_FREE, "Chat", null, "Room 4"));
+    }
+
+    @Test
+    public void availabilityRulesAndInvalidRules() {
+        EventRuleMatcher matcher = EventRuleMatcher.fromRules(Arrays.asList(
+                "sync", "availability:tentative", "availability:maybe", "regex:([", "calendar:abc"), true);
+
+        assertTrue(matcher.matches(1, EventRuleMatcher.AVAILABILITY_BUSY, "Sync", null, null));
+        assertTrue(matcher.matches(1, EventRuleMatcher.AVAILABILITY_TENTATIVE, "Sync", null, null));
+        assertFalse(matcher.matches(1, EventRuleMatcher.AVAILABILITY_FREE, "Sync", null, null));
+        assertEquals(3, matcher.getInvalidRules().size());
+    }
+
+    @Test
+    public void filtersAloneSelectNothing() {
+        EventRuleMatcher matcher = EventRuleMatcher.fromRules(Arrays.asList("calendar:1", "  "), true);
+
+        assertTrue(matcher.isEmpty());
+        assertFalse(matcher.matches(1, EventRuleMatcher.AVAILABILITY_BUSY, "Anything", null, null));
+    }
+
+    @Test
+    public void agreesWithSubstringLoopAndScalesWithTextNotKeywords() {
+        Random random = new Random(11);
+        List<String> keywords = randomKeywords(random, 500);
+        String[] titles = randomTitles(random, 5_000);
+        EventRuleMatcher matcher = EventRuleMatcher.fromRules(keywords, false);
+
+        int matched = 0;
+        for (String title : titles) {
+            boolean expected = naiveMatch(title, keywords);
+            assertEquals(title, expected, matcher.matches(1, 0, title, null, null));
+            if (expected) {
+                matched++;
+            }
+        }
+        // Both outcomes are exercised
+        assertTrue(matched > 0 && matched < titles.length);
+
+        long naiveNs = Long.MAX_VALUE;
+        long compiledNs = Long.MAX_VALUE;
+        for (int round = 0; round < 5; round++) { // The first rounds warm up
+            long start = System.nanoTime();
+            int naiveHits = 0;
+            for (String title : titles) {
+                if (naiveMatch(title, keywords)) naiveHits++;
+            }
+            naiveNs = Math.min(naiveNs, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            int compiledHits = 0;
+            for (String title : titles) {
+                if (matcher.matches(1, 0, title, null, null)) compiledHits++;
+            }
+            compiledNs = Math.min(compiledNs, System.nanoTime() - start);
+            assertEquals(naiveHits, compiledHits);
+        }
+
+        // Cost per instance with 10x the keywords stays about the same
+        EventRuleMatcher large = EventRuleMatcher.fromRules(randomKeywords(random, 5_000), false);
+        long largeNs = Long.MAX_VALUE;
+        for (int round = 0; round < 5; round++) {
+            long start = System.nanoTime();
+            for (String title : titles) {
+                large.matches(1, 0, title, null, null);
+            }
+            largeNs = Math.min(largeNs, System.nanoTime() - start);
+        }
+
+        assertTrue("Compiled " + compiledNs + " ns vs substring loop " + naiveNs + " ns", compiledNs < naiveNs);
+        assertTrue("5,000 keywords took " + largeNs + " ns vs " + compiledNs + " ns",
+                largeNs < Math.max(compiledNs, 1_000_000) * 5);
+    }
+
+    // What SmartAutoWorker did before rules were compiled
+    private static boolean naiveMatch(String title, List<String> keywords) {
+        String titleLower = title.toLowerCase().trim();
+        for (String keyword : keywords) {
+            if (titleLower.contains(keyword.toLowerCase().trim())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static List<String> randomKeywords(Random random, int count) {
+        List<String> keywords = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            keywords.add("proj-" + Integer.toString(random.nextInt(60_000), 36)
+                    + (random.nextBoolean() ? " Review" : " sync"));
+        }
+        return keywords;
+    }
+
+    private static String[] randomTitles(Random random, int count) {
+        String[] titles = new String[count];
+        for (int i = 0; i < count; i++) {
+            StringBuilder title = new StringBuilder();
+            for (int w = 0; w < 6; w++) {
+                title.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+            }
+            title.append("proj-").append(Integer.toString(random.nextInt(30_000), 36))
+                    .append(random.nextBoolean() ? " review" : " SYNC");
+            titles[i] = title.toString();
+        }
+        return titles;
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.sssshhift.location;
+
+import com.example.sssshhift.location.AdaptiveSamplingPolicy.Tier;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class AdaptiveSamplingPolicyTest {
+    private static final double LAT = 12.97;
+    private static final double LNG = 77.59;
+    private static final double CAR_MPS = AdaptiveSamplingPolicy.MIN_ASSUMED_SPEED_MPS;
+
+    @Test
+    public void nearBoundaryIsAlwaysNear() {
+        assertEquals(Tier.NEAR, AdaptiveSamplingPolicy.tierFor(0, CAR_MPS));
+        assertEquals(Tier.NEAR, AdaptiveSamplingPolicy.tierFor(AdaptiveSamplingPolicy.NEAR_BOUNDARY_METERS, 0.1));
+        assertEquals(Tier.NEAR, AdaptiveSamplingPolicy.tierFor(-50, CAR_MPS));
+    }
+
+    @Test
+    public void noFenceIsIdle() {
+        assertEquals(Tier.IDLE, AdaptiveSamplingPolicy.tierFor(Double.POSITIVE_INFINITY, CAR_MPS));
+    }
+
+    @Test
+    public void chosenTierSamplesTwiceBeforeBoundary() {
+        for (double distance = 0; distance <= 50_000; distance += 25) {
+            Tier tier = AdaptiveSamplingPolicy.tierFor(distance, CAR_MPS);
+            if (tier == Tier.NEAR) {
+                continue;
+            }
+            double reach = distance - AdaptiveSamplingPolicy.NEAR_BOUNDARY_METERS;
+            assertTrue("interval at " + distance, tier.getIntervalMillis() * 2 / 1000.0 * CAR_MPS <= reach);
+            assertTrue("min distance at " + distance, tier.getMinUpdateDistanceMeters() * 2 <= reach);
+        }
+    }
+
+    @Test
+    public void tierIsTheLoosestThatFits() {
+        Tier[] tiers = Tier.values();
+        for (int i = 1; i < tiers.length; i++) {
+            Tier tier = tiers[i];
+            double fits = AdaptiveSamplingPolicy.NEAR_BOUNDARY_METERS
+                    + Math.max(tier.getIntervalMillis() * 2 / 1000.0 * CAR_MPS, tier.getMinUpdateDistanceMeters() * 2);
+            assertEquals(tier, AdaptiveSamplingPolicy.tierFor(fits, CAR_MPS));
+            assertEquals(tiers[i - 1], AdaptiveSamplingPolicy.tierFor(fits - 1, CAR_MPS));
+        }
+    }
+
+    @Test
+    public void standingUserIsSampledForACarStart() {
+        AdaptiveSamplingPolicy policy = new AdaptiveSamplingPolicy();
+        long time = 0;
+        Tier tier = null;
+        for (int i = 0; i < 10; i++) {
+            time += 60_000;
+            tier = policy.onFix(LAT, LNG, time, 0, 10, 2_500);
+        }
+        // A car at highway speed covers 2.5 km in under 90 s
+        assertTrue(tier.getIntervalMillis() * 2 / 1000.0 * CAR_MPS <= 2_500);
+        assertNotEquals(Tier.IDLE, tier);
+    }
+
+    @Test
+    public void relaxesOneTierPerFix() {
+        AdaptiveSamplingPolicy policy = new AdaptiveSamplingPolicy();
+        assertEquals(Tier.NEAR, policy.getTier());
+
+        Tier[] tiers = Tier.values();
+        long time = 0;
+        for (int i = 1; i < tiers.length; i++) {
+            time += 1_000;
+            assertEquals(tiers[i], policy.onFix(LAT, LNG, time, 0, 10, Double.POSITIVE_INFINITY));
+        }
+        time += 1_000;
+        assertEquals(Tier.IDLE, policy.onFix(LAT, LNG, time, 0, 10, Double.POSITIVE_INFINITY));
+    }
+
+    @Test
+    public void tightensAtOnce() {
+        AdaptiveSamplingPolicy policy = new AdaptiveSamplingPolicy();
+        long time = 0;
+        for (int i = 0; i < Tier.values().length; i++) {
+            time += 1_000;
+            policy.onFix(LAT, LNG, time, 0, 10, Double.POSITIVE_INFINITY);
+        }
+        assertEquals(Tier.IDLE, policy.getTier());
+
+        assertEquals(Tier.NEAR, policy.onFix(LAT, LNG, time + 1_000, 0, 10, 100));
+    }
+
+    @Test
+    public void inaccurateFixCountsAsCloser() {
+        double distance = 12_000;
+        assertEquals(Tier.FAR, relaxedTier(distance, 5));
+        assertEquals(Tier.MEDIUM, relaxedTier(distance, 2_000));
+    }
+
+    @Test
+    public void resetStartsAtNear() {
+        AdaptiveSamplingPolicy policy = new AdaptiveSamplingPolicy();
+        policy.onFix(LAT, LNG, 1_000, 0, 10, Double.POSITIVE_INFINITY);
+        policy.reset();
+        assertEquals(Tier.NEAR, policy.getTier());
+    }
+
+    // Tier reached after enough fixes at the same spot
+    private static Tier relaxedTier(double distance, double accuracy) {
+        AdaptiveSamplingPolicy policy = new AdaptiveSamplingPolicy();
+        Tier tier = null;
+        for (int i = 1; i <= Tier.values().length; i++) {
+            tier = policy.onFix(LAT, LNG, i * 1_000L, 0, accuracy, distance);
+        }
+        return tier;
+    }
+}
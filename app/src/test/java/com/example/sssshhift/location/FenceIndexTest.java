@@ -0,0 +1,128 @@
+package com.example.sssshhift.location;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Correctness against a brute-force scan, plus a per-fix benchmark from 10 to 10,000 fences
+ */
+public class FenceIndexTest {
+    private static final double BASE_LAT = 12.97;
+    private static final double BASE_LNG = 77.59;
+    private static final int FIXES = 20_000;
+
+    private static class TestFence {
+        final double lat;
+        final double lng;
+        final double radius;
+
+        TestFence(double lat, double lng, double radius) {
+            this.lat = lat;
+            this.lng = lng;
+            this.radius = radius;
+        }
+    }
+
+    @Test
+    public void matchesBruteForce() {
+        Random random = new Random(42);
+        List<TestFence> fences = randomFences(random, 2_000);
+        FenceIndex<TestFence> index = buildIndex(fences);
+
+        for (int i = 0; i < 5_000; i++) {
+            double lat = BASE_LAT + random.nextDouble() * span(fences.size());
+            double lng = BASE_LNG + random.nextDouble() * span(fences.size());
+
+            int expected = 0;
+            for (TestFence fence : fences) {
+                if (FenceIndex.distanceMeters(lat, lng, fence.lat, fence.lng) <= fence.radius) {
+                    expected++;
+                }
+            }
+            assertEquals(expected, index.forEachContaining(lat, lng, (payload, distance) -> { }));
+        }
+    }
+
+    @Test
+    public void largeFenceSpanningCellsIsFoundEverywhere() {
+        FenceIndex<String> index = new FenceIndex.Builder<String>()
+                .add(BASE_LAT, BASE_LNG, 5_000, "campus")
+                .build();
+
+        // ~4 km north, several cells away from the center
+        List<String> hits = new ArrayList<>();
+        index.forEachContaining(BASE_LAT + 0.036, BASE_LNG, (payload, distance) -> hits.add(payload));
+        assertEquals(1, hits.size());
+        assertEquals(0, index.forEachContaining(BASE_LAT + 0.05, BASE_LNG, (payload, distance) -> { }));
+    }
+
+    @Test
+    public void perFixCostStaysFlat() {
+        int[] sizes = {10, 100, 1_000, 10_000};
+        double[] avgCandidates = new double[sizes.length];
+
+        for (int s = 0; s < sizes.length; s++) {
+            Random random = new Random(7);
+            // Constant fence density: the covered area grows with the fence count
+            List<TestFence> fences = randomFences(random, sizes[s]);
+            FenceIndex<TestFence> index = buildIndex(fences);
+
+            double[] lats = new double[FIXES];
+            double[] lngs = new double[FIXES];
+            long candidates = 0;
+            for (int i = 0; i < FIXES; i++) {
+                lats[i] = BASE_LAT + random.nextDouble() * span(sizes[s]);
+                lngs[i] = BASE_LNG + random.nextDouble() * span(sizes[s]);
+                candidates += index.candidateCount(lats[i], lngs[i]);
+            }
+            avgCandidates[s] = (double) candidates / FIXES;
+
+            int[] sink = new int[1];
+            FenceIndex.Visitor<TestFence> visitor = (payload, distance) -> sink[0]++;
+            for (int i = 0; i < FIXES; i++) { // Warm up
+                index.forEachContaining(lats[i], lngs[i], visitor);
+            }
+            long start = System.nanoTime();
+            for (int i = 0; i < FIXES; i++) {
+                index.forEachContaining(lats[i], lngs[i], visitor);
+            }
+            double nsPerFix = (double) (System.nanoTime() - start) / FIXES;
+
+            assertTrue("Fix at " + sizes[s] + " fences took " + nsPerFix + " ns", nsPerFix < 50_000);
+        }
+
+        // The work per fix depends on local density, not on the total number of fences
+        assertTrue("Candidates grew from " + avgCandidates[0] + " to " + avgCandidates[sizes.length - 1],
+                avgCandidates[sizes.length - 1] < Math.max(4, avgCandidates[0] * 3));
+    }
+
+    // Side of the square (in degrees) that keeps roughly one fence per 0.02 x 0.02 degrees
+    private static double span(int fenceCount) {
+        return 0.02 * Math.sqrt(fenceCount);
+    }
+
+    private static List<TestFence> randomFences(Random random, int count) {
+        List<TestFence> fences = new ArrayList<>();
+        double span = span(count);
+        for (int i = 0; i < count; i++) {
+            fences.add(new TestFence(
+                    BASE_LAT + random.nextDouble() * span,
+                    BASE_LNG + random.nextDouble() * span,
+                    50 + random.nextDouble() * 450));
+        }
+        return fences;
+    }
+
+    private static FenceIndex<TestFence> buildIndex(List<TestFence> fences) {
+        FenceIndex.Builder<TestFence> builder = new FenceIndex.Builder<>();
+        for (TestFence fence : fences) {
+            builder.add(fence.lat, fence.lng, fence.radius, fence);
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.sssshhift.timer;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+
+import static org.junit.Assert.*;
+
+public class AlarmDedupStoreTest {
+    private static final long NOW = 1_700_000_000_000L;
+    private static final long WINDOW = 60_000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File file;
+    private AlarmDedupStore store;
+
+    @Before
+    public void setUp() throws Exception {
+        file = new File(folder.getRoot(), "alarms.bin");
+        store = new AlarmDedupStore(file);
+        store.load(NOW);
+    }
+
+    @Test
+    public void repeatWithinWindowIsRejected() throws Exception {
+        assertTrue(store.markIfNotFired("timer:a:start", NOW, NOW, WINDOW));
+        assertFalse(store.markIfNotFired("timer:a:start", NOW, NOW + 1_000, WINDOW));
+        assertTrue(store.markIfNotFired("timer:a:start", NOW, NOW + WINDOW + 1, WINDOW));
+    }
+
+    @Test
+    public void edgesDueAtTheSameTimeAreKeptApart() throws Exception {
+        assertTrue(store.markIfNotFired("timer:a:end", NOW, NOW, WINDOW));
+        assertTrue(store.markIfNotFired("timer:b:start", NOW, NOW, WINDOW));
+        assertEquals(NOW, store.lastFired("timer:a:end", NOW, NOW));
+        assertEquals(NOW, store.lastFired("timer:b:start", NOW, NOW));
+    }
+
+    @Test
+    public void entriesExpireAfterTtl() throws Exception {
+        store.markIfNotFired("timer:a:start", NOW, NOW, WINDOW);
+        long later = NOW + AlarmDedupStore.TTL_MS + 1;
+        assertEquals(0, store.lastFired("timer:a:start", NOW, later));
+
+        store.load(later);
+        assertEquals(0, store.lastFired("timer:a:start", NOW, later));
+    }
+
+    @Test
+    public void oldestIsEvictedWhenFull() throws Exception {
+        int count = AlarmDedupStore.CAPACITY + 10;
+        for (int i = 0; i < count; i++) {
+            assertTrue(store.markIfNotFired("timer:" + i, NOW + i, NOW + i, WINDOW));
+        }
+        long now = NOW + count;
+        for (int i = 0; i < count; i++) {
+            boolean kept = i >= count - AlarmDedupStore.CAPACITY;
+            assertEquals("alarm " + i, kept ? NOW + i : 0, store.lastFired("timer:" + i, NOW + i, now));
+        }
+        assertEquals(AlarmDedupStore.CAPACITY * AlarmDedupStore.SLOT_BYTES, file.length());
+    }
+
+    @Test
+    public void reloadKeepsEntriesAndRingOrder() throws Exception {
+        int count = AlarmDedupStore.CAPACITY + 5;
+        for (int i = 0; i < count; i++) {
+            store.markIfNotFired("timer:" + i, NOW + i, NOW + i, WINDOW);
+        }
+
+        AlarmDedupStore reloaded = new AlarmDedupStore(file);
+        reloaded.load(NOW + count);
+        assertEquals(NOW + count - 1, reloaded.lastFired("timer:" + (count - 1), NOW + count - 1, NOW + count));
+        assertFalse(reloaded.markIfNotFired("timer:10", NOW + 10, NOW + count, WINDOW));
+
+        // The next new entry replaces the oldest one that is left, not the newest
+        int oldest = count - AlarmDedupStore.CAPACITY;
+        assertTrue(reloaded.markIfNotFired("timer:new", NOW, NOW + count, WINDOW));
+        assertEquals(0, reloaded.lastFired("timer:" + oldest, NOW + oldest, NOW + count));
+        assertEquals(NOW + oldest + 1, reloaded.lastFired("timer:" + (oldest + 1), NOW + oldest + 1, NOW + count));
+    }
+
+    @Test
+    public void tornSlotIsRejectedOnLoad() throws Exception {
+        store.markIfNotFired("timer:a:start", NOW, NOW, WINDOW);
+        store.markIfNotFired("timer:b:start", NOW, NOW, WINDOW);
+
+        // Half-written first slot
+        try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+            out.seek(8);
+            out.writeLong(NOW + 5);
+        }
+
+        AlarmDedupStore reloaded = new AlarmDedupStore(file);
+        reloaded.load(NOW);
+        assertEquals(0, reloaded.lastFired("timer:a:start", NOW, NOW));
+        assertEquals(NOW, reloaded.lastFired("timer:b:start", NOW, NOW));
+    }
+
+    @Test
+    public void missingFileStartsEmpty() throws Exception {
+        assertEquals(0, store.lastFired("timer:a:start", NOW, NOW));
+        assertFalse(file.exists());
+    }
+}
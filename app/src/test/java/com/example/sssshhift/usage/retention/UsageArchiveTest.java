@@ -0,0 +1,181 @@
+package com.example.sssshhift.usage.retention;
+
+import com.example.sssshhift.usage.data.UsageLog;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class UsageArchiveTest {
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+    private static final long BASE = 1_700_000_000_000L;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File file;
+    private UsageArchive archive;
+
+    @Before
+    public void setUp() {
+        file = new File(new File(folder.getRoot(), "usage_archive"), "usage_logs.bin");
+        archive = new UsageArchive(file);
+    }
+
+    @Test
+    public void appendThenScanRoundTrips() throws Exception {
+        List<UsageLog> logs = Arrays.asList(
+                log(5, "SILENT", BASE, BASE + 60_000),
+                log(6, "VIBRATE", BASE + 120_000, BASE + 90_000), // End before start
+                log(9, null, BASE + 200_000, -1),
+                log(7, "SILENT", BASE - 5_000, BASE + 1));
+        archive.append(logs);
+
+        List<String> rows = scan(Long.MIN_VALUE, Long.MAX_VALUE);
+        assertEquals(Arrays.asList(
+                row(5, "SILENT", BASE, BASE + 60_000),
+                row(6, "VIBRATE", BASE + 120_000, BASE + 90_000),
+                row(9, null, BASE + 200_000, -1),
+                row(7, "SILENT", BASE - 5_000, BASE + 1)), rows);
+    }
+
+    @Test
+    public void scanKeepsOnlyRowsStartingInRange() throws Exception {
+        archive.append(dayOfLogs(1, 0));
+        archive.append(dayOfLogs(100, 1));
+        archive.append(dayOfLogs(200, 2));
+
+        List<String> rows = scan(BASE + DAY, BASE + 2 * DAY);
+        assertEquals(24, rows.size());
+        for (String row : rows) {
+            int id = Integer.parseInt(row.substring(0, row.indexOf('/')));
+            assertTrue(row, id >= 100 && id < 124);
+        }
+
+        // Half-open range, the first hour of day 2 is excluded and the last of day 1 is in
+        assertEquals(1, scan(BASE + DAY + 23 * 3_600_000L, BASE + 2 * DAY).size());
+        assertEquals(0, scan(BASE + 3 * DAY, Long.MAX_VALUE).size());
+    }
+
+    @Test
+    public void segmentsOutsideRangeAreNotRead() throws Exception {
+        archive.append(dayOfLogs(1, 0));
+        long firstLength = archive.size();
+        archive.append(dayOfLogs(100, 1));
+
+        // Damage the first segment's payload, a scan of day 1 never inflates it
+        try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+            out.seek(firstLength - 2);
+            out.writeShort(0xFFFF);
+        }
+        assertEquals(24, scan(BASE + DAY, BASE + 2 * DAY).size());
+    }
+
+    @Test
+    public void tornLastSegmentIsCutOffOnNextAppend() throws Exception {
+        archive.append(dayOfLogs(1, 0));
+        long firstLength = archive.size();
+        archive.append(dayOfLogs(100, 1));
+
+        // Crash halfway through writing the second segment
+        try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+            out.setLength(firstLength + (archive.size() - firstLength) / 2);
+        }
+        assertEquals(24, scan(Long.MIN_VALUE, Long.MAX_VALUE).size());
+        assertEquals(idRange(1, 24), archive.lastSegmentIds());
+
+        archive.append(dayOfLogs(200, 2));
+        assertEquals(48, scan(Long.MIN_VALUE, Long.MAX_VALUE).size());
+        assertEquals(0, scan(BASE + DAY, BASE + 2 * DAY).size());
+        assertEquals(idRange(200, 24), archive.lastSegmentIds());
+    }
+
+    @Test
+    public void tornHeaderIsCutOffOnNextAppend() throws Exception {
+        archive.append(dayOfLogs(1, 0));
+        long firstLength = archive.size();
+        try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+            out.seek(firstLength);
+            out.write(new byte[]{0x55, 0x53, 0x47});
+        }
+
+        archive.append(dayOfLogs(100, 1));
+        assertEquals(48, scan(Long.MIN_VALUE, Long.MAX_VALUE).size());
+    }
+
+    @Test
+    public void lastSegmentIdsSurviveCrashBeforeDelete() throws Exception {
+        assertTrue(archive.lastSegmentIds().isEmpty());
+
+        archive.append(dayOfLogs(1, 0));
+        archive.append(dayOfLogs(100, 1));
+        // The process dies here, before the batch is deleted from the database. The next run
+        // reads the ids back from a fresh instance.
+        UsageArchive reopened = new UsageArchive(file);
+        assertEquals(idRange(100, 24), reopened.lastSegmentIds());
+    }
+
+    @Test
+    public void logsWithoutStartAreSkipped() throws Exception {
+        archive.append(Collections.singletonList(new UsageLog("SILENT", null, null, 0)));
+        assertFalse(file.exists());
+
+        UsageLog missingStart = new UsageLog("SILENT", null, null, 0);
+        missingStart.setId(3);
+        archive.append(Arrays.asList(missingStart, log(4, "SILENT", BASE, BASE + 1)));
+        assertEquals(Collections.singletonList(row(4, "SILENT", BASE, BASE + 1)),
+                scan(Long.MIN_VALUE, Long.MAX_VALUE));
+    }
+
+    private List<String> scan(long from, long until) throws Exception {
+        List<String> rows = new ArrayList<>();
+        archive.scan(from, until, (id, mode, startTime, endTime, durationMs) -> {
+            assertEquals(endTime == UsageArchive.NO_TIME ? 0 : endTime - startTime, durationMs);
+            rows.add(row(id, mode, startTime, endTime == UsageArchive.NO_TIME ? -1 : endTime));
+        });
+        return rows;
+    }
+
+    // One log per hour of the day, ids counting up from firstId
+    private static List<UsageLog> dayOfLogs(int firstId, int day) {
+        List<UsageLog> logs = new ArrayList<>();
+        for (int hour = 0; hour < 24; hour++) {
+            long start = BASE + day * DAY + hour * 3_600_000L;
+            logs.add(log(firstId + hour, hour % 2 == 0 ? "SILENT" : "VIBRATE", start, start + 600_000));
+        }
+        return logs;
+    }
+
+    private static Set<Integer> idRange(int first, int count) {
+        Set<Integer> ids = new HashSet<>();
+        for (int i = 0; i < count; i++) {
+            ids.add(first + i);
+        }
+        return ids;
+    }
+
+    // Negative end for a log that has none
+    private static UsageLog log(int id, String mode, long start, long end) {
+        UsageLog log = new UsageLog(mode, new Date(start), end < 0 ? null : new Date(end),
+                end < 0 ? 0 : end - start);
+        log.setId(id);
+        return log;
+    }
+
+    private static String row(long id, String mode, long start, long end) {
+        return id + "/" + mode + "/" + start + "/" + end;
+    }
+}